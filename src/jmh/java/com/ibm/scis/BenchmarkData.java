@@ -0,0 +1,50 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.scis;
+
+/** Payloads shared by the benchmarks. */
+final class BenchmarkData {
+  static final String URL = "https://infohub.example.com/api/workitems";
+  static final String CLIENT_ID = "clientId";
+  static final String CLIENT_SECRET = "clientSecret";
+  static final String USERNAME = "functional@example.com";
+
+  static final String WORK_ITEM =
+      "{\"type\":\"WorkItem\",\"name\":\"Supplier delay\",\"priority\":\"HIGH\","
+          + "\"description\":\"Purchase order PO-1001 is delayed by 3 days\","
+          + "\"businessObjects\":[{\"type\":\"PurchaseOrder\",\"id\":\"PO-1001\"}]}";
+
+  static final String QUERY =
+      "{\"query\":\"query { orders(first: 50) { edges { node { id orderNumber status } } } }\"}";
+
+  static final String QUERY_RESPONSE;
+
+  static {
+    StringBuilder response = new StringBuilder("{\"data\":{\"orders\":{\"edges\":[");
+    for (int i = 0; i < 50; i++) {
+      response
+          .append(i == 0 ? "" : ",")
+          .append("{\"node\":{\"id\":\"")
+          .append(i)
+          .append("\",\"orderNumber\":\"PO-")
+          .append(1000 + i)
+          .append("\",\"status\":\"OPEN\"}}");
+    }
+    QUERY_RESPONSE = response.append("]}}}").toString();
+  }
+
+  private BenchmarkData() {}
+}
@@ -0,0 +1,60 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.scis;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpPost;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Header construction on the request hot path. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HeaderBenchmark {
+
+  private final WorkItemClient workItemClient = new WorkItemClient();
+
+  @Benchmark
+  public Map<String, String> basicAuthHeader() {
+    return workItemClient.buildBasicAuthHeader(
+        "bawUser", "bawPassword", new HttpPost("https://baw.example.com/users"));
+  }
+
+  @Benchmark
+  public Map<String, String> basicAuthHeaderWithCsrfToken() {
+    return workItemClient.buildBasicAuthHeaderWithIBMCsrfToken(
+        "bawUser", "bawPassword", "csrfToken", new HttpPost("https://baw.example.com/users"));
+  }
+
+  @Benchmark
+  public Header[] workItemHeaders() {
+    return workItemClient.buildHeaders(
+        "clientId", "clientSecret", "functional@example.com", new HttpPost(BenchmarkData.URL));
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.scis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Embedded SMTP server that accepts and discards every message. AUTH is not advertised. */
+final class LocalSmtpStub implements AutoCloseable {
+  private final ServerSocket serverSocket;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  LocalSmtpStub() throws IOException {
+    serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+    executor.execute(this::acceptLoop);
+  }
+
+  int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  private void acceptLoop() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        executor.execute(() -> serve(socket));
+      } catch (IOException e) {
+        return;
+      }
+    }
+  }
+
+  private void serve(Socket socket) {
+    try (Socket s = socket;
+        BufferedReader in =
+            new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+        OutputStream out = s.getOutputStream()) {
+      reply(out, "220 localhost ESMTP stub");
+      String line;
+      boolean data = false;
+      while ((line = in.readLine()) != null) {
+        if (data) {
+          if (line.equals(".")) {
+            data = false;
+            reply(out, "250 OK");
+          }
+          continue;
+        }
+        String command = line.length() < 4 ? line : line.substring(0, 4).toUpperCase();
+        switch (command) {
+          case "EHLO":
+            reply(out, "250-localhost\r\n250 8BITMIME");
+            break;
+          case "DATA":
+            data = true;
+            reply(out, "354 End data with <CR><LF>.<CR><LF>");
+            break;
+          case "QUIT":
+            reply(out, "221 Bye");
+            return;
+          default:
+            reply(out, "250 OK");
+        }
+      }
+    } catch (IOException e) {
+      // client went away
+    }
+  }
+
+  private static void reply(OutputStream out, String reply) throws IOException {
+    out.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    executor.shutdownNow();
+  }
+}
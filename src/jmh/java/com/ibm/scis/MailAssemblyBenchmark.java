@@ -0,0 +1,91 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.scis;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** MIME assembly in MailPlus, written to a discarding stream instead of an SMTP server. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MailAssemblyBenchmark {
+
+  private static final String CONTENT =
+      "<html><body><p>Purchase order PO-1001 is delayed by 3 days.</p></body></html>";
+
+  private final MailPlus mailPlus = new MailPlus(new DiscardingTransportDelegator());
+
+  @Benchmark
+  public void plainMessage() throws MessagingException {
+    mailPlus.sendMessageWithCredentials(
+        "localhost",
+        "apiKey",
+        "apiKeyValue",
+        "user@example.com",
+        "sender@example.com",
+        null,
+        "cc@example.com",
+        null,
+        "Notification from BAW",
+        "text/html",
+        CONTENT,
+        "high",
+        null);
+  }
+
+  /** Serialises the message like Transport would, without a connection. */
+  static class DiscardingTransportDelegator extends TransportDelegator {
+    private static final OutputStream NULL_STREAM =
+        new OutputStream() {
+          @Override
+          public void write(int b) {}
+
+          @Override
+          public void write(byte[] b, int off, int len) {}
+        };
+
+    @Override
+    public void send(Message message) throws MessagingException {
+      try {
+        message.writeTo(NULL_STREAM);
+      } catch (IOException e) {
+        throw new MessagingException(e.getMessage(), e);
+      }
+    }
+
+    @Override
+    public void send(Message message, String username, String password)
+        throws MessagingException {
+      send(message);
+    }
+  }
+}
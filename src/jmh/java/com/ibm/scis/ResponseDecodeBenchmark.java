@@ -0,0 +1,79 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Compares the response body decoder with the former Scanner based implementation. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseDecodeBenchmark {
+
+  @Param({"256", "65536", "4194304"})
+  int bodySize;
+
+  byte[] body;
+
+  @Setup
+  public void setup() {
+    StringBuilder json = new StringBuilder(bodySize + 64).append("{\"rows\":[");
+    int row = 0;
+    while (json.length() < bodySize) {
+      json.append(row == 0 ? "" : ",").append("{\"id\":\"order-").append(row++).append("\"}");
+    }
+    body = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public String scanner() {
+    InputStream stream = new ByteArrayInputStream(body);
+    Scanner s = new Scanner(stream).useDelimiter("\\A");
+    return s.hasNext() ? s.next() : "";
+  }
+
+  @Benchmark
+  public String inputStreamToString() {
+    return Utils.inputStreamToString(new ByteArrayInputStream(body));
+  }
+
+  @Benchmark
+  public String entityToString() throws IOException {
+    return Utils.entityToString(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+  }
+}
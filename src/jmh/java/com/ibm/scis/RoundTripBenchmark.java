@@ -0,0 +1,155 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.scis;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full round trips through the clients against embedded HTTP and SMTP stubs on the loopback
+ * interface. Run with {@code -t} to measure the clients under concurrency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+
+  private LocalHttpStub httpStub;
+  private LocalSmtpStub smtpStub;
+  private String workItemUrl;
+  private String queryUrl;
+  private WorkItemClient workItemClient;
+  private InfoHubQueryClient queryClient;
+  private MailPlus mailPlus;
+  private MailPlus pooledMailPlus;
+  private SmtpTransportPool smtpPool;
+
+  @Setup(Level.Trial)
+  public void start() throws IOException {
+    httpStub = new LocalHttpStub(BenchmarkData.QUERY_RESPONSE);
+    smtpStub = new LocalSmtpStub();
+    workItemUrl = httpStub.url("/workitems");
+    queryUrl = httpStub.url("/query");
+    workItemClient = new WorkItemClient();
+    queryClient = new InfoHubQueryClient();
+    mailPlus = new MailPlus(new LoopbackTransportDelegator(smtpStub.getPort()));
+    smtpPool = new SmtpTransportPool();
+    pooledMailPlus = new MailPlus(new PooledTransportDelegator(smtpPool));
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() throws IOException {
+    smtpPool.close();
+    httpStub.close();
+    smtpStub.close();
+  }
+
+  @Benchmark
+  public String createWorkItem() {
+    return workItemClient.createWorkItem(
+        workItemUrl,
+        BenchmarkData.CLIENT_ID,
+        BenchmarkData.CLIENT_SECRET,
+        BenchmarkData.USERNAME,
+        BenchmarkData.WORK_ITEM);
+  }
+
+  @Benchmark
+  public String executeQuery() throws IOException {
+    return queryClient.executeQuery(
+        queryUrl,
+        BenchmarkData.QUERY,
+        BenchmarkData.CLIENT_ID,
+        BenchmarkData.CLIENT_SECRET,
+        BenchmarkData.USERNAME);
+  }
+
+  @Benchmark
+  public void sendMail() throws MessagingException {
+    mailPlus.sendMessageWithCredentials(
+        "127.0.0.1",
+        "apiKey",
+        "apiKeyValue",
+        "user@example.com",
+        "sender@example.com",
+        null,
+        null,
+        null,
+        "Notification from BAW",
+        "text/plain",
+        "Purchase order PO-1001 is delayed by 3 days.",
+        null,
+        null);
+  }
+
+  @Benchmark
+  public void sendMailPooled() throws MessagingException {
+    pooledMailPlus.sendMessageWithCredentials(
+        "127.0.0.1:" + smtpStub.getPort(),
+        "apiKey",
+        "apiKeyValue",
+        "user@example.com",
+        "sender@example.com",
+        null,
+        null,
+        null,
+        "Notification from BAW",
+        "text/plain",
+        "Purchase order PO-1001 is delayed by 3 days.",
+        null,
+        null);
+  }
+
+  /** Sends through a new SMTP connection to the stub, like Transport.send does. */
+  static class LoopbackTransportDelegator extends TransportDelegator {
+    private final int port;
+
+    LoopbackTransportDelegator(int port) {
+      this.port = port;
+    }
+
+    @Override
+    public void send(Message message, String username, String password)
+        throws MessagingException {
+      message.saveChanges();
+      Transport transport = message.getSession().getTransport("smtp");
+      try {
+        transport.connect("127.0.0.1", port, username, password);
+        transport.sendMessage(message, message.getAllRecipients());
+      } finally {
+        transport.close();
+      }
+    }
+  }
+}
@@ -16,32 +16,35 @@
 
 package com.ibm.scis;
 
-import java.io.InputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.net.ssl.SSLContext;
-import org.apache.http.client.config.RequestConfig;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.ssl.SSLContexts;
 
 /** Base Client */
 public class BaseClient {
   private static final Logger logger = Logger.getLogger(BaseClient.class.getName());
-  protected static CloseableHttpClient httpClient;
-  protected static RequestConfig config;
 
   protected static final String X_IBM_CLIENT_ID = "X-IBM-Client-Id";
   protected static final String X_IBM_CLIENT_SECRET = "X-IBM-Client-Secret";
@@ -61,20 +64,26 @@ public class BaseClient {
 
   static {
     System.setProperty("https.protocols", TLS_VERSION);
-    config =
-        RequestConfig.custom()
-            .setConnectTimeout(CONNECT_TIMEOUT)
-            .setConnectionRequestTimeout(CONNECT_REQUEST_TIMEOUT)
-            .setSocketTimeout(SOCKET_TIMEOUT)
-            .build();
-    SSLContext ctx = null;
-    try {
-      ctx = SSLContexts.custom().setProtocol(TLS_VERSION).build();
-    } catch (KeyManagementException | NoSuchAlgorithmException e) {
-      logger.log(Level.SEVERE, e.getMessage());
-    }
-    httpClient =
-        HttpClientBuilder.create().setDefaultRequestConfig(config).setSSLContext(ctx).build();
+  }
+
+  /** The transport of this client; shared with other clients only through the context. */
+  protected final ScisClientContext context;
+
+  private final String metricsName = getClass().getSimpleName();
+
+  /** Logs redacted previews of the payloads of this client. */
+  protected final PayloadLogger payloadLogger = PayloadLogger.forClient(metricsName);
+
+  public BaseClient() {
+    this(ScisClientContext.named(ScisClientContext.INFOHUB));
+  }
+
+  public BaseClient(ScisClientContext context) {
+    this.context = context;
+  }
+
+  public ScisClientContext getContext() {
+    return context;
   }
 
   protected Map<String, String> buildBasicAuthHeader(
@@ -103,19 +112,329 @@ public class BaseClient {
     return headers;
   }
 
+  /**
+   * Send the request, retrying transient failures as the {@link RetryPolicy} of the context allows.
+   * Each attempt is guarded by the {@link CircuitBreaker} of the target host and fails at once when
+   * the breaker is open or the host has too many calls in progress.
+   *
+   * @param request request
+   * @return the response body, or the error JSON if the request failed
+   */
   protected String processHttpRequest(HttpRequestBase request) {
-    try (CloseableHttpResponse response = httpClient.execute(request)) {
-      InputStream contentStream = response.getEntity().getContent();
-      String result = Utils.inputStreamToString(contentStream);
-      logger.info(result);
-      return result;
+    return processHttpRequestForResult(request).getBody();
+  }
+
+  /** @return status and body of the response, or status 0 and the error JSON if it failed */
+  private HttpResult processHttpRequestForResult(HttpRequestBase request) {
+    try {
+      return executeWithRetry(request.getMethod(), request);
     } catch (Exception e) {
-      logger.log(Level.SEVERE, e.getMessage());
-      return "{\"error\":\"" + e.getMessage() + "\"}";
+      return new HttpResult(0, "{\"error\":\"" + e.getMessage() + "\"}");
+    }
+  }
+
+  /**
+   * Send the request like {@link #processHttpRequest(HttpRequestBase)}, for callers that need the
+   * status of the final response.
+   *
+   * @param operation operation name for the metrics
+   * @param request request
+   * @return status and body of the first response that is not retried
+   * @throws IOException if the breaker rejects the call, the request fails, or the retries of a
+   *     transient failure run out
+   */
+  protected HttpResult executeWithRetry(String operation, HttpRequestBase request)
+      throws IOException {
+    RetryPolicy retryPolicy = context.getRetryPolicy();
+    CircuitBreaker breaker = circuitBreaker(request);
+    OperationMetrics metrics = metrics(operation, request);
+    long sent = requestLength(request);
+    long deadline = System.currentTimeMillis() + retryPolicy.getBudget();
+    for (int attempt = 1; ; attempt++) {
+      String rejection = breaker != null ? breaker.tryAcquire() : null;
+      if (rejection != null) {
+        logger.log(Level.WARNING, request.getRequestLine() + ": " + rejection);
+        throw new IOException(rejection);
+      }
+      long start = System.nanoTime();
+      int status = -1;
+      long received = -1;
+      long delay;
+      IOException exhausted = null;
+      try (CloseableHttpResponse response = context.getHttpClient().execute(request)) {
+        status = Math.max(0, statusCode(response));
+        if (!retryPolicy.isRetryable(request, status)) {
+          Utils.Body body = Utils.readBody(response.getEntity());
+          received = body.bytes;
+          payloadLogger.response(logger, request.getMethod(), body.text);
+          return new HttpResult(status, body.text);
+        }
+        received = Utils.discardBody(response.getEntity());
+        delay = retryPolicy.delay(attempt, response, System.currentTimeMillis(), deadline);
+        if (delay < 0) {
+          logger.log(Level.SEVERE, request.getRequestLine() + ": " + response.getStatusLine());
+          exhausted = new IOException(response.getStatusLine().toString());
+        } else {
+          logger.log(
+              Level.WARNING,
+              "Retrying " + request.getRequestLine() + " after " + response.getStatusLine());
+        }
+      } catch (IOException | RuntimeException e) {
+        status = -1;
+        delay =
+            retryPolicy.isRetryable(request, e)
+                ? retryPolicy.delay(attempt, null, System.currentTimeMillis(), deadline)
+                : -1;
+        if (delay < 0) {
+          logger.log(Level.SEVERE, e.getMessage());
+          throw e;
+        }
+        logger.log(Level.WARNING, "Retrying " + request.getRequestLine() + " after " + e);
+      } finally {
+        finish(breaker, metrics, start, status, sent, received);
+      }
+      if (exhausted != null) {
+        throw exhausted;
+      }
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting to retry");
+      }
+    }
+  }
+
+  /**
+   * Send the request on the non-blocking client, retrying transient failures as the {@link
+   * RetryPolicy} of the context allows.
+   *
+   * @param request request
+   * @return future completed with the response body, or exceptionally if the request failed
+   */
+  protected CompletableFuture<String> executeAsync(HttpUriRequest request) {
+    return executeAsyncForResult(request).thenApply(HttpResult::getBody);
+  }
+
+  /**
+   * Send the request like {@link #executeAsync(HttpUriRequest)}, for callers that need the status
+   * of the final response.
+   *
+   * @param request request
+   * @return future completed with the status and body of the first response that is not retried, or
+   *     exceptionally if the request failed
+   */
+  protected CompletableFuture<HttpResult> executeAsyncForResult(HttpUriRequest request) {
+    CompletableFuture<HttpResult> future = new CompletableFuture<>();
+    long deadline = System.currentTimeMillis() + context.getRetryPolicy().getBudget();
+    executeAsync(request, 1, deadline, future);
+    return future;
+  }
+
+  private void executeAsync(
+      HttpUriRequest request, int attempt, long deadline, CompletableFuture<HttpResult> future) {
+    RetryPolicy retryPolicy = context.getRetryPolicy();
+    CircuitBreaker breaker = circuitBreaker(request);
+    String rejection = breaker != null ? breaker.tryAcquire() : null;
+    if (rejection != null) {
+      future.completeExceptionally(new IOException(rejection));
+      return;
+    }
+    OperationMetrics metrics = metrics(request.getMethod(), request);
+    long sent = requestLength(request);
+    long start = System.nanoTime();
+    AtomicBoolean finished = new AtomicBoolean();
+    try {
+      context
+          .getAsyncHttpClient()
+          .execute(
+              request,
+              new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse response) {
+                  int status = Math.max(0, statusCode(response));
+                  try {
+                    if (!retryPolicy.isRetryable(request, status)) {
+                      Utils.Body body = Utils.readBody(response.getEntity());
+                      finish(status, body.bytes);
+                      future.complete(new HttpResult(status, body.text));
+                      return;
+                    }
+                    finish(status, Utils.discardBody(response.getEntity()));
+                    long delay =
+                        retryPolicy.delay(attempt, response, System.currentTimeMillis(), deadline);
+                    if (delay < 0) {
+                      future.completeExceptionally(
+                          new IOException(response.getStatusLine().toString()));
+                    } else {
+                      retryAsync(request, attempt, deadline, future, delay);
+                    }
+                  } catch (Exception e) {
+                    finish(-1, -1);
+                    future.completeExceptionally(e);
+                  }
+                }
+
+                @Override
+                public void failed(Exception e) {
+                  finish(-1, -1);
+                  long delay =
+                      retryPolicy.isRetryable(request, e)
+                          ? retryPolicy.delay(attempt, null, System.currentTimeMillis(), deadline)
+                          : -1;
+                  if (delay < 0) {
+                    future.completeExceptionally(e);
+                  } else {
+                    retryAsync(request, attempt, deadline, future, delay);
+                  }
+                }
+
+                @Override
+                public void cancelled() {
+                  finish(0, -1);
+                  future.cancel(false);
+                }
+
+                private void finish(int status, long received) {
+                  if (!finished.getAndSet(true)) {
+                    BaseClient.finish(breaker, metrics, start, status, sent, received);
+                  }
+                }
+              });
+    } catch (Exception e) {
+      if (!finished.getAndSet(true)) {
+        finish(breaker, metrics, start, -1, sent, -1);
+      }
+      future.completeExceptionally(e);
+    }
+  }
+
+  private void retryAsync(
+      HttpUriRequest request,
+      int attempt,
+      long deadline,
+      CompletableFuture<HttpResult> future,
+      long delay) {
+    logger.log(Level.WARNING, "Retrying " + request.getRequestLine() + " in " + delay + " ms");
+    RetryPolicy.schedule(() -> executeAsync(request, attempt + 1, deadline, future), delay);
+  }
+
+  /**
+   * Send the request once through the {@link CircuitBreaker} of the target host, for callers that
+   * read the response themselves. The breaker and the metrics of the operation record the outcome
+   * when the response headers arrive.
+   *
+   * @param operation operation name for the metrics
+   * @param request request
+   * @return the response, to be closed by the caller; the bytes read from its body are added to the
+   *     metrics as they are read
+   * @throws IOException if the breaker rejects the call or the request fails
+   */
+  protected CloseableHttpResponse executeGuarded(String operation, HttpUriRequest request)
+      throws IOException {
+    CircuitBreaker breaker = circuitBreaker(request);
+    String rejection = breaker != null ? breaker.tryAcquire() : null;
+    if (rejection != null) {
+      throw new IOException(rejection);
+    }
+    OperationMetrics metrics = metrics(operation, request);
+    long start = System.nanoTime();
+    int status = -1;
+    try {
+      CloseableHttpResponse response = context.getHttpClient().execute(request);
+      status = Math.max(0, statusCode(response));
+      if (response.getEntity() != null) {
+        response.setEntity(new MeteredEntity(response.getEntity(), metrics));
+      }
+      return response;
+    } finally {
+      finish(breaker, metrics, start, status, requestLength(request), -1);
+    }
+  }
+
+  /**
+   * The metrics of an operation of this client on the target host of a request.
+   *
+   * @param operation operation name
+   * @param request request
+   * @return metrics
+   */
+  protected OperationMetrics metrics(String operation, HttpUriRequest request) {
+    return ClientMetrics.getDefault().get(metricsName, operation, request.getURI().getHost());
+  }
+
+  /** Record the outcome of a call in the breaker of its host and in its metrics. */
+  private static void finish(
+      CircuitBreaker breaker,
+      OperationMetrics metrics,
+      long start,
+      int status,
+      long sent,
+      long received) {
+    if (breaker != null) {
+      breaker.release(
+          status < 0 || status >= 500, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
     }
+    metrics.record(start, status, sent, received);
+  }
+
+  private static long requestLength(HttpRequest request) {
+    HttpEntity entity =
+        request instanceof HttpEntityEnclosingRequest
+            ? ((HttpEntityEnclosingRequest) request).getEntity()
+            : null;
+    return entity != null ? entity.getContentLength() : 0;
+  }
+
+  /** @return the breaker of the target host, or null if the request has no absolute URI */
+  private CircuitBreaker circuitBreaker(HttpUriRequest request) {
+    HttpHost host = URIUtils.extractHost(request.getURI());
+    return host != null ? context.getCircuitBreaker(host) : null;
+  }
+
+  /** @return the status code, or -1 if the response has no status line */
+  private static int statusCode(HttpResponse response) {
+    return response.getStatusLine() != null ? response.getStatusLine().getStatusCode() : -1;
   }
 
   /**
+   * Non-blocking counterpart of {@link #processHttpRequest(HttpRequestBase)}.
+   *
+   * @param request request
+   * @return future completed with the response body, or the error JSON if the request failed
+   */
+  protected CompletableFuture<String> processHttpRequestAsync(HttpRequestBase request) {
+    return processHttpRequestForResultAsync(request).thenApply(HttpResult::getBody);
+  }
+
+  /**
+   * Send the request like {@link #processHttpRequestAsync(HttpRequestBase)}, for callers that need
+   * the status of the final response.
+   *
+   * @param request request
+   * @return future completed with the status and body of the response, or status 0 and the error
+   *     JSON if the request failed
+   */
+  protected CompletableFuture<HttpResult> processHttpRequestForResultAsync(
+      HttpRequestBase request) {
+    return executeAsyncForResult(request)
+        .handle(
+            (result, e) -> {
+              if (e == null) {
+                payloadLogger.response(logger, request.getMethod(), result.getBody());
+                return result;
+              }
+              Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+              logger.log(Level.SEVERE, cause.getMessage());
+              return new HttpResult(0, "{\"error\":\"" + cause.getMessage() + "\"}");
+            });
+  }
+
+  /**
+   * Return the cached CSRF token response of the user, requesting a new token only when none is
+   * cached or the cached one expired. Tokens are refreshed in the background shortly before they
+   * expire; error responses are not cached.
+   *
    * @param csrfTokenUrl CSRF TOKEN URL
    * @param userName BAW functional user name
    * @param password BAW functional password
@@ -124,11 +443,91 @@ public class BaseClient {
    */
   protected String getCSRFToken(
       String csrfTokenUrl, String userName, String password, Integer lifeTime) {
+    return context
+        .getCsrfTokenCache()
+        .get(
+            csrfTokenUrl,
+            userName,
+            password,
+            lifeTime,
+            () ->
+                CompletableFuture.completedFuture(
+                    processHttpRequestForResult(
+                        buildCSRFTokenRequest(csrfTokenUrl, userName, password, lifeTime))))
+        .join();
+  }
+
+  /**
+   * Non-blocking counterpart of {@link #getCSRFToken(String, String, String, Integer)}.
+   *
+   * @param csrfTokenUrl CSRF TOKEN URL
+   * @param userName BAW functional user name
+   * @param password BAW functional password
+   * @param lifeTime requested life time (seconds), e.g. 7200
+   * @return future csrf token
+   */
+  protected CompletableFuture<String> getCSRFTokenAsync(
+      String csrfTokenUrl, String userName, String password, Integer lifeTime) {
+    return context
+        .getCsrfTokenCache()
+        .get(
+            csrfTokenUrl,
+            userName,
+            password,
+            lifeTime,
+            () ->
+                processHttpRequestForResultAsync(
+                    buildCSRFTokenRequest(csrfTokenUrl, userName, password, lifeTime)));
+  }
+
+  /**
+   * Drop the cached CSRF token of the user so the next call requests a new one, e.g. after BAW
+   * rejected it.
+   *
+   * @param csrfTokenUrl CSRF TOKEN URL
+   * @param userName BAW functional user name
+   */
+  protected void invalidateCSRFToken(String csrfTokenUrl, String userName) {
+    context.getCsrfTokenCache().invalidate(csrfTokenUrl, userName);
+  }
+
+  private HttpPost buildCSRFTokenRequest(
+      String csrfTokenUrl, String userName, String password, Integer lifeTime) {
     HttpPost httpPost = new HttpPost(csrfTokenUrl);
     buildBasicAuthHeader(userName, password, httpPost);
     httpPost.setEntity(
         new StringEntity(
             "{\"requested_lifetime\": " + lifeTime + "}", ContentType.APPLICATION_JSON));
-    return processHttpRequest(httpPost);
+    return httpPost;
+  }
+
+  /** Status and body of a response read by {@link #executeWithRetry(String, HttpRequestBase)}. */
+  protected static final class HttpResult {
+    private final int status;
+    private final String body;
+
+    HttpResult(int status, String body) {
+      this.status = status;
+      this.body = body;
+    }
+
+    /** @return the status code, or 0 if the response had no status line */
+    public int getStatus() {
+      return status;
+    }
+
+    public String getBody() {
+      return body;
+    }
+
+    /** @return true for a 2xx status */
+    public boolean isSuccessful() {
+      return status >= 200 && status < 300;
+    }
+
+    /** @return true if the status is known and not 2xx */
+    public boolean isError() {
+      return status > 0 && !isSuccessful();
+    }
   }
 }
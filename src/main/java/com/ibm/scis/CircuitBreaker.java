@@ -0,0 +1,266 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+/**
+ * Circuit breaker and bulkhead for the calls to one remote host, so a failing or slow host fails
+ * fast instead of tying up the caller's threads until the socket timeout.
+ *
+ * <p>The breaker keeps the outcome of the last {@value #WINDOW_SIZE} calls. When at least {@value
+ * #MINIMUM_CALLS} of them are recorded and the share of failed calls (exceptions and 5xx responses)
+ * or of slow calls reaches its threshold, the breaker opens and rejects every call for {@value
+ * #OPEN_DURATION}. It then lets {@value #HALF_OPEN_CALLS} probe calls through: if all of them
+ * succeed in time it closes, otherwise it opens again. Independently, the bulkhead rejects a call
+ * when {@value #MAX_CONCURRENT} calls to the host are already in progress.
+ */
+public final class CircuitBreaker {
+  private static final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+
+  static final String WINDOW_SIZE = "breaker.windowSize";
+  static final String MINIMUM_CALLS = "breaker.minimumCalls";
+  static final String FAILURE_RATE = "breaker.failureRatePercent";
+  static final String SLOW_CALL_DURATION = "breaker.slowCallMs";
+  static final String SLOW_CALL_RATE = "breaker.slowCallRatePercent";
+  static final String OPEN_DURATION = "breaker.openMs";
+  static final String HALF_OPEN_CALLS = "breaker.halfOpenCalls";
+  static final String MAX_CONCURRENT = "bulkhead.maxConcurrent";
+
+  static final int DEFAULT_WINDOW_SIZE = 20;
+  static final int DEFAULT_MINIMUM_CALLS = 10;
+  static final int DEFAULT_FAILURE_RATE = 50;
+  static final long DEFAULT_SLOW_CALL_DURATION = 10 * 1000L;
+  static final int DEFAULT_SLOW_CALL_RATE = 80;
+  static final long DEFAULT_OPEN_DURATION = 30 * 1000L;
+  static final int DEFAULT_HALF_OPEN_CALLS = 3;
+
+  /** State of the breaker. */
+  public enum State {
+    /** Calls pass and their outcomes are recorded. */
+    CLOSED,
+    /** Calls are rejected. */
+    OPEN,
+    /** A limited number of probe calls pass to decide whether to close again. */
+    HALF_OPEN
+  }
+
+  private final String host;
+  private final Settings settings;
+  private final Semaphore bulkhead;
+  private final int maxConcurrent;
+
+  // ring buffer of the last outcomes, guarded by this
+  private final boolean[] failed;
+  private final boolean[] slow;
+  private int next;
+  private int recorded;
+  private int failedCount;
+  private int slowCount;
+  private State state = State.CLOSED;
+  private long openedAt;
+  private int probesStarted;
+  private int probesSucceeded;
+
+  /**
+   * @param host host name used in messages
+   * @param settings breaker thresholds
+   * @param maxConcurrent maximum number of calls in progress
+   */
+  public CircuitBreaker(String host, Settings settings, int maxConcurrent) {
+    this.host = host;
+    this.settings = settings;
+    this.maxConcurrent = Math.max(1, maxConcurrent);
+    this.bulkhead = new Semaphore(this.maxConcurrent);
+    this.failed = new boolean[settings.windowSize];
+    this.slow = new boolean[settings.windowSize];
+  }
+
+  public String getHost() {
+    return host;
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+
+  /** @return the number of calls in progress */
+  public int getActiveCalls() {
+    return maxConcurrent - bulkhead.availablePermits();
+  }
+
+  /** @return percentage of failed calls in the window */
+  public synchronized int getFailureRate() {
+    return recorded > 0 ? failedCount * 100 / recorded : 0;
+  }
+
+  /** @return percentage of slow calls in the window */
+  public synchronized int getSlowCallRate() {
+    return recorded > 0 ? slowCount * 100 / recorded : 0;
+  }
+
+  /**
+   * Ask to start a call. Every successful acquire must be followed by exactly one {@link
+   * #release(boolean, long)}.
+   *
+   * @return null if the call may start, otherwise the reason it is rejected
+   */
+  public String tryAcquire() {
+    return tryAcquire(System.currentTimeMillis());
+  }
+
+  String tryAcquire(long now) {
+    if (!bulkhead.tryAcquire()) {
+      return "Too many concurrent calls to " + host;
+    }
+    synchronized (this) {
+      if (state == State.OPEN && now - openedAt >= settings.openDuration) {
+        state = State.HALF_OPEN;
+        probesStarted = 0;
+        probesSucceeded = 0;
+      }
+      if (state == State.CLOSED
+          || (state == State.HALF_OPEN && probesStarted++ < settings.halfOpenCalls)) {
+        return null;
+      }
+    }
+    bulkhead.release();
+    return "Circuit breaker for " + host + " is open";
+  }
+
+  /**
+   * Record the outcome of a call started with {@link #tryAcquire()}.
+   *
+   * @param failure true if the call failed
+   * @param duration duration of the call in milliseconds
+   */
+  public void release(boolean failure, long duration) {
+    release(failure, duration, System.currentTimeMillis());
+  }
+
+  void release(boolean failure, long duration, long now) {
+    try {
+      record(failure, duration >= settings.slowCallDuration, now);
+    } finally {
+      bulkhead.release();
+    }
+  }
+
+  private synchronized void record(boolean failure, boolean slowCall, long now) {
+    if (state == State.HALF_OPEN) {
+      if (failure || slowCall) {
+        open(now);
+      } else if (++probesSucceeded >= settings.halfOpenCalls) {
+        reset();
+        logger.info("Circuit breaker for " + host + " closed");
+      }
+      return;
+    }
+    if (state == State.OPEN) {
+      // a call started before the breaker opened
+      return;
+    }
+    if (recorded == failed.length) {
+      failedCount -= failed[next] ? 1 : 0;
+      slowCount -= slow[next] ? 1 : 0;
+    } else {
+      recorded++;
+    }
+    failed[next] = failure;
+    slow[next] = slowCall;
+    failedCount += failure ? 1 : 0;
+    slowCount += slowCall ? 1 : 0;
+    next = (next + 1) % failed.length;
+    if (recorded >= settings.minimumCalls
+        && (failedCount * 100 >= settings.failureRate * recorded
+            || slowCount * 100 >= settings.slowCallRate * recorded)) {
+      logger.warning(
+          "Circuit breaker for "
+              + host
+              + " opened: "
+              + getFailureRate()
+              + "% failed and "
+              + getSlowCallRate()
+              + "% slow calls");
+      open(now);
+    }
+  }
+
+  private void open(long now) {
+    state = State.OPEN;
+    openedAt = now;
+  }
+
+  private void reset() {
+    state = State.CLOSED;
+    next = 0;
+    recorded = 0;
+    failedCount = 0;
+    slowCount = 0;
+  }
+
+  /** Thresholds shared by the breakers of a {@link ScisClientContext}. */
+  public static final class Settings {
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRate;
+    private final long slowCallDuration;
+    private final int slowCallRate;
+    private final long openDuration;
+    private final int halfOpenCalls;
+
+    /**
+     * @param windowSize number of recent calls whose outcome is kept
+     * @param minimumCalls number of recorded calls before the breaker can open
+     * @param failureRate percentage of failed calls that opens the breaker
+     * @param slowCallDuration duration in milliseconds from which a call is slow
+     * @param slowCallRate percentage of slow calls that opens the breaker
+     * @param openDuration milliseconds the breaker stays open before probing
+     * @param halfOpenCalls number of successful probes that close the breaker
+     */
+    public Settings(
+        int windowSize,
+        int minimumCalls,
+        int failureRate,
+        long slowCallDuration,
+        int slowCallRate,
+        long openDuration,
+        int halfOpenCalls) {
+      this.windowSize = Math.max(1, windowSize);
+      this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+      this.failureRate = failureRate;
+      this.slowCallDuration = slowCallDuration;
+      this.slowCallRate = slowCallRate;
+      this.openDuration = openDuration;
+      this.halfOpenCalls = Math.max(1, halfOpenCalls);
+    }
+
+    Settings(Properties properties) {
+      this(
+          ConnectionPoolConfig.intValue(properties, WINDOW_SIZE, DEFAULT_WINDOW_SIZE),
+          ConnectionPoolConfig.intValue(properties, MINIMUM_CALLS, DEFAULT_MINIMUM_CALLS),
+          ConnectionPoolConfig.intValue(properties, FAILURE_RATE, DEFAULT_FAILURE_RATE),
+          ConnectionPoolConfig.longValue(
+              properties, SLOW_CALL_DURATION, DEFAULT_SLOW_CALL_DURATION),
+          ConnectionPoolConfig.intValue(properties, SLOW_CALL_RATE, DEFAULT_SLOW_CALL_RATE),
+          ConnectionPoolConfig.longValue(properties, OPEN_DURATION, DEFAULT_OPEN_DURATION),
+          ConnectionPoolConfig.intValue(properties, HALF_OPEN_CALLS, DEFAULT_HALF_OPEN_CALLS));
+    }
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of all SCIS clients, tagged by client, operation and remote host.
+ *
+ * <p>Each {@link OperationMetrics} is registered as an MXBean named {@code
+ * com.ibm.scis:type=ClientMetrics,client=...,operation=...,host=...} unless {@value #JMX_PROPERTY}
+ * is false, and handed to every {@link MetricsExporter} at its interval. Setting {@value
+ * #LOG_INTERVAL_PROPERTY} logs all metrics as JSON at that interval. Looking up the metrics of a
+ * known operation allocates nothing; after {@value #MAX_OPERATIONS} distinct tag combinations,
+ * further ones are counted under the host {@value #OTHER_HOST}, which is looked up the same way.
+ */
+public final class ClientMetrics {
+  private static final Logger logger = Logger.getLogger(ClientMetrics.class.getName());
+
+  /** System property to turn off the JMX registration of the metrics. */
+  public static final String JMX_PROPERTY = "scis.metrics.jmx";
+  /** System property with the interval in milliseconds to log the metrics, 0 for never. */
+  public static final String LOG_INTERVAL_PROPERTY = "scis.metrics.logIntervalMs";
+
+  static final String JMX_DOMAIN = "com.ibm.scis";
+  static final String UNKNOWN_HOST = "unknown";
+  static final String OTHER_HOST = "other";
+  static final int MAX_OPERATIONS = 1000;
+
+  private static volatile ClientMetrics defaultMetrics;
+
+  private static final ScheduledExecutorService EXPORT_SCHEDULER =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "scis-metrics-export");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final ConcurrentMap<
+          String, ConcurrentMap<String, ConcurrentMap<String, OperationMetrics>>>
+      metrics = new ConcurrentHashMap<>();
+  private final AtomicInteger size = new AtomicInteger();
+  private final boolean jmx;
+
+  /** @param jmx true to register every operation as an MXBean */
+  public ClientMetrics(boolean jmx) {
+    this.jmx = jmx;
+  }
+
+  /** @return the JVM-wide metrics recorded by all SCIS clients */
+  public static ClientMetrics getDefault() {
+    ClientMetrics result = defaultMetrics;
+    if (result == null) {
+      synchronized (ClientMetrics.class) {
+        result = defaultMetrics;
+        if (result == null) {
+          result = new ClientMetrics(!"false".equalsIgnoreCase(System.getProperty(JMX_PROPERTY)));
+          long logInterval = Long.getLong(LOG_INTERVAL_PROPERTY, 0L);
+          if (logInterval > 0) {
+            result.addExporter(snapshots -> logger.info(toJson(snapshots)), logInterval);
+          }
+          defaultMetrics = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param client client name, e.g. WorkItemClient
+   * @param operation operation name, e.g. POST or executeQuery
+   * @param host remote host, or null if unknown
+   * @return the metrics of the operation, created on first use
+   */
+  public OperationMetrics get(String client, String operation, String host) {
+    String hostKey = host != null ? host : UNKNOWN_HOST;
+    ConcurrentMap<String, ConcurrentMap<String, OperationMetrics>> operations = metrics.get(client);
+    ConcurrentMap<String, OperationMetrics> hosts =
+        operations != null ? operations.get(operation) : null;
+    OperationMetrics result = hosts != null ? hosts.get(hostKey) : null;
+    if (result == null && hosts != null && size.get() >= MAX_OPERATIONS) {
+      // a new host past the limit, counted as other without taking the lock
+      result = hosts.get(OTHER_HOST);
+    }
+    return result != null ? result : create(client, operation, hostKey);
+  }
+
+  private synchronized OperationMetrics create(String client, String operation, String host) {
+    ConcurrentMap<String, OperationMetrics> hosts =
+        metrics
+            .computeIfAbsent(client, key -> new ConcurrentHashMap<>())
+            .computeIfAbsent(operation, key -> new ConcurrentHashMap<>());
+    OperationMetrics result = hosts.get(host);
+    if (result != null) {
+      return result;
+    }
+    if (size.get() >= MAX_OPERATIONS && !OTHER_HOST.equals(host)) {
+      return create(client, operation, OTHER_HOST);
+    }
+    result = new OperationMetrics(client, operation, host);
+    hosts.put(host, result);
+    size.incrementAndGet();
+    if (jmx) {
+      register(result);
+    }
+    return result;
+  }
+
+  private static void register(OperationMetrics operation) {
+    try {
+      ObjectName name =
+          new ObjectName(
+              JMX_DOMAIN
+                  + ":type=ClientMetrics,client="
+                  + ObjectName.quote(operation.getClient())
+                  + ",operation="
+                  + ObjectName.quote(operation.getOperation())
+                  + ",host="
+                  + ObjectName.quote(operation.getHost()));
+      if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(operation, name);
+      }
+    } catch (JMException | RuntimeException e) {
+      logger.log(Level.FINE, "Cannot register metrics in JMX", e);
+    }
+  }
+
+  /** @return the metrics of every operation */
+  public List<OperationMetrics> getAll() {
+    List<OperationMetrics> all = new ArrayList<>(size.get());
+    for (Map<String, ConcurrentMap<String, OperationMetrics>> operations : metrics.values()) {
+      for (Map<String, OperationMetrics> hosts : operations.values()) {
+        all.addAll(hosts.values());
+      }
+    }
+    return all;
+  }
+
+  /** @return the current values of every operation */
+  public List<OperationMetrics.Snapshot> snapshot() {
+    List<OperationMetrics.Snapshot> snapshots = new ArrayList<>(size.get());
+    for (OperationMetrics operation : getAll()) {
+      snapshots.add(operation.snapshot());
+    }
+    return snapshots;
+  }
+
+  /**
+   * Hand the metrics to an exporter at a fixed interval on a daemon thread.
+   *
+   * @param exporter exporter
+   * @param intervalMillis interval in milliseconds
+   * @return handle to stop the exports
+   */
+  public Closeable addExporter(MetricsExporter exporter, long intervalMillis) {
+    ScheduledFuture<?> task =
+        EXPORT_SCHEDULER.scheduleAtFixedRate(
+            () -> {
+              try {
+                exporter.export(snapshot());
+              } catch (Exception e) {
+                logger.log(Level.WARNING, "Exporting metrics failed", e);
+              }
+            },
+            intervalMillis,
+            intervalMillis,
+            TimeUnit.MILLISECONDS);
+    return () -> task.cancel(false);
+  }
+
+  /**
+   * @param snapshots metrics
+   * @return the metrics as a JSON array of objects
+   */
+  public static String toJson(List<OperationMetrics.Snapshot> snapshots) {
+    StringWriter writer = new StringWriter(256 * (snapshots.size() + 1));
+    try (JsonGenerator generator = JsonRowIterator.JSON_FACTORY.createGenerator(writer)) {
+      generator.writeStartArray();
+      for (OperationMetrics.Snapshot snapshot : snapshots) {
+        generator.writeStartObject();
+        generator.writeStringField("client", snapshot.getClient());
+        generator.writeStringField("operation", snapshot.getOperation());
+        generator.writeStringField("host", snapshot.getHost());
+        generator.writeNumberField("count", snapshot.getCount());
+        generator.writeNumberField("errors", snapshot.getErrorCount());
+        generator.writeNumberField("bytesIn", snapshot.getBytesIn());
+        generator.writeNumberField("bytesOut", snapshot.getBytesOut());
+        generator.writeNumberField("meanMs", snapshot.getMeanMillis());
+        generator.writeNumberField("p50Ms", snapshot.getP50Millis());
+        generator.writeNumberField("p90Ms", snapshot.getP90Millis());
+        generator.writeNumberField("p99Ms", snapshot.getP99Millis());
+        generator.writeNumberField("maxMs", snapshot.getMaxMillis());
+        generator.writeObjectFieldStart("status");
+        for (Map.Entry<Integer, Long> status : snapshot.getStatusCounts().entrySet()) {
+          generator.writeNumberField(String.valueOf(status.getKey()), status.getValue());
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return writer.toString();
+  }
+}
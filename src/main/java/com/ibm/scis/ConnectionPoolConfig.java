@@ -0,0 +1,428 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.net.ssl.SSLContext;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+
+/**
+ * Connection pool, timeout and TLS settings for the SCIS HTTP clients.
+ *
+ * <p>Settings are read from the properties file named by the {@value #CONFIG_FILE_PROPERTY} system
+ * property, then overridden by JVM system properties. All keys start with {@value #PREFIX}, e.g.
+ * {@code scis.http.maxPerRoute=50} or {@code scis.http.maxPerRoute.infohub.example.com=100}. A
+ * named {@link ScisClientContext} additionally reads {@code scis.http.<name>.*}, e.g. {@code
+ * scis.http.infohub.socketTimeoutMs=120000}, which takes precedence over the shared keys.
+ */
+public class ConnectionPoolConfig {
+  private static final Logger logger = Logger.getLogger(ConnectionPoolConfig.class.getName());
+
+  /** System property naming an optional properties file with pool settings. */
+  public static final String CONFIG_FILE_PROPERTY = "scis.http.config";
+
+  static final String PREFIX = "scis.http.";
+  static final String POOL_METRICS = "ConnectionPool";
+  static final String MAX_TOTAL = "maxTotal";
+  static final String MAX_PER_ROUTE = "maxPerRoute";
+  static final String IDLE_TIMEOUT = "idleTimeoutMs";
+  static final String VALIDATE_AFTER_INACTIVITY = "validateAfterInactivityMs";
+  static final String TIME_TO_LIVE = "timeToLiveMs";
+  static final String IO_THREADS = "ioThreads";
+  static final String CONNECT_TIMEOUT = "connectTimeoutMs";
+  static final String CONNECTION_REQUEST_TIMEOUT = "connectionRequestTimeoutMs";
+  static final String SOCKET_TIMEOUT = "socketTimeoutMs";
+  static final String TLS_PROTOCOL = "tlsProtocol";
+  static final String TRANSPORT = "transport";
+  static final String HTTP2_MAX_STREAMS = "http2.maxConcurrentStreams";
+
+  static final int DEFAULT_MAX_TOTAL = 200;
+  static final int DEFAULT_MAX_PER_ROUTE = 50;
+  static final long DEFAULT_IDLE_TIMEOUT = 30 * 1000L;
+  static final int DEFAULT_VALIDATE_AFTER_INACTIVITY = 2 * 1000;
+  static final long DEFAULT_TIME_TO_LIVE = 5 * 60 * 1000L;
+  static final int DEFAULT_IO_THREADS = Runtime.getRuntime().availableProcessors();
+  static final int DEFAULT_HTTP2_MAX_STREAMS = 100;
+
+  /** Protocol of the blocking client of a context. */
+  public enum Transport {
+    /** HTTP/1.1 over pooled connections, one request per connection at a time. */
+    HTTP1,
+    /** HTTP/2 with all requests to a host multiplexed over one connection. */
+    HTTP2
+  }
+
+  private final int maxTotal;
+  private final int maxPerRoute;
+  private final long idleTimeout;
+  private final int validateAfterInactivity;
+  private final long timeToLive;
+  private final int ioThreads;
+  private final int connectTimeout;
+  private final int connectionRequestTimeout;
+  private final int socketTimeout;
+  private final String tlsProtocol;
+  private final Transport transport;
+  private final int http2MaxStreams;
+  private final Map<String, Integer> maxPerHost;
+  private final RetryPolicy retryPolicy;
+  private final CircuitBreaker.Settings circuitBreakerSettings;
+  private final int maxConcurrent;
+
+  ConnectionPoolConfig(Properties properties) {
+    maxTotal = intValue(properties, MAX_TOTAL, DEFAULT_MAX_TOTAL);
+    maxPerRoute = intValue(properties, MAX_PER_ROUTE, DEFAULT_MAX_PER_ROUTE);
+    idleTimeout = longValue(properties, IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT);
+    validateAfterInactivity =
+        intValue(properties, VALIDATE_AFTER_INACTIVITY, DEFAULT_VALIDATE_AFTER_INACTIVITY);
+    timeToLive = longValue(properties, TIME_TO_LIVE, DEFAULT_TIME_TO_LIVE);
+    ioThreads = intValue(properties, IO_THREADS, DEFAULT_IO_THREADS);
+    connectTimeout = intValue(properties, CONNECT_TIMEOUT, BaseClient.CONNECT_TIMEOUT);
+    connectionRequestTimeout =
+        intValue(properties, CONNECTION_REQUEST_TIMEOUT, BaseClient.CONNECT_REQUEST_TIMEOUT);
+    socketTimeout = intValue(properties, SOCKET_TIMEOUT, BaseClient.SOCKET_TIMEOUT);
+    tlsProtocol = properties.getProperty(PREFIX + TLS_PROTOCOL, BaseClient.TLS_VERSION);
+    transport = transportValue(properties);
+    http2MaxStreams = intValue(properties, HTTP2_MAX_STREAMS, DEFAULT_HTTP2_MAX_STREAMS);
+
+    Map<String, Integer> hosts = new LinkedHashMap<>();
+    String hostPrefix = PREFIX + MAX_PER_ROUTE + ".";
+    for (String key : properties.stringPropertyNames()) {
+      if (key.startsWith(hostPrefix) && key.length() > hostPrefix.length()) {
+        hosts.put(
+            key.substring(hostPrefix.length()),
+            intValue(properties, key.substring(PREFIX.length()), maxPerRoute));
+      }
+    }
+    maxPerHost = Collections.unmodifiableMap(hosts);
+    retryPolicy = new RetryPolicy(properties);
+    circuitBreakerSettings = new CircuitBreaker.Settings(properties);
+    maxConcurrent = intValue(properties, CircuitBreaker.MAX_CONCURRENT, 0);
+  }
+
+  /**
+   * Load the pool settings from the optional config file and the system properties.
+   *
+   * @return pool settings
+   */
+  public static ConnectionPoolConfig load() {
+    return new ConnectionPoolConfig(loadProperties());
+  }
+
+  /**
+   * Load the settings of a named context: {@code scis.http.<name>.*} keys override the shared
+   * {@code scis.http.*} keys.
+   *
+   * @param name context name, e.g. {@value ScisClientContext#INFOHUB}
+   * @return settings
+   */
+  public static ConnectionPoolConfig load(String name) {
+    return new ConnectionPoolConfig(forName(loadProperties(), name));
+  }
+
+  static Properties forName(Properties properties, String name) {
+    Properties named = new Properties();
+    named.putAll(properties);
+    String namePrefix = PREFIX + name + ".";
+    for (String key : properties.stringPropertyNames()) {
+      if (key.startsWith(namePrefix)) {
+        named.setProperty(PREFIX + key.substring(namePrefix.length()), properties.getProperty(key));
+      }
+    }
+    return named;
+  }
+
+  private static Properties loadProperties() {
+    Properties properties = new Properties();
+    String configFile = System.getProperty(CONFIG_FILE_PROPERTY);
+    if (configFile != null && !configFile.isEmpty()) {
+      try (InputStream in = new FileInputStream(configFile)) {
+        properties.load(in);
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Unable to read " + configFile + ": " + e.getMessage());
+      }
+    }
+    for (String key : System.getProperties().stringPropertyNames()) {
+      if (key.startsWith(PREFIX)) {
+        properties.setProperty(key, System.getProperty(key));
+      }
+    }
+    return properties;
+  }
+
+  /**
+   * Create a pooling connection manager with these settings.
+   *
+   * @param sslSocketFactory socket factory for https routes
+   * @return connection manager
+   */
+  public PoolingHttpClientConnectionManager createConnectionManager(
+      SSLConnectionSocketFactory sslSocketFactory) {
+    Registry<ConnectionSocketFactory> registry =
+        RegistryBuilder.<ConnectionSocketFactory>create()
+            .register("http", PlainConnectionSocketFactory.getSocketFactory())
+            .register("https", sslSocketFactory)
+            .build();
+    PoolingHttpClientConnectionManager connectionManager =
+        new PoolingHttpClientConnectionManager(
+            registry, null, null, null, timeToLive, TimeUnit.MILLISECONDS) {
+          @Override
+          public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            return new TimedConnectionRequest(super.requestConnection(route, state), route);
+          }
+        };
+    connectionManager.setMaxTotal(maxTotal);
+    connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+    connectionManager.setValidateAfterInactivity(validateAfterInactivity);
+    maxPerHost.forEach((host, max) -> connectionManager.setMaxPerRoute(toRoute(host), max));
+    return connectionManager;
+  }
+
+  /**
+   * Create a non-blocking pooling connection manager with these settings. The I/O reactor runs on
+   * daemon threads so it never keeps the JVM alive.
+   *
+   * @param sslContext TLS context for https routes, or null for the JVM default
+   * @return connection manager
+   * @throws IOReactorException if the I/O reactor cannot be started
+   */
+  public PoolingNHttpClientConnectionManager createAsyncConnectionManager(SSLContext sslContext)
+      throws IOReactorException {
+    IOReactorConfig reactorConfig =
+        IOReactorConfig.custom()
+            .setIoThreadCount(ioThreads)
+            .setConnectTimeout(connectTimeout)
+            .setSoTimeout(socketTimeout)
+            .build();
+    Registry<SchemeIOSessionStrategy> registry =
+        RegistryBuilder.<SchemeIOSessionStrategy>create()
+            .register("http", NoopIOSessionStrategy.INSTANCE)
+            .register(
+                "https",
+                sslContext != null
+                    ? new SSLIOSessionStrategy(sslContext)
+                    : SSLIOSessionStrategy.getDefaultStrategy())
+            .build();
+    PoolingNHttpClientConnectionManager connectionManager =
+        new PoolingNHttpClientConnectionManager(
+            new DefaultConnectingIOReactor(reactorConfig, new IOThreadFactory()),
+            null,
+            registry,
+            null,
+            null,
+            timeToLive,
+            TimeUnit.MILLISECONDS);
+    connectionManager.setMaxTotal(maxTotal);
+    connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+    maxPerHost.forEach((host, max) -> connectionManager.setMaxPerRoute(toRoute(host), max));
+    return connectionManager;
+  }
+
+  static HttpRoute toRoute(String host) {
+    HttpHost target = HttpHost.create(host.contains("://") ? host : "https://" + host);
+    boolean secure = "https".equalsIgnoreCase(target.getSchemeName());
+    if (target.getPort() < 0) {
+      target = new HttpHost(target.getHostName(), secure ? 443 : 80, target.getSchemeName());
+    }
+    return new HttpRoute(target, null, secure);
+  }
+
+  static int intValue(Properties properties, String name, int defaultValue) {
+    return (int) longValue(properties, name, defaultValue);
+  }
+
+  static long longValue(Properties properties, String name, long defaultValue) {
+    String value = properties.getProperty(PREFIX + name);
+    if (value == null || value.trim().isEmpty()) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      logger.log(Level.WARNING, "Ignoring invalid value for " + PREFIX + name + ": " + value);
+      return defaultValue;
+    }
+  }
+
+  private static Transport transportValue(Properties properties) {
+    String value = properties.getProperty(PREFIX + TRANSPORT, Transport.HTTP1.name());
+    try {
+      return Transport.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      logger.log(Level.WARNING, "Ignoring invalid value for " + PREFIX + TRANSPORT + ": " + value);
+      return Transport.HTTP1;
+    }
+  }
+
+  public int getMaxTotal() {
+    return maxTotal;
+  }
+
+  public int getMaxPerRoute() {
+    return maxPerRoute;
+  }
+
+  public long getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  public int getValidateAfterInactivity() {
+    return validateAfterInactivity;
+  }
+
+  public long getTimeToLive() {
+    return timeToLive;
+  }
+
+  public int getIoThreads() {
+    return ioThreads;
+  }
+
+  public int getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  public int getConnectionRequestTimeout() {
+    return connectionRequestTimeout;
+  }
+
+  public int getSocketTimeout() {
+    return socketTimeout;
+  }
+
+  public String getTlsProtocol() {
+    return tlsProtocol;
+  }
+
+  public Transport getTransport() {
+    return transport;
+  }
+
+  /** @return maximum number of requests multiplexed over one HTTP/2 connection */
+  public int getHttp2MaxStreams() {
+    return http2MaxStreams;
+  }
+
+  public Map<String, Integer> getMaxPerHost() {
+    return maxPerHost;
+  }
+
+  /** @return retry settings from the {@code scis.http.retry.*} keys */
+  public RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  /** @return circuit breaker thresholds from the {@code scis.http.breaker.*} keys */
+  public CircuitBreaker.Settings getCircuitBreakerSettings() {
+    return circuitBreakerSettings;
+  }
+
+  /**
+   * The bulkhead limit of a host: {@code scis.http.bulkhead.maxConcurrent} if set, otherwise the
+   * connection limit of the host, or the stream limit with the HTTP/2 transport, since further
+   * calls would only wait for a pooled connection or stream.
+   *
+   * @param host target host
+   * @return maximum number of concurrent calls to the host
+   */
+  public int getMaxConcurrent(HttpHost host) {
+    if (maxConcurrent > 0) {
+      return maxConcurrent;
+    }
+    if (transport == Transport.HTTP2) {
+      return http2MaxStreams;
+    }
+    Integer limit = maxPerHost.get(host.toURI());
+    if (limit == null) {
+      limit = maxPerHost.get(host.getHostName());
+    }
+    return limit != null ? limit : maxPerRoute;
+  }
+
+  /** Records the time spent waiting for a pooled connection as the "lease" operation. */
+  private static final class TimedConnectionRequest implements ConnectionRequest {
+    private final ConnectionRequest request;
+    private final HttpRoute route;
+
+    TimedConnectionRequest(ConnectionRequest request, HttpRoute route) {
+      this.request = request;
+      this.route = route;
+    }
+
+    @Override
+    public HttpClientConnection get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+      long start = System.nanoTime();
+      int status = -1;
+      try {
+        HttpClientConnection connection = request.get(timeout, unit);
+        status = 0;
+        return connection;
+      } finally {
+        ClientMetrics.getDefault()
+            .get(POOL_METRICS, "lease", route.getTargetHost().getHostName())
+            .record(start, status, 0, 0);
+      }
+    }
+
+    @Override
+    public boolean cancel() {
+      return request.cancel();
+    }
+  }
+
+  private static class IOThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "scis-async-io-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
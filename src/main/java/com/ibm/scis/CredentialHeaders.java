@@ -0,0 +1,109 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.util.Objects;
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+import org.apache.http.message.BasicHeader;
+
+/**
+ * Immutable InfoHub credential headers, built once per (clientId, clientSecret, username) and
+ * shared by every request and thread using the same credentials.
+ */
+final class CredentialHeaders {
+  /** The least recently used credential sets are dropped past this many. */
+  static final int MAX_CACHED = 1024;
+
+  private static final LruCache<Key, Header[]> CACHE = new LruCache<>(MAX_CACHED);
+
+  private CredentialHeaders() {}
+
+  /**
+   * @param clientId Sterling saascore platform client Id
+   * @param clientSecret Sterling saascore platform client secret
+   * @param username IBM identity representing workflow functional user
+   * @return shared headers; callers must not modify the array
+   */
+  static Header[] forInfoHub(String clientId, String clientSecret, String username) {
+    return CACHE.computeIfAbsent(
+        new Key(clientId, clientSecret, username),
+        key ->
+            new Header[] {
+              new BasicHeader(BaseClient.X_IBM_CLIENT_ID, clientId),
+              new BasicHeader(BaseClient.X_IBM_CLIENT_SECRET, clientSecret),
+              new BasicHeader(BaseClient.IBM_USERNAME, username)
+            });
+  }
+
+  /**
+   * Add the InfoHub credential headers to a request.
+   *
+   * @param clientId Sterling saascore platform client Id
+   * @param clientSecret Sterling saascore platform client secret
+   * @param username IBM identity representing workflow functional user
+   * @param request request to add the headers to
+   * @return the headers added
+   */
+  static Header[] addInfoHubHeaders(
+      String clientId, String clientSecret, String username, HttpRequest request) {
+    Header[] headers = forInfoHub(clientId, clientSecret, username);
+    for (Header header : headers) {
+      request.addHeader(header);
+    }
+    return headers;
+  }
+
+  static int size() {
+    return CACHE.size();
+  }
+
+  private static final class Key {
+    private final String clientId;
+    private final String clientSecret;
+    private final String username;
+    private final int hash;
+
+    Key(String clientId, String clientSecret, String username) {
+      this.clientId = clientId;
+      this.clientSecret = clientSecret;
+      this.username = username;
+      this.hash =
+          31 * (31 * Objects.hashCode(clientId) + Objects.hashCode(clientSecret))
+              + Objects.hashCode(username);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return Objects.equals(clientId, other.clientId)
+          && Objects.equals(clientSecret, other.clientSecret)
+          && Objects.equals(username, other.username);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * BAW CSRF token responses cached per (url, user), kept for the lifetime returned by the server.
+ *
+ * <p>A token is refreshed in the background once it enters the last tenth of its lifetime (at most
+ * {@link #MAX_REFRESH_AHEAD_MS}), while callers keep receiving the current token. Concurrent loads
+ * for the same key share one request. Only 2xx responses carrying a {@code csrf_token} are cached;
+ * other responses are returned but never cached.
+ */
+final class CsrfTokenCache {
+  private static final Logger logger = Logger.getLogger(CsrfTokenCache.class.getName());
+
+  /** The least recently used tokens are dropped past this many. */
+  static final int MAX_CACHED = 256;
+  /** Upper bound of the refresh-ahead window. */
+  static final long MAX_REFRESH_AHEAD_MS = 60 * 1000L;
+
+  private static final ExecutorService REFRESH_EXECUTOR =
+      Executors.newCachedThreadPool(new RefreshThreadFactory());
+
+  private final LruCache<Key, Entry> entries = new LruCache<>(MAX_CACHED);
+  private final ConcurrentMap<Key, CompletableFuture<String>> loading = new ConcurrentHashMap<>();
+  private final LongSupplier clock;
+
+  CsrfTokenCache() {
+    this(System::nanoTime);
+  }
+
+  CsrfTokenCache(LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * @param url CSRF token URL
+   * @param userName BAW functional user name
+   * @param password BAW functional password, part of the key so a changed password is not served a
+   *     token issued for the old one
+   * @param lifeTime requested life time (seconds), used when the response has no expiration
+   * @param loader sends the token request and returns the response status and body
+   * @return future token response body
+   */
+  CompletableFuture<String> get(
+      String url,
+      String userName,
+      String password,
+      Integer lifeTime,
+      Supplier<CompletableFuture<BaseClient.HttpResult>> loader) {
+    Key key = new Key(url, userName, password);
+    Entry entry = entries.get(key);
+    long now = clock.getAsLong();
+    if (entry != null && now - entry.expiresAt < 0) {
+      if (now - entry.refreshAt >= 0) {
+        load(
+                key,
+                lifeTime,
+                () ->
+                    CompletableFuture.supplyAsync(loader, REFRESH_EXECUTOR)
+                        .thenCompose(Function.identity()))
+            .exceptionally(e -> null);
+      }
+      return CompletableFuture.completedFuture(entry.body);
+    }
+    return load(key, lifeTime, loader);
+  }
+
+  /**
+   * Drop the cached token, e.g. after BAW rejected it.
+   *
+   * @param url CSRF token URL
+   * @param userName BAW functional user name
+   */
+  void invalidate(String url, String userName) {
+    entries.removeIf(key -> Objects.equals(key.url, url) && Objects.equals(key.userName, userName));
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  private CompletableFuture<String> load(
+      Key key, Integer lifeTime, Supplier<CompletableFuture<BaseClient.HttpResult>> loader) {
+    CompletableFuture<String> future = new CompletableFuture<>();
+    CompletableFuture<String> existing = loading.putIfAbsent(key, future);
+    if (existing != null) {
+      return existing;
+    }
+    long start = clock.getAsLong();
+    CompletableFuture<BaseClient.HttpResult> response;
+    try {
+      response = loader.get();
+    } catch (RuntimeException e) {
+      response = new CompletableFuture<>();
+      response.completeExceptionally(e);
+    }
+    response.whenComplete(
+        (result, e) -> {
+          if (e == null && result.isSuccessful()) {
+            store(key, result.getBody(), lifeTime, start);
+          }
+          loading.remove(key, future);
+          if (e == null) {
+            future.complete(result.getBody());
+          } else {
+            future.completeExceptionally(e);
+          }
+        });
+    return future;
+  }
+
+  private void store(Key key, String body, Integer lifeTime, long start) {
+    long lifeTimeMs = lifeTimeMs(body, lifeTime);
+    if (lifeTimeMs <= 0) {
+      // keep a still valid token when a refresh fails
+      return;
+    }
+    long expiresAt = start + TimeUnit.MILLISECONDS.toNanos(lifeTimeMs);
+    long refreshAhead =
+        TimeUnit.MILLISECONDS.toNanos(Math.min(lifeTimeMs / 10, MAX_REFRESH_AHEAD_MS));
+    entries.put(key, new Entry(body, expiresAt - refreshAhead, expiresAt));
+  }
+
+  /**
+   * @return the life time of a 2xx token response in milliseconds, or 0 if it carries no token and
+   *     must not be cached
+   */
+  static long lifeTimeMs(String body, Integer lifeTime) {
+    if (body == null) {
+      return 0;
+    }
+    boolean token = false;
+    long expiration = -1;
+    try (JsonParser parser = JsonRowIterator.JSON_FACTORY.createParser(body)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return 0;
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if ("csrf_token".equals(field)) {
+          token = value == JsonToken.VALUE_STRING;
+        } else if ("expiration".equals(field) && value.isNumeric()) {
+          expiration = parser.getLongValue();
+        }
+        parser.skipChildren();
+      }
+    } catch (IOException e) {
+      logger.log(Level.FINE, "CSRF token response is not cacheable", e);
+      return 0;
+    }
+    if (!token) {
+      return 0;
+    }
+    if (expiration < 0) {
+      expiration = lifeTime != null ? lifeTime : 0;
+    }
+    return TimeUnit.SECONDS.toMillis(expiration);
+  }
+
+  private static final class Entry {
+    final String body;
+    final long refreshAt;
+    final long expiresAt;
+
+    Entry(String body, long refreshAt, long expiresAt) {
+      this.body = body;
+      this.refreshAt = refreshAt;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private static final class Key {
+    private final String url;
+    private final String userName;
+    private final byte[] password;
+    private final int hash;
+
+    Key(String url, String userName, String password) {
+      this.url = url;
+      this.userName = userName;
+      this.password = Utils.fingerprint(password);
+      this.hash =
+          31 * (31 * Objects.hashCode(url) + Objects.hashCode(userName))
+              + Arrays.hashCode(this.password);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return Objects.equals(url, other.url)
+          && Objects.equals(userName, other.userName)
+          && Arrays.equals(password, other.password);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private static class RefreshThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "scis-csrf-refresh-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.SSLContext;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.impl.async.H2AsyncClientBuilder;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Blocking client that sends the requests of a {@link ScisClientContext} over HTTP/2 with Apache
+ * HttpClient 5, so the SCIS clients, which are written against HttpClient 4, can use it unchanged.
+ *
+ * <p>All requests to a host are multiplexed over one TLS connection negotiated with ALPN, or over
+ * cleartext HTTP/2 for {@code http} URLs. Request and response bodies are held in memory while they
+ * are sent and received. Retries stay with the {@link RetryPolicy} of the context.
+ */
+final class Http2TransportClient extends CloseableHttpClient {
+  /** Headers that only apply to an HTTP/1.1 connection and must not be sent over HTTP/2. */
+  private static final Set<String> CONNECTION_HEADERS =
+      new HashSet<>(
+          Arrays.asList(
+              "connection",
+              "content-length",
+              "host",
+              "keep-alive",
+              "proxy-connection",
+              "te",
+              "transfer-encoding",
+              "upgrade"));
+
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  private final org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient client;
+
+  /**
+   * @param config timeouts and I/O threads
+   * @param sslContext SSL context for {@code https} hosts, or null for the JVM default
+   */
+  Http2TransportClient(ConnectionPoolConfig config, SSLContext sslContext) {
+    H2AsyncClientBuilder builder =
+        H2AsyncClientBuilder.create()
+            .setIOReactorConfig(
+                IOReactorConfig.custom()
+                    .setIoThreadCount(config.getIoThreads())
+                    .setSoTimeout(config.getSocketTimeout(), TimeUnit.MILLISECONDS)
+                    .build())
+            .setDefaultConnectionConfig(
+                org.apache.hc.client5.http.config.ConnectionConfig.custom()
+                    .setConnectTimeout(config.getConnectTimeout(), TimeUnit.MILLISECONDS)
+                    .setSocketTimeout(config.getSocketTimeout(), TimeUnit.MILLISECONDS)
+                    .setTimeToLive(config.getTimeToLive(), TimeUnit.MILLISECONDS)
+                    .build())
+            .setDefaultRequestConfig(
+                org.apache.hc.client5.http.config.RequestConfig.custom()
+                    .setResponseTimeout(config.getSocketTimeout(), TimeUnit.MILLISECONDS)
+                    .build())
+            .evictIdleConnections(TimeValue.ofMilliseconds(config.getIdleTimeout()))
+            .disableAutomaticRetries()
+            .setThreadFactory(
+                runnable -> {
+                  Thread thread =
+                      new Thread(runnable, "scis-http2-" + THREAD_COUNT.incrementAndGet());
+                  thread.setDaemon(true);
+                  return thread;
+                });
+    if (sslContext != null) {
+      builder.setTlsStrategy(
+          ClientTlsStrategyBuilder.create()
+              .setSslContext(sslContext)
+              .setTlsVersions(config.getTlsProtocol())
+              .build());
+    }
+    this.client = builder.build();
+    this.client.start();
+  }
+
+  @Override
+  protected CloseableHttpResponse doExecute(
+      HttpHost target, HttpRequest request, HttpContext context) throws IOException {
+    Future<SimpleHttpResponse> future = client.execute(toHttp2(target, request), null);
+    try {
+      return fromHttp2(future.get());
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the HTTP/2 response");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new ClientProtocolException(e.getCause());
+    }
+  }
+
+  static SimpleHttpRequest toHttp2(HttpHost target, HttpRequest request) throws IOException {
+    URI uri;
+    try {
+      uri =
+          request instanceof HttpUriRequest && ((HttpUriRequest) request).getURI().isAbsolute()
+              ? ((HttpUriRequest) request).getURI()
+              : new URI(target.toURI() + request.getRequestLine().getUri());
+    } catch (URISyntaxException e) {
+      throw new ClientProtocolException(e);
+    }
+    SimpleHttpRequest http2Request =
+        SimpleHttpRequest.create(request.getRequestLine().getMethod(), uri);
+    for (Header header : request.getAllHeaders()) {
+      if (!CONNECTION_HEADERS.contains(header.getName().toLowerCase(Locale.ROOT))) {
+        http2Request.addHeader(header.getName(), header.getValue());
+      }
+    }
+    HttpEntity entity =
+        request instanceof HttpEntityEnclosingRequest
+            ? ((HttpEntityEnclosingRequest) request).getEntity()
+            : null;
+    if (entity != null) {
+      Header contentType = entity.getContentType();
+      http2Request.setBody(
+          EntityUtils.toByteArray(entity),
+          contentType != null ? ContentType.parseLenient(contentType.getValue()) : null);
+    }
+    return http2Request;
+  }
+
+  static CloseableHttpResponse fromHttp2(SimpleHttpResponse http2Response) {
+    org.apache.hc.core5.http.ProtocolVersion version = http2Response.getVersion();
+    Response response =
+        new Response(
+            version != null
+                ? new ProtocolVersion(version.getProtocol(), version.getMajor(), version.getMinor())
+                : new ProtocolVersion("HTTP", 2, 0),
+            http2Response.getCode(),
+            http2Response.getReasonPhrase());
+    for (org.apache.hc.core5.http.Header header : http2Response.getHeaders()) {
+      response.addHeader(header.getName(), header.getValue());
+    }
+    byte[] body = http2Response.getBodyBytes();
+    if (body != null) {
+      ByteArrayEntity entity = new ByteArrayEntity(body);
+      if (http2Response.getContentType() != null) {
+        entity.setContentType(http2Response.getContentType().toString());
+      }
+      response.setEntity(entity);
+    }
+    return response;
+  }
+
+  @Override
+  public void close() throws IOException {
+    client.close();
+  }
+
+  @Override
+  @SuppressWarnings("deprecation")
+  public HttpParams getParams() {
+    return new BasicHttpParams();
+  }
+
+  /**
+   * Not supported: the requests are multiplexed by the HTTP/2 client, so there are no HttpClient 4
+   * connections to request, release or route. Shut the transport down with {@link #close()}.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  @SuppressWarnings("deprecation")
+  public ClientConnectionManager getConnectionManager() {
+    throw new UnsupportedOperationException(
+        "The HTTP/2 transport has no HttpClient 4 connection manager; close the client instead");
+  }
+
+  /** A response whose body is already in memory, so closing it releases nothing. */
+  private static final class Response extends BasicHttpResponse implements CloseableHttpResponse {
+    Response(ProtocolVersion version, int code, String reason) {
+      super(version, code, reason);
+    }
+
+    @Override
+    public void close() {
+      // the connection was released when the body was received
+    }
+  }
+}
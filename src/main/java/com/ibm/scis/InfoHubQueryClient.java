@@ -16,25 +16,43 @@
 
 package com.ibm.scis;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.apache.http.HttpEntity;
+import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 
 /** InfoHub business data query service */
 public class InfoHubQueryClient extends BaseClient {
   private static final Logger logger = Logger.getLogger(InfoHubQueryClient.class.getName());
-  private static final ConcurrentMap<String, String> HEADERS = new ConcurrentHashMap<>();
+
+  /** Bytes of an error response read for the exception message of a streaming query. */
+  static final int ERROR_BODY_BYTES = 4096;
 
   public InfoHubQueryClient(CloseableHttpClient client) {
-    httpClient = client;
+    super(new ScisClientContext(client));
+  }
+
+  public InfoHubQueryClient(CloseableHttpClient client, CloseableHttpAsyncClient asyncClient) {
+    super(new ScisClientContext(client, asyncClient));
+  }
+
+  public InfoHubQueryClient(ScisClientContext context) {
+    super(context);
   }
 
   /** For BAW initializing this class. */
@@ -50,32 +68,248 @@ public class InfoHubQueryClient extends BaseClient {
    * @param clientId Sterling saascore platform client Id
    * @param clientSecret Sterling saascore platform client secret
    * @param username IBM identity representing workflow functional user
-   * @return Query results in String format
+   * @return Query results in String format, shared with identical queries in flight
    * @throws IOException
    */
   public String executeQuery(
       String endpoint, String dataQuery, String clientId, String clientSecret, String username)
       throws IOException {
-    logger.log(Level.INFO, dataQuery);
+    payloadLogger.request(logger, "executeQuery", dataQuery);
+    // concurrent identical queries share one request
+    return context
+        .getSingleFlight()
+        .execute(
+            Arrays.asList("executeQuery", endpoint, dataQuery, clientId, clientSecret, username),
+            () -> sendQuery(endpoint, dataQuery, clientId, clientSecret, username).body);
+  }
+
+  /**
+   * Query Sterling InfoHub business object data through the response cache of the context, for
+   * reference data that may be up to {@code ttlSeconds} old. Identical concurrent queries share one
+   * request. Only successful responses are cached.
+   *
+   * @param endpoint Fully specified URL points to InfoHub query API
+   * @param dataQuery Query criteria
+   * @param clientId Sterling saascore platform client Id
+   * @param clientSecret Sterling saascore platform client secret
+   * @param username IBM identity representing workflow functional user
+   * @param ttlSeconds How long the response may be reused, or null or 0 to query without cache
+   * @return Query results in String format
+   * @throws IOException
+   */
+  public String executeQueryCached(
+      String endpoint,
+      String dataQuery,
+      String clientId,
+      String clientSecret,
+      String username,
+      Integer ttlSeconds)
+      throws IOException {
+    if (ttlSeconds == null || ttlSeconds <= 0) {
+      return executeQuery(endpoint, dataQuery, clientId, clientSecret, username);
+    }
+    return context
+        .getQueryCache()
+        .get(
+            endpoint,
+            dataQuery,
+            clientId,
+            clientSecret,
+            username,
+            TimeUnit.SECONDS.toMillis(ttlSeconds),
+            () -> {
+              payloadLogger.request(logger, "executeQueryCached", dataQuery);
+              return sendQuery(endpoint, dataQuery, clientId, clientSecret, username);
+            });
+  }
+
+  /**
+   * Drop the cached responses of an endpoint, e.g. after its reference data changed.
+   *
+   * @param endpoint Fully specified URL points to InfoHub query API
+   */
+  public void invalidateQueryCache(String endpoint) {
+    context.getQueryCache().invalidate(endpoint);
+  }
+
+  private QueryResponseCache.Response sendQuery(
+      String endpoint, String dataQuery, String clientId, String clientSecret, String username)
+      throws IOException {
     HttpPost httpPost = buildHttpPost(endpoint, dataQuery, clientId, clientSecret, username);
+    HttpResult result = executeWithRetry("executeQuery", httpPost);
+    if (result.isError()) {
+      throw queryError(result);
+    }
+    return new QueryResponseCache.Response(result.getBody(), result.isSuccessful());
+  }
 
-    try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
+  private static IOException queryError(HttpResult result) {
+    return new IOException(
+        "InfoHub query failed with status "
+            + result.getStatus()
+            + ": "
+            + PayloadLogger.preview(result.getBody()));
+  }
+
+  /**
+   * Query Sterling InfoHub business object data page by page and merge the rows of all pages. See
+   * {@link InfoHubQueryPaginator} for the placeholders the query may contain.
+   *
+   * @param endpoint Fully specified URL points to InfoHub query API
+   * @param dataQuery Query criteria with paging placeholders
+   * @param clientId Sterling saascore platform client Id
+   * @param clientSecret Sterling saascore platform client secret
+   * @param username IBM identity representing workflow functional user
+   * @param rowsField Field name of the array holding the result rows
+   * @param pageSize Rows per page, or null for the default
+   * @param maxPages Maximum number of pages to fetch, or null for the default
+   * @return All rows as a JSON array
+   * @throws IOException
+   */
+  public String executeQueryAllPages(
+      String endpoint,
+      String dataQuery,
+      String clientId,
+      String clientSecret,
+      String username,
+      String rowsField,
+      Integer pageSize,
+      Integer maxPages)
+      throws IOException {
+    InfoHubQueryPaginator paginator = new InfoHubQueryPaginator(this, rowsField);
+    if (pageSize != null) {
+      paginator.setPageSize(pageSize);
+    }
+    if (maxPages != null) {
+      paginator.setMaxPages(maxPages);
+    }
+    return paginator.fetchAll(endpoint, dataQuery, clientId, clientSecret, username);
+  }
+
+  /**
+   * Query Sterling InfoHub business object data and hand each row to {@code rowHandler} as it is
+   * parsed from the response, without holding the whole response in memory.
+   *
+   * @param endpoint Fully specified URL points to InfoHub query API
+   * @param dataQuery Query criteria
+   * @param clientId Sterling saascore platform client Id
+   * @param clientSecret Sterling saascore platform client secret
+   * @param username IBM identity representing workflow functional user
+   * @param rowsField Field name of the array holding the result rows, or null for a root array
+   * @param rowHandler Receives each row in JSON format
+   * @return Number of rows handled
+   * @throws IOException
+   */
+  public int executeQueryStreaming(
+      String endpoint,
+      String dataQuery,
+      String clientId,
+      String clientSecret,
+      String username,
+      String rowsField,
+      Consumer<String> rowHandler)
+      throws IOException {
+    int count = 0;
+    try (JsonRowIterator rows =
+        executeQueryRows(endpoint, dataQuery, clientId, clientSecret, username, rowsField)) {
+      while (rows.hasNext()) {
+        rowHandler.accept(rows.next());
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Query Sterling InfoHub business object data and iterate over the rows while the response is
+   * read. The caller must close the iterator to release the connection.
+   *
+   * @param endpoint Fully specified URL points to InfoHub query API
+   * @param dataQuery Query criteria
+   * @param clientId Sterling saascore platform client Id
+   * @param clientSecret Sterling saascore platform client secret
+   * @param username IBM identity representing workflow functional user
+   * @param rowsField Field name of the array holding the result rows, or null for a root array
+   * @return Iterator over the rows in JSON format
+   * @throws IOException if the request fails or InfoHub answers with a status other than 2xx
+   */
+  public JsonRowIterator executeQueryRows(
+      String endpoint,
+      String dataQuery,
+      String clientId,
+      String clientSecret,
+      String username,
+      String rowsField)
+      throws IOException {
+    payloadLogger.request(logger, "executeQueryRows", dataQuery);
+    HttpPost httpPost = buildHttpPost(endpoint, dataQuery, clientId, clientSecret, username);
+
+    CloseableHttpResponse response = executeGuarded("executeQueryRows", httpPost);
+    try {
+      StatusLine statusLine = response.getStatusLine();
+      if (statusLine != null
+          && (statusLine.getStatusCode() < 200 || statusLine.getStatusCode() >= 300)) {
+        throw new IOException(
+            "InfoHub query failed with "
+                + statusLine
+                + ": "
+                + PayloadLogger.preview(bodyHead(response.getEntity())));
+      }
       InputStream contentStream = response.getEntity().getContent();
-      String responseString = Utils.inputStreamToString(contentStream);
-      return responseString;
+      return new JsonRowIterator(
+          JsonRowIterator.JSON_FACTORY.createParser(contentStream), rowsField, response);
     } catch (Exception e) {
       logger.log(Level.SEVERE, e.getMessage());
+      response.close();
       throw e;
     }
   }
 
-  private HttpPost buildHttpPost(
+  /** @return the first {@value #ERROR_BODY_BYTES} bytes of an error response */
+  private static String bodyHead(HttpEntity entity) throws IOException {
+    if (entity == null) {
+      return "";
+    }
+    try (InputStream content = entity.getContent()) {
+      ByteArrayOutputStream head = new ByteArrayOutputStream();
+      byte[] buffer = new byte[ERROR_BODY_BYTES];
+      int read;
+      while (head.size() < ERROR_BODY_BYTES
+          && (read = content.read(buffer, 0, ERROR_BODY_BYTES - head.size())) > 0) {
+        head.write(buffer, 0, read);
+      }
+      return new String(head.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * Non-blocking counterpart of {@link #executeQuery(String, String, String, String, String)}.
+   *
+   * @param endpoint Fully specified URL points to InfoHub query API
+   * @param dataQuery Query criteria
+   * @param clientId Sterling saascore platform client Id
+   * @param clientSecret Sterling saascore platform client secret
+   * @param username IBM identity representing workflow functional user
+   * @return Future query results in String format, completed exceptionally if the query failed
+   */
+  public CompletableFuture<String> executeQueryAsync(
+      String endpoint, String dataQuery, String clientId, String clientSecret, String username) {
+    payloadLogger.request(logger, "executeQueryAsync", dataQuery);
+    return executeAsyncForResult(
+            buildHttpPost(endpoint, dataQuery, clientId, clientSecret, username))
+        .thenApply(
+            result -> {
+              if (result.isError()) {
+                throw new CompletionException(queryError(result));
+              }
+              return result.getBody();
+            });
+  }
+
+  HttpPost buildHttpPost(
       String endpoint, String input, String clientId, String clientSecret, String username) {
     HttpPost httpPost = new HttpPost(endpoint);
-    HEADERS.put(X_IBM_CLIENT_ID, clientId);
-    HEADERS.put(X_IBM_CLIENT_SECRET, clientSecret);
-    HEADERS.put(IBM_USERNAME, username);
-    HEADERS.forEach(httpPost::addHeader);
+    CredentialHeaders.addInfoHubHeaders(clientId, clientSecret, username, httpPost);
     httpPost.setEntity(new StringEntity(input, ContentType.APPLICATION_JSON));
     return httpPost;
   }
@@ -35,7 +35,12 @@ public class InfoHubQueryClientBeanInfo extends java.beans.SimpleBeanInfo {
   public MethodDescriptor[] getMethodDescriptors() {
     final String METHOD_NAME = "getMethodDescriptors";
     try {
-      MethodDescriptor descriptorList[] = {executeQueryMethodDescriptor()};
+      MethodDescriptor descriptorList[] = {
+        executeQueryMethodDescriptor(),
+        executeQueryAllPagesMethodDescriptor(),
+        executeQueryCachedMethodDescriptor(),
+        invalidateQueryCacheMethodDescriptor()
+      };
       return descriptorList;
     } catch (Exception e) {
       logger.logp(
@@ -80,4 +85,130 @@ public class InfoHubQueryClientBeanInfo extends java.beans.SimpleBeanInfo {
     logger.exiting(CLASS_NAME, METHOD_NAME, methodDescriptor);
     return methodDescriptor;
   }
+
+  @SuppressWarnings("unchecked")
+  private MethodDescriptor executeQueryAllPagesMethodDescriptor() throws NoSuchMethodException {
+    final String METHOD_NAME = "executeQueryAllPagesMethodDescriptor";
+    logger.entering(CLASS_NAME, METHOD_NAME);
+
+    Method method =
+        beanClass.getMethod(
+            "executeQueryAllPages",
+            String.class,
+            String.class,
+            String.class,
+            String.class,
+            String.class,
+            String.class,
+            Integer.class,
+            Integer.class);
+
+    ParameterDescriptor param1 = new ParameterDescriptor();
+    param1.setShortDescription("The url of the info hub query client.");
+    param1.setDisplayName("endpoint");
+
+    ParameterDescriptor param2 = new ParameterDescriptor();
+    param2.setShortDescription(
+        "The GQL of the info hub query client with ${pageSize}, ${offset} or ${cursor}.");
+    param2.setDisplayName("query");
+
+    ParameterDescriptor param3 = new ParameterDescriptor();
+    param3.setShortDescription("The client id of the info hub query client.");
+    param3.setDisplayName("client id");
+
+    ParameterDescriptor param4 = new ParameterDescriptor();
+    param4.setShortDescription("The client secret of the info hub query client.");
+    param4.setDisplayName("client secret");
+
+    ParameterDescriptor param5 = new ParameterDescriptor();
+    param5.setShortDescription("IBM identity representing workflow functional user.");
+    param5.setDisplayName("username");
+
+    ParameterDescriptor param6 = new ParameterDescriptor();
+    param6.setShortDescription("The field name of the array holding the result rows.");
+    param6.setDisplayName("rows field");
+
+    ParameterDescriptor param7 = new ParameterDescriptor();
+    param7.setShortDescription("The number of rows per page.");
+    param7.setDisplayName("page size");
+
+    ParameterDescriptor param8 = new ParameterDescriptor();
+    param8.setShortDescription("The maximum number of pages to fetch.");
+    param8.setDisplayName("max pages");
+
+    MethodDescriptor methodDescriptor =
+        new MethodDescriptor(
+            method,
+            new ParameterDescriptor[] {
+              param1, param2, param3, param4, param5, param6, param7, param8
+            });
+
+    logger.exiting(CLASS_NAME, METHOD_NAME, methodDescriptor);
+    return methodDescriptor;
+  }
+
+  @SuppressWarnings("unchecked")
+  private MethodDescriptor executeQueryCachedMethodDescriptor() throws NoSuchMethodException {
+    final String METHOD_NAME = "executeQueryCachedMethodDescriptor";
+    logger.entering(CLASS_NAME, METHOD_NAME);
+
+    Method method =
+        beanClass.getMethod(
+            "executeQueryCached",
+            String.class,
+            String.class,
+            String.class,
+            String.class,
+            String.class,
+            Integer.class);
+
+    ParameterDescriptor param1 = new ParameterDescriptor();
+    param1.setShortDescription("The url of the info hub query client.");
+    param1.setDisplayName("endpoint");
+
+    ParameterDescriptor param2 = new ParameterDescriptor();
+    param2.setShortDescription("The GQL of the info hub query client.");
+    param2.setDisplayName("query");
+
+    ParameterDescriptor param3 = new ParameterDescriptor();
+    param3.setShortDescription("The client id of the info hub query client.");
+    param3.setDisplayName("client id");
+
+    ParameterDescriptor param4 = new ParameterDescriptor();
+    param4.setShortDescription("The client secret of the info hub query client.");
+    param4.setDisplayName("client secret");
+
+    ParameterDescriptor param5 = new ParameterDescriptor();
+    param5.setShortDescription("IBM identity representing workflow functional user.");
+    param5.setDisplayName("username");
+
+    ParameterDescriptor param6 = new ParameterDescriptor();
+    param6.setShortDescription("How long in seconds the response may be reused.");
+    param6.setDisplayName("ttl seconds");
+
+    MethodDescriptor methodDescriptor =
+        new MethodDescriptor(
+            method, new ParameterDescriptor[] {param1, param2, param3, param4, param5, param6});
+
+    logger.exiting(CLASS_NAME, METHOD_NAME, methodDescriptor);
+    return methodDescriptor;
+  }
+
+  @SuppressWarnings("unchecked")
+  private MethodDescriptor invalidateQueryCacheMethodDescriptor() throws NoSuchMethodException {
+    final String METHOD_NAME = "invalidateQueryCacheMethodDescriptor";
+    logger.entering(CLASS_NAME, METHOD_NAME);
+
+    Method method = beanClass.getMethod("invalidateQueryCache", String.class);
+
+    ParameterDescriptor param1 = new ParameterDescriptor();
+    param1.setShortDescription("The url of the info hub query client.");
+    param1.setDisplayName("endpoint");
+
+    MethodDescriptor methodDescriptor =
+        new MethodDescriptor(method, new ParameterDescriptor[] {param1});
+
+    logger.exiting(CLASS_NAME, METHOD_NAME, methodDescriptor);
+    return methodDescriptor;
+  }
 }
@@ -0,0 +1,263 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs an InfoHub query page by page until the result set is exhausted.
+ *
+ * <p>The query is a template that may contain {@value #PAGE_SIZE_PLACEHOLDER}, {@value
+ * #OFFSET_PLACEHOLDER} and {@value #CURSOR_PLACEHOLDER}. The cursor is replaced by a JSON string
+ * literal, or {@code null} for the first page, and is read from the {@code cursorField} of the
+ * previous page. Paging stops when a page has fewer rows than the page size, when {@code
+ * hasNextPageField} is false, when a cursor query returns no new cursor, or after {@code maxPages}
+ * pages. A query with neither an offset nor a cursor is fetched as a single page. While the caller
+ * handles one page the next one is already being fetched. A page answered with an error status
+ * fails the whole fetch.
+ */
+public class InfoHubQueryPaginator {
+  private static final Logger logger = Logger.getLogger(InfoHubQueryPaginator.class.getName());
+
+  public static final String PAGE_SIZE_PLACEHOLDER = "${pageSize}";
+  public static final String OFFSET_PLACEHOLDER = "${offset}";
+  public static final String CURSOR_PLACEHOLDER = "${cursor}";
+
+  static final int DEFAULT_PAGE_SIZE = 100;
+  static final int DEFAULT_MAX_PAGES = 100;
+  static final String DEFAULT_CURSOR_FIELD = "endCursor";
+  static final String DEFAULT_HAS_NEXT_PAGE_FIELD = "hasNextPage";
+
+  private final InfoHubQueryClient client;
+  private final String rowsField;
+  private int pageSize = DEFAULT_PAGE_SIZE;
+  private int maxPages = DEFAULT_MAX_PAGES;
+  private String cursorField = DEFAULT_CURSOR_FIELD;
+  private String hasNextPageField = DEFAULT_HAS_NEXT_PAGE_FIELD;
+  private boolean prefetch = true;
+
+  /**
+   * @param client query client used to fetch the pages
+   * @param rowsField field name of the array holding the result rows, or null for a root array
+   */
+  public InfoHubQueryPaginator(InfoHubQueryClient client, String rowsField) {
+    this.client = client;
+    this.rowsField = rowsField;
+  }
+
+  public void setPageSize(int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("pageSize must be positive");
+    }
+    this.pageSize = pageSize;
+  }
+
+  public void setMaxPages(int maxPages) {
+    if (maxPages < 1) {
+      throw new IllegalArgumentException("maxPages must be positive");
+    }
+    this.maxPages = maxPages;
+  }
+
+  public void setCursorField(String cursorField) {
+    this.cursorField = cursorField;
+  }
+
+  public void setHasNextPageField(String hasNextPageField) {
+    this.hasNextPageField = hasNextPageField;
+  }
+
+  public void setPrefetch(boolean prefetch) {
+    this.prefetch = prefetch;
+  }
+
+  /**
+   * Fetch every page and merge the rows into one JSON array.
+   *
+   * @param endpoint Fully specified URL points to InfoHub query API
+   * @param dataQuery Query template
+   * @param clientId Sterling saascore platform client Id
+   * @param clientSecret Sterling saascore platform client secret
+   * @param username IBM identity representing workflow functional user
+   * @return All rows as a JSON array
+   * @throws IOException if a page cannot be fetched or parsed
+   */
+  public String fetchAll(
+      String endpoint, String dataQuery, String clientId, String clientSecret, String username)
+      throws IOException {
+    StringBuilder merged = new StringBuilder().append('[');
+    forEachPage(
+        endpoint,
+        dataQuery,
+        clientId,
+        clientSecret,
+        username,
+        rows -> {
+          for (String row : rows) {
+            if (merged.length() > 1) {
+              merged.append(',');
+            }
+            merged.append(row);
+          }
+        });
+    return merged.append(']').toString();
+  }
+
+  /**
+   * Fetch the pages one after another and hand the rows of each page to {@code pageHandler}.
+   *
+   * @param endpoint Fully specified URL points to InfoHub query API
+   * @param dataQuery Query template
+   * @param clientId Sterling saascore platform client Id
+   * @param clientSecret Sterling saascore platform client secret
+   * @param username IBM identity representing workflow functional user
+   * @param pageHandler Receives the rows of each page in JSON format
+   * @return Total number of rows
+   * @throws IOException if a page cannot be fetched or parsed
+   */
+  public int forEachPage(
+      String endpoint,
+      String dataQuery,
+      String clientId,
+      String clientSecret,
+      String username,
+      Consumer<List<String>> pageHandler)
+      throws IOException {
+    boolean cursorPaging = dataQuery.contains(CURSOR_PLACEHOLDER);
+    // without an offset or cursor every page would be the same query
+    boolean paged = cursorPaging || dataQuery.contains(OFFSET_PLACEHOLDER);
+    int total = 0;
+    int pages = 0;
+    CompletableFuture<Page> next =
+        fetchPage(endpoint, pageQuery(dataQuery, 0, null), clientId, clientSecret, username);
+    while (next != null) {
+      Page page = await(next);
+      pages++;
+      next = null;
+      String nextQuery = null;
+      if (paged && hasMore(page, cursorPaging)) {
+        if (pages < maxPages) {
+          nextQuery = pageQuery(dataQuery, total + page.rows.size(), page.cursor);
+        } else {
+          logger.log(Level.WARNING, "Stopped paging after " + maxPages + " pages");
+        }
+      }
+      if (prefetch && nextQuery != null) {
+        next = fetchPage(endpoint, nextQuery, clientId, clientSecret, username);
+      }
+      pageHandler.accept(page.rows);
+      total += page.rows.size();
+      if (!prefetch && nextQuery != null) {
+        next = fetchPage(endpoint, nextQuery, clientId, clientSecret, username);
+      }
+    }
+    return total;
+  }
+
+  private boolean hasMore(Page page, boolean cursorPaging) {
+    if (page.rows.size() < pageSize || Boolean.FALSE.equals(page.hasNextPage)) {
+      return false;
+    }
+    return !cursorPaging || page.cursor != null;
+  }
+
+  String pageQuery(String dataQuery, int offset, String cursor) {
+    String cursorLiteral =
+        cursor == null
+            ? "null"
+            : '"' + new String(JsonStringEncoder.getInstance().quoteAsString(cursor)) + '"';
+    return dataQuery
+        .replace(PAGE_SIZE_PLACEHOLDER, Integer.toString(pageSize))
+        .replace(OFFSET_PLACEHOLDER, Integer.toString(offset))
+        .replace(CURSOR_PLACEHOLDER, cursorLiteral);
+  }
+
+  private CompletableFuture<Page> fetchPage(
+      String endpoint, String query, String clientId, String clientSecret, String username) {
+    return client
+        .executeQueryAsync(endpoint, query, clientId, clientSecret, username)
+        .thenApply(this::parsePage);
+  }
+
+  private Page parsePage(String response) {
+    Page page = new Page();
+    try (JsonRowIterator rows =
+        new JsonRowIterator(
+            JsonRowIterator.JSON_FACTORY.createParser(
+                new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8))),
+            rowsField,
+            null) {
+          @Override
+          protected void onToken(JsonParser parser, JsonToken token) throws IOException {
+            if (!token.isScalarValue()) {
+              return;
+            }
+            String name = parser.getCurrentName();
+            if (name == null) {
+              return;
+            }
+            if (name.equals(cursorField) && token == JsonToken.VALUE_STRING) {
+              page.cursor = parser.getText();
+            } else if (name.equals(hasNextPageField) && token.isBoolean()) {
+              page.hasNextPage = parser.getBooleanValue();
+            }
+          }
+        }) {
+      rows.forEachRemaining(page.rows::add);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return page;
+  }
+
+  private static Page await(CompletableFuture<Page> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof UncheckedIOException) {
+        cause = cause.getCause();
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  private static class Page {
+    private final List<String> rows = new ArrayList<>();
+    private String cursor;
+    private Boolean hasNextPage;
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the rows of a JSON document while it is being read, so only one row is held in
+ * memory at a time. Rows are the elements of every array whose field name is {@code rowsField}, or
+ * of the root array when {@code rowsField} is null. Each row is returned as JSON text.
+ */
+public class JsonRowIterator implements Iterator<String>, Closeable {
+  static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private final JsonParser parser;
+  private final String rowsField;
+  private final Closeable resource;
+  private final StringWriter rowWriter = new StringWriter(256);
+  private final JsonGenerator rowGenerator;
+  private boolean inRows;
+  private String nextRow;
+  private boolean done;
+
+  /**
+   * @param parser parser positioned before the first token
+   * @param rowsField field name of the rows array, or null for a root array
+   * @param resource closed together with the parser, e.g. the HTTP response; may be null
+   * @throws IOException if the row writer cannot be created
+   */
+  public JsonRowIterator(JsonParser parser, String rowsField, Closeable resource)
+      throws IOException {
+    this.parser = parser;
+    this.rowsField = rowsField;
+    this.resource = resource;
+    this.rowGenerator = JSON_FACTORY.createGenerator(rowWriter);
+    this.rowGenerator.setRootValueSeparator(null);
+  }
+
+  /**
+   * @param stream JSON document; the encoding is detected from the content
+   * @param rowsField field name of the rows array, or null for a root array
+   * @return row iterator that closes the stream when it is closed
+   * @throws IOException if the stream cannot be read
+   */
+  public static JsonRowIterator of(InputStream stream, String rowsField) throws IOException {
+    return new JsonRowIterator(JSON_FACTORY.createParser(stream), rowsField, stream);
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (nextRow == null && !done) {
+      try {
+        nextRow = advance();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      done = nextRow == null;
+    }
+    return nextRow != null;
+  }
+
+  @Override
+  public String next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    String row = nextRow;
+    nextRow = null;
+    return row;
+  }
+
+  private String advance() throws IOException {
+    JsonToken token;
+    while ((token = parser.nextToken()) != null) {
+      if (inRows) {
+        if (token == JsonToken.END_ARRAY) {
+          inRows = false;
+        } else {
+          return readRow();
+        }
+      } else if (token == JsonToken.START_ARRAY && isRowsArray()) {
+        inRows = true;
+      } else {
+        onToken(parser, token);
+      }
+    }
+    return null;
+  }
+
+  private boolean isRowsArray() throws IOException {
+    return rowsField == null
+        ? parser.getParsingContext().getParent().inRoot()
+        : rowsField.equals(parser.getCurrentName());
+  }
+
+  /**
+   * Called for every token outside of the rows, e.g. to pick up paging information.
+   *
+   * @param parser parser positioned on the token
+   * @param token current token
+   * @throws IOException if the token cannot be read
+   */
+  protected void onToken(JsonParser parser, JsonToken token) throws IOException {}
+
+  private String readRow() throws IOException {
+    rowWriter.getBuffer().setLength(0);
+    rowGenerator.copyCurrentStructure(parser);
+    rowGenerator.flush();
+    return rowWriter.toString();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      parser.close();
+    } finally {
+      if (resource != null) {
+        resource.close();
+      }
+    }
+  }
+}
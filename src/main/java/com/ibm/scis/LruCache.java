@@ -0,0 +1,116 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Bounded cache that drops its least recently used entries once it holds more than {@code maxSize}
+ * of them, so a burst of new keys evicts only the coldest ones instead of everything.
+ *
+ * <p>Lookups are lock-free and allocate nothing; they only stamp the entry with the time of use.
+ * Eviction scans the entries under a lock, which happens only when a new key is added to a full
+ * cache.
+ *
+ * @param <K> key; must implement equals and hashCode
+ * @param <V> value, never null
+ */
+final class LruCache<K, V> {
+  private final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+  private final int maxSize;
+
+  /** @param maxSize number of entries kept */
+  LruCache(int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be positive");
+    }
+    this.maxSize = maxSize;
+  }
+
+  /** @return the value of the key, or null if it is not cached */
+  V get(K key) {
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    entry.used = System.nanoTime();
+    return entry.value;
+  }
+
+  /**
+   * @param key key
+   * @param loader creates the value of a missing key, at most once per key at a time; must not
+   *     return null
+   * @return the cached or created value
+   */
+  V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+    V value = get(key);
+    if (value != null) {
+      return value;
+    }
+    Entry<V> entry = entries.computeIfAbsent(key, k -> new Entry<>(loader.apply(k)));
+    evictIfFull();
+    return entry.value;
+  }
+
+  void put(K key, V value) {
+    entries.put(key, new Entry<>(value));
+    evictIfFull();
+  }
+
+  /** Drop the entries whose key matches the filter. */
+  void removeIf(Predicate<? super K> filter) {
+    entries.keySet().removeIf(filter);
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  private void evictIfFull() {
+    if (entries.size() <= maxSize) {
+      return;
+    }
+    synchronized (this) {
+      while (entries.size() > maxSize) {
+        Map.Entry<K, Entry<V>> eldest = null;
+        for (Map.Entry<K, Entry<V>> candidate : entries.entrySet()) {
+          if (eldest == null || candidate.getValue().used - eldest.getValue().used < 0) {
+            eldest = candidate;
+          }
+        }
+        if (eldest == null) {
+          return;
+        }
+        entries.remove(eldest.getKey(), eldest.getValue());
+      }
+    }
+  }
+
+  private static final class Entry<V> {
+    final V value;
+    volatile long used = System.nanoTime();
+
+    Entry(V value) {
+      this.value = value;
+    }
+  }
+}
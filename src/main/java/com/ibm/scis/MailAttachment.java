@@ -0,0 +1,281 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.activation.DataSource;
+import javax.activation.FileDataSource;
+import javax.activation.FileTypeMap;
+import javax.mail.util.ByteArrayDataSource;
+
+/**
+ * An email attachment streamed into the SMTP output when the message is sent, without temporary
+ * files or intermediate copies. Files of at least {@value #MMAP_THRESHOLD_PROPERTY} bytes are
+ * memory-mapped.
+ */
+public final class MailAttachment {
+  /** System property with the file size from which attachments are memory-mapped. */
+  public static final String MMAP_THRESHOLD_PROPERTY = "scis.mail.mmapThresholdBytes";
+
+  static final long DEFAULT_MMAP_THRESHOLD = 1024 * 1024L;
+
+  static final String APPLICATION_OCTET_STREAM = "application/octet-stream";
+
+  private final String name;
+  private final DataSource dataSource;
+  private final long size;
+
+  private MailAttachment(String name, DataSource dataSource, long size) {
+    this.name = name;
+    this.dataSource = dataSource;
+    this.size = size;
+  }
+
+  /**
+   * Attach a file; it is read while the message is sent.
+   *
+   * @param file file to attach, named by its simple name
+   * @return attachment
+   */
+  public static MailAttachment fromFile(File file) {
+    long size = file.length();
+    DataSource source =
+        size >= Long.getLong(MMAP_THRESHOLD_PROPERTY, DEFAULT_MMAP_THRESHOLD)
+            ? new MappedFileDataSource(file)
+            : new FileDataSource(file);
+    return new MailAttachment(file.getName(), source, size);
+  }
+
+  /**
+   * Attach bytes held in memory. The array is not copied and must not be modified afterwards.
+   *
+   * @param name file name shown to the recipient
+   * @param contentType MIME type, or null for application/octet-stream
+   * @param content content
+   * @return attachment
+   */
+  public static MailAttachment fromBytes(String name, String contentType, byte[] content) {
+    ByteArrayDataSource source =
+        new ByteArrayDataSource(
+            content, contentType != null ? contentType : APPLICATION_OCTET_STREAM);
+    source.setName(name);
+    return new MailAttachment(name, source, content.length);
+  }
+
+  /**
+   * Attach content read from a stream while the message is sent. The stream can be read only once,
+   * so a message with a stream attachment cannot be sent again, e.g. on a retry.
+   *
+   * @param name file name shown to the recipient
+   * @param contentType MIME type, or null for application/octet-stream
+   * @param content stream, closed after sending
+   * @param size number of bytes in the stream, or -1 if unknown
+   * @return attachment
+   */
+  public static MailAttachment fromStream(
+      String name, String contentType, InputStream content, long size) {
+    return new MailAttachment(
+        name,
+        new StreamDataSource(
+            name, contentType != null ? contentType : APPLICATION_OCTET_STREAM, content, null),
+        size);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** @return number of bytes before transfer encoding, or -1 if unknown */
+  public long getSize() {
+    return size;
+  }
+
+  DataSource getDataSource() {
+    return dataSource;
+  }
+
+  /**
+   * @param remaining number of bytes left for the streams of unknown size of a message, shared by
+   *     them and counted down while they are read
+   * @return this attachment, or for a stream of unknown size one that fails reading once {@code
+   *     remaining} is used up
+   */
+  MailAttachment limitTo(AtomicLong remaining) {
+    if (size >= 0 || !(dataSource instanceof StreamDataSource)) {
+      return this;
+    }
+    StreamDataSource stream = (StreamDataSource) dataSource;
+    return new MailAttachment(
+        name, new StreamDataSource(name, stream.contentType, stream.content, remaining), size);
+  }
+
+  /** Serves a file through a read-only mapping instead of copying it via read calls. */
+  static final class MappedFileDataSource implements DataSource {
+    private final File file;
+
+    MappedFileDataSource(File file) {
+      this.file = file;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      MappedByteBuffer buffer;
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        // the mapping stays valid after the channel is closed
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      return new ByteBufferInputStream(buffer);
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+      throw new IOException("Attachments are read only");
+    }
+
+    @Override
+    public String getContentType() {
+      return FileTypeMap.getDefaultFileTypeMap().getContentType(file);
+    }
+
+    @Override
+    public String getName() {
+      return file.getName();
+    }
+  }
+
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public long skip(long n) {
+      int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+      buffer.position(buffer.position() + count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+
+  private static final class StreamDataSource implements DataSource {
+    private final String name;
+    private final String contentType;
+    private final InputStream content;
+    private final AtomicLong limit;
+    private final AtomicBoolean read = new AtomicBoolean();
+
+    /** @param limit bytes left for this and other streams, or null for no limit */
+    StreamDataSource(String name, String contentType, InputStream content, AtomicLong limit) {
+      this.name = name;
+      this.contentType = contentType;
+      this.content = content;
+      this.limit = limit;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      if (read.getAndSet(true)) {
+        throw new IOException("The content of attachment " + name + " was already sent");
+      }
+      return limit == null ? content : new LimitedInputStream(content, name, limit);
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+      throw new IOException("Attachments are read only");
+    }
+
+    @Override
+    public String getContentType() {
+      return contentType;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+  }
+
+  private static final class LimitedInputStream extends FilterInputStream {
+    private final String name;
+    private final AtomicLong remaining;
+
+    LimitedInputStream(InputStream in, String name, AtomicLong limit) {
+      super(in);
+      this.name = name;
+      this.remaining = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        count(1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      int count = super.read(bytes, offset, length);
+      if (count > 0) {
+        count(count);
+      }
+      return count;
+    }
+
+    private void count(long bytes) throws IOException {
+      if (remaining.addAndGet(-bytes) < 0) {
+        throw new IOException("Attachment " + name + " exceeds the maximum message size");
+      }
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+/** Per-message delivery results of a {@link MailPlus} batch, in input order. */
+public class MailBatchResult {
+  private final String[] errors;
+  private int failed;
+
+  MailBatchResult(int size) {
+    errors = new String[size];
+  }
+
+  synchronized void fail(int index, Exception e) {
+    if (errors[index] == null) {
+      failed++;
+    }
+    errors[index] = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+  }
+
+  public int getTotal() {
+    return errors.length;
+  }
+
+  public synchronized int getSent() {
+    return errors.length - failed;
+  }
+
+  public synchronized int getFailed() {
+    return failed;
+  }
+
+  public synchronized boolean isSent(int index) {
+    return errors[index] == null;
+  }
+
+  /** @return the failure of the message, or null if it was sent */
+  public synchronized String getError(int index) {
+    return errors[index];
+  }
+
+  /**
+   * @return {@code {"total":n,"sent":n,"failed":n,"results":[{"index":0,"status":"sent"},
+   *     {"index":1,"status":"error","error":"..."}]}}
+   */
+  public synchronized String toJson() {
+    StringWriter writer = new StringWriter(32 * (errors.length + 1));
+    try (JsonGenerator generator = JsonRowIterator.JSON_FACTORY.createGenerator(writer)) {
+      generator.writeStartObject();
+      generator.writeNumberField("total", getTotal());
+      generator.writeNumberField("sent", getSent());
+      generator.writeNumberField("failed", failed);
+      generator.writeArrayFieldStart("results");
+      for (int i = 0; i < errors.length; i++) {
+        generator.writeStartObject();
+        generator.writeNumberField("index", i);
+        if (errors[i] == null) {
+          generator.writeStringField("status", "sent");
+        } else {
+          generator.writeStringField("status", "error");
+          generator.writeStringField("error", errors[i]);
+        }
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return writer.toString();
+  }
+}
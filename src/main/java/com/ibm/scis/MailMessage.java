@@ -0,0 +1,341 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.mail.MessagingException;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+
+/**
+ * An email message as sent by {@link MailPlus}: validated recipients, subject, content and
+ * attachments. Instances are immutable and can be shared between threads.
+ *
+ * <p>Building a message fails when its content and attachments add up to more than {@value
+ * #MAX_MESSAGE_BYTES_PROPERTY} bytes, before anything is sent; the content counts with its UTF-8
+ * length. Attachments read from streams of unknown size share the rest of the limit and fail while
+ * sending when together they exceed it.
+ */
+public final class MailMessage {
+  /** Constant for plain text messages contentType. */
+  public static final String CONTENT_TYPE_PLAIN_TEXT = "text/plain";
+  /** Constant for html text messages contentType. */
+  public static final String CONTENT_TYPE_HTML = "text/html";
+  /** Constant for Normal Importance */
+  public static final String IMPORTANCE_NORMAL = "normal";
+
+  /** System property with the maximum size of content and attachments before encoding. */
+  public static final String MAX_MESSAGE_BYTES_PROPERTY = "scis.mail.maxMessageBytes";
+
+  static final long DEFAULT_MAX_MESSAGE_BYTES = 20 * 1024 * 1024L;
+
+  private static final InternetAddress[] NO_ADDRESSES = new InternetAddress[0];
+
+  private final InternetAddress[] to;
+  private final InternetAddress from;
+  private final InternetAddress[] replyTo;
+  private final InternetAddress[] cc;
+  private final InternetAddress[] bcc;
+  private final String subject;
+  private final String contentType;
+  private final String content;
+  private final String importance;
+  private final List<String> attachmentFileNames;
+  private final List<MailAttachment> attachments;
+
+  private MailMessage(Builder builder) throws MessagingException {
+    if (isEmpty(builder.to)) {
+      throw new MessagingException("The 'To' field should not be empty.");
+    }
+    to = parse(builder.to);
+    if (isEmpty(builder.from)) {
+      throw new MessagingException("The 'From' field should not be empty.");
+    }
+    from = new InternetAddress(builder.from);
+    replyTo = isEmpty(builder.replyTo) ? NO_ADDRESSES : parse(builder.replyTo);
+    cc = isEmpty(builder.cc) ? NO_ADDRESSES : parse(builder.cc);
+    bcc = isEmpty(builder.bcc) ? NO_ADDRESSES : parse(builder.bcc);
+    if (isEmpty(builder.subject)) {
+      throw new MessagingException("The 'Subject' field should not be empty.");
+    }
+    subject = builder.subject;
+    if (!CONTENT_TYPE_PLAIN_TEXT.equals(builder.contentType)
+        && !CONTENT_TYPE_HTML.equals(builder.contentType)) {
+      throw new MessagingException(
+          "The 'ContentType' field should be '"
+              + CONTENT_TYPE_PLAIN_TEXT
+              + "' or '"
+              + CONTENT_TYPE_HTML
+              + "'.");
+    }
+    contentType = builder.contentType;
+    if (isEmpty(builder.content)) {
+      throw new MessagingException("The 'Content' field should not be empty.");
+    }
+    content = builder.content;
+    importance = isEmpty(builder.importance) ? IMPORTANCE_NORMAL : builder.importance;
+    attachmentFileNames =
+        isEmpty(builder.attachmentFileNames)
+            ? Collections.emptyList()
+            : Collections.unmodifiableList(Arrays.asList(builder.attachmentFileNames.split(",")));
+    attachments = limit(builder.attachments);
+  }
+
+  private List<MailAttachment> limit(List<MailAttachment> added) throws MessagingException {
+    long maxBytes = Long.getLong(MAX_MESSAGE_BYTES_PROPERTY, DEFAULT_MAX_MESSAGE_BYTES);
+    List<MailAttachment> all = new ArrayList<>(attachmentFileNames.size() + added.size());
+    for (String filename : attachmentFileNames) {
+      all.add(MailAttachment.fromFile(new File(filename)));
+    }
+    all.addAll(added);
+    long size = utf8Length(content);
+    for (MailAttachment attachment : all) {
+      size += Math.max(attachment.getSize(), 0);
+    }
+    if (size > maxBytes) {
+      throw new MessagingException(
+          "The message has " + size + " bytes, more than the maximum of " + maxBytes + ".");
+    }
+    // one budget for all streams of unknown size, counted down while they are sent
+    AtomicLong remaining = new AtomicLong(maxBytes - size);
+    for (int i = 0; i < all.size(); i++) {
+      all.set(i, all.get(i).limitTo(remaining));
+    }
+    return Collections.unmodifiableList(all);
+  }
+
+  /** @return the number of bytes of the text encoded as UTF-8, without encoding it */
+  static long utf8Length(String text) {
+    long length = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < text.length()
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  private static boolean isEmpty(String value) {
+    return value == null || value.isEmpty();
+  }
+
+  private static InternetAddress[] parse(String addresses) throws AddressException {
+    // Parse the given sequence of addresses into InternetAddress objects.
+    // If strict is true, many (but not all) of the RFC822 syntax
+    // rules are enforced.
+    return InternetAddress.parse(addresses, true);
+  }
+
+  public InternetAddress[] getTo() {
+    return to.clone();
+  }
+
+  public InternetAddress getFrom() {
+    return (InternetAddress) from.clone();
+  }
+
+  public InternetAddress[] getReplyTo() {
+    return replyTo.clone();
+  }
+
+  public InternetAddress[] getCc() {
+    return cc.clone();
+  }
+
+  public InternetAddress[] getBcc() {
+    return bcc.clone();
+  }
+
+  public String getSubject() {
+    return subject;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  public String getContent() {
+    return content;
+  }
+
+  public String getImportance() {
+    return importance;
+  }
+
+  public List<String> getAttachmentFileNames() {
+    return attachmentFileNames;
+  }
+
+  /** @return the files of {@link #getAttachmentFileNames()} followed by the added attachments */
+  public List<MailAttachment> getAttachments() {
+    return attachments;
+  }
+
+  /** Collects the fields of a {@link MailMessage}; addresses are comma separated lists. */
+  public static class Builder {
+    private String to;
+    private String from;
+    private String replyTo;
+    private String cc;
+    private String bcc;
+    private String subject;
+    private String contentType;
+    private String content;
+    private String importance;
+    private String attachmentFileNames;
+    private final List<MailAttachment> attachments = new ArrayList<>();
+    private MailTemplate contentTemplate;
+
+    public Builder to(String to) {
+      this.to = to;
+      return this;
+    }
+
+    public Builder from(String from) {
+      this.from = from;
+      return this;
+    }
+
+    public Builder replyTo(String replyTo) {
+      this.replyTo = replyTo;
+      return this;
+    }
+
+    public Builder cc(String cc) {
+      this.cc = cc;
+      return this;
+    }
+
+    public Builder bcc(String bcc) {
+      this.bcc = bcc;
+      return this;
+    }
+
+    public Builder subject(String subject) {
+      this.subject = subject;
+      return this;
+    }
+
+    public Builder contentType(String contentType) {
+      this.contentType = contentType;
+      return this;
+    }
+
+    public Builder content(String content) {
+      this.content = content;
+      return this;
+    }
+
+    public Builder importance(String importance) {
+      this.importance = importance;
+      return this;
+    }
+
+    public Builder attachmentFileNames(String attachmentFileNames) {
+      this.attachmentFileNames = attachmentFileNames;
+      return this;
+    }
+
+    public Builder attachment(MailAttachment attachment) {
+      attachments.add(attachment);
+      return this;
+    }
+
+    /**
+     * Use a compiled template for the content of the messages created by {@link
+     * #withVariables(Map)}, e.g. one from {@link MailTemplate#get}.
+     */
+    public Builder contentTemplate(MailTemplate contentTemplate) {
+      this.contentTemplate = contentTemplate;
+      return this;
+    }
+
+    /**
+     * Use the content and content type set so far as the template cached under the name and
+     * version, see {@link MailTemplate#get}.
+     */
+    public Builder contentTemplate(String name, String version) throws MessagingException {
+      if (isEmpty(content)) {
+        throw new MessagingException("The 'Content' field should not be empty.");
+      }
+      return contentTemplate(MailTemplate.get(name, version, content, contentType));
+    }
+
+    /**
+     * Copy of this builder with the variables rendered into the addresses, subject and content,
+     * which are {@link MailTemplate} sources. Only the content of {@value #CONTENT_TYPE_HTML}
+     * messages is HTML-escaped. Templates are compiled once and cached.
+     *
+     * @param variables values by name
+     * @return new builder
+     */
+    public Builder withVariables(Map<String, String> variables) {
+      Builder copy = new Builder();
+      copy.to = render(to, null, variables);
+      copy.from = render(from, null, variables);
+      copy.replyTo = render(replyTo, null, variables);
+      copy.cc = render(cc, null, variables);
+      copy.bcc = render(bcc, null, variables);
+      copy.subject = render(subject, null, variables);
+      copy.contentType = contentType;
+      copy.content =
+          contentTemplate != null
+              ? contentTemplate.render(variables)
+              : render(content, contentType, variables);
+      copy.importance = importance;
+      copy.attachmentFileNames = attachmentFileNames;
+      copy.attachments.addAll(attachments);
+      return copy;
+    }
+
+    private static String render(
+        String template, String contentType, Map<String, String> variables) {
+      if (template == null || template.indexOf("{{") < 0) {
+        return template;
+      }
+      return MailTemplate.of(template, contentType).render(variables);
+    }
+
+    /**
+     * @return the message
+     * @exception MessagingException If a required field is missing or an address cannot be parsed.
+     */
+    public MailMessage build() throws MessagingException {
+      return new MailMessage(this);
+    }
+  }
+}
@@ -16,72 +16,114 @@
 
 package com.ibm.scis;
 
-import java.io.File;
-import java.util.Arrays;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Properties;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.activation.DataHandler;
-import javax.activation.DataSource;
-import javax.activation.FileDataSource;
-import javax.mail.Address;
 import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Session;
-import javax.mail.internet.AddressException;
-import javax.mail.internet.ContentType;
-import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
-import javax.mail.internet.ParseException;
 
-/** This class provides a sample implementation for email services */
+/**
+ * This class provides a sample implementation for email services. Instances hold no per-message
+ * state and can be shared between threads; the message is passed as an immutable {@link
+ * MailMessage}.
+ */
 public class MailPlus {
 
   private static final String CLASS_NAME = MailPlus.class.getName();
   private static final Logger logger = Logger.getLogger(CLASS_NAME);
 
-  /** Constant for plain text messages contentType. */
-  private static final String CONTENT_TYPE_PLAIN_TEXT = "text/plain";
-  /** Constant for html text messages contentType. */
-  private static final String CONTENT_TYPE_HTML = "text/html";
   /** Constant for Low Importance */
   private static final String IMPORTANCE_LOW = "low";
-  /** Constant for Normal Importance */
-  private static final String IMPORTANCE_NORMAL = "normal";
   /** Constant for High Importance */
   private static final String IMPORTANCE_HIGH = "high";
   /** Constant for Importance header */
   private static final String IMPORTANCE_HEADER = "Importance";
-  /** Constants for the mail protocol */
-  private String _smtpHost = null;
-
-  private List<InternetAddress> _to = null;
-  private InternetAddress _from = null;
-  private List<InternetAddress> _replyTo = null;
-  private List<InternetAddress> _cc = null;
-  private List<InternetAddress> _bcc = null;
-  private String _subject = null;
-  private ContentType _contentType = null;
-  private String _content = null;
-  private String _importance = IMPORTANCE_NORMAL;
-  private List<String> _attachmentFileNames = null;
-  private TransportDelegator _transportDelegator;
+
+  private static final String CONTENT_TRANSFER_ENCODING_HEADER = "Content-Transfer-Encoding";
+  /** System property with the number of SMTP connections a batch is sent over. */
+  public static final String BATCH_CONNECTIONS_PROPERTY = "scis.mail.batchConnections";
+
+  static final int DEFAULT_BATCH_CONNECTIONS = 2;
+  /** Messages of a batch built ahead of each sending connection. */
+  static final int BUILD_AHEAD_PER_CONNECTION = 2;
+
+  private static final AtomicInteger BATCH_THREAD_COUNT = new AtomicInteger();
+  private static final ExecutorService BATCH_EXECUTOR =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread =
+                new Thread(runnable, "scis-mail-batch-" + BATCH_THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /** Record type of the messages in the {@link OutboxSpool}. */
+  static final String SPOOL_TYPE = "mail";
+
+  private final TransportDelegator _transportDelegator;
+  private final MailQueue _mailQueue;
+  private final OutboxSpool _spool;
+  private String _spoolSenderId;
 
   public MailPlus() {
-    _transportDelegator = new TransportDelegator();
+    this(new PooledTransportDelegator());
   }
 
   public MailPlus(TransportDelegator delegator) {
+    this(delegator, null);
+  }
+
+  /**
+   * @param delegator transport messages are sent with
+   * @param mailQueue queue of the messages sent by {@link #enqueueMessageWithCredentials}, or null
+   *     for {@link MailQueue#getDefault()}, started on first use
+   */
+  public MailPlus(TransportDelegator delegator, MailQueue mailQueue) {
+    this(delegator, mailQueue, null);
+  }
+
+  /**
+   * @param delegator transport messages are sent with
+   * @param mailQueue queue of the messages sent by {@link #enqueueMessageWithCredentials}, or null
+   *     for {@link MailQueue#getDefault()}, started on first use
+   * @param spool spool of the messages sent by {@link #spoolMessageWithCredentials}, or null for
+   *     {@link OutboxSpool#getDefault()}. Each message is sent with the transport of the MailPlus
+   *     that spooled it, or after a restart of the MailPlus that spooled last.
+   */
+  public MailPlus(TransportDelegator delegator, MailQueue mailQueue, OutboxSpool spool) {
     _transportDelegator = delegator;
+    _mailQueue = mailQueue;
+    _spool = spool;
   }
 
   /**
    * Send an email message to an SMTP server with credentials
    *
-   * @param smtpHost The host to connect to.
+   * @param smtpHost The host to connect to, optionally followed by :port.
    * @param username The user name registered for email service.
    * @param password The password for email service.
    * @param to (Required)Comma separated list of email addresses of the 'To' recipients.
@@ -115,13 +157,13 @@ public class MailPlus {
       throws MessagingException {
 
     final String METHOD_NAME = "sendMessageWithCredentials";
+    // the password is never logged, and the content only as a masked preview
     logger.entering(
         CLASS_NAME,
         METHOD_NAME,
         new Object[] {
           smtpHost,
           username,
-          password,
           to,
           from,
           replyTo,
@@ -129,270 +171,566 @@ public class MailPlus {
           bcc,
           subject,
           contentType,
-          content,
+          PayloadLogger.preview(content),
           importance,
           attachmentFileNames
         });
 
-    setSMTPHost(smtpHost);
-
-    if (to == null || to.length() == 0) {
-      throw new MessagingException("The 'To' field should not be empty.");
-    }
-    setTo(to);
-
-    if (from == null || from.length() == 0) {
-      throw new MessagingException("The 'From' field should not be empty.");
-    }
-    setFrom(from);
-
-    // optional field: ReplyTo
-    if (replyTo != null && !replyTo.equals("")) {
-      setReplyTo(replyTo);
-    }
-
-    // optional field: cc
-    if (cc != null && !cc.equals("")) {
-      setCc(cc);
-    }
+    MailMessage message =
+        MailMessage.builder()
+            .to(to)
+            .from(from)
+            .replyTo(replyTo)
+            .cc(cc)
+            .bcc(bcc)
+            .subject(subject)
+            .contentType(contentType)
+            .content(content)
+            .importance(importance)
+            .attachmentFileNames(attachmentFileNames)
+            .build();
+    send(smtpHost, username, password, message);
 
-    // optional field: bcc
-    if (bcc != null && !bcc.equals("")) {
-      setBcc(bcc);
-    }
+    logger.exiting(CLASS_NAME, METHOD_NAME);
+  }
 
-    if (subject == null || subject.length() == 0) {
-      throw new MessagingException("The 'Subject' field should not be empty.");
-    }
-    setSubject(subject);
-
-    if (!CONTENT_TYPE_PLAIN_TEXT.equals(contentType) && !CONTENT_TYPE_HTML.equals(contentType)) {
-      throw new MessagingException(
-          "The 'ContentType' field should be '"
-              + CONTENT_TYPE_PLAIN_TEXT
-              + "' or '"
-              + CONTENT_TYPE_HTML
-              + "'.");
+  /**
+   * Write an email message to the local {@link OutboxSpool} and return; the message is sent in the
+   * background at least once, also after a JVM restart. The password is kept in memory only, so
+   * after a restart spooled messages wait for the next call with the same host and user.
+   *
+   * @param smtpHost The host to connect to, optionally followed by :port.
+   * @param username The user name registered for email service.
+   * @param password The password for email service.
+   * @param to (Required)Comma separated list of email addresses of the 'To' recipients.
+   * @param from (Required)The email address of the sender.
+   * @param replyTo (Optional)Comma separated list of email addresses to which replies should be
+   *     directed.
+   * @param cc (Optional)Comma separated list of email addresses of the 'Cc' recipients.
+   * @param bcc (Optional)Comma separated list of email addresses of the 'Bcc' recipients.
+   * @param subject The subject of the email.
+   * @param contentType The MIME content type; i.e. 'text/html' or 'text/plain'.
+   * @param content The body of the email.
+   * @param importance The importance of the email; i.e. 'high', 'normal', or 'low'. Invalid values
+   *     are ignored.
+   * @param attachmentFileNames Comma separated list of file names to be attached to the email.
+   * @exception MessagingException If the message is invalid or cannot be written to the spool.
+   */
+  public void spoolMessageWithCredentials(
+      String smtpHost,
+      String username,
+      String password,
+      String to,
+      String from,
+      String replyTo,
+      String cc,
+      String bcc,
+      String subject,
+      String contentType,
+      String content,
+      String importance,
+      String attachmentFileNames)
+      throws MessagingException {
+    Map<String, String> fields = new LinkedHashMap<>();
+    fields.put("smtpHost", smtpHost);
+    fields.put("username", username);
+    fields.put("to", to);
+    fields.put("from", from);
+    fields.put("replyTo", replyTo);
+    fields.put("cc", cc);
+    fields.put("bcc", bcc);
+    fields.put("subject", subject);
+    fields.put("contentType", contentType);
+    fields.put("content", content);
+    fields.put("importance", importance);
+    fields.put("attachmentFileNames", attachmentFileNames);
+    // validate before anything is written
+    toMessage(fields);
+    OutboxSpool spool = _spool != null ? _spool : OutboxSpool.getDefault();
+    String senderId = spoolSenderId();
+    SpoolRouter.register(spool, SPOOL_TYPE, MailPlus::deliverSpooled).add(senderId, this);
+    fields.put(SpoolRouter.SENDER_FIELD, senderId);
+    if (username != null && password != null) {
+      spool.putSecret(spoolSecretKey(smtpHost, username), password);
     }
-    setContentType(contentType);
-
-    if (content == null || content.length() == 0) {
-      throw new MessagingException("The 'Content' field should not be empty.");
+    try {
+      spool.append(SPOOL_TYPE, OutboxSpool.toPayload(fields));
+    } catch (IOException e) {
+      throw new MessagingException("The message cannot be spooled: " + e.getMessage());
     }
-    setContent(content);
+  }
 
-    // optional importance
-    if (importance != null && importance.length() > 0) {
-      setImportance(importance);
+  private synchronized String spoolSenderId() {
+    if (_spoolSenderId == null) {
+      _spoolSenderId = SpoolRouter.newSenderId();
     }
+    return _spoolSenderId;
+  }
 
-    // optional attachment file names (comma separated list)
-    if (attachmentFileNames != null && attachmentFileNames.length() > 0) {
-      List<String> filenames = Arrays.asList(attachmentFileNames.split(","));
-      setattachmentFileNames(filenames);
+  private boolean deliverSpooled(OutboxSpool spool, Map<String, String> fields)
+      throws MessagingException {
+    String smtpHost = fields.get("smtpHost");
+    String username = fields.get("username");
+    String password = null;
+    if (username != null) {
+      password = spool.getSecret(spoolSecretKey(smtpHost, username));
+      if (password == null) {
+        return false;
+      }
     }
+    send(smtpHost, username, password, toMessage(fields));
+    return true;
+  }
 
-    send(username, password);
+  private static String spoolSecretKey(String smtpHost, String username) {
+    return SPOOL_TYPE + ":" + smtpHost + ":" + username;
+  }
 
-    logger.exiting(CLASS_NAME, METHOD_NAME);
+  private static MailMessage toMessage(Map<String, String> fields) throws MessagingException {
+    return MailMessage.builder()
+        .to(fields.get("to"))
+        .from(fields.get("from"))
+        .replyTo(fields.get("replyTo"))
+        .cc(fields.get("cc"))
+        .bcc(fields.get("bcc"))
+        .subject(fields.get("subject"))
+        .contentType(fields.get("contentType"))
+        .content(fields.get("content"))
+        .importance(fields.get("importance"))
+        .attachmentFileNames(fields.get("attachmentFileNames"))
+        .build();
   }
 
   /**
-   * Set the list of attachment file names.
+   * Queue an email message for sending in the background and return without waiting for the SMTP
+   * server. The message is validated before it is queued; poll {@link #getMessageStatus} with the
+   * returned tracking id for the outcome.
    *
-   * @param attachmentFileNames List of file names.
+   * @param smtpHost The host to connect to, optionally followed by :port.
+   * @param username The user name registered for email service.
+   * @param password The password for email service.
+   * @param to (Required)Comma separated list of email addresses of the 'To' recipients.
+   * @param from (Required)The email address of the sender.
+   * @param replyTo (Optional)Comma separated list of email addresses to which replies should be
+   *     directed.
+   * @param cc (Optional)Comma separated list of email addresses of the 'Cc' recipients.
+   * @param bcc (Optional)Comma separated list of email addresses of the 'Bcc' recipients.
+   * @param subject The subject of the email.
+   * @param contentType The MIME content type; i.e. 'text/html' or 'text/plain'.
+   * @param content The body of the email.
+   * @param importance The importance of the email; i.e. 'high', 'normal', or 'low'. Invalid values
+   *     are ignored.
+   * @param attachmentFileNames Comma separated list of file names to be attached to the email.
+   * @return The tracking id of the message.
+   * @exception MessagingException If the message is invalid or the queue cannot take it.
    */
-  private void setattachmentFileNames(List<String> attachmentFileNames) {
-    _attachmentFileNames = attachmentFileNames;
+  public String enqueueMessageWithCredentials(
+      String smtpHost,
+      String username,
+      String password,
+      String to,
+      String from,
+      String replyTo,
+      String cc,
+      String bcc,
+      String subject,
+      String contentType,
+      String content,
+      String importance,
+      String attachmentFileNames)
+      throws MessagingException {
+    MailMessage message =
+        MailMessage.builder()
+            .to(to)
+            .from(from)
+            .replyTo(replyTo)
+            .cc(cc)
+            .bcc(bcc)
+            .subject(subject)
+            .contentType(contentType)
+            .content(content)
+            .importance(importance)
+            .attachmentFileNames(attachmentFileNames)
+            .build();
+    return enqueue(smtpHost, username, password, message);
   }
 
   /**
-   * Set the bcc recipients list.
+   * Queue an email message for sending in the background.
    *
-   * @param addresses Comma separated list of email addresses.
-   * @exception AddressException If the addresses cannot be parsed.
+   * @param smtpHost The host to connect to, optionally followed by :port.
+   * @param username The user name registered for email service, or null to send without
+   *     authentication.
+   * @param password The password for email service, or null to send without authentication.
+   * @param message The message to send.
+   * @return The tracking id of the message.
+   * @exception MessagingException If the queue cannot take the message.
    */
-  private void setBcc(String addresses) throws AddressException {
-    // Parse the given sequence of addresses into InternetAddress objects.
-    // If strict is true, many (but not all) of the RFC822 syntax
-    // rules are enforced.
-    _bcc = Arrays.asList(InternetAddress.parse(addresses, true));
+  public String enqueue(String smtpHost, String username, String password, MailMessage message)
+      throws MessagingException {
+    return mailQueue()
+        .enqueue(
+            _transportDelegator,
+            createMimeMessage(createSession(smtpHost), message),
+            username,
+            password);
   }
 
-  /**
-   * Set the cc recipients list.
-   *
-   * @param addresses Comma separated list of email addresses.
-   * @exception AddressException If the addresses cannot be parsed.
-   */
-  private void setCc(String addresses) throws AddressException {
-    // Parse the given sequence of addresses into InternetAddress objects.
-    // If strict is true, many (but not all) of the RFC822 syntax
-    // rules are enforced.
-    _cc = Arrays.asList(InternetAddress.parse(addresses, true));
+  private MailQueue mailQueue() {
+    return _mailQueue != null ? _mailQueue : MailQueue.getDefault();
   }
 
   /**
-   * Set message body.
-   *
-   * @param newContent Text of the message.
+   * @param trackingId The tracking id returned by {@link #enqueueMessageWithCredentials}.
+   * @return {@code {"trackingId":"...","status":"queued"}}, where the status is queued, sending,
+   *     sent, failed, dropped or unknown, with an "error" field for failed and dropped messages.
    */
-  private void setContent(String newContent) {
-    _content = newContent;
+  public String getMessageStatus(String trackingId) {
+    StringWriter writer = new StringWriter(96);
+    try (JsonGenerator generator = JsonRowIterator.JSON_FACTORY.createGenerator(writer)) {
+      generator.writeStartObject();
+      generator.writeStringField("trackingId", trackingId);
+      generator.writeStringField("status", mailQueue().getStatus(trackingId).toJsonValue());
+      String error = mailQueue().getError(trackingId);
+      if (error != null) {
+        generator.writeStringField("error", error);
+      }
+      generator.writeEndObject();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return writer.toString();
   }
 
   /**
-   * Set the content type.
+   * Send many email messages to an SMTP server with credentials. Messages are built concurrently,
+   * at most {@value #BUILD_AHEAD_PER_CONNECTION} per connection ahead of sending, and sent over a
+   * few pooled SMTP connections; a failing message does not stop the others.
    *
-   * @param contentType Mime type of the message @see ContentType.
-   * @exception ParseException If the content type cannot be parsed.
+   * @param smtpHost The host to connect to, optionally followed by :port.
+   * @param username The user name registered for email service.
+   * @param password The password for email service.
+   * @param messages JSON array of messages with the fields to, from, replyTo, cc, bcc, subject,
+   *     contentType, content, importance and attachmentFileNames as in {@link
+   *     #sendMessageWithCredentials}.
+   * @return Per-message results, see {@link MailBatchResult#toJson()}.
+   * @exception MessagingException If the messages are not a JSON array.
    */
-  private void setContentType(String contentType) throws ParseException {
-    _contentType = new ContentType(contentType);
+  public String sendMessagesWithCredentials(
+      String smtpHost, String username, String password, String messages)
+      throws MessagingException {
+    List<Callable<MailMessage>> specs = new ArrayList<>();
+    try (JsonRowIterator rows =
+        JsonRowIterator.of(
+            new ByteArrayInputStream(messages.getBytes(StandardCharsets.UTF_8)), null)) {
+      rows.forEachRemaining(json -> specs.add(() -> parseMessage(json)));
+    } catch (IOException | UncheckedIOException e) {
+      throw new MessagingException("The messages should be a JSON array: " + e.getMessage());
+    }
+    return sendAll(smtpHost, username, password, specs).toJson();
   }
 
   /**
-   * Set the from.
+   * Send one email message per recipient from a template. The template content is compiled once per
+   * name and version; {@code {{name}}} is replaced by the recipient's variable, HTML-escaped in
+   * text/html content, and {@code {{{name}}}} is replaced without escaping. Addresses and subject
+   * may contain variables, too.
    *
-   * @param address Sender of the email.
-   * @exception AddressException If the address cannot be parsed.
+   * @param smtpHost The host to connect to, optionally followed by :port.
+   * @param username The user name registered for email service.
+   * @param password The password for email service.
+   * @param templateName The name the compiled template is cached under.
+   * @param templateVersion The version of the template; change it when the template changes.
+   * @param message JSON object with the fields of {@link #sendMessagesWithCredentials} messages.
+   * @param recipients JSON array of objects with the variables of each message.
+   * @return Per-message results, see {@link MailBatchResult#toJson()}.
+   * @exception MessagingException If the message or the recipients are malformed.
    */
-  private void setFrom(String address) throws AddressException {
-    _from = new InternetAddress(address);
+  public String sendTemplatedMessagesWithCredentials(
+      String smtpHost,
+      String username,
+      String password,
+      String templateName,
+      String templateVersion,
+      String message,
+      String recipients)
+      throws MessagingException {
+    MailMessage.Builder template;
+    List<Map<String, String>> variables = new ArrayList<>();
+    try (JsonRowIterator rows =
+        JsonRowIterator.of(
+            new ByteArrayInputStream(recipients.getBytes(StandardCharsets.UTF_8)), null)) {
+      template = parseBuilder(message);
+      while (rows.hasNext()) {
+        variables.add(parseVariables(rows.next()));
+      }
+    } catch (IOException | UncheckedIOException e) {
+      throw new MessagingException("The message or recipients are malformed: " + e.getMessage());
+    }
+    template.contentTemplate(templateName, templateVersion);
+    return sendBatch(smtpHost, username, password, template, variables).toJson();
   }
 
   /**
-   * Set the importance.
+   * Send many email messages to an SMTP server with credentials. Messages are built concurrently,
+   * at most {@value #BUILD_AHEAD_PER_CONNECTION} per connection ahead of sending, and sent over a
+   * few pooled SMTP connections; a failing message does not stop the others.
    *
-   * @param importance Should be high, normal, or low.
+   * @param smtpHost The host to connect to, optionally followed by :port.
+   * @param username The user name registered for email service.
+   * @param password The password for email service.
+   * @param messages Messages to send.
+   * @return Per-message results in input order.
    */
-  private void setImportance(String importance) {
-    _importance = importance;
+  public MailBatchResult sendBatch(
+      String smtpHost, String username, String password, List<MailMessage> messages) {
+    List<Callable<MailMessage>> specs = new ArrayList<>(messages.size());
+    for (MailMessage message : messages) {
+      specs.add(() -> message);
+    }
+    return sendAll(smtpHost, username, password, specs);
   }
 
   /**
-   * Set the reply to.
+   * Send one message per variable map, with the variables rendered into the template as described
+   * in {@link MailMessage.Builder#withVariables(Map)}.
    *
-   * @param addresses Comma separated list of email addresses.
-   * @exception AddressException If the addresses cannot be parsed.
+   * @param smtpHost The host to connect to, optionally followed by :port.
+   * @param username The user name registered for email service.
+   * @param password The password for email service.
+   * @param template Message template.
+   * @param recipients Variables of each message, e.g. the recipient address and name.
+   * @return Per-message results in the order of {@code recipients}.
    */
-  private void setReplyTo(String addresses) throws AddressException {
-    // Parse the given sequence of addresses into InternetAddress objects.
-    // If strict is true, many (but not all) of the RFC822 syntax
-    // rules are enforced.
-    _replyTo = Arrays.asList(InternetAddress.parse(addresses, true));
+  public MailBatchResult sendBatch(
+      String smtpHost,
+      String username,
+      String password,
+      MailMessage.Builder template,
+      List<Map<String, String>> recipients) {
+    List<Callable<MailMessage>> specs = new ArrayList<>(recipients.size());
+    for (Map<String, String> variables : recipients) {
+      specs.add(() -> template.withVariables(variables).build());
+    }
+    return sendAll(smtpHost, username, password, specs);
   }
 
-  /**
-   * Set the SMTP host.
-   *
-   * @param host The host name.
-   */
-  private void setSMTPHost(String host) {
-    _smtpHost = host;
+  private MailBatchResult sendAll(
+      String smtpHost, String username, String password, List<Callable<MailMessage>> specs) {
+    Session session = createSession(smtpHost);
+    MailBatchResult result = new MailBatchResult(specs.size());
+    int connections =
+        Math.min(
+            Integer.getInteger(BATCH_CONNECTIONS_PROPERTY, DEFAULT_BATCH_CONNECTIONS),
+            specs.size());
+    int buildAhead = Math.max(1, connections) * BUILD_AHEAD_PER_CONNECTION;
+    List<CompletableFuture<MimeMessage>> messages = new ArrayList<>(specs.size());
+    for (int i = 0; i < specs.size(); i++) {
+      messages.add(new CompletableFuture<>());
+    }
+    AtomicInteger built = new AtomicInteger();
+    AtomicInteger next = new AtomicInteger();
+    Runnable sender =
+        () -> {
+          int index;
+          while ((index = next.getAndIncrement()) < messages.size()) {
+            // start building the messages up to buildAhead past this one
+            int start;
+            while ((start = built.get()) < Math.min(index + buildAhead, messages.size())) {
+              if (built.compareAndSet(start, start + 1)) {
+                build(session, specs.get(start), messages.get(start));
+              }
+            }
+            try {
+              deliver(messages.get(index).join(), username, password);
+            } catch (CompletionException e) {
+              result.fail(index, e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            } catch (Exception e) {
+              logger.log(Level.WARNING, "Sending message " + index + " failed", e);
+              result.fail(index, e);
+            }
+            // the sent message is no longer needed
+            messages.set(index, null);
+          }
+        };
+    List<CompletableFuture<Void>> senders = new ArrayList<>();
+    for (int i = 1; i < connections; i++) {
+      senders.add(CompletableFuture.runAsync(sender, BATCH_EXECUTOR));
+    }
+    sender.run();
+    CompletableFuture.allOf(senders.toArray(new CompletableFuture<?>[0])).join();
+    return result;
   }
 
-  /**
-   * Set the subject.
-   *
-   * @param subject Subject of the message.
-   */
-  private void setSubject(String subject) {
-    _subject = subject;
+  private static void build(
+      Session session, Callable<MailMessage> spec, CompletableFuture<MimeMessage> message) {
+    BATCH_EXECUTOR.execute(
+        () -> {
+          try {
+            message.complete(createMimeMessage(session, spec.call()));
+          } catch (Exception e) {
+            message.completeExceptionally(e);
+          }
+        });
   }
 
-  /**
-   * Set the to.
-   *
-   * @param addresses Comma separated list of email addresses.
-   * @exception AddressException If the addresses cannot be parsed.
-   */
-  private void setTo(String addresses) throws AddressException {
-    // Parse the given sequence of addresses into InternetAddress objects.
-    // If strict is true, many (but not all) of the RFC822 syntax
-    // rules are enforced.
-    _to = Arrays.asList(InternetAddress.parse(addresses, true));
+  private static MailMessage parseMessage(String json) throws IOException, MessagingException {
+    return parseBuilder(json).build();
+  }
+
+  private static MailMessage.Builder parseBuilder(String json)
+      throws IOException, MessagingException {
+    MailMessage.Builder builder = MailMessage.builder();
+    try (JsonParser parser = JsonRowIterator.JSON_FACTORY.createParser(json)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new MessagingException("A message should be a JSON object.");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        String value = parser.getValueAsString();
+        switch (field) {
+          case "to":
+            builder.to(value);
+            break;
+          case "from":
+            builder.from(value);
+            break;
+          case "replyTo":
+            builder.replyTo(value);
+            break;
+          case "cc":
+            builder.cc(value);
+            break;
+          case "bcc":
+            builder.bcc(value);
+            break;
+          case "subject":
+            builder.subject(value);
+            break;
+          case "contentType":
+            builder.contentType(value);
+            break;
+          case "content":
+            builder.content(value);
+            break;
+          case "importance":
+            builder.importance(value);
+            break;
+          case "attachmentFileNames":
+            builder.attachmentFileNames(value);
+            break;
+          default:
+            parser.skipChildren();
+        }
+      }
+    }
+    return builder;
+  }
+
+  private static Map<String, String> parseVariables(String json)
+      throws IOException, MessagingException {
+    Map<String, String> variables = new HashMap<>();
+    try (JsonParser parser = JsonRowIterator.JSON_FACTORY.createParser(json)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new MessagingException("The variables of a message should be a JSON object.");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        parser.nextToken();
+        variables.put(name, parser.getValueAsString());
+        parser.skipChildren();
+      }
+    }
+    return variables;
   }
 
   /**
-   * Send this message.
+   * Send an email message to an SMTP server. This instance keeps no state between calls, so it can
+   * be shared by any number of threads.
    *
+   * @param smtpHost The host to connect to, optionally followed by :port.
+   * @param username The user name registered for email service, or null to send without
+   *     authentication.
+   * @param password The password for email service, or null to send without authentication.
+   * @param message The message to send.
    * @exception MessagingException If something went wrong.
    */
-  private void send(String username, String password) throws MessagingException {
+  public void send(String smtpHost, String username, String password, MailMessage message)
+      throws MessagingException {
     final String METHOD_NAME = "send";
     logger.entering(CLASS_NAME, METHOD_NAME);
 
-    Properties properties = new Properties();
-    properties.put("mail.smtp.host", _smtpHost);
+    deliver(createMimeMessage(createSession(smtpHost), message), username, password);
 
-    Session session = Session.getInstance(properties);
+    logger.exiting(CLASS_NAME, METHOD_NAME);
+  }
 
+  private void deliver(MimeMessage message, String username, String password)
+      throws MessagingException {
+    if (username != null && password != null) {
+      _transportDelegator.send(message, username, password);
+    } else {
+      _transportDelegator.send(message);
+    }
+  }
+
+  private static Session createSession(String smtpHost) {
+    return MailSessionCache.get(SmtpSettings.forHost(smtpHost));
+  }
+
+  /**
+   * Build the MIME message for a message spec.
+   *
+   * @param session mail session
+   * @param spec message
+   * @return message ready to be sent
+   * @exception MessagingException If the message cannot be built.
+   */
+  static MimeMessage createMimeMessage(Session session, MailMessage spec)
+      throws MessagingException {
     MimeMessage message = new MimeMessage(session);
     message.setSentDate(new Date());
-    message.setFrom(_from);
-    message.addRecipients(Message.RecipientType.TO, (Address[]) _to.toArray(new Address[0]));
-
-    // optional field: _cc
-    if (_cc != null && !_cc.isEmpty()) {
-      message.addRecipients(Message.RecipientType.CC, (Address[]) _cc.toArray(new Address[0]));
+    message.setFrom(spec.getFrom());
+    message.addRecipients(Message.RecipientType.TO, spec.getTo());
+    if (spec.getCc().length > 0) {
+      message.addRecipients(Message.RecipientType.CC, spec.getCc());
     }
-
-    // optional field: _bcc
-    if (_bcc != null && !_bcc.isEmpty()) {
-      message.addRecipients(Message.RecipientType.BCC, (Address[]) _bcc.toArray(new Address[0]));
+    if (spec.getBcc().length > 0) {
+      message.addRecipients(Message.RecipientType.BCC, spec.getBcc());
     }
-    message.setSubject(_subject);
-
-    // optional field: _replyTo
-    if (_replyTo != null && !_replyTo.isEmpty()) {
-      message.setReplyTo((Address[]) _replyTo.toArray(new Address[0]));
+    message.setSubject(spec.getSubject());
+    if (spec.getReplyTo().length > 0) {
+      message.setReplyTo(spec.getReplyTo());
     }
 
-    // add attachments
-    if (_attachmentFileNames == null || _attachmentFileNames.size() < 1) {
+    List<MailAttachment> attachments = spec.getAttachments();
+    if (attachments.isEmpty()) {
       // Single part Message
-      message.setContent(_content, _contentType.toString());
+      message.setContent(spec.getContent(), spec.getContentType());
     } else {
-      // multipart message
+      // multipart message, the body part first and all subsequent parts are attachments
       MimeMultipart multipart = new MimeMultipart();
-
-      // Create a body part and attach it first, all subsequent parts
-      // are attachments.
       MimeBodyPart bodyPart = new MimeBodyPart();
-      bodyPart.setContent(_content, _contentType.toString());
+      bodyPart.setContent(spec.getContent(), spec.getContentType());
       multipart.addBodyPart(bodyPart);
-
-      MimeBodyPart attachmentBodyPart = null;
-      // Attach each file
-      for (int i = 0; i < _attachmentFileNames.size(); i++) {
-        String filename = _attachmentFileNames.get(i);
-        // Get the attachment
-        DataSource source = new FileDataSource(filename);
-        // Set the data handler to the attachment
-        attachmentBodyPart = new MimeBodyPart();
-        attachmentBodyPart.setDataHandler(new DataHandler(source));
-        // The filename should usually be a simple name, not including
-        // directory components
-        attachmentBodyPart.setFileName((new File(filename)).getName());
+      for (MailAttachment attachment : attachments) {
+        MimeBodyPart attachmentBodyPart = new MimeBodyPart();
+        attachmentBodyPart.setDataHandler(new DataHandler(attachment.getDataSource()));
+        // The filename should usually be a simple name, not including directory components
+        attachmentBodyPart.setFileName(attachment.getName());
+        // Without an explicit encoding saveChanges() reads the whole attachment to choose one
+        attachmentBodyPart.setHeader(CONTENT_TRANSFER_ENCODING_HEADER, "base64");
         multipart.addBodyPart(attachmentBodyPart);
       }
-
       message.setContent(multipart);
     }
 
     // Only set the importance flag if it is specified as high or low.
-    if (IMPORTANCE_LOW.equalsIgnoreCase(_importance)
-        || IMPORTANCE_HIGH.equalsIgnoreCase(_importance)) {
-      message.addHeader(IMPORTANCE_HEADER, _importance);
-    }
-
-    if (username != null && password != null) {
-      _transportDelegator.send(message, username, password);
-    } else {
-      _transportDelegator.send(message);
+    if (IMPORTANCE_LOW.equalsIgnoreCase(spec.getImportance())
+        || IMPORTANCE_HIGH.equalsIgnoreCase(spec.getImportance())) {
+      message.addHeader(IMPORTANCE_HEADER, spec.getImportance());
     }
-
-    logger.exiting(CLASS_NAME, METHOD_NAME);
+    return message;
   }
 }
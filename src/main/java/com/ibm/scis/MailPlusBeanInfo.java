@@ -57,7 +57,14 @@ public class MailPlusBeanInfo extends SimpleBeanInfo {
   public MethodDescriptor[] getMethodDescriptors() {
     final String METHOD_NAME = "getMethodDescriptors";
     try {
-      MethodDescriptor descriptorList[] = {sendMessageWithCredentialsMethodDescriptor()};
+      MethodDescriptor descriptorList[] = {
+        sendMessageWithCredentialsMethodDescriptor(),
+        sendMessagesWithCredentialsMethodDescriptor(),
+        sendTemplatedMessagesWithCredentialsMethodDescriptor(),
+        enqueueMessageWithCredentialsMethodDescriptor(),
+        getMessageStatusMethodDescriptor(),
+        spoolMessageWithCredentialsMethodDescriptor()
+      };
       return descriptorList;
     } catch (Exception e) {
       logger.logp(
@@ -227,4 +234,286 @@ public class MailPlusBeanInfo extends SimpleBeanInfo {
     logger.exiting(CLASS_NAME, METHOD_NAME, methodDescriptor);
     return methodDescriptor;
   }
+
+  @SuppressWarnings("unchecked")
+  private MethodDescriptor enqueueMessageWithCredentialsMethodDescriptor()
+      throws NoSuchMethodException {
+    final String METHOD_NAME = "enqueueMessageWithCredentialsMethodDescriptor";
+    logger.entering(CLASS_NAME, METHOD_NAME);
+
+    Method method =
+        getBeanClass()
+            .getMethod(
+                "enqueueMessageWithCredentials",
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class);
+
+    ParameterDescriptor param1 = new ParameterDescriptor();
+    param1.setShortDescription("The host to connect to.");
+    param1.setDisplayName("smtpHost");
+
+    ParameterDescriptor param12 = new ParameterDescriptor();
+    param12.setShortDescription("The username to connect to.");
+    param12.setDisplayName("username");
+
+    ParameterDescriptor param13 = new ParameterDescriptor();
+    param13.setShortDescription("The password to connect to.");
+    param13.setDisplayName("password");
+
+    ParameterDescriptor param2 = new ParameterDescriptor();
+    param2.setShortDescription("Comma separated list of email addresses of the 'To' recipients.");
+    param2.setDisplayName("to");
+
+    ParameterDescriptor param3 = new ParameterDescriptor();
+    param3.setShortDescription("The email address of the sender.");
+    param3.setDisplayName("from");
+
+    ParameterDescriptor param4 = new ParameterDescriptor();
+    param4.setShortDescription(
+        "Comma separated list of email addresses to which replies should be directed.");
+    param4.setDisplayName("replyTo");
+
+    ParameterDescriptor param5 = new ParameterDescriptor();
+    param5.setShortDescription("Comma separated list of email addresses of the 'Cc' recipients.");
+    param5.setDisplayName("cc");
+
+    ParameterDescriptor param6 = new ParameterDescriptor();
+    param6.setShortDescription("Comma separated list of email addresses of the 'Bcc' recipients.");
+    param6.setDisplayName("bcc");
+
+    ParameterDescriptor param7 = new ParameterDescriptor();
+    param7.setShortDescription("The subject of the email.");
+    param7.setDisplayName("subject");
+
+    ParameterDescriptor param8 = new ParameterDescriptor();
+    param8.setShortDescription("The MIME content type; i.e. 'text/html' or 'text/plain'.");
+    param8.setDisplayName("contentType");
+
+    ParameterDescriptor param9 = new ParameterDescriptor();
+    param9.setShortDescription("The body of the email.");
+    param9.setDisplayName("body");
+
+    ParameterDescriptor param10 = new ParameterDescriptor();
+    param10.setShortDescription(
+        "The importance of the email; i.e. 'high', 'normal', or 'low'. Invalid values are ignored.");
+    param10.setDisplayName("importance");
+
+    ParameterDescriptor param11 = new ParameterDescriptor();
+    param11.setShortDescription("Comma separated list of file names to be attached to the email.");
+    param11.setDisplayName("attachmentFileNames");
+
+    ParameterDescriptor params[] = {
+      param1, param12, param13, param2, param3, param4, param5, param6, param7, param8, param9,
+      param10, param11
+    };
+    MethodDescriptor methodDescriptor = new MethodDescriptor(method, params);
+    logger.exiting(CLASS_NAME, METHOD_NAME, methodDescriptor);
+    return methodDescriptor;
+  }
+
+  @SuppressWarnings("unchecked")
+  private MethodDescriptor spoolMessageWithCredentialsMethodDescriptor()
+      throws NoSuchMethodException {
+    final String METHOD_NAME = "spoolMessageWithCredentialsMethodDescriptor";
+    logger.entering(CLASS_NAME, METHOD_NAME);
+
+    Method method =
+        getBeanClass()
+            .getMethod(
+                "spoolMessageWithCredentials",
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class);
+
+    ParameterDescriptor param1 = new ParameterDescriptor();
+    param1.setShortDescription("The host to connect to.");
+    param1.setDisplayName("smtpHost");
+
+    ParameterDescriptor param12 = new ParameterDescriptor();
+    param12.setShortDescription("The username to connect to.");
+    param12.setDisplayName("username");
+
+    ParameterDescriptor param13 = new ParameterDescriptor();
+    param13.setShortDescription("The password to connect to.");
+    param13.setDisplayName("password");
+
+    ParameterDescriptor param2 = new ParameterDescriptor();
+    param2.setShortDescription("Comma separated list of email addresses of the 'To' recipients.");
+    param2.setDisplayName("to");
+
+    ParameterDescriptor param3 = new ParameterDescriptor();
+    param3.setShortDescription("The email address of the sender.");
+    param3.setDisplayName("from");
+
+    ParameterDescriptor param4 = new ParameterDescriptor();
+    param4.setShortDescription(
+        "Comma separated list of email addresses to which replies should be directed.");
+    param4.setDisplayName("replyTo");
+
+    ParameterDescriptor param5 = new ParameterDescriptor();
+    param5.setShortDescription("Comma separated list of email addresses of the 'Cc' recipients.");
+    param5.setDisplayName("cc");
+
+    ParameterDescriptor param6 = new ParameterDescriptor();
+    param6.setShortDescription("Comma separated list of email addresses of the 'Bcc' recipients.");
+    param6.setDisplayName("bcc");
+
+    ParameterDescriptor param7 = new ParameterDescriptor();
+    param7.setShortDescription("The subject of the email.");
+    param7.setDisplayName("subject");
+
+    ParameterDescriptor param8 = new ParameterDescriptor();
+    param8.setShortDescription("The MIME content type; i.e. 'text/html' or 'text/plain'.");
+    param8.setDisplayName("contentType");
+
+    ParameterDescriptor param9 = new ParameterDescriptor();
+    param9.setShortDescription("The body of the email.");
+    param9.setDisplayName("body");
+
+    ParameterDescriptor param10 = new ParameterDescriptor();
+    param10.setShortDescription(
+        "The importance of the email; i.e. 'high', 'normal', or 'low'. Invalid values are ignored.");
+    param10.setDisplayName("importance");
+
+    ParameterDescriptor param11 = new ParameterDescriptor();
+    param11.setShortDescription("Comma separated list of file names to be attached to the email.");
+    param11.setDisplayName("attachmentFileNames");
+
+    ParameterDescriptor params[] = {
+      param1, param12, param13, param2, param3, param4, param5, param6, param7, param8, param9,
+      param10, param11
+    };
+    MethodDescriptor methodDescriptor = new MethodDescriptor(method, params);
+    logger.exiting(CLASS_NAME, METHOD_NAME, methodDescriptor);
+    return methodDescriptor;
+  }
+
+  @SuppressWarnings("unchecked")
+  private MethodDescriptor getMessageStatusMethodDescriptor() throws NoSuchMethodException {
+    final String METHOD_NAME = "getMessageStatusMethodDescriptor";
+    logger.entering(CLASS_NAME, METHOD_NAME);
+
+    Method method = getBeanClass().getMethod("getMessageStatus", String.class);
+
+    ParameterDescriptor param1 = new ParameterDescriptor();
+    param1.setShortDescription("The tracking id returned by enqueueMessageWithCredentials.");
+    param1.setDisplayName("trackingId");
+
+    ParameterDescriptor params[] = {param1};
+    MethodDescriptor methodDescriptor = new MethodDescriptor(method, params);
+    logger.exiting(CLASS_NAME, METHOD_NAME, methodDescriptor);
+    return methodDescriptor;
+  }
+
+  @SuppressWarnings("unchecked")
+  private MethodDescriptor sendMessagesWithCredentialsMethodDescriptor()
+      throws NoSuchMethodException {
+    final String METHOD_NAME = "sendMessagesWithCredentialsMethodDescriptor";
+    logger.entering(CLASS_NAME, METHOD_NAME);
+
+    Method method =
+        getBeanClass()
+            .getMethod(
+                "sendMessagesWithCredentials",
+                String.class,
+                String.class,
+                String.class,
+                String.class);
+
+    ParameterDescriptor param1 = new ParameterDescriptor();
+    param1.setShortDescription("The host to connect to.");
+    param1.setDisplayName("smtpHost");
+
+    ParameterDescriptor param2 = new ParameterDescriptor();
+    param2.setShortDescription("The username to connect to.");
+    param2.setDisplayName("username");
+
+    ParameterDescriptor param3 = new ParameterDescriptor();
+    param3.setShortDescription("The password to connect to.");
+    param3.setDisplayName("password");
+
+    ParameterDescriptor param4 = new ParameterDescriptor();
+    param4.setShortDescription(
+        "JSON array of messages with the fields of sendMessageWithCredentials.");
+    param4.setDisplayName("messages");
+
+    ParameterDescriptor params[] = {param1, param2, param3, param4};
+    MethodDescriptor methodDescriptor = new MethodDescriptor(method, params);
+    logger.exiting(CLASS_NAME, METHOD_NAME, methodDescriptor);
+    return methodDescriptor;
+  }
+
+  @SuppressWarnings("unchecked")
+  private MethodDescriptor sendTemplatedMessagesWithCredentialsMethodDescriptor()
+      throws NoSuchMethodException {
+    final String METHOD_NAME = "sendTemplatedMessagesWithCredentialsMethodDescriptor";
+    logger.entering(CLASS_NAME, METHOD_NAME);
+
+    Method method =
+        getBeanClass()
+            .getMethod(
+                "sendTemplatedMessagesWithCredentials",
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class,
+                String.class);
+
+    ParameterDescriptor param1 = new ParameterDescriptor();
+    param1.setShortDescription("The host to connect to.");
+    param1.setDisplayName("smtpHost");
+
+    ParameterDescriptor param2 = new ParameterDescriptor();
+    param2.setShortDescription("The username to connect to.");
+    param2.setDisplayName("username");
+
+    ParameterDescriptor param3 = new ParameterDescriptor();
+    param3.setShortDescription("The password to connect to.");
+    param3.setDisplayName("password");
+
+    ParameterDescriptor param4 = new ParameterDescriptor();
+    param4.setShortDescription("The name the compiled template is cached under.");
+    param4.setDisplayName("templateName");
+
+    ParameterDescriptor param5 = new ParameterDescriptor();
+    param5.setShortDescription("The version of the template, changed when the template changes.");
+    param5.setDisplayName("templateVersion");
+
+    ParameterDescriptor param6 = new ParameterDescriptor();
+    param6.setShortDescription(
+        "JSON object with the fields of sendMessageWithCredentials, containing {{variables}}.");
+    param6.setDisplayName("message");
+
+    ParameterDescriptor param7 = new ParameterDescriptor();
+    param7.setShortDescription("JSON array of objects with the variables of each message.");
+    param7.setDisplayName("recipients");
+
+    ParameterDescriptor params[] = {param1, param2, param3, param4, param5, param6, param7};
+    MethodDescriptor methodDescriptor = new MethodDescriptor(method, params);
+    logger.exiting(CLASS_NAME, METHOD_NAME, methodDescriptor);
+    return methodDescriptor;
+  }
 }
@@ -0,0 +1,315 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.io.Closeable;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+
+/**
+ * Bounded in-memory queue of outgoing email messages sent by a pool of worker threads, so the
+ * caller does not wait for the SMTP relay. Every enqueued message gets a tracking id whose {@link
+ * Status} can be polled until {@value #MAX_TRACKED} later messages have finished.
+ *
+ * <p>When the queue is full, {@link OverflowPolicy#BLOCK} waits up to {@value
+ * #BLOCK_TIMEOUT_PROPERTY} for space, {@link OverflowPolicy#DROP_OLDEST} discards the oldest queued
+ * message and {@link OverflowPolicy#REJECT} fails the enqueue. {@link #close()} stops accepting
+ * messages and waits up to {@value #DRAIN_TIMEOUT_PROPERTY} for the queued ones to be sent.
+ */
+public class MailQueue implements Closeable {
+  private static final Logger logger = Logger.getLogger(MailQueue.class.getName());
+
+  public static final String CAPACITY_PROPERTY = "scis.mail.queue.capacity";
+  public static final String WORKERS_PROPERTY = "scis.mail.queue.workers";
+  public static final String POLICY_PROPERTY = "scis.mail.queue.policy";
+  public static final String BLOCK_TIMEOUT_PROPERTY = "scis.mail.queue.blockTimeoutMs";
+  public static final String DRAIN_TIMEOUT_PROPERTY = "scis.mail.queue.drainTimeoutMs";
+
+  static final int DEFAULT_CAPACITY = 1000;
+  static final int DEFAULT_WORKERS = 2;
+  static final long DEFAULT_BLOCK_TIMEOUT = 30 * 1000L;
+  static final long DEFAULT_DRAIN_TIMEOUT = 30 * 1000L;
+  static final int MAX_TRACKED = 10000;
+
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  private static volatile MailQueue defaultQueue;
+
+  /** What {@link #enqueue} does when the queue is full. */
+  public enum OverflowPolicy {
+    BLOCK,
+    DROP_OLDEST,
+    REJECT
+  }
+
+  /** Delivery status of an enqueued message. */
+  public enum Status {
+    QUEUED,
+    SENDING,
+    SENT,
+    FAILED,
+    DROPPED,
+    /** The tracking id is not known, or its status is no longer kept. */
+    UNKNOWN;
+
+    /** @return the lower case name used in JSON output */
+    public String toJsonValue() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+  }
+
+  private final BlockingQueue<Job> queue;
+  private final ConcurrentMap<String, Job> tracked = new ConcurrentHashMap<>();
+  private final Queue<String> finished = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger finishedCount = new AtomicInteger();
+  private final OverflowPolicy policy;
+  private final long blockTimeout;
+  private final long drainTimeout;
+  private final CountDownLatch stopped;
+  private volatile boolean closed;
+
+  /** Queue configured from {@code scis.mail.queue.*} system properties. */
+  public MailQueue() {
+    this(
+        Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY),
+        Integer.getInteger(WORKERS_PROPERTY, DEFAULT_WORKERS),
+        policyValue(System.getProperty(POLICY_PROPERTY)),
+        Long.getLong(BLOCK_TIMEOUT_PROPERTY, DEFAULT_BLOCK_TIMEOUT),
+        Long.getLong(DRAIN_TIMEOUT_PROPERTY, DEFAULT_DRAIN_TIMEOUT));
+  }
+
+  public MailQueue(
+      int capacity, int workers, OverflowPolicy policy, long blockTimeout, long drainTimeout) {
+    if (capacity < 1 || workers < 1) {
+      throw new IllegalArgumentException("capacity and workers must be positive");
+    }
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.policy = policy;
+    this.blockTimeout = blockTimeout;
+    this.drainTimeout = drainTimeout;
+    this.stopped = new CountDownLatch(workers);
+    for (int i = 0; i < workers; i++) {
+      Thread thread = new Thread(this::work, "scis-mail-queue-" + THREAD_COUNT.incrementAndGet());
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /** @return the policy named by {@code value}, or {@link OverflowPolicy#BLOCK} if it is invalid */
+  static OverflowPolicy policyValue(String value) {
+    if (value == null) {
+      return OverflowPolicy.BLOCK;
+    }
+    try {
+      return OverflowPolicy.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      logger.log(Level.WARNING, "Ignoring invalid value for " + POLICY_PROPERTY + ": " + value);
+      return OverflowPolicy.BLOCK;
+    }
+  }
+
+  /** @return the JVM-wide queue used by {@link MailPlus}, drained when the JVM shuts down */
+  public static MailQueue getDefault() {
+    MailQueue queue = defaultQueue;
+    if (queue == null) {
+      synchronized (MailQueue.class) {
+        queue = defaultQueue;
+        if (queue == null) {
+          queue = new MailQueue();
+          Runtime.getRuntime()
+              .addShutdownHook(new Thread(queue::close, "scis-mail-queue-shutdown"));
+          defaultQueue = queue;
+        }
+      }
+    }
+    return queue;
+  }
+
+  /**
+   * Queue a message for sending.
+   *
+   * @param delegator transport the message is sent with
+   * @param message message
+   * @param username user name for the SMTP host, or null to send without authentication
+   * @param password password for the SMTP host, or null to send without authentication
+   * @return tracking id for {@link #getStatus(String)}
+   * @throws MessagingException if the queue is closed, or full and the policy does not make room
+   */
+  public String enqueue(
+      TransportDelegator delegator, Message message, String username, String password)
+      throws MessagingException {
+    if (closed) {
+      throw new MessagingException("The mail queue is closed.");
+    }
+    Job job = new Job(UUID.randomUUID().toString(), delegator, message, username, password);
+    tracked.put(job.id, job);
+    boolean accepted = false;
+    try {
+      accepted = offer(job);
+    } finally {
+      if (!accepted) {
+        tracked.remove(job.id);
+      }
+    }
+    if (!accepted) {
+      throw new MessagingException("The mail queue is full.");
+    }
+    // the workers may have seen the queue empty after close() and exited before the offer
+    if (closed && queue.remove(job)) {
+      tracked.remove(job.id);
+      throw new MessagingException("The mail queue is closed.");
+    }
+    return job.id;
+  }
+
+  private boolean offer(Job job) throws MessagingException {
+    switch (policy) {
+      case BLOCK:
+        try {
+          return queue.offer(job, blockTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new MessagingException("Interrupted while waiting for the mail queue.");
+        }
+      case DROP_OLDEST:
+        while (!queue.offer(job)) {
+          Job oldest = queue.poll();
+          if (oldest != null) {
+            finish(oldest, Status.DROPPED, "Dropped because the mail queue was full.");
+          }
+        }
+        return true;
+      default:
+        return queue.offer(job);
+    }
+  }
+
+  /**
+   * @param id tracking id returned by {@link #enqueue}
+   * @return the delivery status
+   */
+  public Status getStatus(String id) {
+    Job job = id != null ? tracked.get(id) : null;
+    return job != null ? job.status : Status.UNKNOWN;
+  }
+
+  /**
+   * @param id tracking id returned by {@link #enqueue}
+   * @return why the message was not sent, or null
+   */
+  public String getError(String id) {
+    Job job = id != null ? tracked.get(id) : null;
+    return job != null ? job.error : null;
+  }
+
+  /** @return the number of messages waiting to be sent */
+  public int size() {
+    return queue.size();
+  }
+
+  private void work() {
+    try {
+      while (!closed || !queue.isEmpty()) {
+        Job job = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (job != null) {
+          send(job);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      stopped.countDown();
+    }
+  }
+
+  private void send(Job job) {
+    job.status = Status.SENDING;
+    try {
+      if (job.username != null && job.password != null) {
+        job.delegator.send(job.message, job.username, job.password);
+      } else {
+        job.delegator.send(job.message);
+      }
+      finish(job, Status.SENT, null);
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Sending queued message " + job.id + " failed", e);
+      finish(job, Status.FAILED, e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+    }
+  }
+
+  private void finish(Job job, Status status, String error) {
+    job.error = error;
+    job.status = status;
+    finished.add(job.id);
+    if (finishedCount.incrementAndGet() > MAX_TRACKED) {
+      String oldest = finished.poll();
+      if (oldest != null) {
+        finishedCount.decrementAndGet();
+        tracked.remove(oldest);
+      }
+    }
+  }
+
+  /** Stop accepting messages and wait for the queued ones to be sent. */
+  @Override
+  public void close() {
+    closed = true;
+    try {
+      if (!stopped.await(drainTimeout, TimeUnit.MILLISECONDS)) {
+        logger.warning(queue.size() + " queued messages were not sent before shutdown");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static final class Job {
+    final String id;
+    final TransportDelegator delegator;
+    final Message message;
+    final String username;
+    final String password;
+    volatile Status status = Status.QUEUED;
+    volatile String error;
+
+    Job(
+        String id,
+        TransportDelegator delegator,
+        Message message,
+        String username,
+        String password) {
+      this.id = id;
+      this.delegator = delegator;
+      this.message = message;
+      this.username = username;
+      this.password = password;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.mail.Session;
+
+/**
+ * Mail sessions shared per {@link SmtpSettings}, so provider lookup and property parsing happen
+ * once per configuration instead of once per message. The least recently used session is dropped
+ * when more than {@link #MAX_CACHED} configurations are in use.
+ */
+final class MailSessionCache {
+  static final int MAX_CACHED = 64;
+
+  // never serialized
+  @SuppressWarnings("serial")
+  private static final Map<SmtpSettings, Session> SESSIONS =
+      new LinkedHashMap<SmtpSettings, Session>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SmtpSettings, Session> eldest) {
+          return size() > MAX_CACHED;
+        }
+      };
+
+  private MailSessionCache() {}
+
+  /**
+   * @param settings SMTP settings
+   * @return the shared session for the settings
+   */
+  static Session get(SmtpSettings settings) {
+    synchronized (SESSIONS) {
+      Session session = SESSIONS.get(settings);
+      if (session == null) {
+        session = Session.getInstance(settings.toProperties());
+        SESSIONS.put(settings, session);
+      }
+      return session;
+    }
+  }
+
+  static int size() {
+    synchronized (SESSIONS) {
+      return SESSIONS.size();
+    }
+  }
+}
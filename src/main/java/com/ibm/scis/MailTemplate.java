@@ -0,0 +1,217 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An email template parsed once into literal text and variable references, rendered with a variable
+ * map into a single presized buffer.
+ *
+ * <p>{@code {{name}}} is replaced by the variable {@code name}, HTML-escaped when the template is
+ * for {@value MailMessage#CONTENT_TYPE_HTML} content. {@code {{{name}}}} is replaced without
+ * escaping. Unknown variables are replaced by an empty string.
+ */
+public final class MailTemplate {
+  static final int MAX_CACHED = 256;
+
+  private static final LruCache<Key, MailTemplate> CACHE = new LruCache<>(MAX_CACHED);
+
+  private final String[] literals;
+  private final String[] names;
+  private final boolean[] escaped;
+  private volatile int renderedLength;
+
+  private MailTemplate(List<String> literals, List<String> names, List<Boolean> escaped) {
+    this.literals = literals.toArray(new String[0]);
+    this.names = names.toArray(new String[0]);
+    this.escaped = new boolean[escaped.size()];
+    for (int i = 0; i < this.escaped.length; i++) {
+      this.escaped[i] = escaped.get(i);
+    }
+    int length = 0;
+    for (String literal : literals) {
+      length += literal.length();
+    }
+    this.renderedLength = length + 16 * this.names.length;
+  }
+
+  /**
+   * Parse a template.
+   *
+   * @param source template text
+   * @param contentType {@value MailMessage#CONTENT_TYPE_HTML} to HTML-escape {@code {{name}}}, any
+   *     other value or null for no escaping
+   * @return compiled template
+   */
+  public static MailTemplate compile(String source, String contentType) {
+    boolean html = MailMessage.CONTENT_TYPE_HTML.equals(contentType);
+    List<String> literals = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    List<Boolean> escaped = new ArrayList<>();
+    int position = 0;
+    int start;
+    while ((start = source.indexOf("{{", position)) >= 0) {
+      boolean raw = source.startsWith("{{{", start);
+      String close = raw ? "}}}" : "}}";
+      int nameStart = start + (raw ? 3 : 2);
+      int end = source.indexOf(close, nameStart);
+      if (end < 0) {
+        break;
+      }
+      literals.add(source.substring(position, start));
+      names.add(source.substring(nameStart, end).trim());
+      escaped.add(html && !raw);
+      position = end + close.length();
+    }
+    literals.add(source.substring(position));
+    return new MailTemplate(literals, names, escaped);
+  }
+
+  /**
+   * Get a compiled template from the cache, compiling {@code source} the first time a name and
+   * version are used. Change the version whenever the source of a template changes.
+   *
+   * @param name template name
+   * @param version template version
+   * @param source template text
+   * @param contentType content type, see {@link #compile(String, String)}
+   * @return compiled template
+   */
+  public static MailTemplate get(String name, String version, String source, String contentType) {
+    return cached(new Key(name, version, contentType), source);
+  }
+
+  /** Compiled template cached by its source, for templates without a name. */
+  static MailTemplate of(String source, String contentType) {
+    return cached(new Key(null, source, contentType), source);
+  }
+
+  private static MailTemplate cached(Key key, String source) {
+    return CACHE.computeIfAbsent(key, k -> compile(source, key.contentType));
+  }
+
+  /** @return names of the variables in order of first use */
+  public Set<String> getVariableNames() {
+    Set<String> variables = new LinkedHashSet<>();
+    Collections.addAll(variables, names);
+    return variables;
+  }
+
+  /**
+   * @param variables values by name
+   * @return the rendered text
+   */
+  public String render(Map<String, String> variables) {
+    if (names.length == 0) {
+      return literals[0];
+    }
+    StringBuilder out = new StringBuilder(renderedLength);
+    render(variables, out);
+    if (out.length() > renderedLength) {
+      // size the next buffer for the longest rendering so far
+      renderedLength = out.length();
+    }
+    return out.toString();
+  }
+
+  /**
+   * @param variables values by name
+   * @param out buffer to append the rendered text to
+   */
+  public void render(Map<String, String> variables, StringBuilder out) {
+    for (int i = 0; i < names.length; i++) {
+      out.append(literals[i]);
+      String value = variables.get(names[i]);
+      if (value == null) {
+        continue;
+      }
+      if (escaped[i]) {
+        escapeHtml(value, out);
+      } else {
+        out.append(value);
+      }
+    }
+    out.append(literals[names.length]);
+  }
+
+  static void escapeHtml(String value, StringBuilder out) {
+    int copied = 0;
+    for (int i = 0; i < value.length(); i++) {
+      String entity;
+      switch (value.charAt(i)) {
+        case '&':
+          entity = "&amp;";
+          break;
+        case '<':
+          entity = "&lt;";
+          break;
+        case '>':
+          entity = "&gt;";
+          break;
+        case '"':
+          entity = "&quot;";
+          break;
+        case '\'':
+          entity = "&#39;";
+          break;
+        default:
+          continue;
+      }
+      out.append(value, copied, i).append(entity);
+      copied = i + 1;
+    }
+    out.append(value, copied, value.length());
+  }
+
+  private static final class Key {
+    private final String name;
+    private final String version;
+    private final String contentType;
+
+    Key(String name, String version, String contentType) {
+      this.name = name;
+      this.version = version;
+      this.contentType = contentType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return Objects.equals(name, other.name)
+          && Objects.equals(version, other.version)
+          && Objects.equals(contentType, other.contentType);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(name, version, contentType);
+    }
+  }
+}
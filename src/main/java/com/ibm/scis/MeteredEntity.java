@@ -0,0 +1,64 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+/**
+ * Response entity that adds the bytes read from its content to the received bytes of an operation,
+ * for bodies the caller streams after the call was recorded.
+ */
+final class MeteredEntity extends HttpEntityWrapper {
+  private final OperationMetrics metrics;
+
+  MeteredEntity(HttpEntity entity, OperationMetrics metrics) {
+    super(entity);
+    this.metrics = metrics;
+  }
+
+  @Override
+  public InputStream getContent() throws IOException {
+    return new FilterInputStream(super.getContent()) {
+      @Override
+      public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+          metrics.addReceived(1);
+        }
+        return b;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        metrics.addReceived(read);
+        return read;
+      }
+
+      @Override
+      public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        metrics.addReceived(skipped);
+        return skipped;
+      }
+    };
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the metrics of all SCIS clients at a fixed interval, e.g. to push them to a monitoring
+ * system. Register one with {@link ClientMetrics#addExporter(MetricsExporter, long)}.
+ */
+public interface MetricsExporter {
+  /**
+   * @param snapshots cumulative metrics of every operation and host since the JVM started
+   * @throws IOException if the metrics cannot be exported; the next export is still attempted
+   */
+  void export(List<OperationMetrics.Snapshot> snapshots) throws IOException;
+}
@@ -0,0 +1,248 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, status code, error and byte counters of one operation of a client on one host. All
+ * counters are cumulative and updated without locks or allocation.
+ */
+public final class OperationMetrics implements OperationMetricsMXBean {
+  static final int MAX_STATUS = 600;
+
+  private final String client;
+  private final String operation;
+  private final String host;
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private final AtomicLongArray statusCounts = new AtomicLongArray(MAX_STATUS);
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder bytesIn = new LongAdder();
+  private final LongAdder bytesOut = new LongAdder();
+
+  OperationMetrics(String client, String operation, String host) {
+    this.client = client;
+    this.operation = operation;
+    this.host = host;
+  }
+
+  /**
+   * Record a call.
+   *
+   * @param startNanos {@link System#nanoTime()} when the call started
+   * @param status status code of the response, 0 if the call has no status, or -1 if it failed
+   * @param sent number of request bytes sent, or a negative value if unknown
+   * @param received number of response bytes received, or a negative value if unknown
+   */
+  public void record(long startNanos, int status, long sent, long received) {
+    latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    if (status < 0) {
+      errors.increment();
+    } else if (status > 0 && status < MAX_STATUS) {
+      statusCounts.incrementAndGet(status);
+    }
+    if (sent > 0) {
+      bytesOut.add(sent);
+    }
+    if (received > 0) {
+      bytesIn.add(received);
+    }
+  }
+
+  /**
+   * Count response bytes read after the call was recorded, e.g. of a streamed body.
+   *
+   * @param received number of bytes, ignored unless positive
+   */
+  void addReceived(long received) {
+    if (received > 0) {
+      bytesIn.add(received);
+    }
+  }
+
+  /** @return latencies in microseconds */
+  public LatencyHistogram getLatency() {
+    return latency;
+  }
+
+  @Override
+  public String getClient() {
+    return client;
+  }
+
+  @Override
+  public String getOperation() {
+    return operation;
+  }
+
+  @Override
+  public String getHost() {
+    return host;
+  }
+
+  @Override
+  public long getCount() {
+    return latency.getCount();
+  }
+
+  @Override
+  public long getErrorCount() {
+    return errors.sum();
+  }
+
+  @Override
+  public long getBytesIn() {
+    return bytesIn.sum();
+  }
+
+  @Override
+  public long getBytesOut() {
+    return bytesOut.sum();
+  }
+
+  @Override
+  public double getMeanMillis() {
+    return latency.getMean() / 1000;
+  }
+
+  @Override
+  public double getP50Millis() {
+    return latency.getValueAtQuantile(0.5) / 1000.0;
+  }
+
+  @Override
+  public double getP90Millis() {
+    return latency.getValueAtQuantile(0.9) / 1000.0;
+  }
+
+  @Override
+  public double getP99Millis() {
+    return latency.getValueAtQuantile(0.99) / 1000.0;
+  }
+
+  @Override
+  public double getMaxMillis() {
+    return latency.getMax() / 1000.0;
+  }
+
+  @Override
+  public Map<Integer, Long> getStatusCounts() {
+    Map<Integer, Long> counts = new LinkedHashMap<>();
+    for (int status = 0; status < MAX_STATUS; status++) {
+      long count = statusCounts.get(status);
+      if (count > 0) {
+        counts.put(status, count);
+      }
+    }
+    return counts;
+  }
+
+  /** @return a copy of the current values */
+  public Snapshot snapshot() {
+    return new Snapshot(this);
+  }
+
+  /** Values of an {@link OperationMetrics} at one point in time. */
+  public static final class Snapshot {
+    private final String client;
+    private final String operation;
+    private final String host;
+    private final long count;
+    private final long errorCount;
+    private final long bytesIn;
+    private final long bytesOut;
+    private final double meanMillis;
+    private final double p50Millis;
+    private final double p90Millis;
+    private final double p99Millis;
+    private final double maxMillis;
+    private final Map<Integer, Long> statusCounts;
+
+    private Snapshot(OperationMetrics metrics) {
+      client = metrics.client;
+      operation = metrics.operation;
+      host = metrics.host;
+      count = metrics.getCount();
+      errorCount = metrics.getErrorCount();
+      bytesIn = metrics.getBytesIn();
+      bytesOut = metrics.getBytesOut();
+      meanMillis = metrics.getMeanMillis();
+      p50Millis = metrics.getP50Millis();
+      p90Millis = metrics.getP90Millis();
+      p99Millis = metrics.getP99Millis();
+      maxMillis = metrics.getMaxMillis();
+      statusCounts = Collections.unmodifiableMap(metrics.getStatusCounts());
+    }
+
+    public String getClient() {
+      return client;
+    }
+
+    public String getOperation() {
+      return operation;
+    }
+
+    public String getHost() {
+      return host;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getErrorCount() {
+      return errorCount;
+    }
+
+    public long getBytesIn() {
+      return bytesIn;
+    }
+
+    public long getBytesOut() {
+      return bytesOut;
+    }
+
+    public double getMeanMillis() {
+      return meanMillis;
+    }
+
+    public double getP50Millis() {
+      return p50Millis;
+    }
+
+    public double getP90Millis() {
+      return p90Millis;
+    }
+
+    public double getP99Millis() {
+      return p99Millis;
+    }
+
+    public double getMaxMillis() {
+      return maxMillis;
+    }
+
+    public Map<Integer, Long> getStatusCounts() {
+      return statusCounts;
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.util.Map;
+
+/** JMX view of the {@link OperationMetrics} of one operation on one host. */
+public interface OperationMetricsMXBean {
+  String getClient();
+
+  String getOperation();
+
+  String getHost();
+
+  /** @return number of calls */
+  long getCount();
+
+  /** @return number of calls that failed without a response */
+  long getErrorCount();
+
+  /** @return number of response bytes received */
+  long getBytesIn();
+
+  /** @return number of request bytes sent */
+  long getBytesOut();
+
+  double getMeanMillis();
+
+  double getP50Millis();
+
+  double getP90Millis();
+
+  double getP99Millis();
+
+  double getMaxMillis();
+
+  /** @return number of responses by status code */
+  Map<Integer, Long> getStatusCounts();
+}
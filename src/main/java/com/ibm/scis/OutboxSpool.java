@@ -0,0 +1,649 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only log of outbound operations that are delivered in the background with
+ * at-least-once semantics, so callers can return before an SMTP or InfoHub call completes and
+ * pending operations survive a JVM restart.
+ *
+ * <p>The log is a sequence of memory-mapped segment files of {@value #SEGMENT_BYTES_PROPERTY} bytes
+ * in {@value #DIRECTORY_PROPERTY}. Each record has a length, a CRC32 of its body and a state byte
+ * that is flipped in place once a {@link Handler} has delivered it; segments whose records are all
+ * delivered are deleted. A record that fails is retried with exponential backoff. After {@value
+ * #MAX_ATTEMPTS_PROPERTY} attempts it is moved to the dead letter file {@value #DEAD_LETTER_FILE}
+ * in the same directory, one JSON object per line, where it can be inspected and sent again with
+ * {@link #replayDeadLetters()}. On restart, records after the first incomplete or corrupt one in a
+ * segment are ignored.
+ *
+ * <p>Secrets are never written to disk. Callers keep them in memory with {@link #putSecret(String,
+ * String)}; after a restart, records wait until the secret they need is supplied again. A record
+ * that still has no handler, or whose handler still lacks a secret, after {@value
+ * #MAX_WAIT_PROPERTY} milliseconds is moved to the dead letter file as well.
+ */
+public class OutboxSpool implements Closeable {
+  private static final Logger logger = Logger.getLogger(OutboxSpool.class.getName());
+
+  public static final String DIRECTORY_PROPERTY = "scis.spool.dir";
+  public static final String SEGMENT_BYTES_PROPERTY = "scis.spool.segmentBytes";
+  public static final String DISPATCH_INTERVAL_PROPERTY = "scis.spool.dispatchIntervalMs";
+  public static final String MAX_ATTEMPTS_PROPERTY = "scis.spool.maxAttempts";
+  public static final String MAX_WAIT_PROPERTY = "scis.spool.maxWaitMs";
+  public static final String FORCE_PROPERTY = "scis.spool.force";
+
+  static final int DEFAULT_SEGMENT_BYTES = 8 * 1024 * 1024;
+  static final long DEFAULT_DISPATCH_INTERVAL = 1000L;
+  static final int DEFAULT_MAX_ATTEMPTS = 10;
+  static final long DEFAULT_MAX_WAIT = 24 * 60 * 60 * 1000L;
+  static final long MAX_BACKOFF = 5 * 60 * 1000L;
+  static final String DEAD_LETTER_FILE = "dead-letter.jsonl";
+
+  private static final int HEADER_BYTES = 9;
+  private static final byte PENDING = 0;
+  private static final byte DELIVERED = 1;
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".spool";
+
+  private static volatile OutboxSpool defaultSpool;
+
+  /** Delivers the records of one type. */
+  public interface Handler {
+    /**
+     * @param payload the appended payload
+     * @return false to leave the record pending without counting an attempt, e.g. while a secret is
+     *     missing; it is moved to the dead letter file once it has waited {@value
+     *     #MAX_WAIT_PROPERTY} milliseconds
+     * @throws Exception if delivery failed and should be retried
+     */
+    boolean deliver(String payload) throws Exception;
+  }
+
+  private final File directory;
+  private final int segmentBytes;
+  private final long dispatchInterval;
+  private final int maxAttempts;
+  private final long maxWait;
+  private final boolean force;
+  private final List<Segment> segments = new CopyOnWriteArrayList<>();
+  private final ConcurrentMap<String, Handler> handlers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, String> secrets = new ConcurrentHashMap<>();
+  private final Map<Long, Retry> retries = new HashMap<>();
+  private final Object appendLock = new Object();
+  private final Object signal = new Object();
+  private volatile Thread dispatcher;
+  private volatile boolean closed;
+
+  /** Spool configured from {@code scis.spool.*} system properties. */
+  public OutboxSpool() throws IOException {
+    this(
+        new File(
+            System.getProperty(
+                DIRECTORY_PROPERTY,
+                new File(System.getProperty("java.io.tmpdir"), "scis-spool").getPath())),
+        Integer.getInteger(SEGMENT_BYTES_PROPERTY, DEFAULT_SEGMENT_BYTES),
+        Long.getLong(DISPATCH_INTERVAL_PROPERTY, DEFAULT_DISPATCH_INTERVAL),
+        Integer.getInteger(MAX_ATTEMPTS_PROPERTY, DEFAULT_MAX_ATTEMPTS),
+        Long.getLong(MAX_WAIT_PROPERTY, DEFAULT_MAX_WAIT),
+        Boolean.getBoolean(FORCE_PROPERTY));
+  }
+
+  /**
+   * Open the spool in a directory, recovering the records of earlier runs, with records waiting at
+   * most {@value #DEFAULT_MAX_WAIT} milliseconds for their handler or secret.
+   *
+   * @param directory directory of the segment files
+   * @param segmentBytes size of a segment file
+   * @param dispatchInterval time between delivery passes in milliseconds
+   * @param maxAttempts attempts before a record is given up
+   * @param force write every record through to the storage device before returning
+   * @throws IOException if the directory or a segment cannot be opened
+   */
+  public OutboxSpool(
+      File directory, int segmentBytes, long dispatchInterval, int maxAttempts, boolean force)
+      throws IOException {
+    this(directory, segmentBytes, dispatchInterval, maxAttempts, DEFAULT_MAX_WAIT, force);
+  }
+
+  /**
+   * Open the spool in a directory, recovering the records of earlier runs. Call {@link #start()} to
+   * deliver them.
+   *
+   * @param directory directory of the segment files
+   * @param segmentBytes size of a segment file
+   * @param dispatchInterval time between delivery passes in milliseconds
+   * @param maxAttempts attempts before a record is given up
+   * @param maxWait time in milliseconds a record waits for its handler or secret before it is given
+   *     up
+   * @param force write every record through to the storage device before returning
+   * @throws IOException if the directory or a segment cannot be opened
+   */
+  public OutboxSpool(
+      File directory,
+      int segmentBytes,
+      long dispatchInterval,
+      int maxAttempts,
+      long maxWait,
+      boolean force)
+      throws IOException {
+    this.directory = directory;
+    this.segmentBytes = segmentBytes;
+    this.dispatchInterval = dispatchInterval;
+    this.maxAttempts = maxAttempts;
+    this.maxWait = maxWait;
+    this.force = force;
+    Files.createDirectories(directory.toPath());
+    File[] files =
+        directory.listFiles(
+            (dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+    if (files != null) {
+      Arrays.sort(files);
+      for (File file : files) {
+        segments.add(Segment.recover(file));
+      }
+    }
+  }
+
+  /** @return the JVM-wide started spool used by {@link MailPlus} and {@link WorkItemClient} */
+  public static OutboxSpool getDefault() {
+    OutboxSpool spool = defaultSpool;
+    if (spool == null) {
+      synchronized (OutboxSpool.class) {
+        spool = defaultSpool;
+        if (spool == null) {
+          try {
+            spool = new OutboxSpool();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          spool.start();
+          defaultSpool = spool;
+        }
+      }
+    }
+    return spool;
+  }
+
+  /** Start delivering records on a daemon thread. */
+  public synchronized void start() {
+    if (dispatcher == null) {
+      dispatcher = new Thread(this::run, "scis-spool-dispatcher");
+      dispatcher.setDaemon(true);
+      dispatcher.start();
+    }
+  }
+
+  /**
+   * Set the handler of a record type unless one is set already.
+   *
+   * @param type record type
+   * @param handler handler delivering records of the type
+   */
+  public void register(String type, Handler handler) {
+    handlers.putIfAbsent(type, handler);
+  }
+
+  /**
+   * @param type record type
+   * @return the handler of the type, or null if none is set
+   */
+  Handler getHandler(String type) {
+    return handlers.get(type);
+  }
+
+  /**
+   * Keep a secret in memory for handlers, e.g. the password of an SMTP user.
+   *
+   * @param key key the handler looks the secret up by
+   * @param secret secret
+   */
+  public void putSecret(String key, String secret) {
+    secrets.put(key, secret);
+  }
+
+  /**
+   * @param key key of the secret
+   * @return the secret, or null if it was not supplied since the JVM started
+   */
+  public String getSecret(String key) {
+    return secrets.get(key);
+  }
+
+  /**
+   * Append a record and wake up the dispatcher. The record is in the log when this method returns.
+   *
+   * @param type record type
+   * @param payload payload passed to the handler of the type
+   * @throws IOException if the record cannot be written
+   */
+  public void append(String type, String payload) throws IOException {
+    byte[] typeBytes = type.getBytes(StandardCharsets.UTF_8);
+    byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+    if (typeBytes.length > Byte.MAX_VALUE) {
+      throw new IllegalArgumentException("Record type too long: " + type);
+    }
+    byte[] body = new byte[1 + typeBytes.length + payloadBytes.length];
+    body[0] = (byte) typeBytes.length;
+    System.arraycopy(typeBytes, 0, body, 1, typeBytes.length);
+    System.arraycopy(payloadBytes, 0, body, 1 + typeBytes.length, payloadBytes.length);
+    CRC32 crc = new CRC32();
+    crc.update(body);
+    synchronized (appendLock) {
+      if (closed) {
+        throw new IOException("The spool is closed");
+      }
+      Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+      if (segment == null || segment.remaining() < HEADER_BYTES + body.length) {
+        long sequence = segment == null ? 1 : segment.sequence + 1;
+        segment =
+            Segment.create(
+                new File(
+                    directory,
+                    String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX)),
+                sequence,
+                Math.max(segmentBytes, HEADER_BYTES + body.length));
+        segments.add(segment);
+      }
+      segment.append(body, (int) crc.getValue(), force);
+    }
+    synchronized (signal) {
+      signal.notifyAll();
+    }
+  }
+
+  /** @return the number of records not delivered yet */
+  public int getPendingCount() {
+    int pending = 0;
+    for (Segment segment : segments) {
+      pending += segment.pending.get();
+    }
+    return pending;
+  }
+
+  private void run() {
+    while (!closed) {
+      try {
+        dispatch();
+      } catch (RuntimeException e) {
+        logger.log(Level.WARNING, "Spool delivery pass failed", e);
+      }
+      synchronized (signal) {
+        try {
+          signal.wait(dispatchInterval);
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Deliver the pending records that are due, then delete segments without pending records. Runs on
+   * the dispatcher thread; appends do not wait for it.
+   */
+  synchronized void dispatch() {
+    long now = System.currentTimeMillis();
+    for (Segment segment : segments) {
+      int end = segment.end;
+      int position = segment.firstPending;
+      boolean prefixDelivered = true;
+      while (position < end && !closed) {
+        int length = segment.buffer.getInt(position);
+        if (segment.buffer.get(position + 8) == PENDING && deliver(segment, position, now)) {
+          segment.buffer.put(position + 8, DELIVERED);
+          segment.pending.decrementAndGet();
+        }
+        if (prefixDelivered && segment.buffer.get(position + 8) == DELIVERED) {
+          segment.firstPending = position + HEADER_BYTES + length;
+        } else {
+          prefixDelivered = false;
+        }
+        position += HEADER_BYTES + length;
+      }
+    }
+    Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    for (Segment segment : segments) {
+      if (segment != last && segment.pending.get() == 0 && segment.delete()) {
+        segments.remove(segment);
+      }
+    }
+  }
+
+  /** @return true if the record at the position is done with, delivered or given up */
+  private boolean deliver(Segment segment, int position, long now) {
+    long id = segment.sequence << 32 | position;
+    Retry retry = retries.get(id);
+    if (retry != null && retry.notBefore > now) {
+      return false;
+    }
+    byte[] body = new byte[segment.buffer.getInt(position)];
+    for (int i = 0; i < body.length; i++) {
+      body[i] = segment.buffer.get(position + HEADER_BYTES + i);
+    }
+    String type = new String(body, 1, body[0], StandardCharsets.UTF_8);
+    String payload =
+        new String(body, 1 + body[0], body.length - 1 - body[0], StandardCharsets.UTF_8);
+    Handler handler = handlers.get(type);
+    try {
+      if (handler == null || !handler.deliver(payload)) {
+        return waitedTooLong(id, retry, type, payload, now);
+      }
+      retries.remove(id);
+      return true;
+    } catch (Exception e) {
+      if (retry == null) {
+        retry = new Retry();
+        retries.put(id, retry);
+      }
+      retry.attempts++;
+      if (retry.attempts >= maxAttempts) {
+        try {
+          deadLetter(type, payload);
+          logger.log(
+              Level.SEVERE,
+              "Moved "
+                  + type
+                  + " to "
+                  + DEAD_LETTER_FILE
+                  + " after "
+                  + retry.attempts
+                  + " attempts",
+              e);
+          retries.remove(id);
+          return true;
+        } catch (IOException deadLetterFailure) {
+          logger.log(Level.SEVERE, "Writing " + DEAD_LETTER_FILE + " failed", deadLetterFailure);
+        }
+      }
+      logger.log(Level.WARNING, "Delivering " + type + " failed, retrying later", e);
+      retry.notBefore =
+          now + Math.min(MAX_BACKOFF, dispatchInterval << Math.min(retry.attempts, 20));
+      return false;
+    }
+  }
+
+  /**
+   * @return true if the record has waited too long for its handler or secret and was moved to the
+   *     dead letter file
+   */
+  private boolean waitedTooLong(long id, Retry retry, String type, String payload, long now) {
+    if (retry == null) {
+      retry = new Retry();
+      retries.put(id, retry);
+    }
+    if (retry.waitingSince == 0) {
+      retry.waitingSince = now;
+      return false;
+    }
+    if (now - retry.waitingSince < maxWait) {
+      return false;
+    }
+    try {
+      deadLetter(type, payload);
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Writing " + DEAD_LETTER_FILE + " failed", e);
+      return false;
+    }
+    logger.log(
+        Level.SEVERE,
+        "Moved "
+            + type
+            + " to "
+            + DEAD_LETTER_FILE
+            + " after waiting "
+            + maxWait
+            + " ms for its handler or secret");
+    retries.remove(id);
+    return true;
+  }
+
+  /** Append a record to the dead letter file and write it through before it leaves the log. */
+  private void deadLetter(String type, String payload) throws IOException {
+    Map<String, String> fields = new LinkedHashMap<>();
+    fields.put("type", type);
+    fields.put("payload", payload);
+    byte[] line = (toPayload(fields) + "\n").getBytes(StandardCharsets.UTF_8);
+    try (FileChannel channel =
+        FileChannel.open(
+            new File(directory, DEAD_LETTER_FILE).toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND)) {
+      ByteBuffer buffer = ByteBuffer.wrap(line);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+  }
+
+  /** @return the number of records in the dead letter file */
+  public synchronized int getDeadLetterCount() throws IOException {
+    File file = new File(directory, DEAD_LETTER_FILE);
+    return file.exists() ? Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size() : 0;
+  }
+
+  /**
+   * Append the records of the dead letter file to the log again, e.g. after an outage has ended,
+   * and empty the file. A record is delivered twice if the JVM stops between the two steps.
+   *
+   * @return the number of records appended
+   * @throws IOException if the file cannot be read or a record cannot be appended
+   */
+  public synchronized int replayDeadLetters() throws IOException {
+    File file = new File(directory, DEAD_LETTER_FILE);
+    if (!file.exists()) {
+      return 0;
+    }
+    List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    int replayed = 0;
+    for (String line : lines) {
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+      Map<String, String> fields = parsePayload(line);
+      append(fields.get("type"), fields.get("payload"));
+      replayed++;
+    }
+    Files.delete(file.toPath());
+    return replayed;
+  }
+
+  /** Stop delivering records. Pending records are delivered after the next start. */
+  @Override
+  public void close() {
+    closed = true;
+    Thread thread = dispatcher;
+    if (thread != null) {
+      thread.interrupt();
+      try {
+        thread.join(dispatchInterval);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * @param fields string fields, null values are left out
+   * @return the fields as a JSON object
+   */
+  static String toPayload(Map<String, String> fields) {
+    StringWriter writer = new StringWriter(256);
+    try (JsonGenerator generator = JsonRowIterator.JSON_FACTORY.createGenerator(writer)) {
+      generator.writeStartObject();
+      for (Map.Entry<String, String> field : fields.entrySet()) {
+        if (field.getValue() != null) {
+          generator.writeStringField(field.getKey(), field.getValue());
+        }
+      }
+      generator.writeEndObject();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return writer.toString();
+  }
+
+  /**
+   * @param payload JSON object of string fields written by {@link #toPayload(Map)}
+   * @return the fields
+   * @throws IOException if the payload is not a JSON object
+   */
+  static Map<String, String> parsePayload(String payload) throws IOException {
+    Map<String, String> fields = new HashMap<>();
+    try (JsonParser parser = JsonRowIterator.JSON_FACTORY.createParser(payload)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("A spool payload should be a JSON object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        parser.nextToken();
+        fields.put(name, parser.getValueAsString());
+        parser.skipChildren();
+      }
+    }
+    return fields;
+  }
+
+  private static final class Retry {
+    int attempts;
+    long notBefore;
+    long waitingSince;
+  }
+
+  private static final class Segment {
+    final File file;
+    final long sequence;
+    final MappedByteBuffer buffer;
+    /** End of the complete records, published after a record is written. */
+    volatile int end;
+
+    int firstPending;
+    final AtomicInteger pending = new AtomicInteger();
+
+    private Segment(File file, long sequence, MappedByteBuffer buffer) {
+      this.file = file;
+      this.sequence = sequence;
+      this.buffer = buffer;
+    }
+
+    static Segment create(File file, long sequence, int size) throws IOException {
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        raf.setLength(size);
+        return new Segment(
+            file, sequence, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+      }
+    }
+
+    static Segment recover(File file) throws IOException {
+      String name = file.getName();
+      long sequence =
+          Long.parseLong(
+              name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+      Segment segment;
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        segment =
+            new Segment(
+                file,
+                sequence,
+                raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length()));
+      }
+      MappedByteBuffer buffer = segment.buffer;
+      int position = 0;
+      int pending = 0;
+      while (position + HEADER_BYTES <= buffer.capacity()) {
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + HEADER_BYTES + length > buffer.capacity()) {
+          break;
+        }
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < length; i++) {
+          crc.update(buffer.get(position + HEADER_BYTES + i));
+        }
+        if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+          logger.warning("Ignoring corrupt records from offset " + position + " of " + file);
+          break;
+        }
+        if (buffer.get(position + 8) == PENDING) {
+          pending++;
+        }
+        position += HEADER_BYTES + length;
+      }
+      segment.end = position;
+      segment.pending.set(pending);
+      return segment;
+    }
+
+    int remaining() {
+      return buffer.capacity() - end;
+    }
+
+    /** Write the body before the length, so a partly written record is never read as complete. */
+    void append(byte[] body, int crc, boolean force) {
+      int position = end;
+      for (int i = 0; i < body.length; i++) {
+        buffer.put(position + HEADER_BYTES + i, body[i]);
+      }
+      buffer.putInt(position + 4, crc);
+      buffer.put(position + 8, PENDING);
+      buffer.putInt(position, body.length);
+      if (force) {
+        buffer.force();
+      }
+      pending.incrementAndGet();
+      end = position + HEADER_BYTES + body.length;
+    }
+
+    boolean delete() {
+      try {
+        Files.deleteIfExists(file.toPath());
+        return true;
+      } catch (IOException e) {
+        // still mapped on some platforms, retried after the next pass
+        logger.log(Level.FINE, "Deleting " + file + " failed", e);
+        return false;
+      }
+    }
+  }
+}
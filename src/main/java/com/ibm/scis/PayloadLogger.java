@@ -0,0 +1,266 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Logs request and response payloads of a client as short, redacted previews instead of in full.
+ *
+ * <p>Payloads are logged at FINE, or at INFO for the clients named in {@value #DEBUG_PROPERTY}.
+ * Nothing is formatted unless the level is enabled. Only one payload in {@value
+ * #SAMPLE_EVERY_PROPERTY} is logged per operation, cut to {@value #MAX_CHARS_PROPERTY} characters,
+ * with the values of keys containing any of {@value #REDACT_KEYS_PROPERTY} and all email addresses
+ * masked. The settings can be changed at runtime through the {@link PayloadLoggingMXBean}.
+ */
+public final class PayloadLogger {
+  private static final Logger logger = Logger.getLogger(PayloadLogger.class.getName());
+
+  /** System property with comma separated client names that log payloads at INFO, or *. */
+  public static final String DEBUG_PROPERTY = "scis.log.debug";
+  /** System property with the number of characters of a payload that are logged. */
+  public static final String MAX_CHARS_PROPERTY = "scis.log.payload.maxChars";
+  /** System property to log only one payload in this many per operation. */
+  public static final String SAMPLE_EVERY_PROPERTY = "scis.log.payload.sampleEvery";
+  /** System property with comma separated parts of JSON keys whose values are masked. */
+  public static final String REDACT_KEYS_PROPERTY = "scis.log.payload.redactKeys";
+
+  static final int DEFAULT_MAX_CHARS = 512;
+  static final int DEFAULT_SAMPLE_EVERY = 1;
+  static final String DEFAULT_REDACT_KEYS =
+      "password,secret,token,authorization,apikey,email,phone";
+  static final String MASK = "***";
+  /** The payload loggers of the least recently used clients are dropped past this many. */
+  static final int MAX_CACHED = 256;
+
+  private static final Pattern EMAIL = Pattern.compile("[\\w.+-]+@[\\w-]+(?:\\.[\\w-]+)+");
+  private static final LruCache<String, PayloadLogger> LOGGERS = new LruCache<>(MAX_CACHED);
+  private static final Control CONTROL = new Control();
+
+  static {
+    try {
+      ManagementFactory.getPlatformMBeanServer()
+          .registerMBean(
+              CONTROL, new ObjectName(ClientMetrics.JMX_DOMAIN + ":type=PayloadLogging"));
+    } catch (JMException | RuntimeException e) {
+      logger.log(Level.FINE, "Cannot register payload logging in JMX", e);
+    }
+  }
+
+  private final String client;
+  private final ConcurrentMap<String, AtomicLong> calls = new ConcurrentHashMap<>();
+
+  private PayloadLogger(String client) {
+    this.client = client;
+  }
+
+  /**
+   * @param client client name, e.g. WorkItemClient
+   * @return the payload logger of the client
+   */
+  public static PayloadLogger forClient(String client) {
+    return LOGGERS.computeIfAbsent(client, PayloadLogger::new);
+  }
+
+  /** @return the JMX control of the settings, e.g. to change them from Java */
+  public static PayloadLoggingMXBean getControl() {
+    return CONTROL;
+  }
+
+  /**
+   * Log a request payload.
+   *
+   * @param logger logger of the client
+   * @param operation operation name
+   * @param payload payload
+   */
+  public void request(Logger logger, String operation, String payload) {
+    log(logger, operation, "request", payload);
+  }
+
+  /**
+   * Log a response payload.
+   *
+   * @param logger logger of the client
+   * @param operation operation name
+   * @param payload payload
+   */
+  public void response(Logger logger, String operation, String payload) {
+    log(logger, operation, "response", payload);
+  }
+
+  private void log(Logger logger, String operation, String direction, String payload) {
+    Level level = CONTROL.isDebug(client) ? Level.INFO : Level.FINE;
+    if (payload == null || !logger.isLoggable(level) || !sampled(operation)) {
+      return;
+    }
+    logger.log(
+        level,
+        () ->
+            operation
+                + " "
+                + direction
+                + " ("
+                + payload.length()
+                + " chars): "
+                + preview(payload, CONTROL.maxChars, CONTROL.redactPattern));
+  }
+
+  private boolean sampled(String operation) {
+    int every = CONTROL.sampleEvery;
+    if (every <= 1) {
+      return true;
+    }
+    AtomicLong count = calls.get(operation);
+    if (count == null) {
+      count = calls.computeIfAbsent(operation, key -> new AtomicLong());
+    }
+    return count.getAndIncrement() % every == 0;
+  }
+
+  /**
+   * @param payload payload, e.g. an error response to quote in an exception message
+   * @return the start of the payload with secrets and email addresses masked, as it is logged
+   */
+  public static String preview(String payload) {
+    return payload != null ? preview(payload, CONTROL.maxChars, CONTROL.redactPattern) : "";
+  }
+
+  /**
+   * @param payload payload
+   * @param maxChars number of characters to keep
+   * @param redact pattern of the key-value pairs to mask
+   * @return the start of the payload with secrets and email addresses masked
+   */
+  static String preview(String payload, int maxChars, Pattern redact) {
+    // mask a little more than is kept so a value cut at the end is still recognized
+    String head = payload.length() > maxChars + 64 ? payload.substring(0, maxChars + 64) : payload;
+    Matcher matcher = redact.matcher(head);
+    StringBuffer masked = new StringBuffer(head.length());
+    while (matcher.find()) {
+      matcher.appendReplacement(masked, "");
+      masked.append(matcher.group(1));
+      if (matcher.group(2) != null) {
+        masked.append('"').append(MASK).append(matcher.group(3));
+      } else {
+        masked.append(MASK);
+      }
+    }
+    matcher.appendTail(masked);
+    String result = EMAIL.matcher(masked).replaceAll(MASK);
+    if (result.length() > maxChars) {
+      return result.substring(0, maxChars) + "...";
+    }
+    return head.length() < payload.length() ? result + "..." : result;
+  }
+
+  static Pattern redactPattern(String keys) {
+    StringBuilder alternatives = new StringBuilder();
+    for (String key : keys.split(",")) {
+      if (!key.trim().isEmpty()) {
+        alternatives.append(alternatives.length() > 0 ? "|" : "").append(Pattern.quote(key.trim()));
+      }
+    }
+    if (alternatives.length() == 0) {
+      return Pattern.compile("(?!)(.)(.)(.)");
+    }
+    // group 1: key and separator, group 2: opening quote of a string value, group 3: its end
+    return Pattern.compile(
+        "(\"[^\"]*(?:"
+            + alternatives
+            + ")[^\"]*\"\\s*:\\s*)(?:(\")(?:\\\\.|[^\"\\\\])*(\"?)|[^,}\\]\\s]+)",
+        Pattern.CASE_INSENSITIVE);
+  }
+
+  static final class Control implements PayloadLoggingMXBean {
+    private volatile String debugClients;
+    private volatile String[] debug;
+    private volatile int maxChars = Integer.getInteger(MAX_CHARS_PROPERTY, DEFAULT_MAX_CHARS);
+    private volatile int sampleEvery =
+        Integer.getInteger(SAMPLE_EVERY_PROPERTY, DEFAULT_SAMPLE_EVERY);
+    private volatile String redactKeys;
+    private volatile Pattern redactPattern;
+
+    Control() {
+      setDebugClients(System.getProperty(DEBUG_PROPERTY, ""));
+      setRedactKeys(System.getProperty(REDACT_KEYS_PROPERTY, DEFAULT_REDACT_KEYS));
+    }
+
+    boolean isDebug(String client) {
+      for (String name : debug) {
+        if (name.equals("*") || name.equals(client)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public String getDebugClients() {
+      return debugClients;
+    }
+
+    @Override
+    public void setDebugClients(String clients) {
+      String value = clients != null ? clients.trim() : "";
+      debug = value.isEmpty() ? new String[0] : value.split("\\s*,\\s*");
+      debugClients = value;
+    }
+
+    @Override
+    public int getMaxChars() {
+      return maxChars;
+    }
+
+    @Override
+    public void setMaxChars(int maxChars) {
+      this.maxChars = Math.max(0, maxChars);
+    }
+
+    @Override
+    public int getSampleEvery() {
+      return sampleEvery;
+    }
+
+    @Override
+    public void setSampleEvery(int sampleEvery) {
+      this.sampleEvery = Math.max(1, sampleEvery);
+    }
+
+    @Override
+    public String getRedactKeys() {
+      return redactKeys;
+    }
+
+    @Override
+    public void setRedactKeys(String keys) {
+      String value = keys != null ? keys.toLowerCase(Locale.ROOT) : "";
+      redactPattern = redactPattern(value);
+      redactKeys = value;
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+/**
+ * JMX control of the payload logging of the SCIS clients, registered as {@code
+ * com.ibm.scis:type=PayloadLogging}. Changes take effect at once and are lost on restart.
+ */
+public interface PayloadLoggingMXBean {
+  /** @return comma separated names of the clients logging payloads at INFO, or {@code *} */
+  String getDebugClients();
+
+  void setDebugClients(String clients);
+
+  /** @return number of characters of a payload that are logged */
+  int getMaxChars();
+
+  void setMaxChars(int maxChars);
+
+  /** @return one payload in this many is logged per operation */
+  int getSampleEvery();
+
+  void setSampleEvery(int sampleEvery);
+
+  /** @return comma separated parts of JSON keys whose values are masked */
+  String getRedactKeys();
+
+  void setRedactKeys(String keys);
+}
@@ -0,0 +1,291 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Read-through cache of InfoHub query responses, used only by queries that ask for it with a time
+ * to live.
+ *
+ * <p>Responses are keyed by endpoint, the query with insignificant whitespace removed, and the
+ * credentials, which identify the tenant and make sure a response is only served to callers who
+ * could have fetched it themselves. Entries expire after their time to live; the least recently
+ * used ones are evicted when the cache holds more than {@value #MAX_BYTES_PROPERTY} bytes of
+ * responses or {@value #MAX_ENTRIES_PROPERTY} entries. Concurrent misses for the same key share one
+ * request. Only successful responses are cached.
+ */
+public final class QueryResponseCache {
+  /** System property with the maximum number of bytes of cached responses. */
+  public static final String MAX_BYTES_PROPERTY = "scis.queryCache.maxBytes";
+  /** System property with the maximum number of cached responses. */
+  public static final String MAX_ENTRIES_PROPERTY = "scis.queryCache.maxEntries";
+
+  static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024L;
+  static final int DEFAULT_MAX_ENTRIES = 10000;
+
+  /** Loads a response on a cache miss. */
+  interface Loader {
+    /** @return the response; only cached if {@link Response#cacheable} */
+    Response load() throws IOException;
+  }
+
+  /** A response and whether it may be cached. */
+  static final class Response {
+    final String body;
+    final boolean cacheable;
+
+    Response(String body, boolean cacheable) {
+      this.body = body;
+      this.cacheable = cacheable;
+    }
+  }
+
+  private final long maxBytes;
+  private final int maxEntries;
+  private final LongSupplier clock;
+  // access-ordered, guarded by this
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final SingleFlight<Key, Response> loading = new SingleFlight<>(true);
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private long bytes;
+
+  /** Cache sized from {@code scis.queryCache.*} system properties. */
+  public QueryResponseCache() {
+    this(
+        Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES),
+        Integer.getInteger(MAX_ENTRIES_PROPERTY, DEFAULT_MAX_ENTRIES),
+        System::nanoTime);
+  }
+
+  QueryResponseCache(long maxBytes, int maxEntries, LongSupplier clock) {
+    this.maxBytes = maxBytes;
+    this.maxEntries = maxEntries;
+    this.clock = clock;
+  }
+
+  /**
+   * Return the cached response, or load, cache and return it.
+   *
+   * @param endpoint query endpoint
+   * @param dataQuery query
+   * @param clientId client id
+   * @param clientSecret client secret
+   * @param username user name
+   * @param ttlMillis time to live of a loaded response
+   * @param loader sends the query
+   * @return response body
+   * @throws IOException if the query fails
+   */
+  String get(
+      String endpoint,
+      String dataQuery,
+      String clientId,
+      String clientSecret,
+      String username,
+      long ttlMillis,
+      Loader loader)
+      throws IOException {
+    Key key = new Key(endpoint, normalize(dataQuery), clientId, clientSecret, username);
+    String cached = lookup(key);
+    if (cached != null) {
+      hits.increment();
+      return cached;
+    }
+    misses.increment();
+    long start = clock.getAsLong();
+    return loading.execute(
+            key,
+            () -> {
+              // another caller may have stored the response since the lookup
+              String stored = lookup(key);
+              if (stored != null) {
+                return new Response(stored, false);
+              }
+              Response response = loader.load();
+              if (response.cacheable) {
+                store(key, response.body, start + TimeUnit.MILLISECONDS.toNanos(ttlMillis));
+              }
+              return response;
+            })
+        .body;
+  }
+
+  private synchronized String lookup(Key key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (clock.getAsLong() - entry.expiresAt >= 0) {
+      remove(key);
+      return null;
+    }
+    return entry.body;
+  }
+
+  private synchronized void store(Key key, String body, long expiresAt) {
+    long weight = weight(body);
+    if (weight > maxBytes) {
+      return;
+    }
+    remove(key);
+    entries.put(key, new Entry(body, expiresAt));
+    bytes += weight;
+    Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+    while ((bytes > maxBytes || entries.size() > maxEntries) && eldest.hasNext()) {
+      bytes -= weight(eldest.next().getValue().body);
+      eldest.remove();
+    }
+  }
+
+  private void remove(Key key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      bytes -= weight(entry.body);
+    }
+  }
+
+  /** @return heap bytes held by a response */
+  private static long weight(String body) {
+    return 2L * body.length();
+  }
+
+  /**
+   * Drop all cached responses of an endpoint, e.g. after the reference data changed.
+   *
+   * @param endpoint query endpoint
+   */
+  public synchronized void invalidate(String endpoint) {
+    Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Key, Entry> entry = iterator.next();
+      if (Objects.equals(entry.getKey().endpoint, endpoint)) {
+        bytes -= weight(entry.getValue().body);
+        iterator.remove();
+      }
+    }
+  }
+
+  /** Drop all cached responses. */
+  public synchronized void invalidateAll() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  /** @return number of cached responses, including expired ones not yet removed */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /** @return heap bytes held by the cached responses */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  /** @return number of queries answered from the cache */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /** @return number of queries sent or joined to a query in flight */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * @param dataQuery query
+   * @return the query without whitespace between JSON tokens, or trimmed if it is not JSON
+   */
+  static String normalize(String dataQuery) {
+    if (dataQuery == null) {
+      return null;
+    }
+    StringWriter writer = new StringWriter(dataQuery.length());
+    try (JsonParser parser = JsonRowIterator.JSON_FACTORY.createParser(dataQuery);
+        JsonGenerator generator = JsonRowIterator.JSON_FACTORY.createGenerator(writer)) {
+      while (parser.nextToken() != null) {
+        generator.copyCurrentEvent(parser);
+      }
+    } catch (IOException e) {
+      return dataQuery.trim();
+    }
+    return writer.toString();
+  }
+
+  private static final class Entry {
+    final String body;
+    final long expiresAt;
+
+    Entry(String body, long expiresAt) {
+      this.body = body;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private static final class Key {
+    private final String endpoint;
+    private final String dataQuery;
+    private final String clientId;
+    private final byte[] clientSecret;
+    private final String username;
+    private final int hash;
+
+    Key(String endpoint, String dataQuery, String clientId, String clientSecret, String username) {
+      this.endpoint = endpoint;
+      this.dataQuery = dataQuery;
+      this.clientId = clientId;
+      this.clientSecret = Utils.fingerprint(clientSecret);
+      this.username = username;
+      this.hash =
+          31 * Objects.hash(endpoint, dataQuery, clientId, username)
+              + Arrays.hashCode(this.clientSecret);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return Objects.equals(endpoint, other.endpoint)
+          && Objects.equals(dataQuery, other.dataQuery)
+          && Objects.equals(clientId, other.clientId)
+          && Arrays.equals(clientSecret, other.clientSecret)
+          && Objects.equals(username, other.username);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+
+/**
+ * When and how long to wait before a failed HTTP request is sent again.
+ *
+ * <p>A request is retried after a connection failure, before anything was sent, and after a 429
+ * response, which the server did not process. Timeouts, dropped connections and 502, 503 and 504
+ * responses are retried only for idempotent requests: GET, HEAD, PUT, DELETE and OPTIONS, and POST
+ * when {@value #RETRY_POST} is set. The delay is the {@code Retry-After} of the response, or an
+ * exponential backoff with full jitter. No retry starts after the total budget has run out.
+ */
+public final class RetryPolicy {
+  static final String MAX_ATTEMPTS = "retry.maxAttempts";
+  static final String INITIAL_BACKOFF = "retry.initialBackoffMs";
+  static final String MAX_BACKOFF = "retry.maxBackoffMs";
+  static final String BUDGET = "retry.budgetMs";
+  static final String RETRY_POST = "retry.post";
+
+  static final int DEFAULT_MAX_ATTEMPTS = 3;
+  static final long DEFAULT_INITIAL_BACKOFF = 200L;
+  static final long DEFAULT_MAX_BACKOFF = 5 * 1000L;
+  static final long DEFAULT_BUDGET = 15 * 1000L;
+
+  private static final ScheduledExecutorService SCHEDULER =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "scis-http-retry");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /** Sends every request once. */
+  public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0, 0, false);
+
+  private final int maxAttempts;
+  private final long initialBackoff;
+  private final long maxBackoff;
+  private final long budget;
+  private final boolean retryPost;
+
+  public RetryPolicy(
+      int maxAttempts, long initialBackoff, long maxBackoff, long budget, boolean retryPost) {
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.initialBackoff = initialBackoff;
+    this.maxBackoff = maxBackoff;
+    this.budget = budget;
+    this.retryPost = retryPost;
+  }
+
+  RetryPolicy(Properties properties) {
+    this(
+        ConnectionPoolConfig.intValue(properties, MAX_ATTEMPTS, DEFAULT_MAX_ATTEMPTS),
+        ConnectionPoolConfig.longValue(properties, INITIAL_BACKOFF, DEFAULT_INITIAL_BACKOFF),
+        ConnectionPoolConfig.longValue(properties, MAX_BACKOFF, DEFAULT_MAX_BACKOFF),
+        ConnectionPoolConfig.longValue(properties, BUDGET, DEFAULT_BUDGET),
+        Boolean.parseBoolean(
+            properties.getProperty(ConnectionPoolConfig.PREFIX + RETRY_POST, "false").trim()));
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public long getBudget() {
+    return budget;
+  }
+
+  public boolean isRetryPost() {
+    return retryPost;
+  }
+
+  /**
+   * @param request request that got the response
+   * @param status status code of the response, or -1 if unknown
+   * @return true if the status is transient and the request may be sent again
+   */
+  boolean isRetryable(HttpRequest request, int status) {
+    if (status == 429) {
+      return isRepeatable(request);
+    }
+    return (status == HttpStatus.SC_BAD_GATEWAY
+            || status == HttpStatus.SC_SERVICE_UNAVAILABLE
+            || status == HttpStatus.SC_GATEWAY_TIMEOUT)
+        && isIdempotent(request);
+  }
+
+  /**
+   * @param request request that failed
+   * @param failure cause of the failure
+   * @return true if the failure is transient and the request may be sent again
+   */
+  boolean isRetryable(HttpRequest request, Throwable failure) {
+    if (failure instanceof ConnectException
+        || failure instanceof ConnectTimeoutException
+        || failure instanceof NoRouteToHostException) {
+      // nothing was sent
+      return isRepeatable(request);
+    }
+    return failure instanceof IOException
+        && !(failure instanceof SSLException)
+        && isIdempotent(request);
+  }
+
+  private boolean isIdempotent(HttpRequest request) {
+    switch (request.getRequestLine().getMethod().toUpperCase(Locale.ROOT)) {
+      case "GET":
+      case "HEAD":
+      case "PUT":
+      case "DELETE":
+      case "OPTIONS":
+        return isRepeatable(request);
+      case "POST":
+        return retryPost && isRepeatable(request);
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isRepeatable(HttpRequest request) {
+    return !(request instanceof HttpEntityEnclosingRequest)
+        || ((HttpEntityEnclosingRequest) request).getEntity() == null
+        || ((HttpEntityEnclosingRequest) request).getEntity().isRepeatable();
+  }
+
+  /**
+   * @param attempt number of attempts made so far, starting at 1
+   * @param response the failed response, or null after an exception
+   * @param now current time in milliseconds
+   * @param deadline time in milliseconds after which no retry starts
+   * @return the delay before the next attempt, or -1 to give up
+   */
+  long delay(int attempt, HttpResponse response, long now, long deadline) {
+    if (attempt >= maxAttempts) {
+      return -1;
+    }
+    long delay = retryAfter(response, now);
+    if (delay < 0) {
+      long backoff = Math.min(maxBackoff, initialBackoff << Math.min(attempt - 1, 30));
+      delay = ThreadLocalRandom.current().nextLong(backoff + 1);
+    }
+    return now + delay <= deadline ? delay : -1;
+  }
+
+  /** Run the retry of a non-blocking request after the delay. */
+  static void schedule(Runnable retry, long delay) {
+    SCHEDULER.schedule(retry, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /** @return the delay requested by the Retry-After header, or -1 */
+  static long retryAfter(HttpResponse response, long now) {
+    Header header = response != null ? response.getFirstHeader("Retry-After") : null;
+    if (header == null || header.getValue() == null) {
+      return -1;
+    }
+    String value = header.getValue().trim();
+    try {
+      return Math.max(0, Long.parseLong(value) * 1000);
+    } catch (NumberFormatException e) {
+      Date date = DateUtils.parseDate(value);
+      return date != null ? Math.max(0, date.getTime() - now) : -1;
+    }
+  }
+}
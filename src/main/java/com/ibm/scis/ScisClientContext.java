@@ -0,0 +1,291 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.net.ssl.SSLContext;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.ssl.SSLContexts;
+
+/**
+ * The HTTP transport used by a group of SCIS clients: the pooled blocking and non-blocking clients,
+ * their request config and pool statistics.
+ *
+ * <p>Clients built with the same context share its connections; clients built with different
+ * contexts are fully isolated, so each remote system can be sized for its own latency profile.
+ * {@link #named(String)} returns the JVM-wide context for a name, configured from {@code
+ * scis.http.<name>.*} properties (see {@link ConnectionPoolConfig}).
+ */
+public class ScisClientContext implements Closeable {
+  private static final Logger logger = Logger.getLogger(ScisClientContext.class.getName());
+
+  /** Context shared by the InfoHub query and work item clients. */
+  public static final String INFOHUB = "infohub";
+  /** Context shared by the BAW user and group management clients. */
+  public static final String BAW = "baw";
+
+  static final int MAX_BREAKERS = 256;
+
+  private static final ConcurrentMap<String, ScisClientContext> NAMED = new ConcurrentHashMap<>();
+
+  private final String name;
+  private final ConnectionPoolConfig poolConfig;
+  private final RequestConfig requestConfig;
+  private final SSLContext sslContext;
+  private final PoolingHttpClientConnectionManager connectionManager;
+  private final CloseableHttpClient httpClient;
+  private final CsrfTokenCache csrfTokenCache = new CsrfTokenCache();
+  private final QueryResponseCache queryCache = new QueryResponseCache();
+  private final SingleFlight<List<String>, String> singleFlight = new SingleFlight<>();
+  private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+  private CloseableHttpAsyncClient asyncHttpClient;
+
+  /**
+   * Create a context with its own connection pools.
+   *
+   * @param name name used in logs
+   * @param poolConfig pool, timeout and TLS settings
+   */
+  public ScisClientContext(String name, ConnectionPoolConfig poolConfig) {
+    this.name = name;
+    this.poolConfig = poolConfig;
+    this.requestConfig =
+        RequestConfig.custom()
+            .setConnectTimeout(poolConfig.getConnectTimeout())
+            .setConnectionRequestTimeout(poolConfig.getConnectionRequestTimeout())
+            .setSocketTimeout(poolConfig.getSocketTimeout())
+            .build();
+    this.sslContext = createSSLContext(poolConfig.getTlsProtocol());
+    if (poolConfig.getTransport() == ConnectionPoolConfig.Transport.HTTP2) {
+      this.connectionManager = null;
+      this.httpClient = new Http2TransportClient(poolConfig, sslContext);
+    } else {
+      this.connectionManager =
+          poolConfig.createConnectionManager(
+              sslContext != null
+                  ? new SSLConnectionSocketFactory(sslContext)
+                  : SSLConnectionSocketFactory.getSocketFactory());
+      this.httpClient =
+          HttpClientBuilder.create()
+              .setDefaultRequestConfig(requestConfig)
+              .setConnectionManager(connectionManager)
+              .evictExpiredConnections()
+              .evictIdleConnections(poolConfig.getIdleTimeout(), TimeUnit.MILLISECONDS)
+              // retries are left to the RetryPolicy, which the breaker and metrics see
+              .disableAutomaticRetries()
+              .build();
+    }
+  }
+
+  /**
+   * Wrap externally managed clients, e.g. for tests. Pool statistics are not available.
+   *
+   * @param httpClient blocking client
+   * @param asyncHttpClient non-blocking client, or null to create one on first use
+   */
+  public ScisClientContext(
+      CloseableHttpClient httpClient, CloseableHttpAsyncClient asyncHttpClient) {
+    this.name = "external";
+    this.poolConfig = ConnectionPoolConfig.load();
+    this.requestConfig = RequestConfig.DEFAULT;
+    this.sslContext = createSSLContext(poolConfig.getTlsProtocol());
+    this.connectionManager = null;
+    this.httpClient = httpClient;
+    this.asyncHttpClient = asyncHttpClient;
+  }
+
+  /**
+   * Wrap an externally managed blocking client, e.g. for tests.
+   *
+   * @param httpClient blocking client
+   */
+  public ScisClientContext(CloseableHttpClient httpClient) {
+    this(httpClient, null);
+  }
+
+  /**
+   * The JVM-wide context for a name, created on first use from {@code scis.http.<name>.*} and
+   * {@code scis.http.*} properties.
+   *
+   * @param name context name, e.g. {@link #INFOHUB} or {@link #BAW}
+   * @return shared context
+   */
+  public static ScisClientContext named(String name) {
+    return NAMED.computeIfAbsent(
+        name, key -> new ScisClientContext(key, ConnectionPoolConfig.load(key)));
+  }
+
+  private static SSLContext createSSLContext(String protocol) {
+    try {
+      return SSLContexts.custom().setProtocol(protocol).build();
+    } catch (KeyManagementException | NoSuchAlgorithmException e) {
+      logger.log(Level.SEVERE, e.getMessage());
+      return null;
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public CloseableHttpClient getHttpClient() {
+    return httpClient;
+  }
+
+  public RequestConfig getRequestConfig() {
+    return requestConfig;
+  }
+
+  public ConnectionPoolConfig getPoolConfig() {
+    return poolConfig;
+  }
+
+  public RetryPolicy getRetryPolicy() {
+    return poolConfig.getRetryPolicy();
+  }
+
+  /**
+   * The circuit breaker and bulkhead guarding the calls of this context to a host. After {@value
+   * #MAX_BREAKERS} hosts, further hosts share the breaker of the host {@value
+   * ClientMetrics#OTHER_HOST}, so no breaker is dropped while it is open or holds permits.
+   *
+   * @param host target host
+   * @return breaker, created on first use
+   */
+  public CircuitBreaker getCircuitBreaker(HttpHost host) {
+    CircuitBreaker breaker = circuitBreakers.get(host.toURI());
+    if (breaker == null) {
+      String key = circuitBreakers.size() >= MAX_BREAKERS ? ClientMetrics.OTHER_HOST : host.toURI();
+      breaker =
+          circuitBreakers.computeIfAbsent(
+              key,
+              k ->
+                  new CircuitBreaker(
+                      k,
+                      poolConfig.getCircuitBreakerSettings(),
+                      poolConfig.getMaxConcurrent(host)));
+    }
+    return breaker;
+  }
+
+  /** @return the breakers created so far, keyed by host */
+  public Map<String, CircuitBreaker> getCircuitBreakers() {
+    return Collections.unmodifiableMap(circuitBreakers);
+  }
+
+  /** @return the cache of InfoHub query responses of this context */
+  public QueryResponseCache getQueryCache() {
+    return queryCache;
+  }
+
+  /**
+   * @return the calls of this context in flight, keyed by operation and arguments, that identical
+   *     concurrent reads share
+   */
+  public SingleFlight<List<String>, String> getSingleFlight() {
+    return singleFlight;
+  }
+
+  CsrfTokenCache getCsrfTokenCache() {
+    return csrfTokenCache;
+  }
+
+  /**
+   * The non-blocking client of this context, started on first use.
+   *
+   * @return async http client
+   * @throws IOReactorException if the I/O reactor cannot be started
+   */
+  public synchronized CloseableHttpAsyncClient getAsyncHttpClient() throws IOReactorException {
+    if (asyncHttpClient == null) {
+      asyncHttpClient =
+          HttpAsyncClients.custom()
+              .setDefaultRequestConfig(requestConfig)
+              .setConnectionManager(poolConfig.createAsyncConnectionManager(sslContext))
+              .build();
+    }
+    if (!asyncHttpClient.isRunning()) {
+      asyncHttpClient.start();
+    }
+    return asyncHttpClient;
+  }
+
+  /**
+   * Statistics of the blocking connection pool across all routes.
+   *
+   * @return leased, pending, available and max connections; empty for external clients and the
+   *     HTTP/2 transport
+   */
+  public PoolStats getPoolStats() {
+    return connectionManager != null
+        ? connectionManager.getTotalStats()
+        : new PoolStats(0, 0, 0, 0);
+  }
+
+  /**
+   * Statistics of the blocking connection pool per route.
+   *
+   * @return pool statistics keyed by target host; empty for external clients and the HTTP/2
+   *     transport
+   */
+  public Map<String, PoolStats> getPoolStatsByRoute() {
+    if (connectionManager == null) {
+      return Collections.emptyMap();
+    }
+    Map<String, PoolStats> stats = new LinkedHashMap<>();
+    connectionManager
+        .getRoutes()
+        .forEach(
+            route -> stats.put(route.getTargetHost().toURI(), connectionManager.getStats(route)));
+    return stats;
+  }
+
+  @Override
+  public void close() throws IOException {
+    NAMED.remove(name, this);
+    try {
+      httpClient.close();
+    } finally {
+      synchronized (this) {
+        if (asyncHttpClient != null) {
+          asyncHttpClient.close();
+        }
+      }
+    }
+  }
+}
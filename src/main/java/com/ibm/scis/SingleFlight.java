@@ -0,0 +1,124 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets concurrent identical calls share one execution: the first caller for a key runs the call and
+ * every caller that asks for the same key before it finishes gets the same result or exception.
+ * Nothing is kept after the call finishes, so a later caller always runs the call again.
+ *
+ * <p>This is meant for reads, such as the InfoHub queries that hundreds of process instances
+ * started by one bulk event send with the same arguments at the same moment. It can be turned off
+ * with {@value #ENABLED_PROPERTY}.
+ *
+ * @param <K> key identifying identical calls; must implement equals and hashCode
+ * @param <V> result of a call
+ */
+public final class SingleFlight<K, V> {
+  /** System property that turns sharing off when set to false. */
+  public static final String ENABLED_PROPERTY = "scis.singleFlight.enabled";
+
+  /** A call that may be shared. */
+  public interface Call<V> {
+    V call() throws IOException;
+  }
+
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final boolean enabled;
+
+  /** Sharing enabled unless {@value #ENABLED_PROPERTY} is false. */
+  public SingleFlight() {
+    this(Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true").trim()));
+  }
+
+  public SingleFlight(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Run the call, or wait for the identical call in flight and return its result.
+   *
+   * @param key key of the call
+   * @param call call to run if none is in flight for the key
+   * @return result of the call
+   * @throws IOException if the call failed, or the wait was interrupted
+   */
+  public V execute(K key, Call<V> call) throws IOException {
+    if (!enabled) {
+      misses.increment();
+      return call.call();
+    }
+    CompletableFuture<V> future = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+    if (existing != null) {
+      hits.increment();
+      return await(existing);
+    }
+    misses.increment();
+    try {
+      V result = call.call();
+      future.complete(result);
+      return result;
+    } catch (IOException | RuntimeException e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  private static <V> V await(CompletableFuture<V> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for the same call", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /** @return number of calls in flight */
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+
+  /** @return number of callers that shared a call already in flight */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /** @return number of calls run */
+  public long getMissCount() {
+    return misses.sum();
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * SMTP connection settings of a mail {@link javax.mail.Session}: host, port, timeouts and TLS.
+ * Timeouts and TLS default to {@code scis.mail.*} system properties, so a stalled relay can no
+ * longer block a BAW thread forever. STARTTLS is off and the TLS protocols are left to JavaMail
+ * unless configured, as before these settings existed.
+ */
+public final class SmtpSettings {
+  public static final String CONNECTION_TIMEOUT_PROPERTY = "scis.mail.connectionTimeoutMs";
+  public static final String TIMEOUT_PROPERTY = "scis.mail.timeoutMs";
+  public static final String WRITE_TIMEOUT_PROPERTY = "scis.mail.writeTimeoutMs";
+  public static final String STARTTLS_PROPERTY = "scis.mail.starttls";
+  public static final String STARTTLS_REQUIRED_PROPERTY = "scis.mail.starttlsRequired";
+  /** Space separated TLS protocols, e.g. {@code TLSv1.2 TLSv1.3}; unset for the JVM default. */
+  public static final String SSL_PROTOCOLS_PROPERTY = "scis.mail.sslProtocols";
+
+  static final int DEFAULT_CONNECTION_TIMEOUT = 10 * 1000;
+  static final int DEFAULT_TIMEOUT = 30 * 1000;
+  static final int DEFAULT_WRITE_TIMEOUT = 30 * 1000;
+
+  private final String host;
+  private final int port;
+  private final int connectionTimeout;
+  private final int timeout;
+  private final int writeTimeout;
+  private final boolean startTls;
+  private final boolean startTlsRequired;
+  private final String sslProtocols;
+
+  /**
+   * @param host SMTP host
+   * @param port SMTP port, or -1 for the protocol default
+   * @param connectionTimeout socket connect timeout in milliseconds
+   * @param timeout socket read timeout in milliseconds
+   * @param writeTimeout socket write timeout in milliseconds
+   * @param startTls upgrade to TLS when the server supports STARTTLS
+   * @param startTlsRequired fail when the server does not support STARTTLS
+   */
+  public SmtpSettings(
+      String host,
+      int port,
+      int connectionTimeout,
+      int timeout,
+      int writeTimeout,
+      boolean startTls,
+      boolean startTlsRequired) {
+    this(host, port, connectionTimeout, timeout, writeTimeout, startTls, startTlsRequired, null);
+  }
+
+  /**
+   * @param host SMTP host
+   * @param port SMTP port, or -1 for the protocol default
+   * @param connectionTimeout socket connect timeout in milliseconds
+   * @param timeout socket read timeout in milliseconds
+   * @param writeTimeout socket write timeout in milliseconds
+   * @param startTls upgrade to TLS when the server supports STARTTLS
+   * @param startTlsRequired fail when the server does not support STARTTLS
+   * @param sslProtocols space separated TLS protocols, or null for the JVM default
+   */
+  public SmtpSettings(
+      String host,
+      int port,
+      int connectionTimeout,
+      int timeout,
+      int writeTimeout,
+      boolean startTls,
+      boolean startTlsRequired,
+      String sslProtocols) {
+    this.host = host;
+    this.port = port;
+    this.connectionTimeout = connectionTimeout;
+    this.timeout = timeout;
+    this.writeTimeout = writeTimeout;
+    this.startTls = startTls;
+    this.startTlsRequired = startTlsRequired;
+    this.sslProtocols = sslProtocols;
+  }
+
+  /**
+   * Settings for a host with timeouts and TLS from the {@code scis.mail.*} system properties.
+   *
+   * @param smtpHost host name, optionally followed by {@code :port}
+   * @return settings
+   */
+  public static SmtpSettings forHost(String smtpHost) {
+    String host = smtpHost;
+    int port = -1;
+    if (smtpHost != null) {
+      int colon = smtpHost.lastIndexOf(':');
+      if (colon > 0 && smtpHost.indexOf(':') == colon) {
+        try {
+          port = Integer.parseInt(smtpHost.substring(colon + 1).trim());
+          host = smtpHost.substring(0, colon);
+        } catch (NumberFormatException e) {
+          // not a port, keep the host as given
+        }
+      }
+    }
+    return new SmtpSettings(
+        host,
+        port,
+        Integer.getInteger(CONNECTION_TIMEOUT_PROPERTY, DEFAULT_CONNECTION_TIMEOUT),
+        Integer.getInteger(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT),
+        Integer.getInteger(WRITE_TIMEOUT_PROPERTY, DEFAULT_WRITE_TIMEOUT),
+        Boolean.getBoolean(STARTTLS_PROPERTY),
+        Boolean.getBoolean(STARTTLS_REQUIRED_PROPERTY),
+        System.getProperty(SSL_PROTOCOLS_PROPERTY));
+  }
+
+  /** @return the {@code mail.smtp.*} session properties of these settings */
+  public Properties toProperties() {
+    Properties properties = new Properties();
+    if (host != null) {
+      properties.put("mail.smtp.host", host);
+    }
+    if (port > 0) {
+      properties.put("mail.smtp.port", String.valueOf(port));
+    }
+    properties.put("mail.smtp.connectiontimeout", String.valueOf(connectionTimeout));
+    properties.put("mail.smtp.timeout", String.valueOf(timeout));
+    properties.put("mail.smtp.writetimeout", String.valueOf(writeTimeout));
+    properties.put("mail.smtp.starttls.enable", String.valueOf(startTls));
+    properties.put("mail.smtp.starttls.required", String.valueOf(startTlsRequired));
+    if (sslProtocols != null && !sslProtocols.trim().isEmpty()) {
+      properties.put("mail.smtp.ssl.protocols", sslProtocols.trim());
+    }
+    // pooled connections are closed without waiting for the reply to QUIT
+    properties.put("mail.smtp.quitwait", "false");
+    return properties;
+  }
+
+  public String getHost() {
+    return host;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  public int getConnectionTimeout() {
+    return connectionTimeout;
+  }
+
+  public int getTimeout() {
+    return timeout;
+  }
+
+  public int getWriteTimeout() {
+    return writeTimeout;
+  }
+
+  public boolean isStartTls() {
+    return startTls;
+  }
+
+  public boolean isStartTlsRequired() {
+    return startTlsRequired;
+  }
+
+  public String getSslProtocols() {
+    return sslProtocols;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof SmtpSettings)) {
+      return false;
+    }
+    SmtpSettings other = (SmtpSettings) o;
+    return port == other.port
+        && connectionTimeout == other.connectionTimeout
+        && timeout == other.timeout
+        && writeTimeout == other.writeTimeout
+        && startTls == other.startTls
+        && startTlsRequired == other.startTlsRequired
+        && Objects.equals(host, other.host)
+        && Objects.equals(sslProtocols, other.sslProtocols);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(
+        host,
+        port,
+        connectionTimeout,
+        timeout,
+        writeTimeout,
+        startTls,
+        startTlsRequired,
+        sslProtocols);
+  }
+}
@@ -0,0 +1,319 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+
+/**
+ * Keeps connected and authenticated SMTP {@link Transport}s per (host, port, user) for reuse across
+ * messages, instead of the connect, EHLO, AUTH and QUIT that {@link Transport#send} does for every
+ * message.
+ *
+ * <p>A connection idle for longer than {@value #VALIDATE_AFTER_INACTIVITY_PROPERTY} is checked with
+ * NOOP before reuse, connections idle for longer than {@value #IDLE_TIMEOUT_PROPERTY} are closed in
+ * the background, and a connection is retired after {@value #MAX_MESSAGES_PER_CONNECTION_PROPERTY}
+ * messages because relays limit messages per session. A send that fails on a reused connection is
+ * retried once on a new one.
+ */
+public class SmtpTransportPool implements Closeable {
+  private static final Logger logger = Logger.getLogger(SmtpTransportPool.class.getName());
+
+  public static final String MAX_IDLE_PER_KEY_PROPERTY = "scis.mail.pool.maxIdlePerKey";
+  public static final String IDLE_TIMEOUT_PROPERTY = "scis.mail.pool.idleTimeoutMs";
+  public static final String VALIDATE_AFTER_INACTIVITY_PROPERTY =
+      "scis.mail.pool.validateAfterInactivityMs";
+  public static final String MAX_MESSAGES_PER_CONNECTION_PROPERTY =
+      "scis.mail.pool.maxMessagesPerConnection";
+
+  static final int DEFAULT_MAX_IDLE_PER_KEY = 4;
+  static final long DEFAULT_IDLE_TIMEOUT = 60 * 1000L;
+  static final long DEFAULT_VALIDATE_AFTER_INACTIVITY = 2 * 1000L;
+  static final int DEFAULT_MAX_MESSAGES_PER_CONNECTION = 100;
+
+  private static final ScheduledExecutorService EVICTOR =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "scis-smtp-evictor");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private static volatile SmtpTransportPool defaultPool;
+
+  /** Creates an unconnected transport for a session. */
+  interface TransportFactory {
+    Transport create(Session session) throws MessagingException;
+  }
+
+  private final ConcurrentMap<Key, Deque<PooledTransport>> idle = new ConcurrentHashMap<>();
+  private final TransportFactory factory;
+  private final int maxIdlePerKey;
+  private final long idleTimeout;
+  private final long validateAfterInactivity;
+  private final int maxMessagesPerConnection;
+  private final ScheduledFuture<?> eviction;
+
+  /** Pool configured from {@code scis.mail.pool.*} system properties. */
+  public SmtpTransportPool() {
+    this(
+        session -> session.getTransport(),
+        Integer.getInteger(MAX_IDLE_PER_KEY_PROPERTY, DEFAULT_MAX_IDLE_PER_KEY),
+        Long.getLong(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT),
+        Long.getLong(VALIDATE_AFTER_INACTIVITY_PROPERTY, DEFAULT_VALIDATE_AFTER_INACTIVITY),
+        Integer.getInteger(
+            MAX_MESSAGES_PER_CONNECTION_PROPERTY, DEFAULT_MAX_MESSAGES_PER_CONNECTION));
+  }
+
+  SmtpTransportPool(
+      TransportFactory factory,
+      int maxIdlePerKey,
+      long idleTimeout,
+      long validateAfterInactivity,
+      int maxMessagesPerConnection) {
+    this.factory = factory;
+    this.maxIdlePerKey = maxIdlePerKey;
+    this.idleTimeout = idleTimeout;
+    this.validateAfterInactivity = validateAfterInactivity;
+    this.maxMessagesPerConnection = maxMessagesPerConnection;
+    long period = Math.max(idleTimeout / 2, 1000L);
+    this.eviction =
+        EVICTOR.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  /** @return the JVM-wide pool used by {@link PooledTransportDelegator} by default */
+  public static SmtpTransportPool getDefault() {
+    SmtpTransportPool pool = defaultPool;
+    if (pool == null) {
+      synchronized (SmtpTransportPool.class) {
+        pool = defaultPool;
+        if (pool == null) {
+          pool = new SmtpTransportPool();
+          defaultPool = pool;
+        }
+      }
+    }
+    return pool;
+  }
+
+  /**
+   * Send a message on a pooled connection to the SMTP host of the message's session.
+   *
+   * @param message message
+   * @param username user name, or null to connect without authentication
+   * @param password password, or null to connect without authentication
+   * @throws MessagingException if the message cannot be sent
+   */
+  public void send(Message message, String username, String password) throws MessagingException {
+    message.saveChanges();
+    Session session = message.getSession();
+    Key key = new Key(session, username, password);
+    PooledTransport transport = borrow(key);
+    boolean reused = transport != null;
+    if (!reused) {
+      transport = connect(key, session, username, password);
+    }
+    try {
+      transport.send(message);
+    } catch (MessagingException e) {
+      if (!reused || e instanceof SendFailedException) {
+        releaseAfterFailure(key, transport, e);
+        throw e;
+      }
+      logger.log(Level.FINE, "Retrying on a new SMTP connection", e);
+      transport.close();
+      transport = connect(key, session, username, password);
+      try {
+        transport.send(message);
+      } catch (MessagingException retryFailure) {
+        releaseAfterFailure(key, transport, retryFailure);
+        throw retryFailure;
+      }
+    }
+    release(key, transport);
+  }
+
+  /** Rejected recipients leave the connection usable; any other failure discards it. */
+  private void releaseAfterFailure(Key key, PooledTransport transport, MessagingException e) {
+    if (e instanceof SendFailedException) {
+      release(key, transport);
+    } else {
+      transport.close();
+    }
+  }
+
+  private PooledTransport borrow(Key key) {
+    Deque<PooledTransport> transports = idle.get(key);
+    if (transports == null) {
+      return null;
+    }
+    PooledTransport transport;
+    while ((transport = transports.pollFirst()) != null) {
+      long idleFor = System.currentTimeMillis() - transport.lastUsed;
+      if (idleFor > idleTimeout) {
+        transport.close();
+      } else if (idleFor <= validateAfterInactivity || transport.transport.isConnected()) {
+        return transport;
+      } else {
+        transport.close();
+      }
+    }
+    return null;
+  }
+
+  private PooledTransport connect(Key key, Session session, String username, String password)
+      throws MessagingException {
+    Transport transport = factory.create(session);
+    if (username != null && password != null) {
+      transport.connect(key.host, key.port, username, password);
+    } else {
+      transport.connect();
+    }
+    return new PooledTransport(transport);
+  }
+
+  private void release(Key key, PooledTransport transport) {
+    if (transport.messages >= maxMessagesPerConnection) {
+      transport.close();
+      return;
+    }
+    Deque<PooledTransport> transports =
+        idle.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>());
+    transport.lastUsed = System.currentTimeMillis();
+    // most recently used first, so surplus connections age out at the tail
+    transports.offerFirst(transport);
+    while (transports.size() > maxIdlePerKey) {
+      PooledTransport surplus = transports.pollLast();
+      if (surplus == null) {
+        break;
+      }
+      surplus.close();
+    }
+  }
+
+  /** Close connections that have been idle for longer than the idle timeout. */
+  void evictIdle() {
+    long now = System.currentTimeMillis();
+    for (Deque<PooledTransport> transports : idle.values()) {
+      Iterator<PooledTransport> iterator = transports.descendingIterator();
+      while (iterator.hasNext()) {
+        PooledTransport transport = iterator.next();
+        if (now - transport.lastUsed > idleTimeout && transports.removeFirstOccurrence(transport)) {
+          transport.close();
+        }
+      }
+    }
+  }
+
+  /** @return the number of idle connections in the pool */
+  public int getIdleCount() {
+    return idle.values().stream().mapToInt(Deque::size).sum();
+  }
+
+  @Override
+  public void close() {
+    eviction.cancel(false);
+    for (Deque<PooledTransport> transports : idle.values()) {
+      PooledTransport transport;
+      while ((transport = transports.pollFirst()) != null) {
+        transport.close();
+      }
+    }
+  }
+
+  private final class PooledTransport {
+    final Transport transport;
+    int messages;
+    volatile long lastUsed = System.currentTimeMillis();
+
+    PooledTransport(Transport transport) {
+      this.transport = transport;
+    }
+
+    void send(Message message) throws MessagingException {
+      messages++;
+      transport.sendMessage(message, message.getAllRecipients());
+    }
+
+    void close() {
+      try {
+        transport.close();
+      } catch (MessagingException e) {
+        logger.log(Level.FINE, "Closing SMTP connection failed", e);
+      }
+    }
+  }
+
+  private static final class Key {
+    private final String protocol;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final byte[] password;
+    private final int hash;
+
+    Key(Session session, String username, String password) {
+      this.protocol = session.getProperty("mail.transport.protocol");
+      String prefix = "mail." + (protocol != null ? protocol : "smtp") + ".";
+      this.host = session.getProperty(prefix + "host");
+      String portValue = session.getProperty(prefix + "port");
+      this.port = portValue != null ? Integer.parseInt(portValue.trim()) : -1;
+      this.username = username;
+      this.password = Utils.fingerprint(password);
+      this.hash =
+          Objects.hash(protocol, host, port, username) * 31 + Arrays.hashCode(this.password);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return port == other.port
+          && Objects.equals(protocol, other.protocol)
+          && Objects.equals(host, other.host)
+          && Objects.equals(username, other.username)
+          && Arrays.equals(password, other.password);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Handler of a spooled record type that delivers each record through the object that spooled it,
+ * e.g. the client whose connections and settings it has to be sent with. It is registered once per
+ * spool and record type, so it does not depend on which sender spooled first.
+ *
+ * <p>Senders are referenced weakly. Records of an earlier run, or of a sender that is gone, are
+ * delivered through the most recently added sender; until a sender is added they wait.
+ *
+ * @param <T> sender
+ */
+final class SpoolRouter<T> implements OutboxSpool.Handler {
+  /** Payload field with the id of the sender. */
+  static final String SENDER_FIELD = "sender";
+  /** The least recently used senders are forgotten past this many. */
+  static final int MAX_SENDERS = 256;
+
+  /** Delivers a record through its sender. */
+  interface Delivery<T> {
+    /**
+     * @param sender object that spooled the record, or the most recent sender
+     * @param spool spool of the record, e.g. to look up its secret
+     * @param fields fields of the payload
+     * @return false to leave the record pending without counting an attempt, see {@link
+     *     OutboxSpool.Handler#deliver(String)}
+     * @throws Exception if delivery failed and should be retried
+     */
+    boolean deliver(T sender, OutboxSpool spool, Map<String, String> fields) throws Exception;
+  }
+
+  private final OutboxSpool spool;
+  private final Delivery<T> delivery;
+  private final LruCache<String, WeakReference<T>> senders = new LruCache<>(MAX_SENDERS);
+  private volatile WeakReference<T> latest;
+
+  private SpoolRouter(OutboxSpool spool, Delivery<T> delivery) {
+    this.spool = spool;
+    this.delivery = delivery;
+  }
+
+  /**
+   * Register a router for a record type unless the spool has one already.
+   *
+   * @param spool spool
+   * @param type record type
+   * @param delivery delivers the records of the type
+   * @return the router of the type
+   * @throws IllegalStateException if the type has a handler that is not a router
+   */
+  @SuppressWarnings("unchecked")
+  static <T> SpoolRouter<T> register(OutboxSpool spool, String type, Delivery<T> delivery) {
+    OutboxSpool.Handler handler = spool.getHandler(type);
+    if (handler == null) {
+      spool.register(type, new SpoolRouter<>(spool, delivery));
+      handler = spool.getHandler(type);
+    }
+    if (!(handler instanceof SpoolRouter)) {
+      throw new IllegalStateException("Records of type " + type + " have another handler");
+    }
+    return (SpoolRouter<T>) handler;
+  }
+
+  /** @return a new id of a sender, unique also across restarts */
+  static String newSenderId() {
+    return UUID.randomUUID().toString();
+  }
+
+  /**
+   * Route the records with the id to the sender.
+   *
+   * @param id id in the {@value #SENDER_FIELD} field of the records the sender spools
+   * @param sender sender
+   */
+  void add(String id, T sender) {
+    WeakReference<T> reference = senders.get(id);
+    if (reference == null || reference.get() != sender) {
+      reference = new WeakReference<>(sender);
+      senders.put(id, reference);
+    }
+    latest = reference;
+  }
+
+  @Override
+  public boolean deliver(String payload) throws Exception {
+    Map<String, String> fields = OutboxSpool.parsePayload(payload);
+    String id = fields.get(SENDER_FIELD);
+    WeakReference<T> reference = id != null ? senders.get(id) : null;
+    T sender = reference != null ? reference.get() : null;
+    if (sender == null) {
+      reference = latest;
+      sender = reference != null ? reference.get() : null;
+    }
+    return sender != null && delivery.deliver(sender, spool, fields);
+  }
+}
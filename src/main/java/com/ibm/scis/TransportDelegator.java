@@ -18,9 +18,13 @@ package com.ibm.scis;
 
 import javax.mail.Message;
 import javax.mail.MessagingException;
+import javax.mail.Session;
 import javax.mail.Transport;
 
-/** TransportDelegator to delegates the Transport.send call. */
+/**
+ * TransportDelegator to delegates the Transport.send call. Every send is recorded in the {@link
+ * ClientMetrics} as the "send" operation on the SMTP host.
+ */
 public class TransportDelegator {
   /**
    * Send message
@@ -29,7 +33,14 @@ public class TransportDelegator {
    * @throws MessagingException
    */
   public void send(Message message) throws MessagingException {
-    Transport.send(message);
+    long start = System.nanoTime();
+    int status = -1;
+    try {
+      doSend(message, null, null);
+      status = 0;
+    } finally {
+      metrics(message).record(start, status, 0, 0);
+    }
   }
 
   /**
@@ -41,6 +52,39 @@ public class TransportDelegator {
    * @throws MessagingException
    */
   public void send(Message message, String username, String password) throws MessagingException {
-    Transport.send(message, username, password);
+    long start = System.nanoTime();
+    int status = -1;
+    try {
+      doSend(message, username, password);
+      status = 0;
+    } finally {
+      metrics(message).record(start, status, 0, 0);
+    }
+  }
+
+  /**
+   * Hand the message to the SMTP server.
+   *
+   * @param message message
+   * @param username username, or null to use the session settings
+   * @param password password, or null to use the session settings
+   * @throws MessagingException
+   */
+  protected void doSend(Message message, String username, String password)
+      throws MessagingException {
+    if (username == null && password == null) {
+      Transport.send(message);
+    } else {
+      Transport.send(message, username, password);
+    }
+  }
+
+  private OperationMetrics metrics(Message message) {
+    Session session = message.getSession();
+    return ClientMetrics.getDefault()
+        .get(
+            "TransportDelegator",
+            "send",
+            session != null ? session.getProperty("mail.smtp.host") : null);
   }
 }
@@ -16,19 +16,28 @@
 
 package com.ibm.scis;
 
-import java.util.logging.Level;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 
 public class UserGroupSyncClient extends BaseClient {
   private static final Logger logger = Logger.getLogger(UserGroupSyncClient.class.getName());
 
   public UserGroupSyncClient(CloseableHttpClient client) {
-    httpClient = client;
+    super(new ScisClientContext(client));
+  }
+
+  public UserGroupSyncClient(CloseableHttpClient client, CloseableHttpAsyncClient asyncClient) {
+    super(new ScisClientContext(client, asyncClient));
+  }
+
+  public UserGroupSyncClient(ScisClientContext context) {
+    super(context);
   }
 
   public String getBPMCSRFToken(
@@ -36,9 +45,20 @@ public class UserGroupSyncClient extends BaseClient {
     return super.getCSRFToken(csrfTokenUrl, userName, password, lifeTime);
   }
 
+  /** Non-blocking counterpart of {@link #getBPMCSRFToken(String, String, String, Integer)}. */
+  public CompletableFuture<String> getBPMCSRFTokenAsync(
+      String csrfTokenUrl, String userName, String password, Integer lifeTime) {
+    return super.getCSRFTokenAsync(csrfTokenUrl, userName, password, lifeTime);
+  }
+
+  /** Drop the cached token of the user so the next call requests a new one. */
+  public void invalidateBPMCSRFToken(String csrfTokenUrl, String userName) {
+    super.invalidateCSRFToken(csrfTokenUrl, userName);
+  }
+
   /** For BAW initializing this class. */
   public UserGroupSyncClient() {
-    super();
+    super(ScisClientContext.named(ScisClientContext.BAW));
   }
 
   public String usersSync(
@@ -47,17 +67,70 @@ public class UserGroupSyncClient extends BaseClient {
       String bawPassword,
       String token,
       String usersArray) {
+    return processHttpRequest(
+        buildUsersSyncRequest(usersSyncURL, bawUserName, bawPassword, token, usersArray));
+  }
+
+  /** Non-blocking counterpart of {@link #usersSync(String, String, String, String, String)}. */
+  public CompletableFuture<String> usersSyncAsync(
+      String usersSyncURL,
+      String bawUserName,
+      String bawPassword,
+      String token,
+      String usersArray) {
+    return processHttpRequestAsync(
+        buildUsersSyncRequest(usersSyncURL, bawUserName, bawPassword, token, usersArray));
+  }
+
+  public String groupsSync(
+      String usersSyncURL,
+      String bawUserName,
+      String bawPassword,
+      String token,
+      String groupsArray) {
+    return processHttpRequest(
+        buildGroupsSyncRequest(usersSyncURL, bawUserName, bawPassword, token, groupsArray));
+  }
+
+  /** Non-blocking counterpart of {@link #groupsSync(String, String, String, String, String)}. */
+  public CompletableFuture<String> groupsSyncAsync(
+      String usersSyncURL,
+      String bawUserName,
+      String bawPassword,
+      String token,
+      String groupsArray) {
+    return processHttpRequestAsync(
+        buildGroupsSyncRequest(usersSyncURL, bawUserName, bawPassword, token, groupsArray));
+  }
+
+  public String checkSyncResult(String url, String bawUserName, String bawPassword, String token) {
+    return processHttpRequest(buildCheckSyncResultRequest(url, bawUserName, bawPassword, token));
+  }
+
+  /** Non-blocking counterpart of {@link #checkSyncResult(String, String, String, String)}. */
+  public CompletableFuture<String> checkSyncResultAsync(
+      String url, String bawUserName, String bawPassword, String token) {
+    return processHttpRequestAsync(
+        buildCheckSyncResultRequest(url, bawUserName, bawPassword, token));
+  }
+
+  private HttpPost buildUsersSyncRequest(
+      String usersSyncURL,
+      String bawUserName,
+      String bawPassword,
+      String token,
+      String usersArray) {
     String endpoint =
         String.format("%s?%s&%s", usersSyncURL, "add_to_db=true", "sync_user_state=true");
 
     HttpPost httpPost = new HttpPost(endpoint);
-    logger.log(Level.INFO, usersArray);
+    payloadLogger.request(logger, "usersSync", usersArray);
     buildBasicAuthHeaderWithBPMCsrfToken(bawUserName, bawPassword, token, httpPost);
     httpPost.setEntity(new StringEntity(usersArray, ContentType.APPLICATION_JSON));
-    return processHttpRequest(httpPost);
+    return httpPost;
   }
 
-  public String groupsSync(
+  private HttpPost buildGroupsSyncRequest(
       String usersSyncURL,
       String bawUserName,
       String bawPassword,
@@ -67,17 +140,17 @@ public class UserGroupSyncClient extends BaseClient {
         String.format("%s?%s&%s", usersSyncURL, "add_users_to_db=true", "sync_group_state=true");
 
     HttpPost httpPost = new HttpPost(endpoint);
-    logger.log(Level.INFO, groupsArray);
+    payloadLogger.request(logger, "groupsSync", groupsArray);
     buildBasicAuthHeaderWithBPMCsrfToken(bawUserName, bawPassword, token, httpPost);
     httpPost.setEntity(new StringEntity(groupsArray, ContentType.APPLICATION_JSON));
-    return processHttpRequest(httpPost);
+    return httpPost;
   }
 
-  public String checkSyncResult(String url, String bawUserName, String bawPassword, String token) {
-
+  private HttpGet buildCheckSyncResultRequest(
+      String url, String bawUserName, String bawPassword, String token) {
     HttpGet httpGet = new HttpGet(url);
-    logger.log(Level.INFO, url);
+    payloadLogger.request(logger, "checkSyncResult", url);
     buildBasicAuthHeaderWithBPMCsrfToken(bawUserName, bawPassword, token, httpGet);
-    return processHttpRequest(httpGet);
+    return httpGet;
   }
 }
@@ -16,7 +16,9 @@
 
 package com.ibm.scis;
 
-import java.util.logging.Level;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
@@ -24,17 +26,26 @@ import org.apache.http.client.methods.HttpPut;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 
 public class UserManageClient extends BaseClient {
   private static final Logger logger = Logger.getLogger(UserManageClient.class.getName());
 
   public UserManageClient(CloseableHttpClient client) {
-    httpClient = client;
+    super(new ScisClientContext(client));
+  }
+
+  public UserManageClient(CloseableHttpClient client, CloseableHttpAsyncClient asyncClient) {
+    super(new ScisClientContext(client, asyncClient));
+  }
+
+  public UserManageClient(ScisClientContext context) {
+    super(context);
   }
 
   /** For BAW initializing this class. */
   public UserManageClient() {
-    super();
+    super(ScisClientContext.named(ScisClientContext.BAW));
   }
 
   public String getCSRFToken(
@@ -42,19 +53,96 @@ public class UserManageClient extends BaseClient {
     return super.getCSRFToken(csrfTokenUrl, userName, password, lifeTime);
   }
 
+  /** Non-blocking counterpart of {@link #getCSRFToken(String, String, String, Integer)}. */
+  public CompletableFuture<String> getCSRFTokenAsync(
+      String csrfTokenUrl, String userName, String password, Integer lifeTime) {
+    return super.getCSRFTokenAsync(csrfTokenUrl, userName, password, lifeTime);
+  }
+
+  /** Drop the cached token of the user so the next call requests a new one. */
+  public void invalidateCSRFToken(String csrfTokenUrl, String userName) {
+    super.invalidateCSRFToken(csrfTokenUrl, userName);
+  }
+
   public String addNewUser(
       String url, String bawUserName, String bawPassword, String token, String userInfo) {
+    return processHttpRequest(
+        buildAddNewUserRequest(url, bawUserName, bawPassword, token, userInfo));
+  }
+
+  /** Non-blocking counterpart of {@link #addNewUser(String, String, String, String, String)}. */
+  public CompletableFuture<String> addNewUserAsync(
+      String url, String bawUserName, String bawPassword, String token, String userInfo) {
+    return processHttpRequestAsync(
+        buildAddNewUserRequest(url, bawUserName, bawPassword, token, userInfo));
+  }
+
+  public String updateExistingUser(
+      String url,
+      String bawUserName,
+      String bawPassword,
+      String token,
+      String userId,
+      String updatedUserInfo) {
+    return processHttpRequest(
+        buildUpdateExistingUserRequest(
+            url, bawUserName, bawPassword, token, userId, updatedUserInfo));
+  }
+
+  /**
+   * Non-blocking counterpart of {@link #updateExistingUser(String, String, String, String, String,
+   * String)}.
+   */
+  public CompletableFuture<String> updateExistingUserAsync(
+      String url,
+      String bawUserName,
+      String bawPassword,
+      String token,
+      String userId,
+      String updatedUserInfo) {
+    return processHttpRequestAsync(
+        buildUpdateExistingUserRequest(
+            url, bawUserName, bawPassword, token, userId, updatedUserInfo));
+  }
+
+  public String checkUserByUserId(
+      String url, String bawUserName, String bawPassword, String token, String userId) {
+    // concurrent identical checks share one request
+    try {
+      return context
+          .getSingleFlight()
+          .execute(
+              Arrays.asList("checkUserByUserId", url, bawUserName, bawPassword, token, userId),
+              () ->
+                  processHttpRequest(
+                      buildCheckUserByUserIdRequest(url, bawUserName, bawPassword, token, userId)));
+    } catch (IOException e) {
+      return "{\"error\":\"" + e.getMessage() + "\"}";
+    }
+  }
+
+  /**
+   * Non-blocking counterpart of {@link #checkUserByUserId(String, String, String, String, String)}.
+   */
+  public CompletableFuture<String> checkUserByUserIdAsync(
+      String url, String bawUserName, String bawPassword, String token, String userId) {
+    return processHttpRequestAsync(
+        buildCheckUserByUserIdRequest(url, bawUserName, bawPassword, token, userId));
+  }
+
+  private HttpPost buildAddNewUserRequest(
+      String url, String bawUserName, String bawPassword, String token, String userInfo) {
     String endpoint =
         String.format("%s?%s&%s", url, "skip_email=true", "activate_automatically=true");
 
     HttpPost httpPost = new HttpPost(endpoint);
-    logger.log(Level.INFO, userInfo);
+    payloadLogger.request(logger, "addNewUser", userInfo);
     buildBasicAuthHeaderWithIBMCsrfToken(bawUserName, bawPassword, token, httpPost);
     httpPost.setEntity(new StringEntity(userInfo, ContentType.APPLICATION_JSON));
-    return processHttpRequest(httpPost);
+    return httpPost;
   }
 
-  public String updateExistingUser(
+  private HttpPut buildUpdateExistingUserRequest(
       String url,
       String bawUserName,
       String bawPassword,
@@ -63,19 +151,19 @@ public class UserManageClient extends BaseClient {
       String updatedUserInfo) {
     String endpoint = String.format("%s/%s?%s", url, userId, "update_mode=merge");
     HttpPut httpPut = new HttpPut(endpoint);
-    logger.log(Level.INFO, updatedUserInfo);
+    payloadLogger.request(logger, "updateExistingUser", updatedUserInfo);
     buildBasicAuthHeaderWithIBMCsrfToken(bawUserName, bawPassword, token, httpPut);
     httpPut.setEntity(new StringEntity(updatedUserInfo, ContentType.APPLICATION_JSON));
-    return processHttpRequest(httpPut);
+    return httpPut;
   }
 
-  public String checkUserByUserId(
+  private HttpGet buildCheckUserByUserIdRequest(
       String url, String bawUserName, String bawPassword, String token, String userId) {
     String endpoint =
         String.format("%s?%s&%s", url, "optional_parts=details,groups", "search_term=" + userId);
     HttpGet httpGet = new HttpGet(endpoint);
-    logger.log(Level.INFO, endpoint);
+    payloadLogger.request(logger, "checkUserByUserId", endpoint);
     buildBasicAuthHeaderWithIBMCsrfToken(bawUserName, bawPassword, token, httpGet);
-    return processHttpRequest(httpGet);
+    return httpGet;
   }
 }
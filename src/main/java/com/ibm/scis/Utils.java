@@ -16,13 +16,166 @@
 
 package com.ibm.scis;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.Scanner;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
 
 /** SCIS Utils */
 public class Utils {
+  /** System property limiting the size of a response body in bytes; unlimited when not set. */
+  public static final String MAX_BODY_BYTES_PROPERTY = "scis.http.maxBodyBytes";
+
+  static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+  /** Larger buffers are released after use instead of being kept by the thread. */
+  static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+  private static final long MAX_BODY_BYTES = Long.getLong(MAX_BODY_BYTES_PROPERTY, -1L);
+  private static final ThreadLocal<byte[]> BUFFER =
+      ThreadLocal.withInitial(() -> new byte[INITIAL_BUFFER_SIZE]);
+
   public static String inputStreamToString(InputStream stream) {
-    Scanner s = new Scanner(stream).useDelimiter("\\A");
-    return s.hasNext() ? s.next() : "";
+    try {
+      return inputStreamToString(stream, StandardCharsets.UTF_8, -1, -1);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Decode a response body using the charset declared in its Content-Type, or UTF-8 when none is
+   * declared. The body size is limited by {@value #MAX_BODY_BYTES_PROPERTY}.
+   *
+   * @param entity response entity
+   * @return body text
+   * @throws IOException if the body cannot be read or is too large
+   */
+  public static String entityToString(HttpEntity entity) throws IOException {
+    return readBody(entity).text;
+  }
+
+  /**
+   * Decode a response body like {@link #entityToString(HttpEntity)}, counting the bytes read also
+   * when the response has no Content-Length.
+   *
+   * @param entity response entity
+   * @return body text and size
+   * @throws IOException if the body cannot be read or is too large
+   */
+  static Body readBody(HttpEntity entity) throws IOException {
+    Charset charset = null;
+    try {
+      ContentType contentType = ContentType.get(entity);
+      charset = contentType != null ? contentType.getCharset() : null;
+    } catch (Exception e) {
+      // unparsable or unsupported charset, fall back to the JSON default
+    }
+    return read(
+        entity.getContent(),
+        charset != null ? charset : StandardCharsets.UTF_8,
+        entity.getContentLength(),
+        MAX_BODY_BYTES);
+  }
+
+  /**
+   * Read the rest of a response body without decoding it, so that its connection can be reused.
+   *
+   * @param entity response entity, may be null
+   * @return the number of bytes read, or -1 if the body could not be read
+   */
+  static long discardBody(HttpEntity entity) {
+    if (entity == null) {
+      return 0;
+    }
+    byte[] buffer = BUFFER.get();
+    long length = 0;
+    try (InputStream stream = entity.getContent()) {
+      int read;
+      while ((read = stream.read(buffer)) != -1) {
+        length += read;
+      }
+      return length;
+    } catch (IOException | RuntimeException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Read a stream to the end into a reusable per-thread buffer and decode it.
+   *
+   * @param stream stream to read; it is not closed
+   * @param charset charset of the content
+   * @param contentLength expected length used to size the buffer, or a negative value if unknown
+   * @param maxBytes maximum number of bytes to accept, or a non-positive value for no limit
+   * @return decoded text
+   * @throws IOException if the stream cannot be read or exceeds {@code maxBytes}
+   */
+  public static String inputStreamToString(
+      InputStream stream, Charset charset, long contentLength, long maxBytes) throws IOException {
+    return read(stream, charset, contentLength, maxBytes).text;
+  }
+
+  private static Body read(InputStream stream, Charset charset, long contentLength, long maxBytes)
+      throws IOException {
+    if (maxBytes > 0 && contentLength > maxBytes) {
+      throw bodyTooLarge(maxBytes);
+    }
+    byte[] buffer = BUFFER.get();
+    if (contentLength > buffer.length && contentLength < Integer.MAX_VALUE - 8) {
+      buffer = new byte[(int) contentLength + 1];
+    }
+    int length = 0;
+    int read;
+    while ((read = stream.read(buffer, length, buffer.length - length)) != -1) {
+      length += read;
+      if (maxBytes > 0 && length > maxBytes) {
+        throw bodyTooLarge(maxBytes);
+      }
+      if (length == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+    }
+    if (buffer.length <= MAX_RETAINED_BUFFER_SIZE) {
+      BUFFER.set(buffer);
+    }
+    return new Body(new String(buffer, 0, length, charset), length);
+  }
+
+  /**
+   * SHA-256 digest of a secret, used to key caches by credentials without keeping them in clear.
+   *
+   * @param secret secret, may be null
+   * @return digest, empty for null
+   */
+  static byte[] fingerprint(String secret) {
+    if (secret == null) {
+      return new byte[0];
+    }
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static IOException bodyTooLarge(long maxBytes) {
+    return new IOException("Response body exceeds " + maxBytes + " bytes");
+  }
+
+  /** Decoded response body and the number of bytes it was decoded from. */
+  static final class Body {
+    final String text;
+    final long bytes;
+
+    Body(String text, long bytes) {
+      this.text = text;
+      this.bytes = bytes;
+    }
   }
 }
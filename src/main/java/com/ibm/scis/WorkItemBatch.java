@@ -0,0 +1,365 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates or updates many work items with a bounded number of requests in flight on the
+ * non-blocking client of a {@link WorkItemClient}.
+ *
+ * <p>Work items are created one request each, or in chunks of {@code bulkSize} when a bulk URL is
+ * set. A bulk response that is a JSON array with one element per work item is split into per-item
+ * results; any other bulk response is reported for every work item of the chunk. An item succeeded
+ * when its response had a 2xx status. Results are returned in input order.
+ */
+public class WorkItemBatch {
+  private static final Logger logger = Logger.getLogger(WorkItemBatch.class.getName());
+
+  public static final String WORK_ITEM_ID_FIELD = "workItemId";
+  public static final String WORK_ITEM_PARTIAL_FIELD = "workItemPartial";
+
+  static final int DEFAULT_PARALLELISM = 8;
+  static final int DEFAULT_BULK_SIZE = 100;
+
+  private final WorkItemClient client;
+  private int parallelism = DEFAULT_PARALLELISM;
+  private String bulkUrl;
+  private int bulkSize = DEFAULT_BULK_SIZE;
+
+  /** @param client work item client used to send the requests */
+  public WorkItemBatch(WorkItemClient client) {
+    this.client = client;
+  }
+
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be positive");
+    }
+    this.parallelism = parallelism;
+  }
+
+  /** @param bulkUrl InfoHub endpoint accepting a JSON array of work items, or null */
+  public void setBulkUrl(String bulkUrl) {
+    this.bulkUrl = bulkUrl;
+  }
+
+  public void setBulkSize(int bulkSize) {
+    if (bulkSize < 1) {
+      throw new IllegalArgumentException("bulkSize must be positive");
+    }
+    this.bulkSize = bulkSize;
+  }
+
+  /**
+   * @param url Fully specified URL points to InfoHub workitem API
+   * @param clientId Sterling saascore platform client Id
+   * @param clientSecret Sterling saascore platform client secret
+   * @param username IBM identity representing workflow functional user
+   * @param workItems Metadata of the new work items
+   * @return per-item results in input order
+   */
+  public Result create(
+      String url, String clientId, String clientSecret, String username, List<String> workItems) {
+    if (bulkUrl != null) {
+      return createBulk(clientId, clientSecret, username, workItems);
+    }
+    List<Supplier<CompletableFuture<BaseClient.HttpResult>>> requests =
+        new ArrayList<>(workItems.size());
+    for (String workItem : workItems) {
+      requests.add(
+          () ->
+              client.createWorkItemForResultAsync(url, clientId, clientSecret, username, workItem));
+    }
+    return new Result(run(requests));
+  }
+
+  /**
+   * @param url Fully specified URL points to InfoHub workitem API
+   * @param clientId Sterling saascore platform client Id
+   * @param clientSecret Sterling saascore platform client secret
+   * @param username IBM identity representing workflow functional user
+   * @param workItemPartials Partial metadata keyed by work item Id, in the order to report
+   * @return per-item results in iteration order of {@code workItemPartials}
+   */
+  public Result update(
+      String url,
+      String clientId,
+      String clientSecret,
+      String username,
+      Map<String, String> workItemPartials) {
+    List<Supplier<CompletableFuture<BaseClient.HttpResult>>> requests =
+        new ArrayList<>(workItemPartials.size());
+    for (Map.Entry<String, String> update : workItemPartials.entrySet()) {
+      requests.add(
+          () ->
+              client.updateWorkItemForResultAsync(
+                  url, update.getKey(), clientId, clientSecret, username, update.getValue()));
+    }
+    return new Result(run(requests));
+  }
+
+  private Result createBulk(
+      String clientId, String clientSecret, String username, List<String> workItems) {
+    List<Supplier<CompletableFuture<BaseClient.HttpResult>>> requests = new ArrayList<>();
+    List<Integer> chunkSizes = new ArrayList<>();
+    for (int start = 0; start < workItems.size(); start += bulkSize) {
+      List<String> chunk = workItems.subList(start, Math.min(start + bulkSize, workItems.size()));
+      String body = "[" + String.join(",", chunk) + "]";
+      chunkSizes.add(chunk.size());
+      requests.add(
+          () ->
+              client.createWorkItemForResultAsync(bulkUrl, clientId, clientSecret, username, body));
+    }
+    List<BaseClient.HttpResult> chunkResponses = run(requests);
+    List<BaseClient.HttpResult> responses = new ArrayList<>(workItems.size());
+    for (int i = 0; i < chunkResponses.size(); i++) {
+      responses.addAll(split(chunkResponses.get(i), chunkSizes.get(i)));
+    }
+    return new Result(responses);
+  }
+
+  /**
+   * Send the requests keeping at most {@code parallelism} in flight. The calling thread blocks
+   * until all responses arrived.
+   */
+  private List<BaseClient.HttpResult> run(
+      List<Supplier<CompletableFuture<BaseClient.HttpResult>>> requests) {
+    Semaphore permits = new Semaphore(parallelism);
+    List<CompletableFuture<BaseClient.HttpResult>> futures = new ArrayList<>(requests.size());
+    for (Supplier<CompletableFuture<BaseClient.HttpResult>> request : requests) {
+      CompletableFuture<BaseClient.HttpResult> future;
+      try {
+        permits.acquire();
+        future = request.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        future = CompletableFuture.completedFuture(errorResponse("Interrupted"));
+      } catch (RuntimeException e) {
+        logger.log(Level.SEVERE, e.getMessage());
+        future = CompletableFuture.completedFuture(errorResponse(e.getMessage()));
+      }
+      future.whenComplete((response, e) -> permits.release());
+      futures.add(future);
+    }
+    List<BaseClient.HttpResult> responses = new ArrayList<>(futures.size());
+    for (CompletableFuture<BaseClient.HttpResult> future : futures) {
+      responses.add(future.handle((r, e) -> e == null ? r : errorResponse(e.getMessage())).join());
+    }
+    return responses;
+  }
+
+  /** @return the items of a bulk response, each with the status of the response */
+  static List<BaseClient.HttpResult> split(BaseClient.HttpResult response, int size) {
+    String body = response.getBody();
+    if (body != null) {
+      List<BaseClient.HttpResult> items = new ArrayList<>(size);
+      try (JsonRowIterator rows =
+          JsonRowIterator.of(
+              new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), null)) {
+        rows.forEachRemaining(
+            item -> items.add(new BaseClient.HttpResult(response.getStatus(), item)));
+      } catch (IOException | UncheckedIOException e) {
+        items.clear();
+      }
+      if (items.size() == size) {
+        return items;
+      }
+    }
+    return Collections.nCopies(size, response);
+  }
+
+  /**
+   * @param workItems JSON array of work items
+   * @return the work items in JSON format
+   * @throws IOException if {@code workItems} is not a JSON array
+   */
+  static List<String> parseWorkItems(String workItems) throws IOException {
+    List<String> items = new ArrayList<>();
+    try (JsonRowIterator rows =
+        JsonRowIterator.of(
+            new ByteArrayInputStream(workItems.getBytes(StandardCharsets.UTF_8)), null)) {
+      rows.forEachRemaining(items::add);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return items;
+  }
+
+  /**
+   * @param updates JSON array of objects with the fields {@value #WORK_ITEM_ID_FIELD} and {@value
+   *     #WORK_ITEM_PARTIAL_FIELD}
+   * @return partial metadata keyed by work item Id, in input order
+   * @throws IOException if {@code updates} is malformed or names a work item more than once, whose
+   *     concurrent updates could be applied in any order
+   */
+  static Map<String, String> parseUpdates(String updates) throws IOException {
+    Map<String, String> partials = new LinkedHashMap<>();
+    for (String update : parseWorkItems(updates)) {
+      String id = null;
+      String partial = null;
+      try (JsonParser parser = JsonRowIterator.JSON_FACTORY.createParser(update)) {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+          throw new IOException("Work item update must be an object: " + update);
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String field = parser.getCurrentName();
+          parser.nextToken();
+          if (WORK_ITEM_ID_FIELD.equals(field)) {
+            id = parser.getValueAsString();
+          } else if (WORK_ITEM_PARTIAL_FIELD.equals(field)) {
+            partial = copy(parser);
+          } else {
+            parser.skipChildren();
+          }
+        }
+      }
+      if (id == null || partial == null) {
+        throw new IOException(
+            "Work item update needs " + WORK_ITEM_ID_FIELD + " and " + WORK_ITEM_PARTIAL_FIELD);
+      }
+      if (partials.putIfAbsent(id, partial) != null) {
+        throw new IOException("Work item " + id + " is updated more than once");
+      }
+    }
+    return partials;
+  }
+
+  private static String copy(JsonParser parser) throws IOException {
+    StringWriter writer = new StringWriter();
+    try (JsonGenerator generator = JsonRowIterator.JSON_FACTORY.createGenerator(writer)) {
+      generator.copyCurrentStructure(parser);
+    }
+    return writer.toString();
+  }
+
+  private static BaseClient.HttpResult errorResponse(String message) {
+    return new BaseClient.HttpResult(0, "{\"error\":\"" + message + "\"}");
+  }
+
+  /** Per-item responses of a batch together with the aggregate status. */
+  public static class Result {
+    private final List<String> responses;
+    private final boolean[] failed;
+    private final boolean[] json;
+    private int failedCount;
+
+    Result(List<BaseClient.HttpResult> results) {
+      List<String> bodies = new ArrayList<>(results.size());
+      this.failed = new boolean[results.size()];
+      this.json = new boolean[results.size()];
+      for (int i = 0; i < results.size(); i++) {
+        BaseClient.HttpResult result = results.get(i);
+        bodies.add(result.getBody());
+        if (!result.isSuccessful()) {
+          failed[i] = true;
+          failedCount++;
+        }
+        json[i] = isJson(result.getBody());
+      }
+      this.responses = Collections.unmodifiableList(bodies);
+    }
+
+    /** @return true if the response is exactly one JSON value, which can be written raw */
+    private static boolean isJson(String response) {
+      if (response == null) {
+        return false;
+      }
+      try (JsonParser parser = JsonRowIterator.JSON_FACTORY.createParser(response)) {
+        if (parser.nextToken() == null) {
+          // empty body
+          return false;
+        }
+        parser.skipChildren();
+        return parser.nextToken() == null;
+      } catch (IOException e) {
+        // plain text response, e.g. a bare work item id
+        return false;
+      }
+    }
+
+    /** @return responses in input order */
+    public List<String> getResponses() {
+      return responses;
+    }
+
+    public boolean isSucceeded(int index) {
+      return !failed[index];
+    }
+
+    public int getTotal() {
+      return responses.size();
+    }
+
+    public int getSucceeded() {
+      return responses.size() - failedCount;
+    }
+
+    public int getFailed() {
+      return failedCount;
+    }
+
+    /**
+     * @return {@code {"total":n,"succeeded":n,"failed":n,"results":[{"index":0,"status":"ok" or
+     *     "error","response":...}]}}
+     */
+    public String toJson() {
+      StringWriter writer = new StringWriter(64 * (responses.size() + 1));
+      try (JsonGenerator generator = JsonRowIterator.JSON_FACTORY.createGenerator(writer)) {
+        generator.writeStartObject();
+        generator.writeNumberField("total", getTotal());
+        generator.writeNumberField("succeeded", getSucceeded());
+        generator.writeNumberField("failed", getFailed());
+        generator.writeArrayFieldStart("results");
+        for (int i = 0; i < responses.size(); i++) {
+          generator.writeStartObject();
+          generator.writeNumberField("index", i);
+          generator.writeStringField("status", failed[i] ? "error" : "ok");
+          generator.writeFieldName("response");
+          if (json[i]) {
+            generator.writeRawValue(responses.get(i));
+          } else {
+            generator.writeString(responses.get(i));
+          }
+          generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return writer.toString();
+    }
+  }
+}
@@ -16,27 +16,45 @@
 
 package com.ibm.scis;
 
-import java.io.InputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.logging.Level;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
+import org.apache.http.Header;
 import org.apache.http.HttpEntityEnclosingRequest;
-import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 
 /** A client to create or update work item definition in Sterling InfoHub system */
 public class WorkItemClient extends BaseClient {
   private static final Logger logger = Logger.getLogger(WorkItemClient.class.getName());
 
+  /** Record types of the requests in the {@link OutboxSpool}. */
+  static final String SPOOL_CREATE_TYPE = "workitem.create";
+
+  static final String SPOOL_UPDATE_TYPE = "workitem.update";
+
+  private OutboxSpool spool;
+  private String spoolSenderId;
+
   public WorkItemClient(CloseableHttpClient client) {
-    httpClient = client;
+    super(new ScisClientContext(client));
+  }
+
+  public WorkItemClient(CloseableHttpClient client, CloseableHttpAsyncClient asyncClient) {
+    super(new ScisClientContext(client, asyncClient));
+  }
+
+  public WorkItemClient(ScisClientContext context) {
+    super(context);
   }
 
   /**
@@ -51,17 +69,43 @@ public class WorkItemClient extends BaseClient {
    */
   public String createWorkItem(
       String url, String clientId, String clientSecret, String username, String workItem) {
-    HttpPost httpPost = new HttpPost(url);
+    HttpPost httpPost;
     try {
-      logger.log(Level.INFO, workItem);
-      buildHeaders(clientId, clientSecret, username, httpPost);
-      setPostBody(httpPost, workItem);
+      httpPost = buildCreateRequest(url, clientId, clientSecret, username, workItem);
     } catch (UnsupportedEncodingException e) {
       return buildErrorResponse(e);
     }
     return sendRequest(httpPost);
   }
 
+  /**
+   * Non-blocking counterpart of {@link #createWorkItem(String, String, String, String, String)}.
+   *
+   * @param url Fully specified URL points to InfoHub workitem API
+   * @param clientId Sterling saascore platform client Id
+   * @param clientSecret Sterling saascore platform client secret
+   * @param username IBM identity representing workflow functional user
+   * @param workItem Metadata of new work item
+   * @return Future work item Id
+   */
+  public CompletableFuture<String> createWorkItemAsync(
+      String url, String clientId, String clientSecret, String username, String workItem) {
+    return createWorkItemForResultAsync(url, clientId, clientSecret, username, workItem)
+        .thenApply(HttpResult::getBody);
+  }
+
+  /** @return future status and body of the create response, status 0 if it was not sent */
+  CompletableFuture<HttpResult> createWorkItemForResultAsync(
+      String url, String clientId, String clientSecret, String username, String workItem) {
+    HttpPost httpPost;
+    try {
+      httpPost = buildCreateRequest(url, clientId, clientSecret, username, workItem);
+    } catch (UnsupportedEncodingException e) {
+      return CompletableFuture.completedFuture(new HttpResult(0, buildErrorResponse(e)));
+    }
+    return processHttpRequestForResultAsync(httpPost);
+  }
+
   /** For BAW initializing this class. */
   public WorkItemClient() {
     super();
@@ -85,26 +129,280 @@ public class WorkItemClient extends BaseClient {
       String clientSecret,
       String username,
       String workItemPartial) {
-    String endpoint = String.format("%s/%s", url, workItemId);
-    HttpPut httpPut = new HttpPut(endpoint);
+    HttpPut httpPut;
     try {
-      logger.log(Level.INFO, workItemPartial);
-      buildHeaders(clientId, clientSecret, username, httpPut);
-      setPostBody(httpPut, workItemPartial);
+      httpPut =
+          buildUpdateRequest(url, workItemId, clientId, clientSecret, username, workItemPartial);
     } catch (UnsupportedEncodingException e) {
       return buildErrorResponse(e);
     }
     return sendRequest(httpPut);
   }
 
-  private Map<String, String> buildHeaders(
+  /**
+   * Non-blocking counterpart of {@link #updateWorkItem(String, String, String, String, String,
+   * String)}.
+   *
+   * @param url Fully specified URL points to InfoHub workitem API
+   * @param workItemId Work item Id
+   * @param clientId Sterling saascore platform client Id
+   * @param clientSecret Sterling saascore platform client secret
+   * @param username IBM identity representing workflow functional user
+   * @param workItemPartial Partial metadata of work item for update
+   * @return Future work item Id
+   */
+  public CompletableFuture<String> updateWorkItemAsync(
+      String url,
+      String workItemId,
+      String clientId,
+      String clientSecret,
+      String username,
+      String workItemPartial) {
+    return updateWorkItemForResultAsync(
+            url, workItemId, clientId, clientSecret, username, workItemPartial)
+        .thenApply(HttpResult::getBody);
+  }
+
+  /** @return future status and body of the update response, status 0 if it was not sent */
+  CompletableFuture<HttpResult> updateWorkItemForResultAsync(
+      String url,
+      String workItemId,
+      String clientId,
+      String clientSecret,
+      String username,
+      String workItemPartial) {
+    HttpPut httpPut;
+    try {
+      httpPut =
+          buildUpdateRequest(url, workItemId, clientId, clientSecret, username, workItemPartial);
+    } catch (UnsupportedEncodingException e) {
+      return CompletableFuture.completedFuture(new HttpResult(0, buildErrorResponse(e)));
+    }
+    return processHttpRequestForResultAsync(httpPut);
+  }
+
+  /**
+   * Create many work items via Sterling InfoHub workitem API with a bounded number of requests in
+   * flight. See {@link WorkItemBatch}.
+   *
+   * @param url Fully specified URL points to InfoHub workitem API
+   * @param clientId Sterling saascore platform client Id
+   * @param clientSecret Sterling saascore platform client secret
+   * @param username IBM identity representing workflow functional user
+   * @param workItems JSON array with the metadata of the new work items
+   * @param bulkUrl InfoHub endpoint accepting a JSON array of work items, or null to create them
+   *     one by one
+   * @param parallelism Maximum number of requests in flight, or null for the default
+   * @return Aggregate status with the per-item results in input order
+   */
+  public String createWorkItems(
+      String url,
+      String clientId,
+      String clientSecret,
+      String username,
+      String workItems,
+      String bulkUrl,
+      Integer parallelism) {
+    List<String> items;
+    try {
+      items = WorkItemBatch.parseWorkItems(workItems);
+    } catch (IOException e) {
+      return buildErrorResponse(e);
+    }
+    WorkItemBatch batch = newBatch(parallelism);
+    batch.setBulkUrl(bulkUrl);
+    return batch.create(url, clientId, clientSecret, username, items).toJson();
+  }
+
+  /**
+   * Update many work items via Sterling InfoHub workitem API with a bounded number of requests in
+   * flight. See {@link WorkItemBatch}.
+   *
+   * @param url Fully specified URL points to InfoHub workitem API
+   * @param clientId Sterling saascore platform client Id
+   * @param clientSecret Sterling saascore platform client secret
+   * @param username IBM identity representing workflow functional user
+   * @param workItemUpdates JSON array of objects with the fields workItemId and workItemPartial
+   * @param parallelism Maximum number of requests in flight, or null for the default
+   * @return Aggregate status with the per-item results in input order
+   */
+  public String updateWorkItems(
+      String url,
+      String clientId,
+      String clientSecret,
+      String username,
+      String workItemUpdates,
+      Integer parallelism) {
+    Map<String, String> updates;
+    try {
+      updates = WorkItemBatch.parseUpdates(workItemUpdates);
+    } catch (IOException e) {
+      return buildErrorResponse(e);
+    }
+    return newBatch(parallelism).update(url, clientId, clientSecret, username, updates).toJson();
+  }
+
+  /**
+   * @param spool spool of the spooled requests; {@link OutboxSpool#getDefault()} when not set. Each
+   *     request is sent by the client that spooled it, or after a restart by the client that
+   *     spooled last.
+   */
+  public synchronized void setSpool(OutboxSpool spool) {
+    this.spool = spool;
+  }
+
+  /**
+   * Write a create request to the local {@link OutboxSpool} and return; the work item is created in
+   * the background at least once, also after a JVM restart. The client secret is kept in memory
+   * only, so after a restart spooled requests wait for the next call with the same client Id.
+   *
+   * @param url Fully specified URL points to InfoHub workitem API
+   * @param clientId Sterling saascore platform client Id
+   * @param clientSecret Sterling saascore platform client secret
+   * @param username IBM identity representing workflow functional user
+   * @param workItem Metadata of new work item
+   * @return {@code {"status":"spooled"}}, or an error
+   */
+  public String spoolCreateWorkItem(
+      String url, String clientId, String clientSecret, String username, String workItem) {
+    Map<String, String> fields = new LinkedHashMap<>();
+    fields.put("url", url);
+    fields.put("clientId", clientId);
+    fields.put("username", username);
+    fields.put("body", workItem);
+    return spool(SPOOL_CREATE_TYPE, clientSecret, fields);
+  }
+
+  /**
+   * Write an update request to the local {@link OutboxSpool} and return; see {@link
+   * #spoolCreateWorkItem}.
+   *
+   * @param url Fully specified URL points to InfoHub workitem API
+   * @param workItemId Work item Id to update
+   * @param clientId Sterling saascore platform client Id
+   * @param clientSecret Sterling saascore platform client secret
+   * @param username IBM identity representing workflow functional user
+   * @param workItemPartial Partial metadata of the work item
+   * @return {@code {"status":"spooled"}}, or an error
+   */
+  public String spoolUpdateWorkItem(
+      String url,
+      String workItemId,
+      String clientId,
+      String clientSecret,
+      String username,
+      String workItemPartial) {
+    Map<String, String> fields = new LinkedHashMap<>();
+    fields.put("url", url);
+    fields.put("workItemId", workItemId);
+    fields.put("clientId", clientId);
+    fields.put("username", username);
+    fields.put("body", workItemPartial);
+    return spool(SPOOL_UPDATE_TYPE, clientSecret, fields);
+  }
+
+  private String spool(String type, String clientSecret, Map<String, String> fields) {
+    OutboxSpool target;
+    String senderId;
+    synchronized (this) {
+      if (spool == null) {
+        spool = OutboxSpool.getDefault();
+      }
+      if (spoolSenderId == null) {
+        spoolSenderId = SpoolRouter.newSenderId();
+      }
+      target = spool;
+      senderId = spoolSenderId;
+    }
+    SpoolRouter.register(target, SPOOL_CREATE_TYPE, WorkItemClient::deliverSpooled)
+        .add(senderId, this);
+    SpoolRouter.register(target, SPOOL_UPDATE_TYPE, WorkItemClient::deliverSpooled)
+        .add(senderId, this);
+    fields.put(SpoolRouter.SENDER_FIELD, senderId);
+    target.putSecret(spoolSecretKey(fields.get("clientId")), clientSecret);
+    try {
+      target.append(type, OutboxSpool.toPayload(fields));
+    } catch (IOException e) {
+      return buildErrorResponse(e);
+    }
+    return "{\"status\":\"spooled\"}";
+  }
+
+  private boolean deliverSpooled(OutboxSpool target, Map<String, String> fields)
+      throws IOException {
+    String clientSecret = target.getSecret(spoolSecretKey(fields.get("clientId")));
+    if (clientSecret == null) {
+      return false;
+    }
+    String workItemId = fields.get("workItemId");
+    HttpRequestBase request =
+        workItemId == null
+            ? buildCreateRequest(
+                fields.get("url"),
+                fields.get("clientId"),
+                clientSecret,
+                fields.get("username"),
+                fields.get("body"))
+            : buildUpdateRequest(
+                fields.get("url"),
+                workItemId,
+                fields.get("clientId"),
+                clientSecret,
+                fields.get("username"),
+                fields.get("body"));
+    HttpResult result =
+        executeWithRetry(workItemId == null ? "createWorkItem" : "updateWorkItem", request);
+    if (result.isError()) {
+      throw new IOException(
+          "Work item request failed with status "
+              + result.getStatus()
+              + ": "
+              + PayloadLogger.preview(result.getBody()));
+    }
+    return true;
+  }
+
+  private static String spoolSecretKey(String clientId) {
+    return "infohub:" + clientId;
+  }
+
+  private WorkItemBatch newBatch(Integer parallelism) {
+    WorkItemBatch batch = new WorkItemBatch(this);
+    if (parallelism != null) {
+      batch.setParallelism(parallelism);
+    }
+    return batch;
+  }
+
+  HttpPost buildCreateRequest(
+      String url, String clientId, String clientSecret, String username, String workItem)
+      throws UnsupportedEncodingException {
+    HttpPost httpPost = new HttpPost(url);
+    payloadLogger.request(logger, "createWorkItem", workItem);
+    buildHeaders(clientId, clientSecret, username, httpPost);
+    setPostBody(httpPost, workItem);
+    return httpPost;
+  }
+
+  private HttpPut buildUpdateRequest(
+      String url,
+      String workItemId,
+      String clientId,
+      String clientSecret,
+      String username,
+      String workItemPartial)
+      throws UnsupportedEncodingException {
+    String endpoint = String.format("%s/%s", url, workItemId);
+    HttpPut httpPut = new HttpPut(endpoint);
+    payloadLogger.request(logger, "updateWorkItem", workItemPartial);
+    buildHeaders(clientId, clientSecret, username, httpPut);
+    setPostBody(httpPut, workItemPartial);
+    return httpPut;
+  }
+
+  Header[] buildHeaders(
       String clientId, String clientSecret, String username, HttpUriRequest httpRequest) {
-    ConcurrentMap<String, String> headers = new ConcurrentHashMap<>();
-    headers.put(X_IBM_CLIENT_ID, clientId);
-    headers.put(X_IBM_CLIENT_SECRET, clientSecret);
-    headers.put(IBM_USERNAME, username);
-    headers.forEach(httpRequest::addHeader);
-    return headers;
+    return CredentialHeaders.addInfoHubHeaders(clientId, clientSecret, username, httpRequest);
   }
 
   private void setPostBody(HttpEntityEnclosingRequest httpRequest, String workItem)
@@ -114,16 +412,8 @@ public class WorkItemClient extends BaseClient {
     httpRequest.setEntity(params);
   }
 
-  private String sendRequest(HttpUriRequest httpRequest) {
-    try (CloseableHttpResponse response = httpClient.execute(httpRequest)) {
-      InputStream contentStream = response.getEntity().getContent();
-      String result = Utils.inputStreamToString(contentStream);
-      logger.info(result);
-      return result;
-    } catch (Exception e) {
-      logger.log(Level.SEVERE, e.getMessage());
-      return buildErrorResponse(e);
-    }
+  private String sendRequest(HttpRequestBase httpRequest) {
+    return processHttpRequest(httpRequest);
   }
 
   private String buildErrorResponse(Exception e) {
@@ -36,7 +36,12 @@ public class WorkItemClientBeanInfo extends java.beans.SimpleBeanInfo {
     final String METHOD_NAME = "getMethodDescriptors";
     try {
       MethodDescriptor descriptorList[] = {
-        createWorkItemMethodDescriptor(), updateWorkItemMethodDescriptor()
+        createWorkItemMethodDescriptor(),
+        updateWorkItemMethodDescriptor(),
+        createWorkItemsMethodDescriptor(),
+        updateWorkItemsMethodDescriptor(),
+        spoolCreateWorkItemMethodDescriptor(),
+        spoolUpdateWorkItemMethodDescriptor()
       };
       return descriptorList;
     } catch (Exception e) {
@@ -129,4 +134,194 @@ public class WorkItemClientBeanInfo extends java.beans.SimpleBeanInfo {
     logger.exiting(CLASS_NAME, METHOD_NAME, methodDescriptor);
     return methodDescriptor;
   }
+
+  @SuppressWarnings("unchecked")
+  private MethodDescriptor createWorkItemsMethodDescriptor() throws NoSuchMethodException {
+    final String METHOD_NAME = "createWorkItemsMethodDescriptor";
+    logger.entering(CLASS_NAME, METHOD_NAME);
+
+    Method method =
+        beanClass.getMethod(
+            "createWorkItems",
+            String.class,
+            String.class,
+            String.class,
+            String.class,
+            String.class,
+            String.class,
+            Integer.class);
+
+    ParameterDescriptor param1 = new ParameterDescriptor();
+    param1.setShortDescription("The url of work item client service.");
+    param1.setDisplayName("endpoint");
+
+    ParameterDescriptor param2 = new ParameterDescriptor();
+    param2.setShortDescription("The client id of work item client service.");
+    param2.setDisplayName("client id");
+
+    ParameterDescriptor param3 = new ParameterDescriptor();
+    param3.setShortDescription("The client secret of work item client service.");
+    param3.setDisplayName("client secret");
+
+    ParameterDescriptor param4 = new ParameterDescriptor();
+    param4.setShortDescription("IBM identity representing workflow functional user.");
+    param4.setDisplayName("username");
+
+    ParameterDescriptor param5 = new ParameterDescriptor();
+    param5.setShortDescription("JSON array of the work items to create.");
+    param5.setDisplayName("work items");
+
+    ParameterDescriptor param6 = new ParameterDescriptor();
+    param6.setShortDescription("The url of the bulk work item API, optional.");
+    param6.setDisplayName("bulk endpoint");
+
+    ParameterDescriptor param7 = new ParameterDescriptor();
+    param7.setShortDescription("Maximum number of requests in flight, optional.");
+    param7.setDisplayName("parallelism");
+
+    MethodDescriptor methodDescriptor =
+        new MethodDescriptor(
+            method,
+            new ParameterDescriptor[] {param1, param2, param3, param4, param5, param6, param7});
+
+    logger.exiting(CLASS_NAME, METHOD_NAME, methodDescriptor);
+    return methodDescriptor;
+  }
+
+  @SuppressWarnings("unchecked")
+  private MethodDescriptor updateWorkItemsMethodDescriptor() throws NoSuchMethodException {
+    final String METHOD_NAME = "updateWorkItemsMethodDescriptor";
+    logger.entering(CLASS_NAME, METHOD_NAME);
+
+    Method method =
+        beanClass.getMethod(
+            "updateWorkItems",
+            String.class,
+            String.class,
+            String.class,
+            String.class,
+            String.class,
+            Integer.class);
+
+    ParameterDescriptor param1 = new ParameterDescriptor();
+    param1.setShortDescription("The url of work item client service.");
+    param1.setDisplayName("endpoint");
+
+    ParameterDescriptor param2 = new ParameterDescriptor();
+    param2.setShortDescription("The client id of work item client service.");
+    param2.setDisplayName("client id");
+
+    ParameterDescriptor param3 = new ParameterDescriptor();
+    param3.setShortDescription("The client secret of work item client service.");
+    param3.setDisplayName("client secret");
+
+    ParameterDescriptor param4 = new ParameterDescriptor();
+    param4.setShortDescription("IBM identity representing workflow functional user.");
+    param4.setDisplayName("username");
+
+    ParameterDescriptor param5 = new ParameterDescriptor();
+    param5.setShortDescription(
+        "JSON array of objects with the work item id and the work item content to update.");
+    param5.setDisplayName("work item updates");
+
+    ParameterDescriptor param6 = new ParameterDescriptor();
+    param6.setShortDescription("Maximum number of requests in flight, optional.");
+    param6.setDisplayName("parallelism");
+
+    MethodDescriptor methodDescriptor =
+        new MethodDescriptor(
+            method, new ParameterDescriptor[] {param1, param2, param3, param4, param5, param6});
+
+    logger.exiting(CLASS_NAME, METHOD_NAME, methodDescriptor);
+    return methodDescriptor;
+  }
+
+  @SuppressWarnings("unchecked")
+  private MethodDescriptor spoolCreateWorkItemMethodDescriptor() throws NoSuchMethodException {
+    final String METHOD_NAME = "spoolCreateWorkItemMethodDescriptor";
+    logger.entering(CLASS_NAME, METHOD_NAME);
+
+    Method method =
+        beanClass.getMethod(
+            "spoolCreateWorkItem",
+            String.class,
+            String.class,
+            String.class,
+            String.class,
+            String.class);
+
+    ParameterDescriptor param1 = new ParameterDescriptor();
+    param1.setShortDescription("The url of work item client service.");
+    param1.setDisplayName("endpoint");
+
+    ParameterDescriptor param2 = new ParameterDescriptor();
+    param2.setShortDescription("The client id of work item client service.");
+    param2.setDisplayName("client id");
+
+    ParameterDescriptor param3 = new ParameterDescriptor();
+    param3.setShortDescription("The client secret of work item client service.");
+    param3.setDisplayName("client secret");
+
+    ParameterDescriptor param4 = new ParameterDescriptor();
+    param4.setShortDescription("IBM identity representing workflow functional user.");
+    param4.setDisplayName("username");
+
+    ParameterDescriptor param5 = new ParameterDescriptor();
+    param5.setShortDescription("The work item to create in work item client service.");
+    param5.setDisplayName("work item");
+
+    MethodDescriptor methodDescriptor =
+        new MethodDescriptor(
+            method, new ParameterDescriptor[] {param1, param2, param3, param4, param5});
+
+    logger.exiting(CLASS_NAME, METHOD_NAME, methodDescriptor);
+    return methodDescriptor;
+  }
+
+  @SuppressWarnings("unchecked")
+  private MethodDescriptor spoolUpdateWorkItemMethodDescriptor() throws NoSuchMethodException {
+    final String METHOD_NAME = "spoolUpdateWorkItemMethodDescriptor";
+    logger.entering(CLASS_NAME, METHOD_NAME);
+
+    Method method =
+        beanClass.getMethod(
+            "spoolUpdateWorkItem",
+            String.class,
+            String.class,
+            String.class,
+            String.class,
+            String.class,
+            String.class);
+
+    ParameterDescriptor param1 = new ParameterDescriptor();
+    param1.setShortDescription("The url of work item client service.");
+    param1.setDisplayName("endpoint");
+
+    ParameterDescriptor param2 = new ParameterDescriptor();
+    param2.setShortDescription("The work item id to update in work item client service.");
+    param2.setDisplayName("work item id");
+
+    ParameterDescriptor param3 = new ParameterDescriptor();
+    param3.setShortDescription("The client id of work item client service.");
+    param3.setDisplayName("client id");
+
+    ParameterDescriptor param4 = new ParameterDescriptor();
+    param4.setShortDescription("The client secret of work item client service.");
+    param4.setDisplayName("client secret");
+
+    ParameterDescriptor param5 = new ParameterDescriptor();
+    param5.setShortDescription("IBM identity representing workflow functional user.");
+    param5.setDisplayName("username");
+
+    ParameterDescriptor param6 = new ParameterDescriptor();
+    param6.setShortDescription("The work item content to update in work item client service.");
+    param6.setDisplayName("work item updates");
+
+    MethodDescriptor methodDescriptor =
+        new MethodDescriptor(
+            method, new ParameterDescriptor[] {param1, param2, param3, param4, param5, param6});
+
+    logger.exiting(CLASS_NAME, METHOD_NAME, methodDescriptor);
+    return methodDescriptor;
+  }
 }
@@ -0,0 +1,132 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Properties;
+import org.apache.http.HttpHost;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+  private static final CircuitBreaker.Settings SETTINGS =
+      new CircuitBreaker.Settings(10, 4, 50, 1000, 50, 5000, 2);
+
+  @Test
+  public void shouldOpenWhenFailureRateIsReached() {
+    CircuitBreaker breaker = new CircuitBreaker("host", SETTINGS, 10);
+    call(breaker, false, 10, 0);
+    call(breaker, true, 10, 0);
+    call(breaker, false, 10, 0);
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    call(breaker, true, 10, 0);
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    assertNotNull(breaker.tryAcquire(4999));
+    assertEquals(0, breaker.getActiveCalls());
+  }
+
+  @Test
+  public void shouldOpenWhenCallsAreSlow() {
+    CircuitBreaker breaker = new CircuitBreaker("host", SETTINGS, 10);
+    for (int i = 0; i < 4; i++) {
+      call(breaker, false, i % 2 == 0 ? 1000 : 10, 0);
+    }
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    assertEquals(0, breaker.getFailureRate());
+    assertEquals(50, breaker.getSlowCallRate());
+  }
+
+  @Test
+  public void shouldCloseAfterSuccessfulProbes() {
+    CircuitBreaker breaker = new CircuitBreaker("host", SETTINGS, 10);
+    for (int i = 0; i < 4; i++) {
+      call(breaker, true, 10, 0);
+    }
+    assertNull(breaker.tryAcquire(5000));
+    assertNull(breaker.tryAcquire(5000));
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    // only two probes at a time
+    assertNotNull(breaker.tryAcquire(5000));
+    breaker.release(false, 10, 5000);
+    breaker.release(false, 10, 5000);
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    assertEquals(0, breaker.getFailureRate());
+  }
+
+  @Test
+  public void shouldReopenAfterFailedProbe() {
+    CircuitBreaker breaker = new CircuitBreaker("host", SETTINGS, 10);
+    for (int i = 0; i < 4; i++) {
+      call(breaker, true, 10, 0);
+    }
+    call(breaker, true, 10, 5000);
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    assertNotNull(breaker.tryAcquire(9999));
+    assertNull(breaker.tryAcquire(10000));
+  }
+
+  @Test
+  public void shouldLimitConcurrentCalls() {
+    CircuitBreaker breaker = new CircuitBreaker("host", SETTINGS, 2);
+    assertNull(breaker.tryAcquire(0));
+    assertNull(breaker.tryAcquire(0));
+    assertEquals("Too many concurrent calls to host", breaker.tryAcquire(0));
+    breaker.release(false, 10, 0);
+    assertNull(breaker.tryAcquire(0));
+    assertEquals(2, breaker.getActiveCalls());
+  }
+
+  @Test
+  public void shouldSizeBulkheadFromConnectionLimits() {
+    Properties properties = new Properties();
+    properties.setProperty("scis.http.maxPerRoute", "20");
+    properties.setProperty("scis.http.maxPerRoute.infohub.example.com", "40");
+    ConnectionPoolConfig config = new ConnectionPoolConfig(properties);
+    assertEquals(40, config.getMaxConcurrent(HttpHost.create("https://infohub.example.com")));
+    assertEquals(20, config.getMaxConcurrent(HttpHost.create("https://baw.example.com")));
+
+    properties.setProperty("scis.http.bulkhead.maxConcurrent", "5");
+    config = new ConnectionPoolConfig(properties);
+    assertEquals(5, config.getMaxConcurrent(HttpHost.create("https://infohub.example.com")));
+  }
+
+  @Test
+  public void shouldShareOneBreakerBetweenOverflowHosts() throws Exception {
+    try (ScisClientContext context =
+        new ScisClientContext("breakers", new ConnectionPoolConfig(new Properties()))) {
+      CircuitBreaker first = context.getCircuitBreaker(HttpHost.create("https://host0"));
+      assertNull(first.tryAcquire());
+      for (int i = 1; i < ScisClientContext.MAX_BREAKERS + 10; i++) {
+        context.getCircuitBreaker(HttpHost.create("https://host" + i));
+      }
+      assertSame(first, context.getCircuitBreaker(HttpHost.create("https://host0")));
+      assertEquals(1, first.getActiveCalls());
+      CircuitBreaker other = context.getCircuitBreaker(HttpHost.create("https://one-too-many"));
+      assertEquals(ClientMetrics.OTHER_HOST, other.getHost());
+      assertSame(other, context.getCircuitBreaker(HttpHost.create("https://another")));
+      assertEquals(ScisClientContext.MAX_BREAKERS + 1, context.getCircuitBreakers().size());
+    }
+  }
+
+  private static void call(CircuitBreaker breaker, boolean failure, long duration, long now) {
+    assertNull(breaker.tryAcquire(now));
+    breaker.release(failure, duration, now);
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.management.ObjectName;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ClientMetricsTest {
+  @Mock CloseableHttpClient mockHttpClient;
+
+  @Mock CloseableHttpResponse mockHttpResponse;
+
+  @Test
+  public void shouldRecordWorkItemCalls() throws Exception {
+    when(mockHttpResponse.getStatusLine())
+        .thenReturn(new BasicHttpResponse(HttpVersion.HTTP_1_1, 201, "Created").getStatusLine());
+    when(mockHttpResponse.getEntity())
+        .thenReturn(new StringEntity("{\"id\":\"foo\"}", ContentType.APPLICATION_JSON));
+    when(mockHttpClient.execute(Mockito.any()))
+        .thenReturn(mockHttpResponse)
+        .thenThrow(new IOException("Connection reset"));
+    WorkItemClient client = new WorkItemClient(mockHttpClient);
+    String url = "https://metrics.example.com/workitems";
+    client.createWorkItem(url, "id", "secret", "user", "{\"n\":1}");
+    client.createWorkItem(url, "id", "secret", "user", "{\"n\":1}");
+
+    OperationMetrics metrics =
+        ClientMetrics.getDefault().get("WorkItemClient", "POST", "metrics.example.com");
+    assertEquals(2, metrics.getCount());
+    assertEquals(1, metrics.getErrorCount());
+    assertEquals(Collections.singletonMap(201, 1L), metrics.getStatusCounts());
+    assertEquals(14, metrics.getBytesOut());
+    assertEquals(12, metrics.getBytesIn());
+
+    ObjectName name =
+        new ObjectName(
+            "com.ibm.scis:type=ClientMetrics,client=\"WorkItemClient\","
+                + "operation=\"POST\",host=\"metrics.example.com\"");
+    assertEquals(2L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Count"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldRecordReceivedBytesOfAsyncCalls() throws Exception {
+    CloseableHttpAsyncClient mockAsyncHttpClient = Mockito.mock(CloseableHttpAsyncClient.class);
+    when(mockAsyncHttpClient.isRunning()).thenReturn(true);
+    when(mockAsyncHttpClient.execute(any(HttpUriRequest.class), any(FutureCallback.class)))
+        .thenAnswer(
+            invocation -> {
+              BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+              response.setEntity(
+                  new StringEntity("{\"name\":\"Zo\u00eb\"}", ContentType.APPLICATION_JSON));
+              ((FutureCallback<HttpResponse>) invocation.getArguments()[1]).completed(response);
+              return null;
+            });
+    WorkItemClient client = new WorkItemClient(mockHttpClient, mockAsyncHttpClient);
+    client
+        .updateWorkItemAsync(
+            "https://async-metrics.example.com/workitems", "a", "id", "secret", "user", "{}")
+        .join();
+
+    OperationMetrics metrics =
+        ClientMetrics.getDefault().get("WorkItemClient", "PUT", "async-metrics.example.com");
+    assertEquals(15, metrics.getBytesIn());
+  }
+
+  @Test
+  public void shouldCountReceivedBytesWithoutContentLength() throws Exception {
+    when(mockHttpResponse.getStatusLine())
+        .thenReturn(new BasicHttpResponse(HttpVersion.HTTP_1_1, 201, "Created").getStatusLine());
+    when(mockHttpResponse.getEntity())
+        .thenReturn(
+            new InputStreamEntity(
+                new ByteArrayInputStream("{\"id\":\"foo\"}".getBytes(StandardCharsets.UTF_8)),
+                ContentType.APPLICATION_JSON));
+    when(mockHttpClient.execute(Mockito.any())).thenReturn(mockHttpResponse);
+    new WorkItemClient(mockHttpClient)
+        .createWorkItem("https://chunked.example.com/workitems", "id", "secret", "user", "{}");
+
+    OperationMetrics metrics =
+        ClientMetrics.getDefault().get("WorkItemClient", "POST", "chunked.example.com");
+    assertEquals(12, metrics.getBytesIn());
+  }
+
+  @Test
+  public void shouldCountStreamedBytesAsTheyAreRead() throws Exception {
+    StreamedResponse response = new StreamedResponse();
+    response.setEntity(
+        new InputStreamEntity(
+            new ByteArrayInputStream("[{\"n\":1},{\"n\":2}]".getBytes(StandardCharsets.UTF_8)),
+            ContentType.APPLICATION_JSON));
+    when(mockHttpClient.execute(Mockito.any())).thenReturn(response);
+    OperationMetrics metrics =
+        ClientMetrics.getDefault()
+            .get("InfoHubQueryClient", "executeQueryRows", "rows.example.com");
+    try (JsonRowIterator rows =
+        new InfoHubQueryClient(mockHttpClient)
+            .executeQueryRows(
+                "https://rows.example.com/query", "{}", "id", "secret", "user", null)) {
+      while (rows.hasNext()) {
+        rows.next();
+      }
+    }
+    assertEquals(17, metrics.getBytesIn());
+  }
+
+  @Test
+  public void shouldCountOverflowUnderOtherHost() {
+    ClientMetrics metrics = new ClientMetrics(false);
+    for (int i = 0; i < ClientMetrics.MAX_OPERATIONS; i++) {
+      metrics.get("client", "op", "host" + i);
+    }
+    OperationMetrics other = metrics.get("client", "op", "one-too-many");
+    assertEquals(ClientMetrics.OTHER_HOST, other.getHost());
+    assertSame(other, metrics.get("client", "op", "another"));
+    assertSame(metrics.get("client", "op", "host1"), metrics.get("client", "op", "host1"));
+    assertEquals(ClientMetrics.MAX_OPERATIONS + 1, metrics.getAll().size());
+  }
+
+  @Test
+  public void shouldExportSnapshots() throws Exception {
+    ClientMetrics metrics = new ClientMetrics(false);
+    metrics.get("client", "op", "host").record(System.nanoTime(), 200, 10, 20);
+    List<String> exported = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(1);
+    try (Closeable exporter =
+        metrics.addExporter(
+            snapshots -> {
+              exported.add(ClientMetrics.toJson(snapshots));
+              latch.countDown();
+            },
+            10)) {
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+    assertTrue(
+        exported.get(0),
+        exported
+            .get(0)
+            .startsWith(
+                "[{\"client\":\"client\",\"operation\":\"op\",\"host\":\"host\",\"count\":1,"
+                    + "\"errors\":0,\"bytesIn\":20,\"bytesOut\":10,"));
+    assertTrue(exported.get(0), exported.get(0).endsWith("\"status\":{\"200\":1}}]"));
+  }
+
+  private static final class StreamedResponse extends BasicHttpResponse
+      implements CloseableHttpResponse {
+    StreamedResponse() {
+      super(HttpVersion.HTTP_1_1, 200, "OK");
+    }
+
+    @Override
+    public void close() {}
+  }
+}
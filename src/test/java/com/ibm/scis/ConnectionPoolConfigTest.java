@@ -0,0 +1,121 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Properties;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.Test;
+
+public class ConnectionPoolConfigTest {
+
+  @Test
+  public void shouldUseDefaultsWhenNothingConfigured() {
+    ConnectionPoolConfig config = new ConnectionPoolConfig(new Properties());
+    assertEquals(ConnectionPoolConfig.DEFAULT_MAX_TOTAL, config.getMaxTotal());
+    assertEquals(ConnectionPoolConfig.DEFAULT_MAX_PER_ROUTE, config.getMaxPerRoute());
+    assertEquals(ConnectionPoolConfig.DEFAULT_IDLE_TIMEOUT, config.getIdleTimeout());
+    assertEquals(ConnectionPoolConfig.DEFAULT_TIME_TO_LIVE, config.getTimeToLive());
+    assertEquals(0, config.getMaxPerHost().size());
+  }
+
+  @Test
+  public void shouldApplyConfiguredLimits() {
+    Properties properties = new Properties();
+    properties.setProperty("scis.http.maxTotal", "400");
+    properties.setProperty("scis.http.maxPerRoute", "20");
+    properties.setProperty("scis.http.validateAfterInactivityMs", "500");
+    properties.setProperty("scis.http.maxPerRoute.infohub.example.com", "100");
+    properties.setProperty("scis.http.maxPerRoute.http://baw.example.com:9080", "10");
+    ConnectionPoolConfig config = new ConnectionPoolConfig(properties);
+
+    PoolingHttpClientConnectionManager manager =
+        config.createConnectionManager(SSLConnectionSocketFactory.getSocketFactory());
+
+    assertEquals(400, manager.getMaxTotal());
+    assertEquals(20, manager.getDefaultMaxPerRoute());
+    assertEquals(500, manager.getValidateAfterInactivity());
+    assertEquals(100, manager.getMaxPerRoute(ConnectionPoolConfig.toRoute("infohub.example.com")));
+    assertEquals(
+        10, manager.getMaxPerRoute(ConnectionPoolConfig.toRoute("http://baw.example.com:9080")));
+  }
+
+  @Test
+  public void shouldIgnoreInvalidValues() {
+    Properties properties = new Properties();
+    properties.setProperty("scis.http.maxTotal", "many");
+    ConnectionPoolConfig config = new ConnectionPoolConfig(properties);
+    assertEquals(ConnectionPoolConfig.DEFAULT_MAX_TOTAL, config.getMaxTotal());
+  }
+
+  @Test
+  public void shouldLimitHttp2CallsByStreams() {
+    Properties properties = new Properties();
+    properties.setProperty("scis.http.transport", "http2");
+    properties.setProperty("scis.http.http2.maxConcurrentStreams", "250");
+    ConnectionPoolConfig config = new ConnectionPoolConfig(properties);
+    assertEquals(ConnectionPoolConfig.Transport.HTTP2, config.getTransport());
+    assertEquals(250, config.getMaxConcurrent(new HttpHost("infohub.example.com", 443, "https")));
+
+    properties.setProperty("scis.http.transport", "spdy");
+    assertEquals(
+        ConnectionPoolConfig.Transport.HTTP1, new ConnectionPoolConfig(properties).getTransport());
+  }
+
+  @Test
+  public void shouldApplyNamedOverrides() {
+    Properties properties = new Properties();
+    properties.setProperty("scis.http.maxTotal", "300");
+    properties.setProperty("scis.http.socketTimeoutMs", "10000");
+    properties.setProperty("scis.http.baw.socketTimeoutMs", "120000");
+    properties.setProperty("scis.http.baw.maxPerRoute.baw.example.com", "5");
+    ConnectionPoolConfig config =
+        new ConnectionPoolConfig(ConnectionPoolConfig.forName(properties, "baw"));
+
+    assertEquals(300, config.getMaxTotal());
+    assertEquals(120000, config.getSocketTimeout());
+    assertEquals(BaseClient.CONNECT_TIMEOUT, config.getConnectTimeout());
+    assertEquals(Integer.valueOf(5), config.getMaxPerHost().get("baw.example.com"));
+  }
+
+  @Test
+  public void shouldIsolateContextPools() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty("scis.http.maxTotal", "7");
+    try (ScisClientContext context =
+        new ScisClientContext("test", new ConnectionPoolConfig(properties))) {
+      assertEquals(7, context.getPoolStats().getMax());
+      assertEquals(0, context.getPoolStatsByRoute().size());
+      assertEquals(BaseClient.SOCKET_TIMEOUT, context.getRequestConfig().getSocketTimeout());
+      assertNotSame(ScisClientContext.named(ScisClientContext.BAW), context);
+    }
+  }
+
+  @Test
+  public void shouldShareNamedContexts() {
+    assertSame(
+        ScisClientContext.named(ScisClientContext.INFOHUB), new WorkItemClient().getContext());
+    assertSame(ScisClientContext.named(ScisClientContext.BAW), new UserManageClient().getContext());
+    assertNotNull(ScisClientContext.named(ScisClientContext.INFOHUB).getPoolStats());
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpPost;
+import org.junit.Test;
+
+public class CredentialHeadersTest {
+
+  @Test
+  public void shouldReuseHeadersForSameCredentials() {
+    Header[] first = CredentialHeaders.forInfoHub("tenantA", "secretA", "userA");
+    Header[] second = CredentialHeaders.forInfoHub("tenantA", "secretA", "userA");
+    assertSame(first, second);
+    assertEquals("tenantA", first[0].getValue());
+    assertEquals("secretA", first[1].getValue());
+    assertEquals("userA", first[2].getValue());
+  }
+
+  @Test
+  public void shouldSeparateTenants() {
+    Header[] tenantA = CredentialHeaders.forInfoHub("tenantA", "secretA", "userA");
+    Header[] tenantB = CredentialHeaders.forInfoHub("tenantB", "secretB", "userA");
+    assertNotSame(tenantA, tenantB);
+    assertEquals("tenantB", tenantB[0].getValue());
+    assertEquals("secretB", tenantB[1].getValue());
+  }
+
+  @Test
+  public void shouldStayBounded() {
+    for (int i = 0; i <= CredentialHeaders.MAX_CACHED; i++) {
+      CredentialHeaders.forInfoHub("tenant" + i, "secret", "user");
+    }
+    assertTrue(CredentialHeaders.size() <= CredentialHeaders.MAX_CACHED);
+  }
+
+  @Test
+  public void shouldNotMixCredentialsAcrossThreads() throws Exception {
+    InfoHubQueryClient client = new InfoHubQueryClient();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < 2000; i++) {
+        String tenant = "tenant" + (i % 16);
+        results.add(
+            executor.submit(
+                () -> {
+                  HttpPost post =
+                      client.buildHttpPost(
+                          "testEndpoint", "{}", tenant, tenant + "-secret", tenant + "-user");
+                  return post.getHeaders(BaseClient.X_IBM_CLIENT_ID).length == 1
+                      && tenant.equals(post.getFirstHeader(BaseClient.X_IBM_CLIENT_ID).getValue())
+                      && (tenant + "-secret")
+                          .equals(post.getFirstHeader(BaseClient.X_IBM_CLIENT_SECRET).getValue())
+                      && (tenant + "-user")
+                          .equals(post.getFirstHeader(BaseClient.IBM_USERNAME).getValue());
+                }));
+      }
+      for (Future<Boolean> result : results) {
+        assertTrue(result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.junit.Test;
+
+public class CsrfTokenCacheTest {
+  private final AtomicLong now = new AtomicLong();
+  private final CsrfTokenCache cache = new CsrfTokenCache(now::get);
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private Supplier<CompletableFuture<BaseClient.HttpResult>> loader(int status, String body) {
+    return () -> {
+      loads.incrementAndGet();
+      return CompletableFuture.completedFuture(new BaseClient.HttpResult(status, body));
+    };
+  }
+
+  private String get(String password, Integer lifeTime, String body) {
+    return get(password, lifeTime, 200, body);
+  }
+
+  private String get(String password, Integer lifeTime, int status, String body) {
+    return cache.get("url", "user", password, lifeTime, loader(status, body)).join();
+  }
+
+  private void advanceSeconds(long seconds) {
+    now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+  }
+
+  @Test
+  public void shouldCacheUntilExpiration() {
+    String token = "{\"csrf_token\":\"a\",\"expiration\":100}";
+    assertEquals(token, get("pw", 7200, token));
+    advanceSeconds(80);
+    assertEquals(token, get("pw", 7200, "{\"csrf_token\":\"b\",\"expiration\":100}"));
+    assertEquals(1, loads.get());
+
+    advanceSeconds(30);
+    assertEquals("{\"csrf_token\":\"c\"}", get("pw", 7200, "{\"csrf_token\":\"c\"}"));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void shouldUseRequestedLifeTimeWithoutExpiration() {
+    assertEquals(7200 * 1000L, CsrfTokenCache.lifeTimeMs("{\"csrf_token\":\"a\"}", 7200));
+    assertEquals(0, CsrfTokenCache.lifeTimeMs("{\"csrf_token\":\"a\"}", null));
+    assertEquals(0, CsrfTokenCache.lifeTimeMs("not json", 7200));
+    assertEquals(0, CsrfTokenCache.lifeTimeMs("{\"status\":\"ok\"}", 7200));
+  }
+
+  @Test
+  public void shouldNotCacheErrors() {
+    get("pw", 7200, "{\"error\":\"Unauthorized\"}");
+    get("pw", 7200, 0, "{\"error\":\"Connection refused\"}");
+    get("pw", 7200, 503, "{\"csrf_token\":\"stale\"}");
+    assertEquals(3, loads.get());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void shouldSeparatePasswordsAndInvalidate() {
+    get("pw", 7200, "{\"csrf_token\":\"a\"}");
+    get("other", 7200, "{\"csrf_token\":\"b\"}");
+    assertEquals(2, cache.size());
+
+    cache.invalidate("url", "user");
+    assertEquals(0, cache.size());
+    get("pw", 7200, "{\"csrf_token\":\"c\"}");
+    assertEquals(3, loads.get());
+  }
+
+  @Test
+  public void shouldRefreshInBackgroundBeforeExpiration() throws Exception {
+    String first = "{\"csrf_token\":\"a\",\"expiration\":100}";
+    String second = "{\"csrf_token\":\"b\",\"expiration\":100}";
+    get("pw", null, first);
+    advanceSeconds(95);
+
+    assertEquals(first, get("pw", null, second));
+    for (int i = 0; i < 100 && !second.equals(get("pw", null, second)); i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(second, get("pw", null, second));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void shouldCoalesceConcurrentLoads() {
+    CompletableFuture<BaseClient.HttpResult> response = new CompletableFuture<>();
+    Supplier<CompletableFuture<BaseClient.HttpResult>> pending =
+        () -> {
+          loads.incrementAndGet();
+          return response;
+        };
+    CompletableFuture<String> first = cache.get("url", "user", "pw", 7200, pending);
+    CompletableFuture<String> second = cache.get("url", "user", "pw", 7200, pending);
+    assertSame(first, second);
+
+    response.complete(new BaseClient.HttpResult(200, "{\"csrf_token\":\"a\"}"));
+    assertEquals("{\"csrf_token\":\"a\"}", second.join());
+    assertEquals(1, loads.get());
+    assertEquals("{\"csrf_token\":\"a\"}", get("pw", 7200, "{\"csrf_token\":\"b\"}"));
+    assertEquals(1, loads.get());
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.AsyncEntityProducers;
+import org.apache.hc.core5.http.nio.entity.StringAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http.protocol.HttpCoreContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class Http2TransportClientTest {
+  private final Set<SocketAddress> connections = ConcurrentHashMap.newKeySet();
+  private HttpAsyncServer server;
+  private ScisClientContext context;
+  private String baseUrl;
+
+  @Before
+  public void startServer() throws Exception {
+    server =
+        H2ServerBootstrap.bootstrap()
+            .setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_2)
+            .register("*", new EchoHandler())
+            .create();
+    server.start();
+    ListenerEndpoint endpoint = server.listen(new InetSocketAddress("localhost", 0)).get();
+    baseUrl = "http://localhost:" + ((InetSocketAddress) endpoint.getAddress()).getPort();
+
+    Properties properties = new Properties();
+    properties.setProperty("scis.http.transport", "http2");
+    context = new ScisClientContext("h2test", new ConnectionPoolConfig(properties));
+  }
+
+  @After
+  public void stopServer() throws IOException {
+    context.close();
+    server.close(CloseMode.IMMEDIATE);
+  }
+
+  @Test
+  public void shouldSendQueryOverHttp2() throws IOException {
+    String result =
+        new InfoHubQueryClient(context)
+            .executeQuery(
+                baseUrl + "/query",
+                "{\"query\":\"{ parts }\"}",
+                "testClientId",
+                "testClientSecret",
+                "testUsername");
+    assertEquals("POST HTTP/2.0 {\"query\":\"{ parts }\"}", result);
+  }
+
+  @Test
+  public void shouldMultiplexConcurrentRequestsOverOneConnection() throws Exception {
+    List<CompletableFuture<Integer>> calls = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      calls.add(
+          CompletableFuture.supplyAsync(
+              () -> {
+                try (CloseableHttpResponse response =
+                    context.getHttpClient().execute(new HttpGet(baseUrl + "/users"))) {
+                  return response.getStatusLine().getStatusCode();
+                } catch (IOException e) {
+                  throw new IllegalStateException(e);
+                }
+              }));
+    }
+    for (CompletableFuture<Integer> call : calls) {
+      assertEquals(Integer.valueOf(200), call.get(10, TimeUnit.SECONDS));
+    }
+    assertEquals(1, connections.size());
+    assertEquals(0, context.getPoolStats().getMax());
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void shouldRejectConnectionManagerAndCloseDirectly() throws IOException {
+    assertThrows(
+        UnsupportedOperationException.class, () -> context.getHttpClient().getConnectionManager());
+    context.getHttpClient().close();
+    assertThrows(
+        IOException.class, () -> context.getHttpClient().execute(new HttpGet(baseUrl + "/users")));
+  }
+
+  /** Answers with the method, protocol and body of the request. */
+  private class EchoHandler implements AsyncServerRequestHandler<Message<HttpRequest, String>> {
+    @Override
+    public AsyncRequestConsumer<Message<HttpRequest, String>> prepare(
+        HttpRequest request, EntityDetails entityDetails, HttpContext context) {
+      return new BasicRequestConsumer<>(
+          entityDetails != null ? new StringAsyncEntityConsumer() : null);
+    }
+
+    @Override
+    public void handle(
+        Message<HttpRequest, String> message, ResponseTrigger trigger, HttpContext context)
+        throws HttpException, IOException {
+      HttpCoreContext coreContext = HttpCoreContext.adapt(context);
+      connections.add(coreContext.getEndpointDetails().getRemoteAddress());
+      String body =
+          message.getHead().getMethod()
+              + " "
+              + coreContext.getProtocolVersion()
+              + (message.getBody() != null ? " " + message.getBody() : "");
+      trigger.submitResponse(
+          AsyncResponseBuilder.create(200)
+              .setEntity(AsyncEntityProducers.create(body, ContentType.TEXT_PLAIN))
+              .build(),
+          context);
+    }
+  }
+}
@@ -18,14 +18,29 @@ package com.ibm.scis;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThrows;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicStatusLine;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
@@ -41,6 +56,8 @@ public class InfoHubQueryClientTest extends BaseClient {
 
   @Mock HttpEntity mockEntity;
 
+  @Mock CloseableHttpAsyncClient mockAsyncHttpClient;
+
   @Test
   public void shouldExecuteForJSON() throws IOException {
     InputStream mockStream = new ByteArrayInputStream("{\"foo\":\"bar\"}".getBytes());
@@ -58,6 +75,75 @@ public class InfoHubQueryClientTest extends BaseClient {
     assertEquals("{\"foo\":\"bar\"}", result);
   }
 
+  @Test
+  public void shouldServeCachedQueryWithinTtl() throws IOException {
+    InputStream mockStream = new ByteArrayInputStream("{\"foo\":\"bar\"}".getBytes());
+    when(mockEntity.getContent()).thenReturn(mockStream);
+    when(mockHttpResponse.getEntity()).thenReturn(mockEntity);
+    when(mockHttpResponse.getStatusLine())
+        .thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+    when(mockHttpClient.execute(Mockito.any())).thenReturn(mockHttpResponse);
+    InfoHubQueryClient client = new InfoHubQueryClient(mockHttpClient);
+    for (String dataQuery : Arrays.asList("{\"query\": \"{ a }\"}", "{\"query\":\"{ a }\"}")) {
+      String result =
+          client.executeQueryCached(
+              "testEndpoint", dataQuery, "testClientId", "testClientSecret", "testUsername", 60);
+      assertEquals("{\"foo\":\"bar\"}", result);
+    }
+    verify(mockHttpClient, times(1)).execute(Mockito.any());
+  }
+
+  @Test
+  public void shouldRetryQueryAfterServiceUnavailable() throws IOException {
+    CloseableHttpResponse unavailable = Mockito.mock(CloseableHttpResponse.class);
+    when(unavailable.getStatusLine())
+        .thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 503, "Service Unavailable"));
+    when(unavailable.getFirstHeader("Retry-After")).thenReturn(new BasicHeader("Retry-After", "0"));
+    when(mockHttpResponse.getStatusLine())
+        .thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+    when(mockHttpResponse.getEntity())
+        .thenReturn(new StringEntity("{\"foo\":\"bar\"}", ContentType.APPLICATION_JSON));
+    when(mockHttpClient.execute(Mockito.any())).thenReturn(unavailable, mockHttpResponse);
+    System.setProperty("scis.http.retry.post", "true");
+    try {
+      String result =
+          new InfoHubQueryClient(mockHttpClient)
+              .executeQuery(
+                  "testEndpoint",
+                  "testDataQuery",
+                  "testClientId",
+                  "testClientSecret",
+                  "testUsername");
+      assertEquals("{\"foo\":\"bar\"}", result);
+    } finally {
+      System.clearProperty("scis.http.retry.post");
+    }
+    verify(mockHttpClient, times(2)).execute(Mockito.any());
+  }
+
+  @Test
+  public void shouldFailQueryOnErrorStatus() throws IOException {
+    when(mockHttpResponse.getStatusLine())
+        .thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 500, "Internal Server Error"));
+    when(mockHttpResponse.getEntity())
+        .thenReturn(new StringEntity("{\"errors\":[\"boom\"]}", ContentType.APPLICATION_JSON));
+    when(mockHttpClient.execute(Mockito.any())).thenReturn(mockHttpResponse);
+    IOException exception =
+        assertThrows(
+            IOException.class,
+            () ->
+                new InfoHubQueryClient(mockHttpClient)
+                    .executeQuery(
+                        "testEndpoint",
+                        "testDataQuery",
+                        "testClientId",
+                        "testClientSecret",
+                        "testUsername"));
+    assertEquals(
+        "InfoHub query failed with status 500: {\"errors\":[\"boom\"]}", exception.getMessage());
+    verify(mockHttpClient, times(1)).execute(Mockito.any());
+  }
+
   @Test
   public void shouldExecuteOnNonProdAndReturnJSONWithError() throws IOException {
     InputStream mockStream = new ByteArrayInputStream("{\"error\":\"errorMessage\"}".getBytes());
@@ -95,4 +181,134 @@ public class InfoHubQueryClientTest extends BaseClient {
                         "testUsername"));
     assertEquals("Error occurred", exception.getMessage());
   }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldExecuteAsyncForJSON() throws Exception {
+    InputStream mockStream = new ByteArrayInputStream("{\"foo\":\"bar\"}".getBytes());
+    when(mockEntity.getContent()).thenReturn(mockStream);
+    when(mockHttpResponse.getEntity()).thenReturn(mockEntity);
+    when(mockAsyncHttpClient.isRunning()).thenReturn(true);
+    when(mockAsyncHttpClient.execute(any(HttpUriRequest.class), any(FutureCallback.class)))
+        .thenAnswer(
+            invocation -> {
+              ((FutureCallback<Object>) invocation.getArguments()[1]).completed(mockHttpResponse);
+              return null;
+            });
+    String result =
+        new InfoHubQueryClient(mockHttpClient, mockAsyncHttpClient)
+            .executeQueryAsync(
+                "testEndpoint", "testDataQuery", "testClientId", "testClientSecret", "testUsername")
+            .get();
+    assertEquals("{\"foo\":\"bar\"}", result);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldFailAllPagesOnErrorPage() throws Exception {
+    when(mockHttpResponse.getStatusLine())
+        .thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 500, "Internal Server Error"));
+    when(mockHttpResponse.getEntity())
+        .thenReturn(new StringEntity("{\"errors\":[\"boom\"]}", ContentType.APPLICATION_JSON));
+    when(mockAsyncHttpClient.isRunning()).thenReturn(true);
+    when(mockAsyncHttpClient.execute(any(HttpUriRequest.class), any(FutureCallback.class)))
+        .thenAnswer(
+            invocation -> {
+              ((FutureCallback<Object>) invocation.getArguments()[1]).completed(mockHttpResponse);
+              return null;
+            });
+    IOException exception =
+        assertThrows(
+            IOException.class,
+            () ->
+                new InfoHubQueryClient(mockHttpClient, mockAsyncHttpClient)
+                    .executeQueryAllPages(
+                        "testEndpoint",
+                        "{offset:${offset}}",
+                        "testClientId",
+                        "testClientSecret",
+                        "testUsername",
+                        "orders",
+                        null,
+                        null));
+    assertEquals(
+        "InfoHub query failed with status 500: {\"errors\":[\"boom\"]}", exception.getMessage());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldCompleteExceptionallyIfAsyncRequestFails() {
+    when(mockAsyncHttpClient.isRunning()).thenReturn(true);
+    when(mockAsyncHttpClient.execute(any(HttpUriRequest.class), any(FutureCallback.class)))
+        .thenAnswer(
+            invocation -> {
+              ((FutureCallback<Object>) invocation.getArguments()[1])
+                  .failed(new IOException("Connection refused"));
+              return null;
+            });
+    Throwable exception =
+        assertThrows(
+            ExecutionException.class,
+            () ->
+                new InfoHubQueryClient(mockHttpClient, mockAsyncHttpClient)
+                    .executeQueryAsync(
+                        "testEndpoint",
+                        "testDataQuery",
+                        "testClientId",
+                        "testClientSecret",
+                        "testUsername")
+                    .get());
+    assertEquals("Connection refused", exception.getCause().getMessage());
+  }
+
+  @Test
+  public void shouldStreamQueryRows() throws IOException {
+    InputStream mockStream =
+        new ByteArrayInputStream(
+            "{\"data\":{\"orders\":[{\"id\":\"a\"},{\"id\":\"b\"}]}}".getBytes());
+    when(mockEntity.getContent()).thenReturn(mockStream);
+    when(mockHttpResponse.getEntity()).thenReturn(mockEntity);
+    when(mockHttpClient.execute(Mockito.any())).thenReturn(mockHttpResponse);
+    List<String> rows = new ArrayList<>();
+    int count =
+        new InfoHubQueryClient(mockHttpClient)
+            .executeQueryStreaming(
+                "testEndpoint",
+                "testDataQuery",
+                "testClientId",
+                "testClientSecret",
+                "testUsername",
+                "orders",
+                rows::add);
+    assertEquals(2, count);
+    assertEquals(Arrays.asList("{\"id\":\"a\"}", "{\"id\":\"b\"}"), rows);
+    verify(mockHttpResponse).close();
+  }
+
+  @Test
+  public void shouldFailStreamingQueryOnErrorStatus() throws IOException {
+    when(mockHttpResponse.getStatusLine())
+        .thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 503, "Service Unavailable"));
+    when(mockHttpResponse.getEntity())
+        .thenReturn(new StringEntity("<html>Down for maintenance</html>", ContentType.TEXT_HTML));
+    when(mockHttpClient.execute(Mockito.any())).thenReturn(mockHttpResponse);
+    IOException exception =
+        assertThrows(
+            IOException.class,
+            () ->
+                new InfoHubQueryClient(mockHttpClient)
+                    .executeQueryStreaming(
+                        "testEndpoint",
+                        "testDataQuery",
+                        "testClientId",
+                        "testClientSecret",
+                        "testUsername",
+                        "orders",
+                        row -> {}));
+    assertEquals(
+        "InfoHub query failed with HTTP/1.1 503 Service Unavailable: "
+            + "<html>Down for maintenance</html>",
+        exception.getMessage());
+    verify(mockHttpResponse).close();
+  }
 }
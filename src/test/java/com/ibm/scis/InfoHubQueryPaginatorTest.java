@@ -0,0 +1,140 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InfoHubQueryPaginatorTest {
+
+  @Mock InfoHubQueryClient mockQueryClient;
+
+  private void respond(String query, String response) {
+    when(mockQueryClient.executeQueryAsync(
+            anyString(), eq(query), anyString(), anyString(), anyString()))
+        .thenReturn(CompletableFuture.completedFuture(response));
+  }
+
+  @Test
+  public void shouldFollowOffsetsUntilShortPage() throws IOException {
+    respond("{first:2,offset:0}", "{\"data\":{\"orders\":[{\"id\":1},{\"id\":2}]}}");
+    respond("{first:2,offset:2}", "{\"data\":{\"orders\":[{\"id\":3},{\"id\":4}]}}");
+    respond("{first:2,offset:4}", "{\"data\":{\"orders\":[{\"id\":5}]}}");
+    InfoHubQueryPaginator paginator = new InfoHubQueryPaginator(mockQueryClient, "orders");
+    paginator.setPageSize(2);
+
+    String result =
+        paginator.fetchAll(
+            "testEndpoint",
+            "{first:${pageSize},offset:${offset}}",
+            "testClientId",
+            "testClientSecret",
+            "testUsername");
+
+    assertEquals("[{\"id\":1},{\"id\":2},{\"id\":3},{\"id\":4},{\"id\":5}]", result);
+  }
+
+  @Test
+  public void shouldFollowCursorsUntilLastPage() throws IOException {
+    respond(
+        "{after:null}",
+        "{\"orders\":[{\"id\":1}],\"pageInfo\":{\"endCursor\":\"c1\",\"hasNextPage\":true}}");
+    respond(
+        "{after:\"c1\"}",
+        "{\"orders\":[{\"id\":2}],\"pageInfo\":{\"endCursor\":\"c2\",\"hasNextPage\":false}}");
+    InfoHubQueryPaginator paginator = new InfoHubQueryPaginator(mockQueryClient, "orders");
+    paginator.setPageSize(1);
+    paginator.setPrefetch(false);
+
+    String result =
+        paginator.fetchAll(
+            "testEndpoint", "{after:${cursor}}", "testClientId", "testClientSecret", "user");
+
+    assertEquals("[{\"id\":1},{\"id\":2}]", result);
+  }
+
+  @Test
+  public void shouldStopAtMaxPages() throws IOException {
+    when(mockQueryClient.executeQueryAsync(
+            anyString(), anyString(), anyString(), anyString(), anyString()))
+        .thenReturn(CompletableFuture.completedFuture("{\"orders\":[{\"id\":1}]}"));
+    InfoHubQueryPaginator paginator = new InfoHubQueryPaginator(mockQueryClient, "orders");
+    paginator.setPageSize(1);
+    paginator.setMaxPages(3);
+
+    int rows =
+        paginator.forEachPage(
+            "testEndpoint",
+            "{offset:${offset}}",
+            "testClientId",
+            "testClientSecret",
+            "testUsername",
+            page -> {});
+
+    assertEquals(3, rows);
+    verify(mockQueryClient, times(3))
+        .executeQueryAsync(anyString(), anyString(), anyString(), anyString(), anyString());
+  }
+
+  @Test
+  public void shouldFetchSinglePageWithoutOffsetOrCursor() throws IOException {
+    when(mockQueryClient.executeQueryAsync(
+            anyString(), anyString(), anyString(), anyString(), anyString()))
+        .thenReturn(CompletableFuture.completedFuture("{\"orders\":[{\"id\":1}]}"));
+    InfoHubQueryPaginator paginator = new InfoHubQueryPaginator(mockQueryClient, "orders");
+    paginator.setPageSize(1);
+
+    String result =
+        paginator.fetchAll(
+            "testEndpoint", "{first:${pageSize}}", "testClientId", "testClientSecret", "user");
+
+    assertEquals("[{\"id\":1}]", result);
+    verify(mockQueryClient, times(1))
+        .executeQueryAsync(anyString(), anyString(), anyString(), anyString(), anyString());
+  }
+
+  @Test
+  public void shouldPropagateFailedPage() {
+    CompletableFuture<String> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new IOException("Connection reset"));
+    when(mockQueryClient.executeQueryAsync(
+            anyString(), anyString(), anyString(), anyString(), anyString()))
+        .thenReturn(failed);
+    InfoHubQueryPaginator paginator = new InfoHubQueryPaginator(mockQueryClient, "orders");
+
+    Throwable exception =
+        assertThrows(
+            IOException.class,
+            () ->
+                paginator.fetchAll(
+                    "testEndpoint", "{}", "testClientId", "testClientSecret", "testUsername"));
+    assertEquals("Connection reset", exception.getMessage());
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class JsonRowIteratorTest {
+
+  private static JsonRowIterator rows(String json, String rowsField) throws IOException {
+    return JsonRowIterator.of(
+        new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), rowsField);
+  }
+
+  private static List<String> collect(JsonRowIterator iterator) throws IOException {
+    List<String> result = new ArrayList<>();
+    try (JsonRowIterator rows = iterator) {
+      rows.forEachRemaining(result::add);
+    }
+    return result;
+  }
+
+  @Test
+  public void shouldStreamRowsOfNamedArray() throws IOException {
+    String json =
+        "{\"data\":{\"orders\":[{\"id\":1,\"lines\":[{\"sku\":\"a\"}]},{\"id\":2}],"
+            + "\"total\":2}}";
+    assertEquals(
+        Arrays.asList("{\"id\":1,\"lines\":[{\"sku\":\"a\"}]}", "{\"id\":2}"),
+        collect(rows(json, "orders")));
+  }
+
+  @Test
+  public void shouldStreamRowsOfRootArray() throws IOException {
+    assertEquals(
+        Arrays.asList("{\"id\":\"a\"}", "\"b\"", "3"),
+        collect(rows("[{\"id\":\"a\"},\"b\",3]", null)));
+  }
+
+  @Test
+  public void shouldReturnNoRowsWhenArrayIsMissing() throws IOException {
+    JsonRowIterator iterator = rows("{\"errors\":[{\"message\":\"bad query\"}]}", "orders");
+    assertFalse(iterator.hasNext());
+    iterator.close();
+  }
+
+  @Test
+  public void shouldFailOnMalformedJson() throws IOException {
+    JsonRowIterator iterator = rows("{\"orders\":[{\"id\":1},{\"id\":", "orders");
+    iterator.next();
+    assertThrows(UncheckedIOException.class, iterator::hasNext);
+    iterator.close();
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void shouldReportQuantilesWithinBucketPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1; value <= 10000; value++) {
+      histogram.record(value);
+    }
+    assertEquals(10000, histogram.getCount());
+    assertEquals(10000, histogram.getMax());
+    assertEquals(5000.5, histogram.getMean(), 0.001);
+    assertWithin(5000, histogram.getValueAtQuantile(0.5));
+    assertWithin(9900, histogram.getValueAtQuantile(0.99));
+    assertEquals(10000, histogram.getValueAtQuantile(1));
+    assertEquals(1, histogram.getValueAtQuantile(0));
+  }
+
+  @Test
+  public void shouldMapEveryValueToTheBucketBoundingIt() {
+    for (long value : new long[] {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789, 1L << 40}) {
+      int index = LatencyHistogram.index(value);
+      assertTrue(value <= LatencyHistogram.upperBound(index));
+      assertTrue(index == 0 || value > LatencyHistogram.upperBound(index - 1));
+    }
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.index(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void shouldReportZeroWhenEmpty() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getValueAtQuantile(0.99));
+    assertEquals(0, histogram.getMean(), 0);
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue(actual + " is not within 12.5% of " + expected, actual >= expected);
+    assertTrue(actual + " is not within 12.5% of " + expected, actual <= expected * 1.125);
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class LruCacheTest {
+
+  @Test
+  public void shouldDropLeastRecentlyUsed() {
+    LruCache<String, String> cache = new LruCache<>(2);
+    cache.put("a", "A");
+    cache.put("b", "B");
+    assertEquals("A", cache.get("a"));
+    cache.put("c", "C");
+    assertEquals(2, cache.size());
+    assertNull(cache.get("b"));
+    assertEquals("A", cache.get("a"));
+    assertEquals("C", cache.get("c"));
+  }
+
+  @Test
+  public void shouldCreateMissingValuesOnce() {
+    LruCache<String, String> cache = new LruCache<>(10);
+    AtomicInteger loads = new AtomicInteger();
+    assertEquals("A0", cache.computeIfAbsent("a", key -> "A" + loads.getAndIncrement()));
+    assertEquals("A0", cache.computeIfAbsent("a", key -> "A" + loads.getAndIncrement()));
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void shouldRemoveMatchingKeys() {
+    LruCache<String, String> cache = new LruCache<>(10);
+    cache.put("a1", "A");
+    cache.put("a2", "A");
+    cache.put("b1", "B");
+    cache.removeIf(key -> key.startsWith("a"));
+    assertEquals(1, cache.size());
+    assertEquals("B", cache.get("b1"));
+    assertThrows(IllegalArgumentException.class, () -> new LruCache<>(0));
+  }
+}
@@ -16,17 +16,49 @@
 
 package com.ibm.scis;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Transport;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -50,6 +82,8 @@ public class MailPlusTest {
 
   private Transport transport = Mockito.mock(Transport.class);
 
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
   /** Send mail without recipient * */
   @Test
   public void test_sendEmail_withoutRecipient() {
@@ -197,4 +231,415 @@ public class MailPlusTest {
             attachmentFileNames);
     verify(mockDelegator, times(1)).send(any(Message.class), any(String.class), any(String.class));
   }
+
+  @Test
+  public void test_sendEmail_doesNotLogPassword() throws MessagingException {
+    List<LogRecord> records = new CopyOnWriteArrayList<>();
+    Handler handler =
+        new Handler() {
+          @Override
+          public void publish(LogRecord record) {
+            records.add(record);
+          }
+
+          @Override
+          public void flush() {}
+
+          @Override
+          public void close() {}
+        };
+    Logger logger = Logger.getLogger(MailPlus.class.getName());
+    Level level = logger.getLevel();
+    logger.setLevel(Level.FINER);
+    logger.addHandler(handler);
+    try {
+      new MailPlus(Mockito.mock(TransportDelegator.class))
+          .sendMessageWithCredentials(
+              smtpHost,
+              username,
+              password,
+              to,
+              from,
+              replyTo,
+              cc,
+              bcc,
+              subject,
+              contentType,
+              content,
+              importance,
+              attachmentFileNames);
+    } finally {
+      logger.removeHandler(handler);
+      logger.setLevel(level);
+    }
+    LogRecord entry = records.get(0);
+    assertTrue(entry.getMessage().startsWith("ENTRY"));
+    List<Object> parameters = Arrays.asList(entry.getParameters());
+    assertFalse(parameters.contains(password));
+    assertTrue(parameters.contains(username));
+  }
+
+  @Test
+  public void test_sendBatch_reportsEachMessage() throws MessagingException {
+    TransportDelegator mockDelegator = Mockito.mock(TransportDelegator.class);
+    String messages =
+        "[{\"to\":\"a@ibm.com\",\"from\":\"sender@ibm.com\",\"subject\":\"s\","
+            + "\"contentType\":\"text/plain\",\"content\":\"c\"},"
+            + "{\"to\":\"b@ibm.com\",\"from\":\"sender@ibm.com\",\"subject\":\"s\","
+            + "\"contentType\":\"text/plain\"},"
+            + "{\"to\":\"c@ibm.com\",\"from\":\"sender@ibm.com\",\"subject\":\"s\","
+            + "\"contentType\":\"text/html\",\"content\":\"<p>c</p>\"}]";
+    String result =
+        new MailPlus(mockDelegator)
+            .sendMessagesWithCredentials(smtpHost, username, password, messages);
+    assertEquals(
+        "{\"total\":3,\"sent\":2,\"failed\":1,\"results\":["
+            + "{\"index\":0,\"status\":\"sent\"},"
+            + "{\"index\":1,\"status\":\"error\","
+            + "\"error\":\"The 'Content' field should not be empty.\"},"
+            + "{\"index\":2,\"status\":\"sent\"}]}",
+        result);
+    verify(mockDelegator, times(2)).send(any(Message.class), eq(username), eq(password));
+  }
+
+  @Test
+  public void test_sendBatch_withTemplate() throws Exception {
+    TransportDelegator mockDelegator = Mockito.mock(TransportDelegator.class);
+    List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    doAnswer(
+            invocation -> {
+              Message message = (Message) invocation.getArguments()[0];
+              sent.add(message.getAllRecipients()[0] + " " + message.getContent());
+              return null;
+            })
+        .when(mockDelegator)
+        .send(any(Message.class), any(String.class), any(String.class));
+    MailMessage.Builder template =
+        MailMessage.builder()
+            .to("{{email}}")
+            .from(from)
+            .subject(subject)
+            .contentType(contentType)
+            .content("Dear {{ name }}, order {{order}} is delayed.");
+    List<Map<String, String>> recipients = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      Map<String, String> variables = new HashMap<>();
+      variables.put("email", "user" + i + "@ibm.com");
+      variables.put("name", "User " + i);
+      variables.put("order", "PO-" + i);
+      recipients.add(variables);
+    }
+
+    MailBatchResult result =
+        new MailPlus(mockDelegator).sendBatch(smtpHost, username, password, template, recipients);
+
+    assertEquals(20, result.getSent());
+    assertEquals(20, sent.size());
+    assertTrue(sent.contains("user7@ibm.com Dear User 7, order PO-7 is delayed."));
+  }
+
+  @Test
+  public void test_sendBatch_boundsMessagesBuiltAhead() throws Exception {
+    TransportDelegator mockDelegator = Mockito.mock(TransportDelegator.class);
+    CountDownLatch sending = new CountDownLatch(MailPlus.DEFAULT_BATCH_CONNECTIONS);
+    CountDownLatch release = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              sending.countDown();
+              release.await(10, TimeUnit.SECONDS);
+              return null;
+            })
+        .when(mockDelegator)
+        .send(any(Message.class), any(String.class), any(String.class));
+    Set<Integer> built = ConcurrentHashMap.newKeySet();
+    List<Map<String, String>> recipients = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      int index = i;
+      Map<String, String> variables =
+          new HashMap<String, String>() {
+            @Override
+            public String get(Object key) {
+              built.add(index);
+              return super.get(key);
+            }
+          };
+      variables.put("email", "user" + i + "@ibm.com");
+      recipients.add(variables);
+    }
+    MailMessage.Builder template =
+        MailMessage.builder()
+            .to("{{email}}")
+            .from(from)
+            .subject(subject)
+            .contentType(contentType)
+            .content(content);
+
+    CompletableFuture<MailBatchResult> result =
+        CompletableFuture.supplyAsync(
+            () ->
+                new MailPlus(mockDelegator)
+                    .sendBatch(smtpHost, username, password, template, recipients));
+    assertTrue(sending.await(10, TimeUnit.SECONDS));
+    Thread.sleep(50);
+    assertTrue(
+        built.size()
+            <= MailPlus.DEFAULT_BATCH_CONNECTIONS * (MailPlus.BUILD_AHEAD_PER_CONNECTION + 1));
+    release.countDown();
+
+    assertEquals(50, result.get(10, TimeUnit.SECONDS).getSent());
+    assertEquals(50, built.size());
+  }
+
+  @Test
+  public void test_send_doesNotLeakFieldsBetweenMessages() throws Exception {
+    TransportDelegator mockDelegator = Mockito.mock(TransportDelegator.class);
+    List<Message> sent = new ArrayList<>();
+    doAnswer(
+            invocation -> {
+              sent.add((Message) invocation.getArguments()[0]);
+              return null;
+            })
+        .when(mockDelegator)
+        .send(any(Message.class), any(String.class), any(String.class));
+    MailPlus mailPlus = new MailPlus(mockDelegator);
+    mailPlus.sendMessageWithCredentials(
+        smtpHost,
+        username,
+        password,
+        to,
+        from,
+        replyTo,
+        cc,
+        bcc,
+        subject,
+        contentType,
+        content,
+        "high",
+        null);
+    mailPlus.sendMessageWithCredentials(
+        smtpHost,
+        username,
+        password,
+        to,
+        from,
+        null,
+        null,
+        null,
+        subject,
+        contentType,
+        content,
+        null,
+        null);
+
+    assertEquals(2, sent.size());
+    assertEquals(1, sent.get(0).getRecipients(Message.RecipientType.CC).length);
+    assertNull(sent.get(1).getRecipients(Message.RecipientType.CC));
+    assertNull(sent.get(1).getRecipients(Message.RecipientType.BCC));
+    assertNull(sent.get(1).getHeader("Importance"));
+  }
+
+  @Test
+  public void test_send_streamsAttachments() throws Exception {
+    File file = File.createTempFile("scis-attachment", ".bin");
+    file.deleteOnExit();
+    byte[] fileContent = new byte[(int) MailAttachment.DEFAULT_MMAP_THRESHOLD + 1];
+    Arrays.fill(fileContent, (byte) 'x');
+    Files.write(file.toPath(), fileContent);
+    TransportDelegator mockDelegator = Mockito.mock(TransportDelegator.class);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    doAnswer(
+            invocation -> {
+              Message message = (Message) invocation.getArguments()[0];
+              message.saveChanges();
+              message.writeTo(out);
+              return null;
+            })
+        .when(mockDelegator)
+        .send(any(Message.class), any(String.class), any(String.class));
+    MailMessage message =
+        MailMessage.builder()
+            .to(to)
+            .from(from)
+            .subject(subject)
+            .contentType(contentType)
+            .content(content)
+            .attachmentFileNames(file.getPath())
+            .attachment(
+                MailAttachment.fromBytes(
+                    "report.csv", "text/csv", "id,name\n1,a\n".getBytes(StandardCharsets.UTF_8)))
+            .attachment(
+                MailAttachment.fromStream(
+                    "notes.txt",
+                    null,
+                    new ByteArrayInputStream("notes".getBytes(StandardCharsets.UTF_8)),
+                    -1))
+            .build();
+    assertTrue(
+        message.getAttachments().get(0).getDataSource()
+            instanceof MailAttachment.MappedFileDataSource);
+
+    new MailPlus(mockDelegator).send(smtpHost, username, password, message);
+
+    String mime = out.toString("US-ASCII");
+    assertTrue(mime.contains("filename=report.csv"));
+    assertTrue(mime.contains(Base64.getMimeEncoder().encodeToString("notes".getBytes("UTF-8"))));
+    assertTrue(mime.contains(Base64.getEncoder().encodeToString(Arrays.copyOf(fileContent, 57))));
+  }
+
+  @Test
+  public void test_build_rejectsOversizedMessage() {
+    System.setProperty(MailMessage.MAX_MESSAGE_BYTES_PROPERTY, "64");
+    try {
+      MailMessage.Builder builder =
+          MailMessage.builder()
+              .to(to)
+              .from(from)
+              .subject(subject)
+              .contentType(contentType)
+              .content(content)
+              .attachment(MailAttachment.fromBytes("big.bin", null, new byte[64]));
+      MessagingException e = assertThrows(MessagingException.class, builder::build);
+      assertTrue(e.getMessage().contains("more than the maximum of 64"));
+    } finally {
+      System.clearProperty(MailMessage.MAX_MESSAGE_BYTES_PROPERTY);
+    }
+  }
+
+  @Test
+  public void test_build_countsContentInEncodedBytes() {
+    System.setProperty(MailMessage.MAX_MESSAGE_BYTES_PROPERTY, "64");
+    try {
+      char[] accents = new char[40];
+      Arrays.fill(accents, '\u00e9');
+      MailMessage.Builder builder =
+          MailMessage.builder()
+              .to(to)
+              .from(from)
+              .subject(subject)
+              .contentType(contentType)
+              .content(new String(accents));
+      MessagingException e = assertThrows(MessagingException.class, builder::build);
+      assertTrue(e.getMessage().contains("The message has 80 bytes"));
+    } finally {
+      System.clearProperty(MailMessage.MAX_MESSAGE_BYTES_PROPERTY);
+    }
+  }
+
+  @Test
+  public void test_build_sharesLimitBetweenStreams() throws Exception {
+    System.setProperty(MailMessage.MAX_MESSAGE_BYTES_PROPERTY, "64");
+    try {
+      MailMessage.Builder builder =
+          MailMessage.builder()
+              .to(to)
+              .from(from)
+              .subject(subject)
+              .contentType(contentType)
+              .content(content);
+      for (String name : Arrays.asList("a.txt", "b.txt")) {
+        builder.attachment(
+            MailAttachment.fromStream(name, null, new ByteArrayInputStream(new byte[20]), -1));
+      }
+      List<MailAttachment> attachments = builder.build().getAttachments();
+      byte[] buffer = new byte[64];
+      try (InputStream first = attachments.get(0).getDataSource().getInputStream()) {
+        assertEquals(20, first.read(buffer));
+      }
+      try (InputStream second = attachments.get(1).getDataSource().getInputStream()) {
+        IOException e = assertThrows(IOException.class, () -> second.read(buffer));
+        assertEquals("Attachment b.txt exceeds the maximum message size", e.getMessage());
+      }
+    } finally {
+      System.clearProperty(MailMessage.MAX_MESSAGE_BYTES_PROPERTY);
+    }
+  }
+
+  @Test
+  public void test_sendTemplatedMessages_escapesHtml() throws Exception {
+    TransportDelegator mockDelegator = Mockito.mock(TransportDelegator.class);
+    List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    doAnswer(
+            invocation -> {
+              Message message = (Message) invocation.getArguments()[0];
+              sent.add(message.getSubject() + " " + message.getContent());
+              return null;
+            })
+        .when(mockDelegator)
+        .send(any(Message.class), any(String.class), any(String.class));
+    String message =
+        "{\"to\":\"{{email}}\",\"from\":\"sender@ibm.com\",\"subject\":\"Order {{order}}\","
+            + "\"contentType\":\"text/html\","
+            + "\"content\":\"<p>Dear {{name}},</p>{{{footer}}}\"}";
+    String recipients =
+        "[{\"email\":\"a@ibm.com\",\"name\":\"<b>A & B</b>\",\"order\":\"PO-1\","
+            + "\"footer\":\"<hr/>\"},{\"email\":\"b@ibm.com\",\"order\":\"PO-2\"}]";
+
+    String result =
+        new MailPlus(mockDelegator)
+            .sendTemplatedMessagesWithCredentials(
+                smtpHost, username, password, "delay", "1", message, recipients);
+
+    assertTrue(result.startsWith("{\"total\":2,\"sent\":2,\"failed\":0"));
+    assertTrue(sent.contains("Order PO-1 <p>Dear &lt;b&gt;A &amp; B&lt;/b&gt;,</p><hr/>"));
+    assertTrue(sent.contains("Order PO-2 <p>Dear ,</p>"));
+  }
+
+  @Test
+  public void test_enqueueMessage_reportsStatus() throws Exception {
+    TransportDelegator mockDelegator = Mockito.mock(TransportDelegator.class);
+    MailQueue queue = new MailQueue(10, 1, MailQueue.OverflowPolicy.REJECT, 0, 10000);
+    MailPlus mailPlus = new MailPlus(mockDelegator, queue);
+    String trackingId =
+        mailPlus.enqueueMessageWithCredentials(
+            smtpHost,
+            username,
+            password,
+            to,
+            from,
+            replyTo,
+            cc,
+            bcc,
+            subject,
+            contentType,
+            content,
+            importance,
+            null);
+    queue.close();
+
+    verify(mockDelegator, times(1)).send(any(Message.class), eq(username), eq(password));
+    assertEquals(
+        "{\"trackingId\":\"" + trackingId + "\",\"status\":\"sent\"}",
+        mailPlus.getMessageStatus(trackingId));
+  }
+
+  @Test
+  public void test_spoolMessage_sendsFromSpool() throws Exception {
+    TransportDelegator mockDelegator = Mockito.mock(TransportDelegator.class);
+    OutboxSpool spool = new OutboxSpool(folder.getRoot(), 4096, 0, 3, false);
+    MailPlus mailPlus = new MailPlus(mockDelegator, null, spool);
+    mailPlus.spoolMessageWithCredentials(
+        smtpHost,
+        username,
+        password,
+        to,
+        from,
+        replyTo,
+        cc,
+        bcc,
+        subject,
+        contentType,
+        content,
+        importance,
+        null);
+    assertEquals(1, spool.getPendingCount());
+    assertTrue(
+        new String(Files.readAllBytes(folder.getRoot().listFiles()[0].toPath()), "UTF-8")
+                .indexOf(password)
+            < 0);
+
+    spool.dispatch();
+
+    assertEquals(0, spool.getPendingCount());
+    verify(mockDelegator, times(1)).send(any(Message.class), eq(username), eq(password));
+  }
 }
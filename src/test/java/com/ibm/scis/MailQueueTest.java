@@ -0,0 +1,160 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+import org.junit.After;
+import org.junit.Test;
+
+public class MailQueueTest {
+  private final CountDownLatch sending = new CountDownLatch(1);
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final TransportDelegator delegator = mock(TransportDelegator.class);
+  private MailQueue queue;
+
+  @After
+  public void closeQueue() {
+    release.countDown();
+    if (queue != null) {
+      queue.close();
+    }
+  }
+
+  private static Message message() {
+    return new MimeMessage(Session.getInstance(System.getProperties()));
+  }
+
+  /** Make the single worker wait in the first send until {@link #release} is counted down. */
+  private void blockFirstSend() throws MessagingException {
+    doAnswer(
+            invocation -> {
+              sending.countDown();
+              release.await(10, TimeUnit.SECONDS);
+              return null;
+            })
+        .when(delegator)
+        .send(any(Message.class), any(String.class), any(String.class));
+  }
+
+  @Test
+  public void shouldFallBackToBlockForInvalidPolicy() {
+    assertEquals(MailQueue.OverflowPolicy.BLOCK, MailQueue.policyValue(null));
+    assertEquals(MailQueue.OverflowPolicy.DROP_OLDEST, MailQueue.policyValue(" drop_oldest "));
+    assertEquals(MailQueue.OverflowPolicy.BLOCK, MailQueue.policyValue("LIFO"));
+  }
+
+  @Test
+  public void shouldSendQueuedMessagesAndDrainOnClose() throws Exception {
+    queue = new MailQueue(10, 2, MailQueue.OverflowPolicy.REJECT, 0, 10000);
+    doThrow(new MessagingException("550 rejected")).when(delegator).send(any(Message.class));
+    String sent = queue.enqueue(delegator, message(), "apiKey", "apiKeyValue");
+    String failed = queue.enqueue(delegator, message(), null, null);
+    queue.close();
+
+    assertEquals(MailQueue.Status.SENT, queue.getStatus(sent));
+    assertEquals(MailQueue.Status.FAILED, queue.getStatus(failed));
+    assertEquals("550 rejected", queue.getError(failed));
+    assertEquals(MailQueue.Status.UNKNOWN, queue.getStatus("unknown"));
+    assertThrows(
+        MessagingException.class, () -> queue.enqueue(delegator, message(), "apiKey", "x"));
+  }
+
+  @Test
+  public void shouldRejectWhenFull() throws Exception {
+    queue = new MailQueue(1, 1, MailQueue.OverflowPolicy.REJECT, 0, 10000);
+    blockFirstSend();
+    String first = queue.enqueue(delegator, message(), "apiKey", "apiKeyValue");
+    sending.await(10, TimeUnit.SECONDS);
+    queue.enqueue(delegator, message(), "apiKey", "apiKeyValue");
+
+    MessagingException e =
+        assertThrows(
+            MessagingException.class,
+            () -> queue.enqueue(delegator, message(), "apiKey", "apiKeyValue"));
+    assertEquals("The mail queue is full.", e.getMessage());
+    assertEquals(MailQueue.Status.SENDING, queue.getStatus(first));
+  }
+
+  @Test
+  public void shouldDropOldestWhenFull() throws Exception {
+    queue = new MailQueue(1, 1, MailQueue.OverflowPolicy.DROP_OLDEST, 0, 10000);
+    blockFirstSend();
+    queue.enqueue(delegator, message(), "apiKey", "apiKeyValue");
+    sending.await(10, TimeUnit.SECONDS);
+    String oldest = queue.enqueue(delegator, message(), "apiKey", "apiKeyValue");
+    String newest = queue.enqueue(delegator, message(), "apiKey", "apiKeyValue");
+    release.countDown();
+    queue.close();
+
+    assertEquals(MailQueue.Status.DROPPED, queue.getStatus(oldest));
+    assertEquals(MailQueue.Status.SENT, queue.getStatus(newest));
+  }
+
+  @Test
+  public void shouldTimeOutBlockingEnqueue() throws Exception {
+    queue = new MailQueue(1, 1, MailQueue.OverflowPolicy.BLOCK, 50, 10000);
+    blockFirstSend();
+    queue.enqueue(delegator, message(), "apiKey", "apiKeyValue");
+    sending.await(10, TimeUnit.SECONDS);
+    queue.enqueue(delegator, message(), "apiKey", "apiKeyValue");
+
+    assertThrows(
+        MessagingException.class,
+        () -> queue.enqueue(delegator, message(), "apiKey", "apiKeyValue"));
+  }
+
+  @Test
+  public void shouldNotLeaveMessagesQueuedAfterClose() throws Exception {
+    queue = new MailQueue(1, 1, MailQueue.OverflowPolicy.BLOCK, 10000, 10000);
+    blockFirstSend();
+    queue.enqueue(delegator, message(), "apiKey", "apiKeyValue");
+    sending.await(10, TimeUnit.SECONDS);
+    queue.enqueue(delegator, message(), "apiKey", "apiKeyValue");
+    CompletableFuture<String> blocked =
+        CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return queue.enqueue(delegator, message(), "apiKey", "apiKeyValue");
+              } catch (MessagingException e) {
+                return null;
+              }
+            });
+    Thread closer = new Thread(queue::close);
+    closer.start();
+    release.countDown();
+    closer.join(10000);
+
+    String id = blocked.get(10, TimeUnit.SECONDS);
+    if (id != null) {
+      assertNotEquals(MailQueue.Status.QUEUED, queue.getStatus(id));
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import org.junit.Test;
+
+public class MailTemplateTest {
+
+  private static Map<String, String> variables() {
+    Map<String, String> variables = new HashMap<>();
+    variables.put("name", "Tom & \"Jerry\"");
+    variables.put("link", "<a href='x'>x</a>");
+    return variables;
+  }
+
+  @Test
+  public void shouldRenderPlainTextWithoutEscaping() {
+    MailTemplate template =
+        MailTemplate.compile("Hi {{ name }}, see {{link}}{{missing}}.", "text/plain");
+    assertEquals("Hi Tom & \"Jerry\", see <a href='x'>x</a>.", template.render(variables()));
+  }
+
+  @Test
+  public void shouldEscapeHtmlUnlessTripleBraces() {
+    MailTemplate template = MailTemplate.compile("<p>{{name}}</p>{{{link}}}", "text/html");
+    assertEquals(
+        "<p>Tom &amp; &quot;Jerry&quot;</p><a href='x'>x</a>", template.render(variables()));
+  }
+
+  @Test
+  public void shouldKeepUnterminatedVariableAsText() {
+    MailTemplate template = MailTemplate.compile("{{name}} {{oops", "text/plain");
+    assertEquals("Tom & \"Jerry\" {{oops", template.render(variables()));
+    assertEquals(new LinkedHashSet<>(Arrays.asList("name")), template.getVariableNames());
+  }
+
+  @Test
+  public void shouldCacheByNameAndVersion() {
+    MailTemplate first = MailTemplate.get("welcome", "1", "Hi {{name}}", "text/plain");
+    assertSame(first, MailTemplate.get("welcome", "1", "ignored", "text/plain"));
+    MailTemplate second = MailTemplate.get("welcome", "2", "Hello {{name}}", "text/plain");
+    assertNotSame(first, second);
+    assertEquals("Hello Tom & \"Jerry\"", second.render(variables()));
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OutboxSpoolTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private OutboxSpool open(int maxAttempts) throws IOException {
+    return new OutboxSpool(folder.getRoot(), 64, 0, maxAttempts, false);
+  }
+
+  private File[] segments() {
+    return folder.getRoot().listFiles((dir, name) -> name.endsWith(".spool"));
+  }
+
+  @Test
+  public void shouldDeliverRecordsAndDeleteDeliveredSegments() throws IOException {
+    OutboxSpool spool = open(3);
+    List<String> delivered = new ArrayList<>();
+    spool.register("test", payload -> delivered.add(payload));
+    for (int i = 0; i < 5; i++) {
+      spool.append("test", "{\"n\":" + i + ",\"padding\":\"xxxxxxxxxx\"}");
+    }
+    assertEquals(5, spool.getPendingCount());
+    assertTrue(segments().length > 1);
+
+    spool.dispatch();
+
+    assertEquals(5, delivered.size());
+    assertEquals("{\"n\":0,\"padding\":\"xxxxxxxxxx\"}", delivered.get(0));
+    assertEquals(0, spool.getPendingCount());
+    assertEquals(1, segments().length);
+  }
+
+  @Test
+  public void shouldRecoverPendingRecordsAfterRestart() throws IOException {
+    OutboxSpool spool = open(3);
+    spool.register("test", payload -> payload.contains("first"));
+    spool.append("test", "first");
+    spool.append("test", "second");
+    spool.dispatch();
+    spool.close();
+
+    OutboxSpool reopened = open(3);
+    List<String> delivered = new ArrayList<>();
+    reopened.register("test", payload -> delivered.add(payload));
+    assertEquals(1, reopened.getPendingCount());
+    reopened.dispatch();
+    assertEquals(Arrays.asList("second"), delivered);
+  }
+
+  @Test
+  public void shouldIgnoreCorruptRecordsOnRecovery() throws IOException {
+    OutboxSpool spool = new OutboxSpool(folder.getRoot(), 1024, 0, 3, false);
+    spool.append("test", "intact");
+    spool.append("test", "corrupted");
+    spool.close();
+    try (RandomAccessFile file = new RandomAccessFile(segments()[0], "rw")) {
+      // flip the last byte of the second record's payload
+      file.seek(9 + 5 + "intact".length() + 9 + 5 + "corrupted".length() - 1);
+      file.write('X');
+    }
+
+    OutboxSpool reopened = new OutboxSpool(folder.getRoot(), 1024, 0, 3, false);
+    List<String> delivered = new ArrayList<>();
+    reopened.register("test", payload -> delivered.add(payload));
+    reopened.dispatch();
+    assertEquals(Arrays.asList("intact"), delivered);
+  }
+
+  @Test
+  public void shouldMoveToDeadLetterAfterMaxAttemptsAndReplay() throws IOException {
+    OutboxSpool spool = open(2);
+    int[] attempts = new int[1];
+    boolean[] available = new boolean[1];
+    spool.register(
+        "test",
+        payload -> {
+          attempts[0]++;
+          if (!available[0]) {
+            throw new IOException("unavailable");
+          }
+          return true;
+        });
+    spool.append("test", "{\"n\":1}");
+    spool.dispatch();
+    assertEquals(1, spool.getPendingCount());
+    spool.dispatch();
+    assertEquals(2, attempts[0]);
+    assertEquals(0, spool.getPendingCount());
+    assertEquals(1, spool.getDeadLetterCount());
+
+    available[0] = true;
+    assertEquals(1, spool.replayDeadLetters());
+    assertEquals(0, spool.getDeadLetterCount());
+    spool.dispatch();
+    assertEquals(3, attempts[0]);
+    assertEquals(0, spool.getPendingCount());
+  }
+
+  @Test
+  public void shouldKeepRecordsWithoutSecretPending() throws IOException {
+    OutboxSpool spool = open(1);
+    spool.register("test", payload -> spool.getSecret("key") != null);
+    spool.append("test", "payload");
+    spool.dispatch();
+    spool.dispatch();
+    assertEquals(1, spool.getPendingCount());
+
+    spool.putSecret("key", "secret");
+    spool.dispatch();
+    assertEquals(0, spool.getPendingCount());
+  }
+
+  @Test
+  public void shouldMoveToDeadLetterAfterWaitingTooLong() throws IOException {
+    OutboxSpool spool = new OutboxSpool(folder.getRoot(), 64, 0, 3, 0, false);
+    spool.register("test", payload -> spool.getSecret("key") != null);
+    spool.append("test", "payload");
+    spool.append("unhandled", "payload");
+    spool.dispatch();
+    assertEquals(2, spool.getPendingCount());
+    spool.dispatch();
+    assertEquals(0, spool.getPendingCount());
+    assertEquals(2, spool.getDeadLetterCount());
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import org.junit.After;
+import org.junit.Test;
+
+public class PayloadLoggerTest {
+  private static final Pattern REDACT =
+      PayloadLogger.redactPattern(PayloadLogger.DEFAULT_REDACT_KEYS);
+
+  private final Logger logger = Logger.getLogger("com.ibm.scis.PayloadLoggerTest");
+  private final List<LogRecord> records = new CopyOnWriteArrayList<>();
+  private final Handler handler =
+      new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+          records.add(record);
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+      };
+
+  @After
+  public void tearDown() {
+    logger.removeHandler(handler);
+    PayloadLogger.getControl().setDebugClients("");
+    PayloadLogger.getControl().setSampleEvery(PayloadLogger.DEFAULT_SAMPLE_EVERY);
+  }
+
+  @Test
+  public void shouldMaskSecretsAndEmailAddresses() {
+    assertEquals(
+        "{\"user\":\"a\",\"password\":\"***\",\"clientSecret\":\"***\",\"pin\":1234,"
+            + "\"accessToken\":***,\"note\":\"mail *** now\"}",
+        PayloadLogger.preview(
+            "{\"user\":\"a\",\"password\":\"p\\\"w\",\"clientSecret\":\"s\",\"pin\":1234,"
+                + "\"accessToken\":null,\"note\":\"mail jane.doe@example.com now\"}",
+            1000,
+            REDACT));
+  }
+
+  @Test
+  public void shouldCutLongPayloadsWithoutLeakingCutValues() {
+    String payload = "{\"id\":\"123456\",\"password\":\"" + repeat('x', 100) + "\"}";
+    assertEquals("{\"id\":\"123456\",\"pass...", PayloadLogger.preview(payload, 20, REDACT));
+    assertEquals(
+        "{\"id\":\"123456\",\"password\":\"***...", PayloadLogger.preview(payload, 30, REDACT));
+    assertEquals(
+        "{\"id\":\"123456\",\"password\":\"***\"}", PayloadLogger.preview(payload, 100, REDACT));
+  }
+
+  @Test
+  public void shouldLogAtInfoOnlyForDebugClientsAndSampled() {
+    logger.addHandler(handler);
+    logger.setLevel(Level.INFO);
+    PayloadLogger payloads = PayloadLogger.forClient("PayloadLoggerTest");
+
+    payloads.request(logger, "op", "{\"n\":1}");
+    assertEquals(0, records.size());
+
+    PayloadLogger.getControl().setDebugClients("Other, PayloadLoggerTest");
+    PayloadLogger.getControl().setSampleEvery(2);
+    for (int i = 0; i < 4; i++) {
+      payloads.response(logger, "op", "{\"n\":" + i + "}");
+    }
+    assertEquals(2, records.size());
+    assertEquals(Level.INFO, records.get(0).getLevel());
+    assertEquals("op response (7 chars): {\"n\":0}", records.get(0).getMessage());
+    assertEquals("op response (7 chars): {\"n\":2}", records.get(1).getMessage());
+  }
+
+  private static String repeat(char c, int count) {
+    StringBuilder builder = new StringBuilder(count);
+    for (int i = 0; i < count; i++) {
+      builder.append(c);
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class QueryResponseCacheTest {
+  private final AtomicLong now = new AtomicLong();
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private String get(QueryResponseCache cache, String query, String body) throws IOException {
+    return get(cache, "endpoint", query, body, true);
+  }
+
+  private String get(
+      QueryResponseCache cache, String endpoint, String query, String body, boolean cacheable)
+      throws IOException {
+    return cache.get(
+        endpoint,
+        query,
+        "id",
+        "secret",
+        "user",
+        1000,
+        () -> {
+          loads.incrementAndGet();
+          return new QueryResponseCache.Response(body, cacheable);
+        });
+  }
+
+  @Test
+  public void shouldServeNormalizedQueriesUntilExpired() throws IOException {
+    QueryResponseCache cache = new QueryResponseCache(1000, 10, now::get);
+    assertEquals("a", get(cache, "{\"query\": \"{ parts }\"}", "a"));
+    assertEquals("a", get(cache, " {\"query\":\"{ parts }\"}\n", "b"));
+    assertEquals(1, loads.get());
+    assertEquals(1, cache.getHitCount());
+
+    now.set(TimeUnit.MILLISECONDS.toNanos(1000));
+    assertEquals("c", get(cache, "{\"query\":\"{ parts }\"}", "c"));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedByWeight() throws IOException {
+    QueryResponseCache cache = new QueryResponseCache(40, 10, now::get);
+    get(cache, "q1", "0123456789");
+    get(cache, "q2", "0123456789");
+    get(cache, "q1", "x");
+    get(cache, "q3", "0123456789");
+    assertEquals(2, cache.size());
+    assertEquals(40, cache.getBytes());
+    assertEquals(3, loads.get());
+    assertEquals("0123456789", get(cache, "q1", "x"));
+    assertEquals("y", get(cache, "q2", "y"));
+  }
+
+  @Test
+  public void shouldNotCacheFailuresAndInvalidateEndpoints() throws IOException {
+    QueryResponseCache cache = new QueryResponseCache(1000, 10, now::get);
+    get(cache, "endpoint", "q", "{\"error\":\"busy\"}", false);
+    assertEquals(0, cache.size());
+
+    get(cache, "endpoint", "q", "a", true);
+    get(cache, "other", "q", "b", true);
+    cache.invalidate("endpoint");
+    assertEquals(1, cache.size());
+    assertEquals("c", get(cache, "endpoint", "q", "c", true));
+    cache.invalidateAll();
+    assertEquals(0, cache.getBytes());
+  }
+
+  @Test
+  public void shouldSeparateClientSecrets() throws IOException {
+    QueryResponseCache cache = new QueryResponseCache(1000, 10, now::get);
+    get(cache, "q", "a");
+    String other =
+        cache.get(
+            "endpoint",
+            "q",
+            "id",
+            "rotated",
+            "user",
+            1000,
+            () -> new QueryResponseCache.Response("b", true));
+    assertEquals("b", other);
+    assertEquals("a", get(cache, "q", "c"));
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void shouldShareOneLoadBetweenConcurrentMisses() throws Exception {
+    QueryResponseCache cache = new QueryResponseCache(1000, 10, now::get);
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<String> first =
+        CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return cache.get(
+                    "endpoint",
+                    "q",
+                    "id",
+                    "secret",
+                    "user",
+                    1000,
+                    () -> {
+                      loading.countDown();
+                      try {
+                        release.await();
+                      } catch (InterruptedException e) {
+                        throw new IOException(e);
+                      }
+                      loads.incrementAndGet();
+                      return new QueryResponseCache.Response("a", false);
+                    });
+              } catch (IOException | RuntimeException e) {
+                throw new IllegalStateException(e);
+              }
+            });
+    assertTrue(loading.await(5, TimeUnit.SECONDS));
+    CompletableFuture<String> second =
+        CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return get(cache, "q", "b");
+              } catch (IOException e) {
+                throw new IllegalStateException(e);
+              }
+            });
+    Thread.sleep(50);
+    release.countDown();
+    assertEquals("a", first.get(5, TimeUnit.SECONDS));
+    assertEquals("a", second.get(5, TimeUnit.SECONDS));
+    assertEquals(1, loads.get());
+  }
+}
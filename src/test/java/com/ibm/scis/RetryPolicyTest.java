@@ -0,0 +1,106 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Date;
+import java.util.Properties;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+public class RetryPolicyTest {
+  private final RetryPolicy policy = new RetryPolicy(3, 100, 1000, 10000, false);
+
+  @Test
+  public void shouldRetryOnlyIdempotentRequestsAfterServerErrors() {
+    assertTrue(policy.isRetryable(new HttpGet("http://host"), 503));
+    assertTrue(policy.isRetryable(new HttpPut("http://host"), 502));
+    assertFalse(policy.isRetryable(new HttpPost("http://host"), 503));
+    assertFalse(policy.isRetryable(new HttpGet("http://host"), 500));
+    assertFalse(policy.isRetryable(new HttpGet("http://host"), -1));
+    assertTrue(new RetryPolicy(3, 100, 1000, 10000, true).isRetryable(post("{}"), 504));
+
+    assertTrue(policy.isRetryable(post("{}"), 429));
+    assertTrue(policy.isRetryable(post("{}"), new ConnectException()));
+    assertFalse(policy.isRetryable(post("{}"), new SocketTimeoutException()));
+    assertTrue(policy.isRetryable(new HttpGet("http://host"), new SocketTimeoutException()));
+    assertFalse(policy.isRetryable(new HttpGet("http://host"), new NullPointerException()));
+
+    HttpPut streamed = new HttpPut("http://host");
+    streamed.setEntity(new InputStreamEntity(System.in));
+    assertFalse(policy.isRetryable(streamed, 503));
+  }
+
+  @Test
+  public void shouldHonourRetryAfter() {
+    long now = System.currentTimeMillis();
+    HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 503, "Unavailable");
+    response.setHeader("Retry-After", "2");
+    assertEquals(2000, policy.delay(1, response, now, now + 10000));
+
+    // second precision of HTTP dates
+    response.setHeader("Retry-After", DateUtils.formatDate(new Date(now + 5000)));
+    long delay = policy.delay(1, response, now, now + 10000);
+    assertTrue(delay > 3000 && delay <= 5000);
+
+    response.setHeader("Retry-After", "60");
+    assertEquals(-1, policy.delay(1, response, now, now + 10000));
+  }
+
+  @Test
+  public void shouldBackOffWithinBudget() {
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < 100; i++) {
+      long first = policy.delay(1, null, now, now + 10000);
+      assertTrue(first >= 0 && first <= 100);
+      long second = policy.delay(2, null, now, now + 10000);
+      assertTrue(second >= 0 && second <= 200);
+    }
+    assertEquals(-1, policy.delay(3, null, now, now + 10000));
+    assertEquals(-1, new RetryPolicy(3, 0, 0, 0, false).delay(1, null, now, now - 1));
+  }
+
+  @Test
+  public void shouldReadConfiguredPolicy() {
+    Properties properties = new Properties();
+    properties.setProperty("scis.http.retry.maxAttempts", "5");
+    properties.setProperty("scis.http.retry.post", "true");
+    RetryPolicy configured = new ConnectionPoolConfig(properties).getRetryPolicy();
+    assertEquals(5, configured.getMaxAttempts());
+    assertEquals(RetryPolicy.DEFAULT_BUDGET, configured.getBudget());
+    assertTrue(configured.isRetryPost());
+  }
+
+  private static HttpPost post(String body) {
+    HttpPost post = new HttpPost("http://host");
+    post.setEntity(new StringEntity(body, "UTF-8"));
+    return post;
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class SingleFlightTest {
+  private final AtomicInteger calls = new AtomicInteger();
+  private final CountDownLatch started = new CountDownLatch(1);
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private SingleFlight.Call<String> blockingCall(String result, IOException failure) {
+    return () -> {
+      calls.incrementAndGet();
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      return result;
+    };
+  }
+
+  private static CompletableFuture<String> async(
+      SingleFlight<String, String> flight, String key, SingleFlight.Call<String> call) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return flight.execute(key, call);
+          } catch (IOException e) {
+            throw new IllegalStateException(e);
+          }
+        });
+  }
+
+  private static void awaitInFlight(SingleFlight<?, ?> flight, long hits)
+      throws InterruptedException {
+    for (int i = 0; i < 500 && flight.getHitCount() < hits; i++) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void shouldShareCallInFlight() throws Exception {
+    SingleFlight<String, String> flight = new SingleFlight<>(true);
+    CompletableFuture<String> first = async(flight, "k", blockingCall("a", null));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    CompletableFuture<String> second = async(flight, "k", blockingCall("b", null));
+    awaitInFlight(flight, 1);
+    release.countDown();
+    String result = first.get(5, TimeUnit.SECONDS);
+    assertSame(result, second.get(5, TimeUnit.SECONDS));
+    assertEquals(1, calls.get());
+    assertEquals(1, flight.getHitCount());
+    assertEquals(1, flight.getMissCount());
+    assertEquals(0, flight.getInFlightCount());
+
+    // nothing is kept once the call finished
+    assertEquals("c", flight.execute("k", () -> "c"));
+  }
+
+  @Test
+  public void shouldShareFailure() throws Exception {
+    SingleFlight<String, String> flight = new SingleFlight<>(true);
+    CompletableFuture<String> first =
+        async(flight, "k", blockingCall(null, new IOException("down")));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    CompletableFuture<String> second = async(flight, "k", blockingCall("b", null));
+    awaitInFlight(flight, 1);
+    release.countDown();
+    for (CompletableFuture<String> future : Arrays.asList(first, second)) {
+      try {
+        future.get(5, TimeUnit.SECONDS);
+      } catch (ExecutionException e) {
+        assertEquals("down", e.getCause().getCause().getMessage());
+      }
+    }
+    assertTrue(first.isCompletedExceptionally() && second.isCompletedExceptionally());
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void shouldRunEveryCallWhenDisabled() throws IOException {
+    SingleFlight<String, String> flight = new SingleFlight<>(false);
+    flight.execute("k", () -> "a");
+    flight.execute("k", () -> "a");
+    assertEquals(0, flight.getHitCount());
+    assertEquals(2, flight.getMissCount());
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Properties;
+import javax.mail.Session;
+import org.junit.Test;
+
+public class SmtpSettingsTest {
+
+  @Test
+  public void shouldParseHostAndPort() {
+    SmtpSettings settings = SmtpSettings.forHost("smtp.example.com:587");
+    assertEquals("smtp.example.com", settings.getHost());
+    assertEquals(587, settings.getPort());
+
+    assertEquals(-1, SmtpSettings.forHost("smtp.example.com").getPort());
+    assertEquals("::1", SmtpSettings.forHost("::1").getHost());
+    assertEquals("smtp.example.com:smtp", SmtpSettings.forHost("smtp.example.com:smtp").getHost());
+  }
+
+  @Test
+  public void shouldSetTimeoutsAndTls() {
+    Properties properties = SmtpSettings.forHost("smtp.example.com:587").toProperties();
+    assertEquals("smtp.example.com", properties.getProperty("mail.smtp.host"));
+    assertEquals("587", properties.getProperty("mail.smtp.port"));
+    assertEquals(
+        String.valueOf(SmtpSettings.DEFAULT_CONNECTION_TIMEOUT),
+        properties.getProperty("mail.smtp.connectiontimeout"));
+    assertEquals(
+        String.valueOf(SmtpSettings.DEFAULT_TIMEOUT), properties.getProperty("mail.smtp.timeout"));
+    assertEquals("false", properties.getProperty("mail.smtp.starttls.enable"));
+    assertEquals("false", properties.getProperty("mail.smtp.starttls.required"));
+    assertNull(properties.getProperty("mail.smtp.ssl.protocols"));
+    assertNull(SmtpSettings.forHost("smtp.example.com").toProperties().get("mail.smtp.port"));
+  }
+
+  @Test
+  public void shouldSetTlsWhenConfigured() {
+    System.setProperty(SmtpSettings.STARTTLS_PROPERTY, "true");
+    System.setProperty(SmtpSettings.SSL_PROTOCOLS_PROPERTY, "TLSv1.2 TLSv1.3");
+    try {
+      Properties properties = SmtpSettings.forHost("smtp.example.com").toProperties();
+      assertEquals("true", properties.getProperty("mail.smtp.starttls.enable"));
+      assertEquals("TLSv1.2 TLSv1.3", properties.getProperty("mail.smtp.ssl.protocols"));
+    } finally {
+      System.clearProperty(SmtpSettings.STARTTLS_PROPERTY);
+      System.clearProperty(SmtpSettings.SSL_PROTOCOLS_PROPERTY);
+    }
+  }
+
+  @Test
+  public void shouldShareSessionPerSettings() {
+    Session first = MailSessionCache.get(SmtpSettings.forHost("smtp.example.com"));
+    assertSame(first, MailSessionCache.get(SmtpSettings.forHost("smtp.example.com")));
+    assertNotSame(first, MailSessionCache.get(SmtpSettings.forHost("smtp.example.com:587")));
+    assertNotSame(
+        first,
+        MailSessionCache.get(
+            new SmtpSettings("smtp.example.com", -1, 1000, 1000, 1000, false, false)));
+  }
+
+  @Test
+  public void shouldBoundCachedSessions() {
+    for (int i = 0; i < MailSessionCache.MAX_CACHED * 2; i++) {
+      MailSessionCache.get(SmtpSettings.forHost("smtp" + i + ".example.com"));
+    }
+    assertEquals(MailSessionCache.MAX_CACHED, MailSessionCache.size());
+  }
+}
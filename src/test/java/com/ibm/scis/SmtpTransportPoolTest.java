@@ -0,0 +1,159 @@
+/*
+ * (C) Copyright 2022 IBM Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.scis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import org.junit.After;
+import org.junit.Test;
+
+public class SmtpTransportPoolTest {
+  private final List<Transport> created = new ArrayList<>();
+  private SmtpTransportPool pool;
+
+  private SmtpTransportPool newPool(long validateAfterInactivity, int maxMessages) {
+    pool =
+        new SmtpTransportPool(
+            session -> {
+              Transport transport = mock(Transport.class);
+              when(transport.isConnected()).thenReturn(true);
+              created.add(transport);
+              return transport;
+            },
+            2,
+            60000,
+            validateAfterInactivity,
+            maxMessages);
+    return pool;
+  }
+
+  @After
+  public void closePool() {
+    pool.close();
+  }
+
+  private static MimeMessage message(String host) throws MessagingException {
+    Properties properties = new Properties();
+    properties.put("mail.smtp.host", host);
+    MimeMessage message = new MimeMessage(Session.getInstance(properties));
+    message.setFrom(new InternetAddress("sender@ibm.com"));
+    message.addRecipient(Message.RecipientType.TO, new InternetAddress("user@ibm.com"));
+    message.setSubject("Notification from BAW");
+    message.setText("This is a notification from BAW system.");
+    return message;
+  }
+
+  @Test
+  public void shouldReuseConnectionPerHostAndUser() throws MessagingException {
+    newPool(60000, 100);
+    pool.send(message("smtp.example.com"), "apiKey", "apiKeyValue");
+    pool.send(message("smtp.example.com"), "apiKey", "apiKeyValue");
+    pool.send(message("smtp.example.com"), "other", "apiKeyValue");
+    pool.send(message("smtp2.example.com"), "apiKey", "apiKeyValue");
+
+    assertEquals(3, created.size());
+    verify(created.get(0), times(1)).connect("smtp.example.com", -1, "apiKey", "apiKeyValue");
+    verify(created.get(0), times(2)).sendMessage(any(Message.class), any(Address[].class));
+    assertEquals(3, pool.getIdleCount());
+  }
+
+  @Test
+  public void shouldReplaceConnectionFailingNoop() throws MessagingException {
+    newPool(-1, 100);
+    pool.send(message("smtp.example.com"), "apiKey", "apiKeyValue");
+    when(created.get(0).isConnected()).thenReturn(false);
+    pool.send(message("smtp.example.com"), "apiKey", "apiKeyValue");
+
+    assertEquals(2, created.size());
+    verify(created.get(0)).close();
+    verify(created.get(1), times(1)).sendMessage(any(Message.class), any(Address[].class));
+  }
+
+  @Test
+  public void shouldRetryOnNewConnectionWhenReusedConnectionFails() throws MessagingException {
+    newPool(60000, 100);
+    pool.send(message("smtp.example.com"), "apiKey", "apiKeyValue");
+    doThrow(new MessagingException("421 closing connection"))
+        .when(created.get(0))
+        .sendMessage(any(Message.class), any(Address[].class));
+    pool.send(message("smtp.example.com"), "apiKey", "apiKeyValue");
+
+    assertEquals(2, created.size());
+    verify(created.get(0)).close();
+    assertEquals(1, pool.getIdleCount());
+  }
+
+  @Test
+  public void shouldKeepConnectionWhenRecipientsAreRejected() throws MessagingException {
+    newPool(60000, 100);
+    pool.send(message("smtp.example.com"), "apiKey", "apiKeyValue");
+    doThrow(new SendFailedException("550 no such user"))
+        .when(created.get(0))
+        .sendMessage(any(Message.class), any(Address[].class));
+
+    assertThrows(
+        SendFailedException.class,
+        () -> pool.send(message("smtp.example.com"), "apiKey", "apiKeyValue"));
+    assertEquals(1, created.size());
+    assertEquals(1, pool.getIdleCount());
+  }
+
+  @Test
+  public void shouldRetireConnectionAfterMaxMessages() throws MessagingException {
+    newPool(60000, 2);
+    for (int i = 0; i < 3; i++) {
+      pool.send(message("smtp.example.com"), "apiKey", "apiKeyValue");
+    }
+    assertEquals(2, created.size());
+    verify(created.get(0)).close();
+  }
+
+  @Test
+  public void shouldCloseIdleConnections() throws MessagingException {
+    pool = new SmtpTransportPool(session -> mockTransport(), 2, -1, 60000, 100);
+    pool.send(message("smtp.example.com"), "apiKey", "apiKeyValue");
+    assertEquals(1, pool.getIdleCount());
+
+    pool.evictIdle();
+    assertEquals(0, pool.getIdleCount());
+    verify(created.get(0)).close();
+  }
+
+  private Transport mockTransport() {
+    Transport transport = mock(Transport.class);
+    created.add(transport);
+    return transport;
+  }
+}
@@ -17,14 +17,23 @@
 package com.ibm.scis;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicStatusLine;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
@@ -52,6 +61,54 @@ public class UserManageClientTest {
     assertEquals("{\"result\":\"csrf_token\"}", result);
   }
 
+  @Test
+  public void shouldReuseCachedCSRFToken() throws IOException {
+    InputStream mockStream =
+        new ByteArrayInputStream("{\"csrf_token\":\"token\",\"expiration\":7200}".getBytes());
+    when(mockEntity.getContent()).thenReturn(mockStream);
+    when(mockHttpResponse.getEntity()).thenReturn(mockEntity);
+    when(mockHttpResponse.getStatusLine())
+        .thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+    when(mockHttpClient.execute(Mockito.any())).thenReturn(mockHttpResponse);
+    UserManageClient client = new UserManageClient(mockHttpClient);
+    String first = client.getCSRFToken("testBAWUrl", "testUsername", "testPassword", 7200);
+    String second = client.getCSRFToken("testBAWUrl", "testUsername", "testPassword", 7200);
+    assertEquals(first, second);
+    verify(mockHttpClient, times(1)).execute(Mockito.any());
+  }
+
+  @Test
+  public void shouldShareConcurrentUserChecks() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    when(mockEntity.getContent()).thenReturn(new ByteArrayInputStream("{\"users\":[]}".getBytes()));
+    when(mockHttpResponse.getEntity()).thenReturn(mockEntity);
+    when(mockHttpClient.execute(Mockito.any()))
+        .thenAnswer(
+            invocation -> {
+              release.await(5, TimeUnit.SECONDS);
+              return mockHttpResponse;
+            });
+    UserManageClient client = new UserManageClient(mockHttpClient);
+    List<CompletableFuture<String>> checks = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      checks.add(
+          CompletableFuture.supplyAsync(
+              () ->
+                  client.checkUserByUserId(
+                      "testUrl", "testUsername", "testPassword", "testToken", "testUser")));
+    }
+    SingleFlight<?, ?> flight = client.getContext().getSingleFlight();
+    for (int i = 0; i < 500 && flight.getHitCount() < 1; i++) {
+      Thread.sleep(10);
+    }
+    release.countDown();
+    for (CompletableFuture<String> check : checks) {
+      assertEquals("{\"users\":[]}", check.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, flight.getHitCount());
+    verify(mockHttpClient, times(1)).execute(Mockito.any());
+  }
+
   @Test
   public void shouldReturnErrorWhenGetCSRFToken() throws IOException {
     InputStream mockStream =
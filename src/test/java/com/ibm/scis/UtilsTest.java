@@ -17,9 +17,15 @@
 package com.ibm.scis;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.junit.Test;
 
 public class UtilsTest {
@@ -29,4 +35,39 @@ public class UtilsTest {
     InputStream inputStream = new ByteArrayInputStream("{\"foo\":\"bar\"}".getBytes());
     assertEquals("{\"foo\":\"bar\"}", Utils.inputStreamToString(inputStream));
   }
+
+  @Test
+  public void shouldDecodeEntityWithDeclaredCharset() throws IOException {
+    StringEntity entity =
+        new StringEntity(
+            "{\"city\":\"Z\u00fcrich\"}", ContentType.create("application/json", "ISO-8859-1"));
+    assertEquals("{\"city\":\"Z\u00fcrich\"}", Utils.entityToString(entity));
+  }
+
+  @Test
+  public void shouldDecodeEntityAsUtf8ByDefault() throws IOException {
+    StringEntity entity = new StringEntity("{\"city\":\"Z\u00fcrich\"}", StandardCharsets.UTF_8);
+    entity.setContentType((String) null);
+    assertEquals("{\"city\":\"Z\u00fcrich\"}", Utils.entityToString(entity));
+  }
+
+  @Test
+  public void shouldReadBodiesLargerThanTheBuffer() throws IOException {
+    char[] chars = new char[Utils.INITIAL_BUFFER_SIZE * 3 + 17];
+    Arrays.fill(chars, 'x');
+    String body = new String(chars);
+    InputStream stream = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    assertEquals(body, Utils.inputStreamToString(stream, StandardCharsets.UTF_8, -1, -1));
+  }
+
+  @Test
+  public void shouldRejectBodiesOverTheLimit() {
+    InputStream stream = new ByteArrayInputStream(new byte[1024]);
+    assertThrows(
+        IOException.class,
+        () -> Utils.inputStreamToString(stream, StandardCharsets.UTF_8, -1, 512));
+    assertThrows(
+        IOException.class,
+        () -> Utils.inputStreamToString(stream, StandardCharsets.UTF_8, 1024, 512));
+  }
 }
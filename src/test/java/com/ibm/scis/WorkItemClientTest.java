@@ -17,15 +17,35 @@
 package com.ibm.scis;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -39,6 +59,10 @@ public class WorkItemClientTest {
 
   @Mock HttpEntity mockEntity;
 
+  @Mock CloseableHttpAsyncClient mockAsyncHttpClient;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
   @Test
   public void shouldCreateNewWorkItem() throws IOException {
     InputStream mockStream = new ByteArrayInputStream("{\"id\":\"new_work_id\"}".getBytes());
@@ -100,4 +124,342 @@ public class WorkItemClientTest {
                 "testUrl", "testClientId", "testClientSecret", "testUsername", testWorkItemObj);
     assertEquals("{\"error\":\"Error occurred\"}", result);
   }
+
+  @Test
+  public void shouldRetryUpdateAfterServiceUnavailable() throws IOException {
+    CloseableHttpResponse unavailable = Mockito.mock(CloseableHttpResponse.class);
+    when(unavailable.getStatusLine())
+        .thenReturn(
+            new BasicHttpResponse(HttpVersion.HTTP_1_1, 503, "Service Unavailable")
+                .getStatusLine());
+    when(unavailable.getFirstHeader("Retry-After")).thenReturn(new BasicHeader("Retry-After", "0"));
+    when(mockHttpResponse.getStatusLine())
+        .thenReturn(new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK").getStatusLine());
+    when(mockHttpResponse.getEntity())
+        .thenReturn(new StringEntity("{\"id\":\"foo\"}", ContentType.APPLICATION_JSON));
+    when(mockHttpClient.execute(Mockito.any())).thenReturn(unavailable, mockHttpResponse);
+    String result =
+        new WorkItemClient(mockHttpClient)
+            .updateWorkItem(
+                "testUrl",
+                "testWorkItemId",
+                "testClientId",
+                "testClientSecret",
+                "testUsername",
+                "{}");
+    assertEquals("{\"id\":\"foo\"}", result);
+    Mockito.verify(mockHttpClient, Mockito.times(2)).execute(Mockito.any());
+  }
+
+  @Test
+  public void shouldKeepSpooledWorkItemPendingAfterErrorStatus() throws IOException {
+    CloseableHttpResponse failed = Mockito.mock(CloseableHttpResponse.class);
+    when(failed.getStatusLine())
+        .thenReturn(
+            new BasicHttpResponse(HttpVersion.HTTP_1_1, 500, "Server Error").getStatusLine());
+    when(failed.getEntity())
+        .thenReturn(new StringEntity("<html>Server Error</html>", ContentType.TEXT_HTML));
+    when(mockHttpResponse.getStatusLine())
+        .thenReturn(new BasicHttpResponse(HttpVersion.HTTP_1_1, 201, "Created").getStatusLine());
+    when(mockHttpResponse.getEntity())
+        .thenReturn(new StringEntity("{\"id\":\"foo\"}", ContentType.APPLICATION_JSON));
+    when(mockHttpClient.execute(Mockito.any())).thenReturn(failed, mockHttpResponse);
+    OutboxSpool spool = new OutboxSpool(folder.getRoot(), 4096, 0, 3, false);
+    WorkItemClient client = new WorkItemClient(mockHttpClient);
+    client.setSpool(spool);
+    client.spoolCreateWorkItem("testUrl", "testClientId", "testClientSecret", "testUsername", "{}");
+
+    spool.dispatch();
+    assertEquals(1, spool.getPendingCount());
+    spool.dispatch();
+    assertEquals(0, spool.getPendingCount());
+    Mockito.verify(mockHttpClient, Mockito.times(2)).execute(Mockito.any());
+  }
+
+  @Test
+  public void shouldSendSpooledRequestsWithTheClientThatSpooledThem() throws IOException {
+    CloseableHttpClient otherHttpClient = Mockito.mock(CloseableHttpClient.class);
+    CloseableHttpResponse otherResponse = Mockito.mock(CloseableHttpResponse.class);
+    for (CloseableHttpResponse response : Arrays.asList(mockHttpResponse, otherResponse)) {
+      when(response.getStatusLine())
+          .thenReturn(new BasicHttpResponse(HttpVersion.HTTP_1_1, 201, "Created").getStatusLine());
+      when(response.getEntity())
+          .thenReturn(new StringEntity("{\"id\":\"foo\"}", ContentType.APPLICATION_JSON));
+    }
+    when(mockHttpClient.execute(Mockito.any())).thenReturn(mockHttpResponse);
+    when(otherHttpClient.execute(Mockito.any())).thenReturn(otherResponse);
+    OutboxSpool spool = new OutboxSpool(folder.getRoot(), 4096, 0, 3, false);
+    WorkItemClient client = new WorkItemClient(mockHttpClient);
+    WorkItemClient otherClient = new WorkItemClient(otherHttpClient);
+    client.setSpool(spool);
+    otherClient.setSpool(spool);
+    client.spoolCreateWorkItem("testUrl", "testClientId", "testClientSecret", "testUsername", "{}");
+    otherClient.spoolUpdateWorkItem(
+        "testUrl", "testWorkItemId", "otherClientId", "otherSecret", "testUsername", "{}");
+    otherClient.spoolCreateWorkItem(
+        "testUrl", "otherClientId", "otherSecret", "testUsername", "{}");
+
+    spool.dispatch();
+    assertEquals(0, spool.getPendingCount());
+    Mockito.verify(mockHttpClient, Mockito.times(1)).execute(Mockito.any());
+    Mockito.verify(otherHttpClient, Mockito.times(2)).execute(Mockito.any());
+  }
+
+  @Test
+  public void shouldNotRetryCreateAfterServiceUnavailable() throws IOException {
+    when(mockHttpResponse.getStatusLine())
+        .thenReturn(
+            new BasicHttpResponse(HttpVersion.HTTP_1_1, 503, "Service Unavailable")
+                .getStatusLine());
+    when(mockHttpResponse.getEntity())
+        .thenReturn(new StringEntity("{\"error\":\"busy\"}", ContentType.APPLICATION_JSON));
+    when(mockHttpClient.execute(Mockito.any())).thenReturn(mockHttpResponse);
+    String result =
+        new WorkItemClient(mockHttpClient)
+            .createWorkItem("testUrl", "testClientId", "testClientSecret", "testUsername", "{}");
+    assertEquals("{\"error\":\"busy\"}", result);
+    Mockito.verify(mockHttpClient, Mockito.times(1)).execute(Mockito.any());
+  }
+
+  @Test
+  public void shouldFailFastWhenInfoHubKeepsFailing() throws IOException {
+    when(mockHttpClient.execute(Mockito.any())).thenThrow(new IOException("Read timed out"));
+    WorkItemClient client = new WorkItemClient(mockHttpClient);
+    for (int i = 0; i < CircuitBreaker.DEFAULT_MINIMUM_CALLS; i++) {
+      assertEquals(
+          "{\"error\":\"Read timed out\"}",
+          client.createWorkItem(
+              "https://infohub.example.com/workitems", "id", "secret", "user", "{}"));
+    }
+    assertEquals(
+        "{\"error\":\"Circuit breaker for https://infohub.example.com is open\"}",
+        client.createWorkItem(
+            "https://infohub.example.com/workitems", "id", "secret", "user", "{}"));
+    Mockito.verify(mockHttpClient, Mockito.times(CircuitBreaker.DEFAULT_MINIMUM_CALLS))
+        .execute(Mockito.any());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldCreateNewWorkItemAsync() throws Exception {
+    InputStream mockStream = new ByteArrayInputStream("{\"id\":\"new_work_id\"}".getBytes());
+    when(mockEntity.getContent()).thenReturn(mockStream);
+    when(mockHttpResponse.getEntity()).thenReturn(mockEntity);
+    when(mockAsyncHttpClient.isRunning()).thenReturn(true);
+    when(mockAsyncHttpClient.execute(any(HttpUriRequest.class), any(FutureCallback.class)))
+        .thenAnswer(
+            invocation -> {
+              ((FutureCallback<Object>) invocation.getArguments()[1]).completed(mockHttpResponse);
+              return null;
+            });
+    String testWorkItemObj = "{\"foo\", \"bar\"}";
+    String result =
+        new WorkItemClient(mockHttpClient, mockAsyncHttpClient)
+            .createWorkItemAsync(
+                "testUrl", "testClientId", "testClientSecret", "testUsername", testWorkItemObj)
+            .get();
+    assertEquals("{\"id\":\"new_work_id\"}", result);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldReturnErrorIfAsyncUpdateFails() throws Exception {
+    when(mockAsyncHttpClient.isRunning()).thenReturn(true);
+    when(mockAsyncHttpClient.execute(any(HttpUriRequest.class), any(FutureCallback.class)))
+        .thenAnswer(
+            invocation -> {
+              ((FutureCallback<Object>) invocation.getArguments()[1])
+                  .failed(new IOException("Error occurred"));
+              return null;
+            });
+    String testWorkItemObj = "{\"foo\", \"bar\"}";
+    String result =
+        new WorkItemClient(mockHttpClient, mockAsyncHttpClient)
+            .updateWorkItemAsync(
+                "testUrl",
+                "testWorkItemId",
+                "testClientId",
+                "testClientSecret",
+                "testUsername",
+                testWorkItemObj)
+            .get();
+    assertEquals("{\"error\":\"Error occurred\"}", result);
+  }
+
+  /** Answers each async request with its URI and body, completing them in reverse order. */
+  @SuppressWarnings("unchecked")
+  private void stubEchoingAsyncClient(AtomicInteger inFlight, AtomicInteger maxInFlight)
+      throws Exception {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    when(mockAsyncHttpClient.isRunning()).thenReturn(true);
+    when(mockAsyncHttpClient.execute(any(HttpUriRequest.class), any(FutureCallback.class)))
+        .thenAnswer(
+            invocation -> {
+              HttpEntityEnclosingRequestBase request =
+                  (HttpEntityEnclosingRequestBase) invocation.getArguments()[0];
+              FutureCallback<HttpResponse> callback =
+                  (FutureCallback<HttpResponse>) invocation.getArguments()[1];
+              String body = EntityUtils.toString(request.getEntity());
+              maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+              executor.execute(
+                  () -> {
+                    try {
+                      Thread.sleep(body.contains("\"n\":0") ? 20 : 1);
+                    } catch (InterruptedException e) {
+                      Thread.currentThread().interrupt();
+                    }
+                    inFlight.decrementAndGet();
+                    if (body.contains("bad")) {
+                      callback.failed(new IOException("Bad request"));
+                      return;
+                    }
+                    if (body.contains("reject")) {
+                      BasicHttpResponse rejected =
+                          new BasicHttpResponse(HttpVersion.HTTP_1_1, 422, "Unprocessable Entity");
+                      rejected.setEntity(
+                          new StringEntity(
+                              "{\"message\":\"rejected\"}", ContentType.APPLICATION_JSON));
+                      callback.completed(rejected);
+                      return;
+                    }
+                    BasicHttpResponse response =
+                        new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+                    response.setEntity(
+                        new StringEntity(
+                            body.startsWith("[")
+                                ? body.replace("\"n\"", "\"id\"")
+                                : "{\"uri\":\"" + request.getURI() + "\",\"item\":" + body + "}",
+                            ContentType.APPLICATION_JSON));
+                    callback.completed(response);
+                  });
+              return null;
+            });
+  }
+
+  @Test
+  public void shouldCreateWorkItemsInInputOrderWithBoundedParallelism() throws Exception {
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    stubEchoingAsyncClient(inFlight, maxInFlight);
+    String result =
+        new WorkItemClient(mockHttpClient, mockAsyncHttpClient)
+            .createWorkItems(
+                "testUrl",
+                "testClientId",
+                "testClientSecret",
+                "testUsername",
+                "[{\"n\":0},{\"n\":1},{\"n\":\"bad\"},{\"n\":3}]",
+                null,
+                2);
+    assertEquals(
+        "{\"total\":4,\"succeeded\":3,\"failed\":1,\"results\":["
+            + "{\"index\":0,\"status\":\"ok\",\"response\":{\"uri\":\"testUrl\",\"item\":{\"n\":0}}},"
+            + "{\"index\":1,\"status\":\"ok\",\"response\":{\"uri\":\"testUrl\",\"item\":{\"n\":1}}},"
+            + "{\"index\":2,\"status\":\"error\",\"response\":{\"error\":\"Bad request\"}},"
+            + "{\"index\":3,\"status\":\"ok\",\"response\":{\"uri\":\"testUrl\",\"item\":{\"n\":3}}}]}",
+        result);
+    assertTrue(maxInFlight.get() <= 2);
+  }
+
+  @Test
+  public void shouldSplitBulkResponses() throws Exception {
+    stubEchoingAsyncClient(new AtomicInteger(), new AtomicInteger());
+    WorkItemBatch batch =
+        new WorkItemBatch(new WorkItemClient(mockHttpClient, mockAsyncHttpClient));
+    batch.setBulkUrl("bulkUrl");
+    batch.setBulkSize(2);
+    WorkItemBatch.Result result =
+        batch.create(
+            "testUrl",
+            "testClientId",
+            "testClientSecret",
+            "testUsername",
+            Arrays.asList("{\"n\":0}", "{\"n\":1}", "{\"n\":2}"));
+    assertEquals(Arrays.asList("{\"id\":0}", "{\"id\":1}", "{\"id\":2}"), result.getResponses());
+    assertEquals(3, result.getSucceeded());
+  }
+
+  @Test
+  public void shouldClassifyBatchResultsByStatus() throws Exception {
+    stubEchoingAsyncClient(new AtomicInteger(), new AtomicInteger());
+    WorkItemBatch.Result result =
+        new WorkItemBatch(new WorkItemClient(mockHttpClient, mockAsyncHttpClient))
+            .create(
+                "testUrl",
+                "testClientId",
+                "testClientSecret",
+                "testUsername",
+                Arrays.asList("{\"n\":\"reject\"}", "{\"n\":1,\"error\":\"none\"}"));
+    assertFalse(result.isSucceeded(0));
+    assertEquals("{\"message\":\"rejected\"}", result.getResponses().get(0));
+    assertTrue(result.isSucceeded(1));
+    assertEquals(1, result.getFailed());
+  }
+
+  @Test
+  public void shouldUpdateWorkItems() throws Exception {
+    stubEchoingAsyncClient(new AtomicInteger(), new AtomicInteger());
+    String result =
+        new WorkItemClient(mockHttpClient, mockAsyncHttpClient)
+            .updateWorkItems(
+                "testUrl",
+                "testClientId",
+                "testClientSecret",
+                "testUsername",
+                "[{\"workItemId\":\"a\",\"workItemPartial\":{\"n\":0}},"
+                    + "{\"workItemId\":\"b\",\"workItemPartial\":{\"n\":1}}]",
+                null);
+    assertEquals(
+        "{\"total\":2,\"succeeded\":2,\"failed\":0,\"results\":["
+            + "{\"index\":0,\"status\":\"ok\",\"response\":{\"uri\":\"testUrl/a\",\"item\":{\"n\":0}}},"
+            + "{\"index\":1,\"status\":\"ok\",\"response\":{\"uri\":\"testUrl/b\",\"item\":{\"n\":1}}}]}",
+        result);
+  }
+
+  @Test
+  public void shouldReturnErrorForMalformedBatch() {
+    String result =
+        new WorkItemClient(mockHttpClient, mockAsyncHttpClient)
+            .updateWorkItems(
+                "testUrl",
+                "testClientId",
+                "testClientSecret",
+                "testUsername",
+                "[{\"workItemId\":\"a\"}]",
+                null);
+    assertEquals("{\"error\":\"Work item update needs workItemId and workItemPartial\"}", result);
+  }
+
+  @Test
+  public void shouldQuoteResponsesThatAreNotOneJsonValue() {
+    WorkItemBatch.Result result =
+        new WorkItemBatch.Result(
+            Arrays.asList(
+                new BaseClient.HttpResult(200, ""),
+                new BaseClient.HttpResult(200, "1 2"),
+                new BaseClient.HttpResult(200, "{\"id\":1} x"),
+                new BaseClient.HttpResult(201, "[1,{\"a\":2}]")));
+    assertEquals(
+        "{\"total\":4,\"succeeded\":4,\"failed\":0,\"results\":["
+            + "{\"index\":0,\"status\":\"ok\",\"response\":\"\"},"
+            + "{\"index\":1,\"status\":\"ok\",\"response\":\"1 2\"},"
+            + "{\"index\":2,\"status\":\"ok\",\"response\":\"{\\\"id\\\":1} x\"},"
+            + "{\"index\":3,\"status\":\"ok\",\"response\":[1,{\"a\":2}]}]}",
+        result.toJson());
+  }
+
+  @Test
+  public void shouldRejectDuplicateWorkItemUpdates() {
+    String result =
+        new WorkItemClient(mockHttpClient, mockAsyncHttpClient)
+            .updateWorkItems(
+                "testUrl",
+                "testClientId",
+                "testClientSecret",
+                "testUsername",
+                "[{\"workItemId\":\"a\",\"workItemPartial\":{\"n\":0}},"
+                    + "{\"workItemId\":\"a\",\"workItemPartial\":{\"n\":1}}]",
+                null);
+    assertEquals("{\"error\":\"Work item a is updated more than once\"}", result);
+  }
 }